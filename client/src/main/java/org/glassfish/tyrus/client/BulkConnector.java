@@ -0,0 +1,464 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.TyrusFuture;
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+/**
+ * Opens many client sessions at once with bounded concurrency.
+ * <p/>
+ * At most {@link #maxInFlight(int)} connections are being established at any time; when a connection attempt fails,
+ * it is retried up to {@link #retries(int)} times after a randomized ("full jitter") exponential backoff, so that
+ * a large batch of clients does not reconnect in lockstep. No thread is blocked while waiting for handshakes -
+ * next connection is started from the completion of the previous one and retries are scheduled on
+ * {@link ClientManager#getScheduledExecutorService()}.
+ * <p/>
+ * Example:
+ * <pre>
+ * final Future&lt;BulkConnector.Result&gt; result = new BulkConnector(clientManager)
+ *         .maxInFlight(100)
+ *         .retries(5)
+ *         .connect(URI.create("ws://localhost:8025/echo"), 10000, new BulkConnector.EndpointFactory() {
+ *             &#64;Override
+ *             public Object createEndpoint(int index, URI uri) {
+ *                 return new MyClientEndpoint();
+ *             }
+ *         });
+ * </pre>
+ */
+public class BulkConnector {
+
+    private static final Logger LOGGER = Logger.getLogger(BulkConnector.class.getName());
+
+    private final ClientManager clientManager;
+    private final Random random = new Random();
+
+    private volatile int maxInFlight = 16;
+    private volatile int retries = 3;
+    private volatile long initialBackoff = 100;
+    private volatile long maxBackoff = 10000;
+    private volatile ClientEndpointConfig config;
+    private volatile Listener listener;
+
+    /**
+     * Creates endpoints for connections being opened.
+     */
+    public interface EndpointFactory {
+
+        /**
+         * Create endpoint for given connection. Invoked for every connection attempt, including retries.
+         *
+         * @param index index of the connection, starting from {@code 0}.
+         * @param uri   uri the endpoint will be connected to.
+         * @return {@link javax.websocket.Endpoint} instance or instance of class annotated with
+         * {@link javax.websocket.ClientEndpoint}.
+         */
+        Object createEndpoint(int index, URI uri);
+    }
+
+    /**
+     * Progress listener. Methods are invoked from transport or executor threads and must not block.
+     */
+    public interface Listener {
+
+        /**
+         * Connection was established.
+         *
+         * @param index   index of the connection.
+         * @param session opened session.
+         */
+        void onConnected(int index, Session session);
+
+        /**
+         * Connection could not be established, all retries were used.
+         *
+         * @param index     index of the connection.
+         * @param throwable last failure.
+         */
+        void onFailed(int index, Throwable throwable);
+
+        /**
+         * All connections were either established or failed.
+         *
+         * @param result aggregate result.
+         */
+        void onCompleted(Result result);
+    }
+
+    /**
+     * Aggregate result of bulk connect.
+     */
+    public static class Result {
+
+        private final List<Session> sessions;
+        private final Map<Integer, Throwable> failures;
+
+        private Result(List<Session> sessions, Map<Integer, Throwable> failures) {
+            this.sessions = Collections.unmodifiableList(sessions);
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * Get opened sessions.
+         *
+         * @return list of sessions indexed by connection index, {@code null} for failed connections.
+         */
+        public List<Session> getSessions() {
+            return sessions;
+        }
+
+        /**
+         * Get failures.
+         *
+         * @return last failure of each failed connection, keyed by connection index.
+         */
+        public Map<Integer, Throwable> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Get number of established connections.
+         *
+         * @return number of established connections.
+         */
+        public int getConnectedCount() {
+            return sessions.size() - failures.size();
+        }
+
+        /**
+         * Get number of failed connections.
+         *
+         * @return number of failed connections.
+         */
+        public int getFailedCount() {
+            return failures.size();
+        }
+    }
+
+    /**
+     * Create new bulk connector.
+     *
+     * @param clientManager client manager used for opening connections.
+     */
+    public BulkConnector(ClientManager clientManager) {
+        this.clientManager = clientManager;
+    }
+
+    /**
+     * Set maximal number of connections being established concurrently. Default value is {@code 16}.
+     *
+     * @param maxInFlight maximal number of concurrent connection attempts.
+     * @return updated bulk connector.
+     */
+    public BulkConnector maxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive.");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Set number of retries of each failed connection. Default value is {@code 3}.
+     *
+     * @param retries number of retries, {@code 0} means no retry.
+     * @return updated bulk connector.
+     */
+    public BulkConnector retries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative.");
+        }
+        this.retries = retries;
+        return this;
+    }
+
+    /**
+     * Set backoff boundaries. Delay before n-th retry is chosen randomly from interval
+     * {@code [0, min(maxBackoff, initialBackoff * 2^(n-1))]}. Default values are 100 ms and 10 seconds.
+     *
+     * @param initialBackoff backoff base in milliseconds.
+     * @param maxBackoff     backoff limit in milliseconds.
+     * @return updated bulk connector.
+     */
+    public BulkConnector backoff(long initialBackoff, long maxBackoff) {
+        if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid backoff.");
+        }
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    /**
+     * Set configuration used for programmatic endpoints. Ignored for annotated endpoints.
+     *
+     * @param config client endpoint configuration.
+     * @return updated bulk connector.
+     */
+    public BulkConnector config(ClientEndpointConfig config) {
+        this.config = config;
+        return this;
+    }
+
+    /**
+     * Set progress listener.
+     *
+     * @param listener progress listener.
+     * @return updated bulk connector.
+     */
+    public BulkConnector listener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Open {@code count} connections to the same uri.
+     *
+     * @param uri             uri to connect to.
+     * @param count           number of connections.
+     * @param endpointFactory endpoint factory.
+     * @return future completed when all connections are either established or failed.
+     */
+    public Future<Result> connect(URI uri, int count, EndpointFactory endpointFactory) {
+        return connect(Collections.nCopies(count, uri), endpointFactory);
+    }
+
+    /**
+     * Open one connection to each of provided uris.
+     *
+     * @param uris            uris to connect to.
+     * @param endpointFactory endpoint factory.
+     * @return future completed when all connections are either established or failed.
+     */
+    public Future<Result> connect(List<URI> uris, EndpointFactory endpointFactory) {
+        final Batch batch = new Batch(new ArrayList<URI>(uris), endpointFactory, listener, config, maxInFlight,
+                retries, initialBackoff, maxBackoff);
+        batch.start();
+        return batch.future;
+    }
+
+    private long backoff(long initialBackoff, long maxBackoff, int attempt) {
+        final long limit = initialBackoff << Math.min(attempt - 1, 30);
+        final long bound = (limit <= 0 || limit > maxBackoff) ? maxBackoff : limit;
+        if (bound == 0) {
+            return 0;
+        }
+        synchronized (random) {
+            return (long) (random.nextDouble() * bound);
+        }
+    }
+
+    private class Batch {
+
+        private final List<URI> uris;
+        private final EndpointFactory endpointFactory;
+        private final Listener listener;
+        private final ClientEndpointConfig config;
+        private final int maxInFlight;
+        private final int retries;
+        private final long initialBackoff;
+        private final long maxBackoff;
+
+        private final TyrusFuture<Result> future = new TyrusFuture<Result>();
+        private final AtomicInteger next = new AtomicInteger(0);
+        private final AtomicInteger remaining;
+        private final AtomicReferenceArray<Session> sessions;
+        private final Map<Integer, Throwable> failures = new ConcurrentHashMap<Integer, Throwable>();
+
+        private Batch(List<URI> uris, EndpointFactory endpointFactory, Listener listener, ClientEndpointConfig config,
+                      int maxInFlight, int retries, long initialBackoff, long maxBackoff) {
+            this.uris = uris;
+            this.endpointFactory = endpointFactory;
+            this.listener = listener;
+            this.config = config;
+            this.maxInFlight = maxInFlight;
+            this.retries = retries;
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.remaining = new AtomicInteger(uris.size());
+            this.sessions = new AtomicReferenceArray<Session>(uris.size());
+        }
+
+        private void start() {
+            if (uris.isEmpty()) {
+                complete();
+                return;
+            }
+
+            for (int i = 0; i < Math.min(maxInFlight, uris.size()); i++) {
+                startNext();
+            }
+        }
+
+        /**
+         * Start next pending connection, if any. Called once for each free in-flight slot.
+         */
+        private void startNext() {
+            final int index = next.getAndIncrement();
+            if (index < uris.size()) {
+                attempt(index, 0);
+            }
+        }
+
+        private void attempt(final int index, final int attempt) {
+            final URI uri = uris.get(index);
+
+            final TyrusFuture<Session> attemptFuture = new TyrusFuture<Session>();
+            attemptFuture.addCompletionHandler(new CompletionHandler<Session>() {
+                @Override
+                public void completed(Session session) {
+                    onConnected(index, session);
+                }
+
+                @Override
+                public void failed(Throwable throwable) {
+                    onAttemptFailed(index, attempt, throwable);
+                }
+            });
+
+            try {
+                final Object endpoint = endpointFactory.createEndpoint(index, uri);
+                clientManager.connectToServer(endpoint, config, uri.toString(), clientManager.getExecutorService(), attemptFuture);
+            } catch (final DeploymentException e) {
+                // invalid uri, retrying would not help. Reported asynchronously to avoid deep recursion when many
+                // connections fail this way.
+                clientManager.getExecutorService().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFailed(index, e);
+                    }
+                });
+            } catch (final RuntimeException e) {
+                clientManager.getExecutorService().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        attemptFuture.setFailure(e);
+                    }
+                });
+            }
+        }
+
+        private void onAttemptFailed(final int index, final int attempt, Throwable throwable) {
+            if (attempt >= retries) {
+                onFailed(index, throwable);
+                return;
+            }
+
+            final long delay = backoff(initialBackoff, maxBackoff, attempt + 1);
+            LOGGER.log(Level.FINE, String.format("Connection %d to '%s' failed, retrying in %d ms.", index, uris.get(index), delay), throwable);
+
+            clientManager.getScheduledExecutorService().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    attempt(index, attempt + 1);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void onConnected(int index, Session session) {
+            sessions.set(index, session);
+            if (listener != null) {
+                try {
+                    listener.onConnected(index, session);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+            finished();
+        }
+
+        private void onFailed(int index, Throwable throwable) {
+            failures.put(index, throwable);
+            if (listener != null) {
+                try {
+                    listener.onFailed(index, throwable);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+            finished();
+        }
+
+        private void finished() {
+            if (remaining.decrementAndGet() == 0) {
+                complete();
+            } else {
+                startNext();
+            }
+        }
+
+        private void complete() {
+            final List<Session> sessionList = new ArrayList<Session>(sessions.length());
+            for (int i = 0; i < sessions.length(); i++) {
+                sessionList.add(sessions.get(i));
+            }
+
+            final Result result = new Result(sessionList, new TreeMap<Integer, Throwable>(failures));
+            if (listener != null) {
+                try {
+                    listener.onCompleted(result);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+            future.setResult(result);
+        }
+    }
+}
@@ -40,6 +40,7 @@
 package org.glassfish.tyrus.client;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collections;
@@ -47,16 +48,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.AbstractExecutorService;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.websocket.ClientEndpoint;
 import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
 import javax.websocket.DeploymentException;
 import javax.websocket.Endpoint;
 import javax.websocket.Extension;
@@ -67,6 +72,8 @@ import org.glassfish.tyrus.core.AnnotatedEndpoint;
 import org.glassfish.tyrus.core.BaseContainer;
 import org.glassfish.tyrus.core.ComponentProviderService;
 import org.glassfish.tyrus.core.ErrorCollector;
+import org.glassfish.tyrus.core.HeartbeatService;
+import org.glassfish.tyrus.core.InboundMemoryBudget;
 import org.glassfish.tyrus.core.ReflectionHelper;
 import org.glassfish.tyrus.core.TyrusEndpointWrapper;
 import org.glassfish.tyrus.core.TyrusFuture;
@@ -99,11 +106,17 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
     private final ClientContainer container;
     private final ComponentProviderService componentProvider;
     private final Map<String, Object> properties = new HashMap<String, Object>();
+    /**
+     * Analysed annotated endpoint classes. Keys are weak and values soft, since the model references its class; the
+     * cache does not prevent classes (and their class loaders) from being collected.
+     */
+    private final Map<Class<?>, SoftReference<AnnotatedEndpoint>> annotatedEndpoints = new WeakHashMap<Class<?>, SoftReference<AnnotatedEndpoint>>();
 
     private long defaultAsyncSendTimeout;
     private long defaultMaxSessionIdleTimeout;
     private int maxBinaryMessageBufferSize = Integer.MAX_VALUE;
     private int maxTextMessageBufferSize = Integer.MAX_VALUE;
+    private InboundMemoryBudget inboundMemoryBudget = null;
 
     /**
      * Create new {@link ClientManager} instance.
@@ -333,8 +346,22 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
      * @throws DeploymentException if the endpoint or provided URL is not valid.
      */
     Future<Session> connectToServer(final Object o, final ClientEndpointConfig configuration, final String url, final ExecutorService executorService) throws DeploymentException {
-        final TyrusFuture<Session> future = new TyrusFuture<Session>();
+        return connectToServer(o, configuration, url, executorService, new TyrusFuture<Session>());
+    }
 
+    /**
+     * Connects client endpoint o to the specified url and completes provided future.
+     *
+     * @param o               the endpoint.
+     * @param configuration   of the endpoint.
+     * @param url             to which the client will connect.
+     * @param executorService executor used for creating the endpoint and opening the connection.
+     * @param future          future to be completed with the {@link Session} or the failure.
+     * @return provided future.
+     * @throws DeploymentException if the provided URL is not valid.
+     */
+    Future<Session> connectToServer(final Object o, final ClientEndpointConfig configuration, final String url,
+                                    final ExecutorService executorService, final TyrusFuture<Session> future) throws DeploymentException {
         try {
             URI uri = new URI(url);
             String scheme = uri.getScheme();
@@ -347,18 +374,15 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
 
         final int handshakeTimeout = getHandshakeTimeout();
 
-        executorService.submit(new Runnable() {
+        executorService.execute(new Runnable() {
             @Override
             public void run() {
 
-                ClientEndpointConfig config = null;
+                ClientEndpointConfig config;
                 Endpoint endpoint;
                 final ErrorCollector collector = new ErrorCollector();
                 TyrusEndpointWrapper clientEndpoint;
-
-                final CountDownLatch responseLatch = new CountDownLatch(1);
-                ManagerClientHandshakeListener listener = null;
-                TyrusClientEngine clientEngine = null;
+                HandshakeListener listener = null;
 
                 try {
                     if (o instanceof Endpoint) {
@@ -370,7 +394,7 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
                             endpoint = ReflectionHelper.getInstance(((Class<Endpoint>) o), collector);
                             config = configuration == null ? ClientEndpointConfig.Builder.create().build() : configuration;
                         } else if ((((Class<?>) o).getAnnotation(ClientEndpoint.class) != null)) {
-                            endpoint = AnnotatedEndpoint.fromClass((Class) o, componentProvider, false, collector);
+                            endpoint = getAnnotatedEndpoint((Class<?>) o, collector).withInstance(null, collector);
                             config = (ClientEndpointConfig) ((AnnotatedEndpoint) endpoint).getEndpointConfig();
                         } else {
                             collector.addException(new DeploymentException(String.format("Class %s in not Endpoint descendant and does not have @ClientEndpoint", ((Class<?>) o).getName())));
@@ -378,7 +402,7 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
                             config = null;
                         }
                     } else {
-                        endpoint = AnnotatedEndpoint.fromInstance(o, componentProvider, false, collector);
+                        endpoint = getAnnotatedEndpoint(o.getClass(), collector).withInstance(o, collector);
                         config = (ClientEndpointConfig) ((AnnotatedEndpoint) endpoint).getEndpointConfig();
                     }
 
@@ -392,82 +416,73 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
                         return;
                     }
 
-                    final ClientEndpointConfig finalConfig = config;
-
-                    listener = new ManagerClientHandshakeListener() {
-
-                        private volatile Session session;
-
-                        @Override
-                        public void onSessionCreated(Session session) {
-                            this.session = session;
-                            responseLatch.countDown();
-                        }
-
-                        @Override
-                        public void onError(Throwable exception) {
-                            assert finalConfig != null;
-                            finalConfig.getUserProperties().put("org.glassfish.tyrus.client.exception", exception);
-                            responseLatch.countDown();
-                        }
-
-                        @Override
-                        public Session getSession() {
-                            return session;
-                        }
-                    };
-
-                    clientEngine = new TyrusClientEngine(clientEndpoint, listener, (Integer) properties.get(TyrusClientEngine.INCOMING_BUFFER_SIZE));
+                    listener = new HandshakeListener(future);
+                    final TyrusClientEngine clientEngine = new TyrusClientEngine(clientEndpoint, listener, (Integer) properties.get(TyrusClientEngine.INCOMING_BUFFER_SIZE));
+                    final Object maxOutgoingFrameSize = properties.get(TyrusClientEngine.MAX_OUTGOING_FRAME_SIZE);
+                    if (maxOutgoingFrameSize instanceof Integer) {
+                        clientEngine.setMaxOutgoingFrameSize((Integer) maxOutgoingFrameSize);
+                    }
+                    clientEngine.setInboundMemoryBudget(getInboundMemoryBudget());
+                    listener.scheduleTimeout(clientEngine, handshakeTimeout);
 
                     container.openClientSocket(url, config, properties, clientEngine);
                 } catch (IOException e) {
-                    future.setFailure(e);
-                    return;
+                    fail(listener, e);
                 } catch (DeploymentException e) {
-                    e.printStackTrace();
-                    collector.addException(new DeploymentException("Connection failed.", e));
-                }
-
-                if (!collector.isEmpty()) {
-                    future.setFailure(collector.composeComprehensiveException());
-                    return;
+                    fail(listener, new DeploymentException("Connection failed.", e));
+                } catch (RuntimeException e) {
+                    // e.g. thrown by user configurator or endpoint constructor; the future would never complete.
+                    fail(listener, new DeploymentException("Connection failed.", e));
+                } catch (Error e) {
+                    fail(listener, new DeploymentException("Connection failed.", e));
+                    throw e;
                 }
+            }
 
-                try {
-                    final boolean countedDown = responseLatch.await(handshakeTimeout, TimeUnit.MILLISECONDS);
-                    if (countedDown) {
-                        assert config != null;
-                        final Object exception = config.getUserProperties().get("org.glassfish.tyrus.client.exception");
-                        if (exception != null) {
-                            future.setFailure(new DeploymentException("Handshake error.", (Throwable) exception));
-                            return;
-                        }
-
-                        final Session session = listener.getSession();
-                        if (session.isOpen()) {
-                            session.setMaxBinaryMessageBufferSize(maxBinaryMessageBufferSize);
-                            session.setMaxTextMessageBufferSize(maxTextMessageBufferSize);
-                            session.setMaxIdleTimeout(defaultMaxSessionIdleTimeout);
-                        }
-                        future.setResult(session);
-                        return;
-                    } else {
-                        // timeout!
-                        final ClientEngine.TimeoutHandler timeoutHandler = clientEngine.getTimeoutHandler();
-                        if (timeoutHandler != null) {
-                            timeoutHandler.handleTimeout();
-                        }
-                    }
-                } catch (Exception e) {
-                    future.setFailure(new DeploymentException("Handshake response not received.", e));
+            private void fail(HandshakeListener listener, Exception e) {
+                if (listener == null) {
+                    future.setFailure(e);
+                } else {
+                    listener.onError(e);
                 }
-                future.setFailure(new DeploymentException("Handshake response not received."));
             }
         });
 
         return future;
     }
 
+    /**
+     * Get {@link AnnotatedEndpoint} model for given {@link ClientEndpoint} annotated class.
+     * <p/>
+     * Models are cached per {@link ClientManager} instance, so the annotation analysis (method scan, parameter
+     * extractors, encoder and decoder type resolution) is done only once for each class; only valid models are
+     * cached. Returned model is not used directly, each connection gets its own copy with new configuration from
+     * {@link AnnotatedEndpoint#withInstance(Object, ErrorCollector)}.
+     *
+     * @param annotatedClass class annotated with {@link ClientEndpoint}.
+     * @param collector      error collector.
+     * @return endpoint model.
+     */
+    private AnnotatedEndpoint getAnnotatedEndpoint(Class<?> annotatedClass, ErrorCollector collector) {
+        synchronized (annotatedEndpoints) {
+            final SoftReference<AnnotatedEndpoint> reference = annotatedEndpoints.get(annotatedClass);
+            final AnnotatedEndpoint annotatedEndpoint = reference == null ? null : reference.get();
+            if (annotatedEndpoint != null) {
+                return annotatedEndpoint;
+            }
+        }
+
+        final AnnotatedEndpoint annotatedEndpoint = AnnotatedEndpoint.fromClass(annotatedClass, componentProvider, false, collector);
+
+        if (collector.isEmpty()) {
+            synchronized (annotatedEndpoints) {
+                annotatedEndpoints.put(annotatedClass, new SoftReference<AnnotatedEndpoint>(annotatedEndpoint));
+            }
+        }
+
+        return annotatedEndpoint;
+    }
+
     private int getHandshakeTimeout() {
         final Object o = properties.get(HANDSHAKE_TIMEOUT);
         if (o != null && o instanceof Integer) {
@@ -478,8 +493,76 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         }
     }
 
-    private interface ManagerClientHandshakeListener extends TyrusClientEngine.ClientHandshakeListener {
-        Session getSession();
+    /**
+     * Completes the connect {@link Future} when the handshake is finished, fails or times out.
+     * <p/>
+     * Listener methods are invoked from the transport (I/O) thread and the timeout is scheduled on the shared
+     * {@link #getScheduledExecutorService()}, so no thread is blocked while waiting for the handshake response.
+     */
+    private class HandshakeListener implements TyrusClientEngine.ClientHandshakeListener {
+
+        private final TyrusFuture<Session> future;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> timeoutFuture;
+
+        private HandshakeListener(TyrusFuture<Session> future) {
+            this.future = future;
+        }
+
+        private void scheduleTimeout(final TyrusClientEngine clientEngine, int handshakeTimeout) {
+            timeoutFuture = getScheduledExecutorService().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (done.compareAndSet(false, true)) {
+                        final ClientEngine.TimeoutHandler timeoutHandler = clientEngine.getTimeoutHandler();
+                        if (timeoutHandler != null) {
+                            timeoutHandler.handleTimeout();
+                        }
+                        future.setFailure(new DeploymentException("Handshake response not received."));
+                    }
+                }
+            }, handshakeTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onSessionCreated(Session session) {
+            if (!complete()) {
+                // handshake timed out in the meantime.
+                try {
+                    session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Handshake response not received in time."));
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, e.getMessage(), e);
+                }
+                return;
+            }
+
+            if (session.isOpen()) {
+                session.setMaxBinaryMessageBufferSize(maxBinaryMessageBufferSize);
+                session.setMaxTextMessageBufferSize(maxTextMessageBufferSize);
+                session.setMaxIdleTimeout(defaultMaxSessionIdleTimeout);
+            }
+            future.setResult(session);
+        }
+
+        @Override
+        public void onError(Throwable exception) {
+            if (complete()) {
+                future.setFailure(exception instanceof DeploymentException || exception instanceof IOException
+                        ? exception : new DeploymentException("Handshake error.", exception));
+            }
+        }
+
+        private boolean complete() {
+            if (done.compareAndSet(false, true)) {
+                final ScheduledFuture<?> currentTimeoutFuture = timeoutFuture;
+                if (currentTimeoutFuture != null) {
+                    currentTimeoutFuture.cancel(false);
+                }
+                return true;
+            }
+
+            return false;
+        }
     }
 
     @Override
@@ -569,6 +652,44 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         return properties;
     }
 
+    /**
+     * Get memory budget for inbound data shared by all connections of this client, created according to
+     * {@link TyrusClientEngine#INBOUND_MEMORY_BUDGET} value set in {@link #getProperties()}.
+     *
+     * @return budget or {@code null} when not configured.
+     */
+    private synchronized InboundMemoryBudget getInboundMemoryBudget() {
+        if (inboundMemoryBudget == null) {
+            final Object limit = properties.get(TyrusClientEngine.INBOUND_MEMORY_BUDGET);
+            if (limit instanceof Number) {
+                inboundMemoryBudget = new InboundMemoryBudget(((Number) limit).longValue());
+            }
+        }
+        return inboundMemoryBudget;
+    }
+
+    /**
+     * Create executor according to {@link BaseContainer#EXECUTOR_SERVICE} and {@link BaseContainer#MAX_WORKER_THREADS}
+     * values set in {@link #getProperties()}.
+     *
+     * @return new executor service.
+     */
+    @Override
+    protected ExecutorService newExecutorService() {
+        return newExecutorService(properties);
+    }
+
+    /**
+     * Create heartbeat service configured by {@link HeartbeatService#INTERVAL} and
+     * {@link HeartbeatService#MAX_MISSED_PONGS} values set in {@link #getProperties()}.
+     *
+     * @return new heartbeat service.
+     */
+    @Override
+    protected HeartbeatService newHeartbeatService() {
+        return new HeartbeatService(getScheduledExecutorService(), properties);
+    }
+
     /**
      * Executor service which just executes provided {@link Runnable} in the very same thread.
      */
@@ -56,6 +56,7 @@ import org.glassfish.tyrus.core.EndpointWrapper;
 import org.glassfish.tyrus.core.FramingException;
 import org.glassfish.tyrus.core.Handshake;
 import org.glassfish.tyrus.core.HandshakeException;
+import org.glassfish.tyrus.core.InboundMemoryBudget;
 import org.glassfish.tyrus.core.ProtocolHandler;
 import org.glassfish.tyrus.core.RequestContext;
 import org.glassfish.tyrus.core.TyrusEndpoint;
@@ -79,6 +80,21 @@ public class TyrusClientEngine implements ClientEngine {
 
     public static final String INCOMING_BUFFER_SIZE = "org.glassfish.tyrus.incomingBufferSize";
 
+    /**
+     * Maximal payload size of outgoing data frames (Integer); bigger messages are sent as fragmented messages.
+     *
+     * @see ProtocolHandler#setMaxFrameSize(int)
+     */
+    public static final String MAX_OUTGOING_FRAME_SIZE = "org.glassfish.tyrus.maxOutgoingFrameSize";
+
+    /**
+     * Maximal number of bytes (Number) of inbound data retained by all connections of a client container. Reading
+     * from connections which need more is paused until the data is released by other connections.
+     *
+     * @see InboundMemoryBudget
+     */
+    public static final String INBOUND_MEMORY_BUDGET = "org.glassfish.tyrus.inboundMemoryBudget";
+
     private static final Version DEFAULT_VERSION = Version.DRAFT17;
     private static final int BUFFER_STEP_SIZE = 256;
 
@@ -88,6 +104,7 @@ public class TyrusClientEngine implements ClientEngine {
 
     private Handshake clientHandShake = null;
     private volatile TimeoutHandler timeoutHandler = null;
+    private volatile InboundMemoryBudget inboundMemoryBudget = null;
 
     private int incomingBufferSize = 4194315; // 4M (payload) + 11 (frame overhead)
 
@@ -139,6 +156,7 @@ public class TyrusClientEngine implements ClientEngine {
             ((ClientEndpointConfig) endpointWrapper.getEndpointConfig()).getConfigurator().afterResponse(upgradeResponse);
 
             protocolHandler.setWriter(writer);
+            protocolHandler.setInboundMemoryBudget(inboundMemoryBudget);
             protocolHandler.setWebSocket(tyrusWebSocket);
 
             tyrusWebSocket.onConnect(this.clientHandShake.getRequest());
@@ -182,6 +200,49 @@ public class TyrusClientEngine implements ClientEngine {
         }
     }
 
+    /**
+     * Process error which prevented the handshake from being completed, typically failure of asynchronous connection
+     * attempt.
+     * <p/>
+     * Not part of {@link ClientEngine}; tyrus containers which connect asynchronously call it so the client is
+     * notified immediately instead of waiting for the handshake timeout.
+     *
+     * @param t error which occurred.
+     */
+    public void processError(Throwable t) {
+        listener.onError(t);
+    }
+
+    /**
+     * Set whether the server is trusted (typically when it runs in the same JVM).
+     *
+     * @param trustedPeer {@code true} when the server is trusted.
+     * @see ProtocolHandler#setTrustedPeer(boolean)
+     */
+    public void setTrustedPeer(boolean trustedPeer) {
+        protocolHandler.setTrustedPeer(trustedPeer);
+    }
+
+    /**
+     * Set maximal payload size of outgoing data frames.
+     *
+     * @param maxOutgoingFrameSize maximal payload size in bytes, {@code 0} or less disables fragmentation.
+     * @see #MAX_OUTGOING_FRAME_SIZE
+     */
+    public void setMaxOutgoingFrameSize(int maxOutgoingFrameSize) {
+        protocolHandler.setMaxFrameSize(maxOutgoingFrameSize);
+    }
+
+    /**
+     * Set memory budget for inbound data shared with other connections.
+     *
+     * @param inboundMemoryBudget budget to be used, {@code null} disables accounting.
+     * @see #INBOUND_MEMORY_BUDGET
+     */
+    public void setInboundMemoryBudget(InboundMemoryBudget inboundMemoryBudget) {
+        this.inboundMemoryBudget = inboundMemoryBudget;
+    }
+
     /**
      * Get {@link TimeoutHandler} associated with current {@link ClientEngine} instance.
      *
@@ -247,7 +308,7 @@ public class TyrusClientEngine implements ClientEngine {
                     do {
                         final DataFrame result = handler.unframe(data);
                         if (result == null) {
-                            buffer = data;
+                            buffer = data.hasRemaining() ? data : null;
                             break;
                         } else {
                             result.respond(webSocket);
@@ -259,6 +320,8 @@ public class TyrusClientEngine implements ClientEngine {
                 webSocket.onClose(new CloseReason(CloseReason.CloseCodes.getCloseCode(e.getClosingCode()), e.getMessage()));
             } catch (Exception wse) {
                 webSocket.onClose(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, wse.getMessage()));
+            } finally {
+                handler.onReadProcessed(buffer == null ? 0 : buffer.capacity());
             }
         }
     }
@@ -40,16 +40,33 @@
 package org.glassfish.tyrus.client;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.websocket.ClientEndpoint;
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
 
 import org.glassfish.tyrus.spi.ClientContainer;
 import org.glassfish.tyrus.spi.ClientEngine;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -81,6 +98,83 @@ public class ClientManagerTest {
 
     }
 
+    @Test
+    public void annotatedEndpointModelCached() throws Exception {
+        final ClientManager clientManager = ClientManager.createClient(RecordingContainer.class.getName());
+        final URI uri = URI.create("ws://localhost/cached");
+
+        CountingConfigurator.COUNTER.set(0);
+        RecordingContainer.CONFIGS.clear();
+
+        clientManager.asyncConnectToServer(CachedEndpoint.class, uri);
+        final ClientEndpointConfig first = RecordingContainer.CONFIGS.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+
+        first.getUserProperties().put("key", "value");
+
+        // each connection gets its own configuration, only the analysis of the class is shared.
+        clientManager.asyncConnectToServer(CachedEndpoint.class, uri);
+        final ClientEndpointConfig second = RecordingContainer.CONFIGS.poll(5, TimeUnit.SECONDS);
+        assertNotSame(first, second);
+        assertTrue(second.getUserProperties().isEmpty());
+
+        clientManager.asyncConnectToServer(new CachedEndpoint(), uri);
+        final ClientEndpointConfig third = RecordingContainer.CONFIGS.poll(5, TimeUnit.SECONDS);
+        assertNotSame(first, third);
+        assertNotSame(second, third);
+
+        // configurator is instantiated for the analysed model and for each connection.
+        assertEquals(4, CountingConfigurator.COUNTER.get());
+    }
+
+    @Test
+    public void handshakeTimeout() throws Exception {
+        final ClientManager clientManager = createClientManager();
+        clientManager.getProperties().put(ClientManager.HANDSHAKE_TIMEOUT, 100);
+
+        final Throwable failure = getFailure(clientManager.asyncConnectToServer(new NoopEndpoint(), null, URI.create("ws://localhost/timeout")));
+        assertTrue(failure instanceof DeploymentException);
+    }
+
+    @Test
+    public void asynchronousConnectFailure() throws Exception {
+        final ClientManager clientManager = ClientManager.createClient(RefusingContainer.class.getName());
+        // failure has to be reported well before the handshake timeout.
+        clientManager.getProperties().put(ClientManager.HANDSHAKE_TIMEOUT, 60000);
+
+        final Throwable failure = getFailure(clientManager.asyncConnectToServer(new NoopEndpoint(), null, URI.create("ws://localhost/refused")));
+        assertTrue(failure instanceof ConnectException);
+    }
+
+    @Test
+    public void synchronousConnectFailure() throws Exception {
+        final ClientManager clientManager = ClientManager.createClient(ThrowingContainer.class.getName());
+        clientManager.getProperties().put(ClientManager.HANDSHAKE_TIMEOUT, 60000);
+
+        final Throwable failure = getFailure(clientManager.asyncConnectToServer(new NoopEndpoint(), null, URI.create("ws://localhost/throwing")));
+        assertTrue(failure instanceof IOException);
+    }
+
+    @Test
+    public void unexpectedConnectFailure() throws Exception {
+        final ClientManager clientManager = ClientManager.createClient(FailingContainer.class.getName());
+        clientManager.getProperties().put(ClientManager.HANDSHAKE_TIMEOUT, 60000);
+
+        final Throwable failure = getFailure(clientManager.asyncConnectToServer(new NoopEndpoint(), null, URI.create("ws://localhost/failing")));
+        assertTrue(failure instanceof DeploymentException);
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+    }
+
+    private static Throwable getFailure(Future<Session> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Connect should fail.");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
     private ClientManager createClientManager() {
         return ClientManager.createClient(NoopContainer.class.getName());
     }
@@ -93,4 +187,78 @@ public class ClientManagerTest {
                                      ClientEngine clientEngine) throws DeploymentException, IOException {
         }
     }
+
+    public static class RecordingContainer implements ClientContainer {
+
+        static final BlockingQueue<ClientEndpointConfig> CONFIGS = new LinkedBlockingQueue<ClientEndpointConfig>();
+
+        @Override
+        public void openClientSocket(String url, ClientEndpointConfig cec,
+                                     Map<String, Object> properties,
+                                     ClientEngine clientEngine) throws DeploymentException, IOException {
+            CONFIGS.add(cec);
+        }
+    }
+
+    /**
+     * Fails the connection attempt asynchronously, the way Grizzly container reports refused connection.
+     */
+    public static class RefusingContainer implements ClientContainer {
+
+        @Override
+        public void openClientSocket(String url, ClientEndpointConfig cec,
+                                     Map<String, Object> properties,
+                                     final ClientEngine clientEngine) throws DeploymentException, IOException {
+            new Thread() {
+                @Override
+                public void run() {
+                    ((TyrusClientEngine) clientEngine).processError(new ConnectException("Connection refused"));
+                }
+            }.start();
+        }
+    }
+
+    public static class ThrowingContainer implements ClientContainer {
+
+        @Override
+        public void openClientSocket(String url, ClientEndpointConfig cec,
+                                     Map<String, Object> properties,
+                                     ClientEngine clientEngine) throws DeploymentException, IOException {
+            throw new IOException("Connection refused");
+        }
+    }
+
+    public static class FailingContainer implements ClientContainer {
+
+        @Override
+        public void openClientSocket(String url, ClientEndpointConfig cec,
+                                     Map<String, Object> properties,
+                                     ClientEngine clientEngine) throws DeploymentException, IOException {
+            throw new IllegalStateException("Unexpected failure.");
+        }
+    }
+
+    public static class NoopEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    public static class CountingConfigurator extends ClientEndpointConfig.Configurator {
+
+        static final AtomicInteger COUNTER = new AtomicInteger(0);
+
+        public CountingConfigurator() {
+            COUNTER.incrementAndGet();
+        }
+    }
+
+    @ClientEndpoint(configurator = CountingConfigurator.class)
+    public static class CachedEndpoint {
+
+        @OnMessage
+        public void onMessage(String message) {
+        }
+    }
 }
@@ -43,6 +43,7 @@ package org.glassfish.tyrus.gf.cdi;
 import java.lang.annotation.Annotation;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import javax.enterprise.context.spi.CreationalContext;
@@ -69,6 +70,14 @@ public class CdiComponentProvider extends ComponentProvider {
 
     private final Map<Object, CdiInjectionContext> cdiBeanToContext;
 
+    /**
+     * Injection targets are created once per class and then used for producing all instances of that class.
+     */
+    private final ConcurrentMap<Class<?>, InjectionTarget> injectionTargets =
+            new ConcurrentHashMap<Class<?>, InjectionTarget>();
+
+    private final ConcurrentMap<Class<?>, Boolean> applicable = new ConcurrentHashMap<Class<?>, Boolean>();
+
     /**
      * Constructor.
      * </p>
@@ -93,6 +102,20 @@ public class CdiComponentProvider extends ComponentProvider {
 
     @Override
     public boolean isApplicable(Class<?> c) {
+        if (!managerRetrieved) {
+            return false;
+        }
+
+        Boolean result = applicable.get(c);
+        if (result == null) {
+            result = !isEjb(c);
+            applicable.putIfAbsent(c, result);
+        }
+
+        return result;
+    }
+
+    private static boolean isEjb(Class<?> c) {
         Annotation[] annotations = c.getAnnotations();
 
         for (Annotation annotation : annotations) {
@@ -100,40 +123,58 @@ public class CdiComponentProvider extends ComponentProvider {
             if (annotationClassName.equals("javax.ejb.Singleton") ||
                     annotationClassName.equals("javax.ejb.Stateful") ||
                     annotationClassName.equals("javax.ejb.Stateless")) {
-                return false;
+                return true;
             }
         }
 
-        return managerRetrieved;
+        return false;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> Object create(Class<T> c) {
         if (managerRetrieved) {
-            synchronized (beanManager) {
-                T managedObject;
-                AnnotatedType annotatedType = beanManager.createAnnotatedType(c);
-                InjectionTarget it = beanManager.createInjectionTarget(annotatedType);
-                CreationalContext cc = beanManager.createCreationalContext(null);
-                managedObject = (T) it.produce(cc);
-                it.inject(managedObject, cc);
-                it.postConstruct(managedObject);
-                cdiBeanToContext.put(managedObject, new CdiInjectionContext(it, cc));
-
-                return managedObject;
-            }
+            final InjectionTarget it = getInjectionTarget(c);
+            final CreationalContext cc = beanManager.createCreationalContext(null);
+            final T managedObject = (T) it.produce(cc);
+            it.inject(managedObject, cc);
+            it.postConstruct(managedObject);
+            cdiBeanToContext.put(managedObject, new CdiInjectionContext(it, cc));
+
+            return managedObject;
         } else {
             return null;
         }
     }
 
+    /**
+     * Get cached {@link InjectionTarget} for given class or create new one.
+     * <p/>
+     * Creation is not synchronized; when two threads create target for the same class concurrently, only one of them
+     * is cached and both are valid.
+     *
+     * @param c class for which the injection target is requested.
+     * @return injection target.
+     */
+    private InjectionTarget getInjectionTarget(Class<?> c) {
+        InjectionTarget it = injectionTargets.get(c);
+        if (it == null) {
+            final AnnotatedType annotatedType = beanManager.createAnnotatedType(c);
+            it = beanManager.createInjectionTarget(annotatedType);
+            final InjectionTarget existing = injectionTargets.putIfAbsent(c, it);
+            if (existing != null) {
+                it = existing;
+            }
+        }
+        return it;
+    }
+
     @Override
     public boolean destroy(Object o) {
         //if the object is not in map, nothing happens
-        if (cdiBeanToContext.containsKey(o)) {
-            cdiBeanToContext.get(o).cleanup(o);
-            cdiBeanToContext.remove(o);
+        final CdiInjectionContext context = cdiBeanToContext.remove(o);
+        if (context != null) {
+            context.cleanup(o);
             return true;
         }
 
@@ -156,4 +197,4 @@ public class CdiComponentProvider extends ComponentProvider {
             cc.release();
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -44,6 +44,8 @@ import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,6 +61,10 @@ import org.glassfish.tyrus.core.ComponentProvider;
 
 /**
  * Provides the instance for the supported EJB classes.
+ * <p/>
+ * Resolved JNDI names are cached per class, so the simple form name lookup is not retried for beans which can only be
+ * looked up using the fully-qualified name. References to {@link Singleton} and {@link Stateless} beans can be shared,
+ * so they are looked up only once; {@link Stateful} beans are looked up for every {@link #create(Class)} call.
  *
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -67,9 +73,21 @@ public class EjbComponentProvider extends ComponentProvider {
 
     private static final Logger LOGGER = Logger.getLogger(EjbComponentProvider.class.getName());
 
+    private final ConcurrentMap<Class<?>, String> jndiNames = new ConcurrentHashMap<Class<?>, String>();
+    private final ConcurrentMap<Class<?>, Object> sharedReferences = new ConcurrentHashMap<Class<?>, Object>();
+    private final ConcurrentMap<Method, Method> invocableMethods = new ConcurrentHashMap<Method, Method>();
+
     @SuppressWarnings("unchecked")
     @Override
     public <T> Object create(Class<T> c) {
+        final boolean shareable = isShareable(c);
+        if (shareable) {
+            final Object reference = sharedReferences.get(c);
+            if (reference != null) {
+                return reference;
+            }
+        }
+
         String name = getName(c);
         T result = null;
         if (name == null) {
@@ -78,13 +96,25 @@ public class EjbComponentProvider extends ComponentProvider {
 
         try {
             InitialContext ic = new InitialContext();
-            result = (T) lookup(ic, c, name);
+            final String jndiName = jndiNames.get(c);
+            if (jndiName != null) {
+                result = (T) ic.lookup(jndiName);
+            } else {
+                result = (T) lookup(ic, c, name);
+            }
         } catch (NamingException ex) {
             String message = "An instance of EJB class " + c.getName() +
                     " could not be looked up using simple form name or the fully-qualified form name.";
             LOGGER.log(Level.SEVERE, message, ex);
         }
 
+        if (shareable && result != null) {
+            final Object existing = sharedReferences.putIfAbsent(c, result);
+            if (existing != null) {
+                return existing;
+            }
+        }
+
         return result;
     }
 
@@ -102,6 +132,16 @@ public class EjbComponentProvider extends ComponentProvider {
 
     @Override
     public Method getInvocableMethod(Method method) {
+        Method invocableMethod = invocableMethods.get(method);
+        if (invocableMethod == null) {
+            invocableMethod = findInvocableMethod(method);
+            invocableMethods.putIfAbsent(method, invocableMethod);
+        }
+
+        return invocableMethod;
+    }
+
+    private Method findInvocableMethod(Method method) {
         final Class<?> declaringClass = method.getDeclaringClass();
 
         final List<Class> interfaces = new LinkedList<Class>();
@@ -131,6 +171,10 @@ public class EjbComponentProvider extends ComponentProvider {
         return method;
     }
 
+    private static boolean isShareable(Class<?> c) {
+        return c.isAnnotationPresent(Singleton.class) || c.isAnnotationPresent(Stateless.class);
+    }
+
     private String getName(Class<?> c) {
         String name;
 
@@ -152,7 +196,7 @@ public class EjbComponentProvider extends ComponentProvider {
 
     private Object lookup(InitialContext ic, Class<?> c, String name) throws NamingException {
         try {
-            return lookupSimpleForm(ic, name);
+            return lookupSimpleForm(ic, c, name);
         } catch (NamingException ex) {
             LOGGER.log(Level.WARNING, "An instance of EJB class " + c.getName() +
                     " could not be looked up using simple form name. " +
@@ -162,14 +206,18 @@ public class EjbComponentProvider extends ComponentProvider {
         }
     }
 
-    private Object lookupSimpleForm(InitialContext ic, String name) throws NamingException {
+    private Object lookupSimpleForm(InitialContext ic, Class<?> c, String name) throws NamingException {
         String jndiName = "java:module/" + name;
-        return ic.lookup(jndiName);
+        final Object result = ic.lookup(jndiName);
+        jndiNames.putIfAbsent(c, jndiName);
+        return result;
     }
 
     private Object lookupFullyQualfiedForm(InitialContext ic, Class<?> c, String name) throws NamingException {
         String jndiName = "java:module/" + name + "!" + c.getName();
-        return ic.lookup(jndiName);
+        final Object result = ic.lookup(jndiName);
+        jndiNames.putIfAbsent(c, jndiName);
+        return result;
     }
 
 }
@@ -58,6 +58,7 @@ import org.glassfish.tyrus.spi.ClientEngine;
 import org.glassfish.tyrus.spi.ReadHandler;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 import org.glassfish.tyrus.spi.UpgradeResponse;
+import org.glassfish.tyrus.spi.Writer;
 
 import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Connection;
@@ -104,6 +105,7 @@ class GrizzlyClientFilter extends BaseFilter {
     private final ClientEngine engine;
     private final URI uri;
     private final ClientEngine.TimeoutHandler timeoutHandler;
+    private final Map<String, Object> properties;
 
     private final Queue<TaskProcessor.Task> taskQueue = new ConcurrentLinkedQueue<TaskProcessor.Task>();
 
@@ -113,15 +115,18 @@ class GrizzlyClientFilter extends BaseFilter {
      * Constructs a new {@link GrizzlyClientFilter}.
      *
      * @param proxy     true when client initiated connection has proxy in the way.
-     * @param sslFilter filter to be "enabled" in case connection is created via proxy.
+     * @param sslFilter  filter to be "enabled" in case connection is created via proxy.
+     * @param properties client properties, passed to {@link GrizzlyWriter}.
      */
     /* package */ GrizzlyClientFilter(ClientEngine engine, boolean proxy,
-                                      Filter sslFilter, URI uri, ClientEngine.TimeoutHandler timeoutHandler) {
+                                      Filter sslFilter, URI uri, ClientEngine.TimeoutHandler timeoutHandler,
+                                      Map<String, Object> properties) {
         this.engine = engine;
         this.proxy = proxy;
         this.sslFilter = sslFilter;
         this.uri = uri;
         this.timeoutHandler = timeoutHandler;
+        this.properties = properties;
     }
 
     // ----------------------------------------------------- Methods from Filter
@@ -227,6 +232,11 @@ class GrizzlyClientFilter extends BaseFilter {
                 taskQueue.add(new ProcessTask(webSocketBuffer, readHandler));
 
                 TaskProcessor.processQueue(taskQueue, null);
+
+                final Writer writer = tyrusConnection.getWriter();
+                if (writer instanceof GrizzlyWriter && ((GrizzlyWriter) writer).suspendIfReadingPaused(ctx)) {
+                    return ctx.getSuspendAction();
+                }
             }
             return ctx.getStopAction();
         }
@@ -291,7 +301,7 @@ class GrizzlyClientFilter extends BaseFilter {
      */
     private NextAction handleHandshake(final FilterChainContext ctx, HttpContent content) {
 
-        final GrizzlyWriter grizzlyWriter = new GrizzlyWriter(ctx.getConnection());
+        final GrizzlyWriter grizzlyWriter = new GrizzlyWriter(ctx.getConnection(), properties);
         final org.glassfish.tyrus.spi.Connection tyrusConnection = engine.processResponse(
                 getUpgradeResponse((HttpResponsePacket) content.getHttpHeader()),
                 grizzlyWriter,
@@ -47,19 +47,26 @@ import java.net.SocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.websocket.DeploymentException;
 
+import org.glassfish.tyrus.client.TyrusClientEngine;
 import org.glassfish.tyrus.spi.ClientEngine;
 
 import org.glassfish.grizzly.Connection;
-import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.EmptyCompletionHandler;
 import org.glassfish.grizzly.Processor;
 import org.glassfish.grizzly.filterchain.Filter;
 import org.glassfish.grizzly.filterchain.FilterChain;
@@ -116,6 +123,18 @@ public class GrizzlyClientSocket {
 
     private static final Logger LOGGER = Logger.getLogger(GrizzlyClientSocket.class.getName());
 
+    /**
+     * Timer shared by all client sockets, used for connect timeouts.
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "tyrus-grizzly-client-timer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private final List<Proxy> proxies = new ArrayList<Proxy>();
 
     private final URI uri;
@@ -124,6 +143,7 @@ public class GrizzlyClientSocket {
     private final ThreadPoolConfig workerThreadPoolConfig;
     private final ThreadPoolConfig selectorThreadPoolConfig;
     private final ClientEngine engine;
+    private final Map<String, Object> properties;
 
     private SocketAddress socketAddress;
 
@@ -136,14 +156,17 @@ public class GrizzlyClientSocket {
      * @param timeoutMs                   TODO
      * @param engine                      engine used for this websocket communication
      * @param clientSSLEngineConfigurator ssl engine configurator
+     * @param properties                  client properties, passed to {@link GrizzlyWriter}.
      */
     GrizzlyClientSocket(URI uri, long timeoutMs,
                         ClientEngine engine,
                         SSLEngineConfigurator clientSSLEngineConfigurator,
                         String proxyString,
                         ThreadPoolConfig workerThreadPoolConfig,
-                        ThreadPoolConfig selectorThreadPoolConfig) {
+                        ThreadPoolConfig selectorThreadPoolConfig,
+                        Map<String, Object> properties) {
         this.uri = uri;
+        this.properties = properties;
         this.timeoutMs = timeoutMs;
         this.clientSSLEngineConfigurator = clientSSLEngineConfigurator;
         this.workerThreadPoolConfig = workerThreadPoolConfig;
@@ -155,89 +178,115 @@ public class GrizzlyClientSocket {
 
     /**
      * Connects to the given {@link URI}.
+     * <p/>
+     * Connection is established asynchronously, this method returns as soon as the first connection attempt is
+     * initiated. Proxies are tried one by one when the previous attempt fails or times out, failure of the last
+     * attempt is reported via {@link TyrusClientEngine#processError(Throwable)}.
      */
     public void connect() throws IOException, DeploymentException {
-        for (Proxy proxy : proxies) {
-            try {
-                transport = createTransport(workerThreadPoolConfig, selectorThreadPoolConfig);
-                transport.start();
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, "Transport failed to start.", e);
-                throw e;
-            }
-
-            final TCPNIOConnectorHandler connectorHandler = new TCPNIOConnectorHandler(transport) {
-            };
-
-            connectorHandler.setSyncConnectTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            transport = createTransport(workerThreadPoolConfig, selectorThreadPoolConfig);
+            transport.start();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Transport failed to start.", e);
+            throw e;
+        }
 
-            GrizzlyFuture<Connection> connectionGrizzlyFuture;
+        connect(proxies.iterator(), null);
+    }
 
-            final ClientEngine.TimeoutHandler timeoutHandler = new ClientEngine.TimeoutHandler() {
-                @Override
-                public void handleTimeout() {
-                    closeTransport();
-                }
-            };
+    private void connect(final Iterator<Proxy> proxyIterator, final Throwable lastFailure) {
+        if (!proxyIterator.hasNext()) {
+            closeTransport();
+            final Throwable failure = lastFailure instanceof IOException ? lastFailure : new DeploymentException("Connection failed.", lastFailure);
+            if (engine instanceof TyrusClientEngine) {
+                ((TyrusClientEngine) engine).processError(failure);
+            } else {
+                // other engines learn about the failure when the handshake timeout expires.
+                LOGGER.log(Level.CONFIG, String.format("Connection to '%s' failed.", uri), failure);
+            }
+            return;
+        }
 
-            switch (proxy.type()) {
-                case DIRECT:
-                    connectorHandler.setProcessor(createFilterChain(engine, null, clientSSLEngineConfigurator, false, uri, timeoutHandler));
+        final Proxy proxy = proxyIterator.next();
 
-                    LOGGER.log(Level.CONFIG, String.format("Connecting to '%s' (no proxy).", uri));
-                    connectionGrizzlyFuture = connectorHandler.connect(socketAddress);
-                    break;
-                default:
-                    connectorHandler.setProcessor(createFilterChain(engine, null, clientSSLEngineConfigurator, true, uri, timeoutHandler));
-
-                    LOGGER.log(Level.CONFIG, String.format("Connecting to '%s' via proxy '%s'.", uri, proxy));
-
-                    // default ProxySelector always returns proxies with unresolved addresses.
-                    SocketAddress address = proxy.address();
-                    if (address instanceof InetSocketAddress) {
-                        InetSocketAddress inetSocketAddress = (InetSocketAddress) address;
-                        if (inetSocketAddress.isUnresolved()) {
-                            // resolves the address.
-                            address = new InetSocketAddress(inetSocketAddress.getHostName(), inetSocketAddress.getPort());
-                        }
-                    }
+        final TCPNIOConnectorHandler connectorHandler = new TCPNIOConnectorHandler(transport) {
+        };
 
-                    connectionGrizzlyFuture = connectorHandler.connect(address);
-                    break;
+        final ClientEngine.TimeoutHandler timeoutHandler = new ClientEngine.TimeoutHandler() {
+            @Override
+            public void handleTimeout() {
+                closeTransport();
             }
+        };
 
-            try {
-                final Connection connection = connectionGrizzlyFuture.get(timeoutMs, TimeUnit.MILLISECONDS);
+        final SocketAddress address;
 
+        switch (proxy.type()) {
+            case DIRECT:
+                connectorHandler.setProcessor(createFilterChain(engine, null, clientSSLEngineConfigurator, false, uri, timeoutHandler, properties));
 
-                LOGGER.log(Level.CONFIG, String.format("Connected to '%s'.", connection.getPeerAddress()));
-                return;
-            } catch (InterruptedException interruptedException) {
-                LOGGER.log(Level.CONFIG, String.format("Connection to '%s' failed.", uri), interruptedException);
-                closeTransport();
-            } catch (TimeoutException timeoutException) {
-                LOGGER.log(Level.CONFIG, String.format("Connection to '%s' failed.", uri), timeoutException);
-                closeTransport();
-            } catch (ExecutionException exectionException) {
-                LOGGER.log(Level.CONFIG, String.format("Connection to '%s' failed.", uri), exectionException);
+                LOGGER.log(Level.CONFIG, String.format("Connecting to '%s' (no proxy).", uri));
+                address = socketAddress;
+                break;
+            default:
+                connectorHandler.setProcessor(createFilterChain(engine, null, clientSSLEngineConfigurator, true, uri, timeoutHandler, properties));
 
-                IOException ioException = null;
-                final Throwable cause = exectionException.getCause();
-                if ((cause != null) && (cause instanceof IOException)) {
-                    ioException = (IOException) cause;
-                    ProxySelector.getDefault().connectFailed(uri, socketAddress, ioException);
+                LOGGER.log(Level.CONFIG, String.format("Connecting to '%s' via proxy '%s'.", uri, proxy));
 
+                // default ProxySelector always returns proxies with unresolved addresses.
+                SocketAddress proxyAddress = proxy.address();
+                if (proxyAddress instanceof InetSocketAddress) {
+                    InetSocketAddress inetSocketAddress = (InetSocketAddress) proxyAddress;
+                    if (inetSocketAddress.isUnresolved()) {
+                        // resolves the address.
+                        proxyAddress = new InetSocketAddress(inetSocketAddress.getHostName(), inetSocketAddress.getPort());
+                    }
                 }
+                address = proxyAddress;
+                break;
+        }
 
-                closeTransport();
+        // attempt is resolved either by the connect result or by the timeout, whichever comes first.
+        final AtomicBoolean resolved = new AtomicBoolean(false);
 
-                if (ioException != null) {
-                    throw ioException;
+        final ScheduledFuture<?> connectTimeout = TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (resolved.compareAndSet(false, true)) {
+                    final TimeoutException timeoutException = new TimeoutException(String.format("Connection to '%s' timed out.", address));
+                    LOGGER.log(Level.CONFIG, String.format("Connection to '%s' failed.", uri), timeoutException);
+                    connect(proxyIterator, timeoutException);
                 }
             }
-        }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+
+        connectorHandler.connect(address, new EmptyCompletionHandler<Connection>() {
+            @Override
+            public void completed(Connection connection) {
+                if (resolved.compareAndSet(false, true)) {
+                    connectTimeout.cancel(false);
+                    LOGGER.log(Level.CONFIG, String.format("Connected to '%s'.", connection.getPeerAddress()));
+                } else {
+                    // attempt already timed out.
+                    connection.closeSilently();
+                }
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                if (resolved.compareAndSet(false, true)) {
+                    connectTimeout.cancel(false);
+                    LOGGER.log(Level.CONFIG, String.format("Connection to '%s' failed.", uri), throwable);
 
-        throw new DeploymentException("Connection failed.");
+                    if (throwable instanceof IOException) {
+                        ProxySelector.getDefault().connectFailed(uri, address, (IOException) throwable);
+                    }
+
+                    connect(proxyIterator, throwable);
+                }
+            }
+        });
     }
 
     private TCPNIOTransport createTransport(ThreadPoolConfig workerThreadPoolConfig, ThreadPoolConfig selectorThreadPoolConfig) {
@@ -351,7 +400,8 @@ public class GrizzlyClientSocket {
                                                SSLEngineConfigurator clientSSLEngineConfigurator,
                                                boolean proxy,
                                                URI uri,
-                                               ClientEngine.TimeoutHandler timeoutHandler) {
+                                               ClientEngine.TimeoutHandler timeoutHandler,
+                                               Map<String, Object> properties) {
         FilterChainBuilder clientFilterChainBuilder = FilterChainBuilder.stateless();
         Filter sslFilter = null;
 
@@ -364,7 +414,7 @@ public class GrizzlyClientSocket {
             clientFilterChainBuilder.add(sslFilter);
         }
         clientFilterChainBuilder.add(new HttpClientFilter());
-        clientFilterChainBuilder.add(new GrizzlyClientFilter(engine, proxy, sslFilter, uri, timeoutHandler));
+        clientFilterChainBuilder.add(new GrizzlyClientFilter(engine, proxy, sslFilter, uri, timeoutHandler, properties));
         return clientFilterChainBuilder.build();
     }
 
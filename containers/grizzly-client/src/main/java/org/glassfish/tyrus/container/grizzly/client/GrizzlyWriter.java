@@ -39,9 +39,12 @@
  */
 package org.glassfish.tyrus.container.grizzly.client;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -53,6 +56,7 @@ import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
 import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.memory.Buffers;
 
 /**
@@ -60,27 +64,100 @@ import org.glassfish.grizzly.memory.Buffers;
  */
 public class GrizzlyWriter extends Writer {
 
+    /**
+     * Property to set high watermark of the outbound queue.
+     * <p/>
+     * Value is expected to be {@link Integer}, number of bytes. When the amount of data passed to the writer and not
+     * yet written to the connection exceeds this value, the writer (and the session) becomes not writable. Default
+     * value is 65536.
+     *
+     * @see Writer#isWritable()
+     */
+    public static final String HIGH_WATERMARK = "org.glassfish.tyrus.container.grizzly.writer.highWatermark";
+
+    /**
+     * Property to set low watermark of the outbound queue.
+     * <p/>
+     * Value is expected to be {@link Integer}, number of bytes. Writer becomes writable again when the amount of
+     * queued data drops to this value. Default value is half of the high watermark.
+     */
+    public static final String LOW_WATERMARK = "org.glassfish.tyrus.container.grizzly.writer.lowWatermark";
+
+    /**
+     * Property to set hard limit of the outbound queue.
+     * <p/>
+     * Value is expected to be {@link Integer}, number of bytes. Frames starting a new data message which would make
+     * the queued data exceed this limit are failed immediately with {@link IOException}, so the caller can decide
+     * whether to drop the message or close the session. Control frames and continuation frames of a message which
+     * has already been started are always queued, rejecting them would corrupt the stream. Not limited by default.
+     */
+    public static final String MAX_QUEUED_BYTES = "org.glassfish.tyrus.container.grizzly.writer.maxQueuedBytes";
+
+    private static final int DEFAULT_HIGH_WATERMARK = 65536;
+
     private final Queue<Task> taskQueue = new ConcurrentLinkedQueue<Task>();
 
     private final org.glassfish.grizzly.Connection connection;
 
+    private final AtomicLong queuedBytes = new AtomicLong(0);
+    private final Object writabilityLock = new Object();
+    private volatile boolean writable = true;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final long maxQueuedBytes;
+
+    private final Object readLock = new Object();
+    private boolean readingPaused;
+    private FilterChainContext suspendedContext;
+
     public GrizzlyWriter(final org.glassfish.grizzly.Connection connection) {
+        this(connection, null);
+    }
+
+    /**
+     * Create new writer.
+     *
+     * @param connection connection to write to.
+     * @param properties properties containing {@link #HIGH_WATERMARK}, {@link #LOW_WATERMARK} or
+     *                   {@link #MAX_QUEUED_BYTES}, can be {@code null}.
+     */
+    public GrizzlyWriter(final org.glassfish.grizzly.Connection connection, Map<String, Object> properties) {
         this.connection = connection;
         this.connection.configureBlocking(false);
+
+        this.highWatermark = getIntProperty(properties, HIGH_WATERMARK, DEFAULT_HIGH_WATERMARK);
+        this.lowWatermark = Math.min(getIntProperty(properties, LOW_WATERMARK, (int) (highWatermark / 2)), highWatermark);
+        this.maxQueuedBytes = getIntProperty(properties, MAX_QUEUED_BYTES, -1);
     }
 
     @Override
     public void write(final ByteBuffer buffer, final CompletionHandler<ByteBuffer> completionHandler) {
         if (!connection.isOpen()) {
-            completionHandler.failed(new IllegalStateException("Connection is not open."));
+            if (completionHandler != null) {
+                completionHandler.failed(new IllegalStateException("Connection is not open."));
+            }
+            return;
+        }
+
+        final int size = buffer.remaining();
+        final long queued = queuedBytes.addAndGet(size);
+
+        if (maxQueuedBytes >= 0 && queued > maxQueuedBytes && isDataMessageStart(buffer)) {
+            queuedBytes.addAndGet(-size);
+            if (completionHandler != null) {
+                completionHandler.failed(new IOException(String.format("Outbound queue limit (%d bytes) exceeded.", maxQueuedBytes)));
+            }
             return;
         }
 
+        updateWritability(queued);
+
         final Buffer message = Buffers.wrap(connection.getTransport().getMemoryManager(), buffer);
 
         final EmptyCompletionHandler emptyCompletionHandler = new EmptyCompletionHandler() {
             @Override
             public void cancelled() {
+                written(size);
                 if (completionHandler != null) {
                     completionHandler.cancelled();
                 }
@@ -88,6 +165,7 @@ public class GrizzlyWriter extends Writer {
 
             @Override
             public void completed(Object result) {
+                written(size);
                 if (completionHandler != null) {
                     completionHandler.completed(buffer);
                 }
@@ -95,6 +173,7 @@ public class GrizzlyWriter extends Writer {
 
             @Override
             public void failed(Throwable throwable) {
+                written(size);
                 if (completionHandler != null) {
                     completionHandler.failed(throwable);
                 }
@@ -105,6 +184,129 @@ public class GrizzlyWriter extends Writer {
         TaskProcessor.processQueue(taskQueue, new WriterCondition(connection, taskQueue));
     }
 
+    @Override
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Reading stops once the read event currently being processed (or the next one, when called outside of read
+     * processing) is {@link #suspendIfReadingPaused(FilterChainContext) suspended} by the filter.
+     */
+    @Override
+    public boolean pauseReading() {
+        if (!connection.isOpen()) {
+            return false;
+        }
+
+        synchronized (readLock) {
+            readingPaused = true;
+        }
+        return true;
+    }
+
+    @Override
+    public void resumeReading() {
+        final FilterChainContext context;
+        synchronized (readLock) {
+            readingPaused = false;
+            context = suspendedContext;
+            suspendedContext = null;
+        }
+
+        if (context != null) {
+            context.resume(context.getStopAction());
+        }
+    }
+
+    /**
+     * Suspend processing of a read event when reading is paused.
+     * <p/>
+     * To be called by filters after the data of the read event were passed to the read handler. IO strategies keep
+     * READ interest of the connection disabled while the event is being processed and enable it once the event
+     * completes, so disabling the interest from the read handler would be undone right away. Suspended event does
+     * not complete until {@link #resumeReading()} is called, and no more data are read from the connection meanwhile.
+     *
+     * @param ctx context of the read event being processed.
+     * @return {@code true} when the context was suspended and the filter has to return
+     *         {@link FilterChainContext#getSuspendAction()}.
+     */
+    public boolean suspendIfReadingPaused(FilterChainContext ctx) {
+        synchronized (readLock) {
+            if (!readingPaused || suspendedContext != null) {
+                return false;
+            }
+            ctx.suspend();
+            suspendedContext = ctx;
+            return true;
+        }
+    }
+
+    /**
+     * Get amount of data passed to this writer and not yet written to the connection.
+     *
+     * @return number of queued bytes.
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    private void written(int size) {
+        updateWritability(queuedBytes.addAndGet(-size));
+    }
+
+    /**
+     * Update writability after the amount of queued data changed.
+     * <p/>
+     * The state is re-computed from the current amount under a lock, so notifications cannot be delivered out of
+     * order and the writer cannot be left in a state which does not match the queued data.
+     *
+     * @param queued amount of queued data observed by the caller, used to skip locking when no change is possible.
+     */
+    private void updateWritability(long queued) {
+        if (writable ? queued <= highWatermark : queued > lowWatermark) {
+            return;
+        }
+
+        synchronized (writabilityLock) {
+            // re-check after each change; a thread which changed the amount meanwhile might have seen the old state
+            // and skipped the update.
+            while (true) {
+                final long current = queuedBytes.get();
+                if (writable && current > highWatermark) {
+                    writable = false;
+                    onWritabilityChanged(false);
+                } else if (!writable && current <= lowWatermark) {
+                    writable = true;
+                    onWritabilityChanged(true);
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the buffer holds the first frame of a new text or binary message.
+     *
+     * @param buffer serialized websocket frame.
+     * @return {@code true} for text and binary frames, {@code false} for control and continuation frames.
+     */
+    private static boolean isDataMessageStart(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+        final int opcode = buffer.get(buffer.position()) & 0x0F;
+        return opcode == 0x01 || opcode == 0x02;
+    }
+
+    private static int getIntProperty(Map<String, Object> properties, String key, int defaultValue) {
+        final Object value = properties == null ? null : properties.get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
     private static class WriterCondition implements TaskProcessor.Condition {
 
         private final Connection connection;
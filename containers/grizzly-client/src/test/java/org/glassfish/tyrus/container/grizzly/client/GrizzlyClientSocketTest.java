@@ -0,0 +1,119 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.grizzly.client;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.client.ClientManager;
+
+import org.junit.Test;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests asynchronous connect of {@link GrizzlyClientSocket}.
+ */
+public class GrizzlyClientSocketTest {
+
+    @Test
+    public void connectionRefused() throws Exception {
+        final ClientManager client = ClientManager.createClient();
+        // failure has to be reported well before the handshake timeout.
+        client.getProperties().put(ClientManager.HANDSHAKE_TIMEOUT, 60000);
+
+        final Future<Session> future = client.asyncConnectToServer(new NoopEndpoint(), null, URI.create("ws://localhost:" + getClosedPort() + "/refused"));
+        try {
+            future.get(20, TimeUnit.SECONDS);
+            fail("Connect should fail.");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            assertTrue(String.valueOf(cause), cause instanceof IOException || cause instanceof DeploymentException);
+        }
+    }
+
+    @Test
+    public void proxyFallback() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        try {
+            serverSocket.setSoTimeout(20000);
+
+            final ClientManager client = ClientManager.createClient();
+            client.getProperties().put(GrizzlyClientSocket.PROXY_URI, "http://localhost:" + getClosedPort());
+            client.getProperties().put(ClientManager.HANDSHAKE_TIMEOUT, 30000);
+
+            final Future<Session> future = client.asyncConnectToServer(new NoopEndpoint(), null,
+                    URI.create("ws://localhost:" + serverSocket.getLocalPort() + "/fallback"));
+
+            // proxy refuses the connection, direct connection is attempted next.
+            final Socket socket = serverSocket.accept();
+            assertNotNull(socket);
+            socket.close();
+            future.cancel(true);
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private static int getClosedPort() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final int port = serverSocket.getLocalPort();
+        serverSocket.close();
+        return port;
+    }
+
+    public static class NoopEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.grizzly.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOServerConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link GrizzlyWriter} on a real transport.
+ */
+public class GrizzlyWriterTest {
+
+    private static final int TOTAL = 4 * 1024 * 1024;
+
+    @Test
+    public void pausedConnectionIsNotRead() throws Exception {
+        final PausingFilter filter = new PausingFilter();
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(FilterChainBuilder.stateless().add(new TransportFilter()).add(filter).build());
+
+        try {
+            final TCPNIOServerConnection server = transport.bind("localhost", 0);
+            transport.start();
+
+            final Socket socket = new Socket("localhost", ((InetSocketAddress) server.getLocalAddress()).getPort());
+            final CountDownLatch sent = new CountDownLatch(1);
+            final Thread sender = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final OutputStream out = socket.getOutputStream();
+                        final byte[] chunk = new byte[8192];
+                        for (int i = 0; i < TOTAL / chunk.length; i++) {
+                            out.write(chunk);
+                        }
+                        out.flush();
+                        sent.countDown();
+                    } catch (IOException e) {
+                        // reported as not sent
+                    }
+                }
+            };
+            sender.start();
+
+            assertTrue(filter.firstRead.await(10, TimeUnit.SECONDS));
+
+            // paused in the read event; data keep arriving, but nothing more is read.
+            final long read = filter.received.get();
+            Thread.sleep(1000);
+            assertEquals(read, filter.received.get());
+            assertTrue(read < TOTAL);
+            assertEquals(1, filter.reads.get());
+
+            filter.writer.resumeReading();
+
+            assertTrue(sent.await(10, TimeUnit.SECONDS));
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (filter.received.get() < TOTAL && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(TOTAL, filter.received.get());
+            assertTrue(filter.reads.get() > 1);
+
+            socket.close();
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void queueLimitAppliesOnlyToNewDataMessages() throws Exception {
+        final ConnectionFilter filter = new ConnectionFilter();
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(FilterChainBuilder.stateless().add(new TransportFilter()).add(filter).build());
+
+        try {
+            final Socket socket = connect(transport);
+
+            final Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put(GrizzlyWriter.MAX_QUEUED_BYTES, 0);
+            final GrizzlyWriter writer = new GrizzlyWriter(filter.getConnection(), properties);
+
+            // text frame starts a new message and is refused.
+            final RecordingHandler text = new RecordingHandler();
+            writer.write(ByteBuffer.wrap(new byte[]{(byte) 0x81, 0x00}), text);
+            assertTrue(text.done.await(10, TimeUnit.SECONDS));
+            assertTrue(text.failure.get() instanceof IOException);
+
+            // ping and continuation frames are always queued.
+            final RecordingHandler ping = new RecordingHandler();
+            writer.write(ByteBuffer.wrap(new byte[]{(byte) 0x89, 0x00}), ping);
+            assertTrue(ping.done.await(10, TimeUnit.SECONDS));
+            assertNull(ping.failure.get());
+
+            final RecordingHandler continuation = new RecordingHandler();
+            writer.write(ByteBuffer.wrap(new byte[]{(byte) 0x80, 0x00}), continuation);
+            assertTrue(continuation.done.await(10, TimeUnit.SECONDS));
+            assertNull(continuation.failure.get());
+
+            assertEquals(0, writer.getQueuedBytes());
+
+            socket.close();
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void writeToClosedConnectionWithoutHandler() throws Exception {
+        final ConnectionFilter filter = new ConnectionFilter();
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(FilterChainBuilder.stateless().add(new TransportFilter()).add(filter).build());
+
+        try {
+            final Socket socket = connect(transport);
+            final Connection connection = filter.getConnection();
+            final GrizzlyWriter writer = new GrizzlyWriter(connection);
+
+            connection.closeSilently();
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (connection.isOpen() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertFalse(connection.isOpen());
+
+            writer.write(ByteBuffer.wrap(new byte[]{(byte) 0x81, 0x00}), null);
+            assertEquals(0, writer.getQueuedBytes());
+
+            socket.close();
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+
+    private static Socket connect(TCPNIOTransport transport) throws IOException {
+        final TCPNIOServerConnection server = transport.bind("localhost", 0);
+        transport.start();
+
+        final Socket socket = new Socket("localhost", ((InetSocketAddress) server.getLocalAddress()).getPort());
+        socket.getOutputStream().write(0);
+        socket.getOutputStream().flush();
+        return socket;
+    }
+
+    /**
+     * Records the server side connection in the first read event.
+     */
+    private static class ConnectionFilter extends BaseFilter {
+
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private volatile Connection connection;
+
+        @Override
+        public NextAction handleRead(FilterChainContext ctx) throws IOException {
+            final Buffer buffer = ctx.getMessage();
+            buffer.tryDispose();
+
+            if (connection == null) {
+                connection = ctx.getConnection();
+                connected.countDown();
+            }
+            return ctx.getStopAction();
+        }
+
+        Connection getConnection() throws InterruptedException {
+            assertTrue(connected.await(10, TimeUnit.SECONDS));
+            return connection;
+        }
+    }
+
+    private static class RecordingHandler extends CompletionHandler<ByteBuffer> {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        @Override
+        public void completed(ByteBuffer result) {
+            done.countDown();
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            failure.set(throwable);
+            done.countDown();
+        }
+    }
+
+    /**
+     * Pauses reading in the first read event, the way a read handler does when the inbound memory budget is exhausted.
+     */
+    private static class PausingFilter extends BaseFilter {
+
+        private final CountDownLatch firstRead = new CountDownLatch(1);
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong reads = new AtomicLong();
+        private volatile GrizzlyWriter writer;
+
+        @Override
+        public NextAction handleRead(FilterChainContext ctx) throws IOException {
+            final Buffer buffer = ctx.getMessage();
+            received.addAndGet(buffer.remaining());
+            buffer.tryDispose();
+
+            if (reads.incrementAndGet() == 1) {
+                writer = new GrizzlyWriter(ctx.getConnection());
+                assertTrue(writer.pauseReading());
+                firstRead.countDown();
+            }
+
+            return writer.suspendIfReadingPaused(ctx) ? ctx.getSuspendAction() : ctx.getStopAction();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.grizzly.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.CloseReason;
+
+import org.glassfish.tyrus.container.grizzly.client.GrizzlyWriter;
+import org.glassfish.tyrus.core.RequestContext;
+import org.glassfish.tyrus.core.TyrusUpgradeResponse;
+import org.glassfish.tyrus.core.Utils;
+import org.glassfish.tyrus.spi.ReadHandler;
+import org.glassfish.tyrus.spi.ServerContainer;
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.UpgradeResponse;
+import org.glassfish.tyrus.spi.WebSocketEngine;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.Closeable;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.ICloseType;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.ByteBufferArray;
+
+/**
+ * WebSocket-only server {@link org.glassfish.grizzly.filterchain.Filter}, placed right after the
+ * {@link org.glassfish.grizzly.filterchain.TransportFilter}.
+ * <p/>
+ * Opening handshake is parsed by a minimal HTTP/1.1 request parser (request line and headers only, no body), once
+ * the connection is upgraded, raw buffers read from the socket are passed directly to Tyrus {@link ReadHandler}
+ * without any HTTP processing. Requests which are not WebSocket upgrade requests are refused and the connection is
+ * closed.
+ *
+ * @see GrizzlyServerContainer#WEBSOCKET_ONLY
+ */
+class GrizzlyRawServerFilter extends BaseFilter {
+
+    private static final Logger LOGGER = Grizzly.logger(GrizzlyRawServerFilter.class);
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Maximal size of the opening handshake request (request line and headers).
+     */
+    static final int MAX_HANDSHAKE_SIZE = 16384;
+
+    private static final Attribute<org.glassfish.tyrus.spi.Connection> TYRUS_CONNECTION = Grizzly.DEFAULT_ATTRIBUTE_BUILDER
+            .createAttribute(GrizzlyRawServerFilter.class.getName() + ".Connection");
+
+    private final ServerContainer serverContainer;
+    private final Map<String, Object> properties;
+
+    /**
+     * Constructs a new {@link GrizzlyRawServerFilter}.
+     *
+     * @param serverContainer server container.
+     * @param properties      container properties, passed to {@link GrizzlyWriter}.
+     */
+    GrizzlyRawServerFilter(ServerContainer serverContainer, Map<String, Object> properties) {
+        this.serverContainer = serverContainer;
+        this.properties = properties;
+    }
+
+    @Override
+    public NextAction handleRead(FilterChainContext ctx) throws IOException {
+        final Buffer buffer = ctx.getMessage();
+        final org.glassfish.tyrus.spi.Connection tyrusConnection = TYRUS_CONNECTION.get(ctx.getConnection());
+
+        if (tyrusConnection != null) {
+            deliver(buffer, tyrusConnection.getReadHandler());
+            return suspendIfReadingPaused(ctx, tyrusConnection) ? ctx.getSuspendAction() : ctx.getStopAction();
+        }
+
+        final int headerEnd = findHeaderEnd(buffer);
+        if (headerEnd == -1 ? buffer.remaining() > MAX_HANDSHAKE_SIZE : headerEnd - buffer.position() > MAX_HANDSHAKE_SIZE) {
+            writeAndClose(ctx, 400, "Bad Request", null);
+            return ctx.getStopAction();
+        }
+
+        if (headerEnd == -1) {
+            // wait for the rest of the handshake request.
+            return ctx.getStopAction(buffer);
+        }
+
+        final String head = buffer.toStringContent(ISO_8859_1, buffer.position(), headerEnd);
+        buffer.position(headerEnd);
+
+        final RequestContext upgradeRequest = parseRequest(head);
+        if (upgradeRequest == null) {
+            writeAndClose(ctx, 400, "Bad Request", null);
+            return ctx.getStopAction();
+        }
+
+        return handleHandshake(ctx, upgradeRequest, buffer);
+    }
+
+    private NextAction handleHandshake(final FilterChainContext ctx, UpgradeRequest upgradeRequest, Buffer remainder) {
+        final UpgradeResponse upgradeResponse = new TyrusUpgradeResponse();
+        final WebSocketEngine.UpgradeInfo upgradeInfo = serverContainer.getWebSocketEngine().upgrade(upgradeRequest, upgradeResponse);
+
+        switch (upgradeInfo.getStatus()) {
+            case SUCCESS:
+                final Connection grizzlyConnection = ctx.getConnection();
+                ctx.write(serializeResponse(grizzlyConnection, upgradeResponse, "Switching Protocols"));
+
+                final org.glassfish.tyrus.spi.Connection connection = upgradeInfo.createConnection(new GrizzlyWriter(grizzlyConnection, properties), new org.glassfish.tyrus.spi.Connection.CloseListener() {
+                    @Override
+                    public void close(CloseReason reason) {
+                        grizzlyConnection.close();
+                    }
+                });
+
+                TYRUS_CONNECTION.set(grizzlyConnection, connection);
+
+                // the only place where the Tyrus connection is closed; notified for any kind of close.
+                grizzlyConnection.addCloseListener(new CloseListener() {
+                    @Override
+                    public void onClosed(Closeable closeable, ICloseType type) throws IOException {
+                        connection.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Close detected on connection"));
+                        TYRUS_CONNECTION.remove(grizzlyConnection);
+                    }
+                });
+
+                // client may send frames right after the handshake request.
+                if (remainder.hasRemaining()) {
+                    deliver(remainder, connection.getReadHandler());
+                }
+
+                return suspendIfReadingPaused(ctx, connection) ? ctx.getSuspendAction() : ctx.getStopAction();
+
+            case HANDSHAKE_FAILED:
+                writeAndClose(ctx, upgradeResponse.getStatus(), null, upgradeResponse);
+                return ctx.getStopAction();
+
+            case NOT_APPLICABLE:
+            default:
+                writeAndClose(ctx, 404, "Not Found", null);
+                return ctx.getStopAction();
+        }
+    }
+
+    private static boolean suspendIfReadingPaused(FilterChainContext ctx, org.glassfish.tyrus.spi.Connection connection) {
+        final Writer writer = connection.getWriter();
+        return writer instanceof GrizzlyWriter && ((GrizzlyWriter) writer).suspendIfReadingPaused(ctx);
+    }
+
+    private static void deliver(Buffer buffer, ReadHandler readHandler) {
+        if (!buffer.isComposite()) {
+            readHandler.handle(buffer.toByteBuffer());
+        } else {
+            final ByteBufferArray byteBufferArray = buffer.toByteBufferArray();
+            final ByteBuffer[] array = byteBufferArray.getArray();
+
+            for (int i = 0; i < byteBufferArray.size(); i++) {
+                readHandler.handle(array[i]);
+            }
+
+            byteBufferArray.recycle();
+        }
+    }
+
+    /**
+     * Find the end of HTTP request headers.
+     *
+     * @param buffer buffer containing (part of) the request.
+     * @return position right after the empty line terminating headers or {@code -1} when not found.
+     */
+    private static int findHeaderEnd(Buffer buffer) {
+        final int limit = buffer.limit();
+        for (int i = buffer.position(); i + 3 < limit; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+                return i + 4;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parse request line and headers.
+     *
+     * @param head request line and headers, terminated by an empty line.
+     * @return parsed request or {@code null} when the request is malformed or its method is not {@code GET}.
+     */
+    static RequestContext parseRequest(String head) {
+        final String[] lines = head.split("\r\n");
+
+        final String[] requestLine = lines[0].split(" ");
+        // opening handshake has to be a GET request (RFC 6455, section 4.2.1).
+        if (requestLine.length != 3 || !"GET".equals(requestLine[0]) || !requestLine[2].startsWith("HTTP/")) {
+            return null;
+        }
+
+        final String target = requestLine[1];
+        final int queryIndex = target.indexOf('?');
+
+        final RequestContext requestContext;
+        try {
+            requestContext = RequestContext.Builder.create()
+                    .requestURI(URI.create(queryIndex == -1 ? target : target.substring(0, queryIndex)))
+                    .queryString(queryIndex == -1 ? null : target.substring(queryIndex + 1))
+                    .secure(false)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, String.format("Invalid request target: '%s'.", target), e);
+            return null;
+        }
+
+        for (int i = 1; i < lines.length; i++) {
+            final String line = lines[i];
+            final int colon = line.indexOf(':');
+            if (colon <= 0) {
+                return null;
+            }
+
+            final String name = line.substring(0, colon).trim();
+            final List<String> parsedValues = Utils.parseHeaderValue(line.substring(colon + 1).trim());
+            final List<String> values = requestContext.getHeaders().get(name);
+            if (values == null) {
+                requestContext.getHeaders().put(name, parsedValues);
+            } else {
+                values.addAll(parsedValues);
+            }
+        }
+
+        return requestContext;
+    }
+
+    private static Buffer serializeResponse(Connection connection, UpgradeResponse response, String reasonPhrase) {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("HTTP/1.1 ").append(response.getStatus()).append(' ');
+        if (reasonPhrase != null) {
+            sb.append(reasonPhrase);
+        }
+        sb.append("\r\n");
+
+        for (Map.Entry<String, List<String>> entry : response.getHeaders().entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(Utils.getHeaderFromList(entry.getValue())).append("\r\n");
+        }
+        sb.append("\r\n");
+
+        return Buffers.wrap(connection.getTransport().getMemoryManager(), sb.toString().getBytes(ISO_8859_1));
+    }
+
+    /**
+     * Write error response and close the connection once the response is written.
+     */
+    private static void writeAndClose(FilterChainContext ctx, int status, String reasonPhrase, UpgradeResponse response) {
+        final UpgradeResponse errorResponse;
+        if (response == null) {
+            errorResponse = new TyrusUpgradeResponse();
+            errorResponse.setStatus(status);
+        } else {
+            errorResponse = response;
+        }
+        errorResponse.setHeader("Connection", "close");
+        errorResponse.setHeader("Content-Length", "0");
+
+        final Connection connection = ctx.getConnection();
+        ctx.write(serializeResponse(connection, errorResponse, reasonPhrase), new EmptyCompletionHandler<WriteResult>() {
+            @Override
+            public void completed(WriteResult result) {
+                connection.closeSilently();
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                connection.closeSilently();
+            }
+        });
+    }
+}
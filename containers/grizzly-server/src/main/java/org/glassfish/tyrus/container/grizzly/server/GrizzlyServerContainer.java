@@ -42,18 +42,31 @@ package org.glassfish.tyrus.container.grizzly.server;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.websocket.DeploymentException;
 import javax.websocket.server.ServerEndpointConfig;
 
+import org.glassfish.tyrus.core.BroadcastBus;
+import org.glassfish.tyrus.core.HeartbeatService;
+import org.glassfish.tyrus.core.InboundMemoryBudget;
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.server.TyrusServerContainer;
 import org.glassfish.tyrus.spi.ServerContainer;
 import org.glassfish.tyrus.spi.ServerContainerFactory;
 import org.glassfish.tyrus.spi.WebSocketEngine;
 
+import org.glassfish.grizzly.IOStrategy;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
 import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 
 /**
  * Grizzly implementation of {@link ServerContainerFactory} and {@link ServerContainer}.
@@ -63,6 +76,78 @@ import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
  */
 public class GrizzlyServerContainer extends ServerContainerFactory {
 
+    /**
+     * Server-side property to set custom worker {@link ThreadPoolConfig}.
+     * <p/>
+     * Value is expected to be instance of {@link ThreadPoolConfig}, can be {@code null} (it won't be used).
+     */
+    public static final String WORKER_THREAD_POOL_CONFIG = "org.glassfish.tyrus.server.grizzly.workerThreadPoolConfig";
+
+    /**
+     * Server-side property to set custom selector {@link ThreadPoolConfig}.
+     * <p/>
+     * Value is expected to be instance of {@link ThreadPoolConfig}, can be {@code null} (it won't be used).
+     */
+    public static final String SELECTOR_THREAD_POOL_CONFIG = "org.glassfish.tyrus.server.grizzly.selectorThreadPoolConfig";
+
+    /**
+     * Server-side property to set number of selector runners (selector threads).
+     * <p/>
+     * Value is expected to be {@link Integer}. Grizzly default (number of available processors) is used when not set.
+     */
+    public static final String SELECTOR_RUNNERS_COUNT = "org.glassfish.tyrus.server.grizzly.selectorRunnersCount";
+
+    /**
+     * Server-side property to set {@link IOStrategy} of the listener transport.
+     * <p/>
+     * Value is expected to be instance of {@link IOStrategy}. {@link WorkerThreadIOStrategy} is used when not set.
+     * <p/>
+     * {@link org.glassfish.grizzly.strategies.SameThreadIOStrategy} can be used for latency-critical applications:
+     * frame parsing and endpoint methods are then invoked directly on the selector thread, which saves a thread
+     * hand-off per read, but any blocking in endpoint code stalls all connections handled by that selector.
+     */
+    public static final String IO_STRATEGY = "org.glassfish.tyrus.server.grizzly.ioStrategy";
+
+    /**
+     * Server-side property to set {@code TCP_NODELAY} socket option of accepted connections.
+     * <p/>
+     * Value is expected to be {@link Boolean}.
+     */
+    public static final String TCP_NO_DELAY = "org.glassfish.tyrus.server.grizzly.tcpNoDelay";
+
+    /**
+     * Server-side property to set backlog of the server socket.
+     * <p/>
+     * Value is expected to be {@link Integer}.
+     */
+    public static final String SERVER_SOCKET_BACKLOG = "org.glassfish.tyrus.server.grizzly.serverSocketBacklog";
+
+    /**
+     * Server-side property to set socket receive buffer size ({@code SO_RCVBUF}) of accepted connections.
+     * <p/>
+     * Value is expected to be {@link Integer}, in bytes.
+     */
+    public static final String SOCKET_RECEIVE_BUFFER_SIZE = "org.glassfish.tyrus.server.grizzly.socketReceiveBufferSize";
+
+    /**
+     * Server-side property to set socket send buffer size ({@code SO_SNDBUF}) of accepted connections.
+     * <p/>
+     * Value is expected to be {@link Integer}, in bytes.
+     */
+    public static final String SOCKET_SEND_BUFFER_SIZE = "org.glassfish.tyrus.server.grizzly.socketSendBufferSize";
+
+    /**
+     * Server-side property to start WebSocket-only transport.
+     * <p/>
+     * Value is expected to be {@link Boolean}, default is {@code false}. When set to {@code true}, no
+     * {@link HttpServer} is created; the listener filter chain contains only the transport filter and
+     * {@link GrizzlyRawServerFilter}, which parses the opening handshake with a minimal HTTP parser and then passes raw
+     * socket buffers directly to Tyrus. Plain HTTP requests are not served in this mode.
+     */
+    public static final String WEBSOCKET_ONLY = "org.glassfish.tyrus.server.grizzly.websocketOnly";
+
+    private static final Logger LOGGER = Logger.getLogger(GrizzlyServerContainer.class.getName());
+
     @Override
     public ServerContainer createContainer(final Map<String, Object> properties) {
 
@@ -78,9 +163,28 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
         // TODO
         return new TyrusServerContainer((Set<Class<?>>) null) {
 
-            private final WebSocketEngine engine = new TyrusWebSocketEngine(this, incommingBufferSize);
+            private final TyrusWebSocketEngine engine = new TyrusWebSocketEngine(this, incommingBufferSize);
+
+            {
+                final Integer maxOutgoingFrameSize =
+                        getProperty(properties, TyrusWebSocketEngine.MAX_OUTGOING_FRAME_SIZE, Integer.class);
+                if (maxOutgoingFrameSize != null) {
+                    engine.setMaxOutgoingFrameSize(maxOutgoingFrameSize);
+                }
+                final BroadcastBus broadcastBus =
+                        getProperty(properties, TyrusWebSocketEngine.BROADCAST_BUS, BroadcastBus.class);
+                if (broadcastBus != null) {
+                    engine.setBroadcastBus(broadcastBus);
+                }
+                final Number inboundMemoryBudget =
+                        getProperty(properties, TyrusWebSocketEngine.INBOUND_MEMORY_BUDGET, Number.class);
+                if (inboundMemoryBudget != null) {
+                    engine.setInboundMemoryBudget(new InboundMemoryBudget(inboundMemoryBudget.longValue()));
+                }
+            }
 
             private HttpServer server;
+            private TCPNIOTransport transport;
             private String contextPath;
 
             @Override
@@ -98,13 +202,37 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
                 return engine;
             }
 
+            @Override
+            protected ExecutorService newExecutorService() {
+                return newExecutorService(properties);
+            }
+
+            @Override
+            protected HeartbeatService newHeartbeatService() {
+                return new HeartbeatService(getScheduledExecutorService(), properties);
+            }
+
             @Override
             public void start(String rootPath, int port) throws IOException, DeploymentException {
                 contextPath = rootPath;
-                server = HttpServer.createSimpleServer(rootPath, port);
-                server.getListener("grizzly").getTransport().setIOStrategy(WorkerThreadIOStrategy.getInstance());
-                server.getListener("grizzly").registerAddOn(new WebSocketAddOn(this));
-                server.start();
+
+                if (Boolean.TRUE.equals(getProperty(properties, WEBSOCKET_ONLY, Boolean.class))) {
+                    final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+                    filterChainBuilder.add(new TransportFilter());
+                    filterChainBuilder.add(new GrizzlyRawServerFilter(this, properties));
+
+                    transport = TCPNIOTransportBuilder.newInstance().build();
+                    configureTransport(transport, properties);
+                    transport.setProcessor(filterChainBuilder.build());
+                    transport.bind(port);
+                    transport.start();
+                } else {
+                    server = HttpServer.createSimpleServer(rootPath, port);
+                    final NetworkListener listener = server.getListener("grizzly");
+                    configureTransport(listener.getTransport(), properties);
+                    listener.registerAddOn(new WebSocketAddOn(this, properties));
+                    server.start();
+                }
 
                 super.start(rootPath, port);
             }
@@ -112,8 +240,79 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
             @Override
             public void stop() {
                 super.stop();
-                server.shutdownNow();
+                engine.setBroadcastBus(null);
+                if (server != null) {
+                    server.shutdownNow();
+                }
+                if (transport != null) {
+                    try {
+                        transport.shutdownNow();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Transport shutdown failed.", e);
+                    }
+                }
             }
         };
     }
+
+    /**
+     * Apply transport related properties to the listener transport.
+     *
+     * @param transport  transport to be configured. Must not be started yet.
+     * @param properties container properties, can be {@code null}.
+     */
+    static void configureTransport(TCPNIOTransport transport, Map<String, Object> properties) {
+        final IOStrategy ioStrategy = getProperty(properties, IO_STRATEGY, IOStrategy.class);
+        transport.setIOStrategy(ioStrategy == null ? WorkerThreadIOStrategy.getInstance() : ioStrategy);
+
+        final ThreadPoolConfig workerThreadPoolConfig = getProperty(properties, WORKER_THREAD_POOL_CONFIG, ThreadPoolConfig.class);
+        if (workerThreadPoolConfig != null) {
+            transport.setWorkerThreadPoolConfig(workerThreadPoolConfig);
+        }
+
+        final ThreadPoolConfig selectorThreadPoolConfig = getProperty(properties, SELECTOR_THREAD_POOL_CONFIG, ThreadPoolConfig.class);
+        if (selectorThreadPoolConfig != null) {
+            transport.setSelectorThreadPoolConfig(selectorThreadPoolConfig);
+        }
+
+        final Integer selectorRunnersCount = getProperty(properties, SELECTOR_RUNNERS_COUNT, Integer.class);
+        if (selectorRunnersCount != null) {
+            transport.setSelectorRunnersCount(selectorRunnersCount);
+        }
+
+        final Boolean tcpNoDelay = getProperty(properties, TCP_NO_DELAY, Boolean.class);
+        if (tcpNoDelay != null) {
+            transport.setTcpNoDelay(tcpNoDelay);
+        }
+
+        final Integer backlog = getProperty(properties, SERVER_SOCKET_BACKLOG, Integer.class);
+        if (backlog != null) {
+            transport.setServerConnectionBackLog(backlog);
+        }
+
+        final Integer receiveBufferSize = getProperty(properties, SOCKET_RECEIVE_BUFFER_SIZE, Integer.class);
+        if (receiveBufferSize != null) {
+            transport.setReadBufferSize(receiveBufferSize);
+        }
+
+        final Integer sendBufferSize = getProperty(properties, SOCKET_SEND_BUFFER_SIZE, Integer.class);
+        if (sendBufferSize != null) {
+            transport.setWriteBufferSize(sendBufferSize);
+        }
+    }
+
+    private static <T> T getProperty(Map<String, Object> properties, String key, Class<T> type) {
+        final Object value = properties == null ? null : properties.get(key);
+
+        if (value == null) {
+            return null;
+        }
+
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        }
+
+        LOGGER.log(Level.WARNING, String.format("Property '%s' ignored, value is expected to be instance of %s, but was %s.", key, type.getName(), value.getClass().getName()));
+        return null;
+    }
 }
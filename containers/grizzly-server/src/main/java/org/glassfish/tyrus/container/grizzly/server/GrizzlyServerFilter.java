@@ -63,6 +63,7 @@ import org.glassfish.tyrus.spi.ServerContainer;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 import org.glassfish.tyrus.spi.UpgradeResponse;
 import org.glassfish.tyrus.spi.WebSocketEngine;
+import org.glassfish.tyrus.spi.Writer;
 
 import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.CloseListener;
@@ -84,6 +85,7 @@ import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.HttpServerFilter;
 import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.http.util.MimeHeaders;
 import org.glassfish.grizzly.memory.ByteBufferArray;
 
 /**
@@ -103,6 +105,7 @@ class GrizzlyServerFilter extends BaseFilter {
             .createAttribute(GrizzlyServerFilter.class.getName() + ".Connection");
 
     private final ServerContainer serverContainer;
+    private final Map<String, Object> properties;
 
     private final Queue<TaskProcessor.Task> taskQueue = new ConcurrentLinkedQueue<TaskProcessor.Task>();
 
@@ -112,9 +115,11 @@ class GrizzlyServerFilter extends BaseFilter {
      * Constructs a new {@link GrizzlyServerFilter}.
      *
      * @param serverContainer TODO
+     * @param properties      container properties, passed to {@link GrizzlyWriter}.
      */
-    public GrizzlyServerFilter(ServerContainer serverContainer) {
+    public GrizzlyServerFilter(ServerContainer serverContainer, Map<String, Object> properties) {
         this.serverContainer = serverContainer;
+        this.properties = properties;
     }
 
     // ----------------------------------------------------- Methods from Filter
@@ -212,6 +217,11 @@ class GrizzlyServerFilter extends BaseFilter {
             }
 
             TaskProcessor.processQueue(taskQueue, null);
+
+            final Writer writer = tyrusConnection.getWriter();
+            if (writer instanceof GrizzlyWriter && ((GrizzlyWriter) writer).suspendIfReadingPaused(ctx)) {
+                return ctx.getSuspendAction();
+            }
         }
         return ctx.getStopAction();
     }
@@ -241,7 +251,7 @@ class GrizzlyServerFilter extends BaseFilter {
                 final Connection grizzlyConnection = ctx.getConnection();
                 write(ctx, upgradeRequest, upgradeResponse);
 
-                final org.glassfish.tyrus.spi.Connection connection = upgradeInfo.createConnection(new GrizzlyWriter(ctx.getConnection()), new org.glassfish.tyrus.spi.Connection.CloseListener() {
+                final org.glassfish.tyrus.spi.Connection connection = upgradeInfo.createConnection(new GrizzlyWriter(ctx.getConnection(), properties), new org.glassfish.tyrus.spi.Connection.CloseListener() {
                     @Override
                     public void close(CloseReason reason) {
                         grizzlyConnection.close();
@@ -298,12 +308,19 @@ class GrizzlyServerFilter extends BaseFilter {
                 .secure(requestPacket.isSecure())
                 .build();
 
-        for (String name : requestPacket.getHeaders().names()) {
+        // all headers are copied: HandshakeRequest#getHeaders() passed to Configurator#modifyHandshake exposes them to
+        // the application and the engine itself reads the handshake headers through the same map right away, so a
+        // lazy copy would be materialized on every upgrade anyway.
+        // iterate by index, lookup by name would search all headers again (case-insensitively) for every header.
+        final MimeHeaders headers = requestPacket.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            final String name = headers.getName(i).toString();
+            final List<String> parsedValues = Utils.parseHeaderValue(headers.getValue(i).toString().trim());
             final List<String> values = requestContext.getHeaders().get(name);
             if (values == null) {
-                requestContext.getHeaders().put(name, Utils.parseHeaderValue(requestPacket.getHeader(name).trim()));
+                requestContext.getHeaders().put(name, parsedValues);
             } else {
-                values.addAll(Utils.parseHeaderValue(requestPacket.getHeader(name).trim()));
+                values.addAll(parsedValues);
             }
         }
 
@@ -40,6 +40,8 @@
 
 package org.glassfish.tyrus.container.grizzly.server;
 
+import java.util.Map;
+
 import org.glassfish.tyrus.spi.ServerContainer;
 
 import org.glassfish.grizzly.filterchain.FilterChainBuilder;
@@ -56,9 +58,11 @@ import org.glassfish.grizzly.http.server.NetworkListener;
 class WebSocketAddOn implements AddOn {
 
     private final ServerContainer serverContainer;
+    private final Map<String, Object> properties;
 
-    WebSocketAddOn(ServerContainer serverContainer) {
+    WebSocketAddOn(ServerContainer serverContainer, Map<String, Object> properties) {
         this.serverContainer = serverContainer;
+        this.properties = properties;
     }
 
     /**
@@ -71,7 +75,7 @@ class WebSocketAddOn implements AddOn {
 
         if (httpServerFilterIdx >= 0) {
             // Insert the WebSocketFilter right before HttpServerFilter
-            builder.add(httpServerFilterIdx, new GrizzlyServerFilter(serverContainer));
+            builder.add(httpServerFilterIdx, new GrizzlyServerFilter(serverContainer, properties));
         }
     }
 }
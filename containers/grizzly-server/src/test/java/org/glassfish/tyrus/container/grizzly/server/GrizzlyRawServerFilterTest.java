@@ -0,0 +1,366 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.grizzly.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.websocket.OnMessage;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.core.RequestContext;
+import org.glassfish.tyrus.server.Server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link GrizzlyRawServerFilter} - the opening handshake parser of {@link GrizzlyServerContainer#WEBSOCKET_ONLY}
+ * mode.
+ */
+public class GrizzlyRawServerFilterTest {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final String HANDSHAKE = "GET /raw/echo HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" +
+            "Sec-WebSocket-Version: 13\r\n" +
+            "\r\n";
+
+    private Server server;
+    private int port;
+
+    @Before
+    public void startServer() throws Exception {
+        port = getFreePort();
+
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(GrizzlyServerContainer.WEBSOCKET_ONLY, true);
+
+        server = new Server("localhost", port, "/raw", properties, EchoEndpoint.class);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void parseRequest() {
+        final RequestContext request = GrizzlyRawServerFilter.parseRequest(
+                "GET /raw/echo?a=b HTTP/1.1\r\nHost: localhost\r\nX-Test: one\r\nx-test: two, three\r\n\r\n");
+
+        assertNotNull(request);
+        assertEquals("/raw/echo", request.getRequestUri());
+        assertEquals("a=b", request.getQueryString());
+        assertEquals("localhost", request.getHeader("host"));
+        assertEquals(Arrays.asList("one", "two", "three"), request.getHeaders().get("X-Test"));
+    }
+
+    @Test
+    public void parseMalformedRequestLine() {
+        assertNull(GrizzlyRawServerFilter.parseRequest("GET /raw/echo\r\n\r\n"));
+        assertNull(GrizzlyRawServerFilter.parseRequest("POST /raw/echo HTTP/1.1\r\n\r\n"));
+        assertNull(GrizzlyRawServerFilter.parseRequest("get /raw/echo HTTP/1.1\r\n\r\n"));
+        assertNull(GrizzlyRawServerFilter.parseRequest("GET /raw/echo FTP/1.0\r\n\r\n"));
+        assertNull(GrizzlyRawServerFilter.parseRequest("GET /raw/echo HTTP/1.1 extra\r\n\r\n"));
+        assertNull(GrizzlyRawServerFilter.parseRequest("GET /raw/{echo} HTTP/1.1\r\n\r\n"));
+    }
+
+    @Test
+    public void parseMalformedHeader() {
+        assertNull(GrizzlyRawServerFilter.parseRequest("GET /raw/echo HTTP/1.1\r\nno-colon\r\n\r\n"));
+        assertNull(GrizzlyRawServerFilter.parseRequest("GET /raw/echo HTTP/1.1\r\n: no-name\r\n\r\n"));
+    }
+
+    @Test
+    public void handshake() throws IOException {
+        final Socket socket = connect();
+        try {
+            write(socket, HANDSHAKE);
+            assertStatus(101, socket);
+            assertEcho(socket, "hello");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void splitHandshake() throws Exception {
+        final Socket socket = connect();
+        try {
+            // every part is delivered by separate read.
+            for (String part : new String[]{"GET /raw/ec", "ho HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r", "\n",
+                    HANDSHAKE.substring(HANDSHAKE.indexOf("Connection:"), HANDSHAKE.length() - 1), "\n"}) {
+                write(socket, part);
+                Thread.sleep(50);
+            }
+
+            assertStatus(101, socket);
+            assertEcho(socket, "hello");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void pipelinedFrame() throws IOException {
+        final Socket socket = connect();
+        try {
+            // frame sent together with the handshake request has to be delivered too.
+            final ByteArrayOutputStream request = new ByteArrayOutputStream();
+            request.write(HANDSHAKE.getBytes(ISO_8859_1));
+            request.write(maskedTextFrame("pipelined"));
+            socket.getOutputStream().write(request.toByteArray());
+            socket.getOutputStream().flush();
+
+            assertStatus(101, socket);
+            assertArrayEquals(textFrame("pipelined"), read(socket, textFrame("pipelined").length));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void oversizedHandshake() throws IOException {
+        final Socket socket = connect();
+        try {
+            final StringBuilder sb = new StringBuilder("GET /raw/echo HTTP/1.1\r\n");
+            while (sb.length() <= GrizzlyRawServerFilter.MAX_HANDSHAKE_SIZE) {
+                sb.append("X-Padding: 0123456789012345678901234567890123456789\r\n");
+            }
+
+            // headers are never terminated, server has to give up.
+            write(socket, sb.toString());
+            assertStatus(400, socket);
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void oversizedCompleteHandshake() throws IOException {
+        final Socket socket = connect();
+        try {
+            final StringBuilder sb = new StringBuilder(HANDSHAKE.substring(0, HANDSHAKE.length() - 2));
+            while (sb.length() <= GrizzlyRawServerFilter.MAX_HANDSHAKE_SIZE) {
+                sb.append("X-Padding: 0123456789012345678901234567890123456789\r\n");
+            }
+            sb.append("\r\n");
+
+            write(socket, sb.toString());
+            assertStatus(400, socket);
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void malformedRequestLine() throws IOException {
+        final Socket socket = connect();
+        try {
+            write(socket, "GARBAGE\r\nHost: localhost\r\n\r\n");
+            assertStatus(400, socket);
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void malformedHeader() throws IOException {
+        final Socket socket = connect();
+        try {
+            write(socket, "GET /raw/echo HTTP/1.1\r\nHost localhost\r\n\r\n");
+            assertStatus(400, socket);
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void notUpgradeRequest() throws IOException {
+        final Socket socket = connect();
+        try {
+            write(socket, "GET /raw/echo HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertStatus(404, socket);
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void unknownPath() throws IOException {
+        final Socket socket = connect();
+        try {
+            write(socket, HANDSHAKE.replace("/raw/echo", "/raw/unknown"));
+            assertStatus(404, socket);
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void unsupportedVersion() throws IOException {
+        final Socket socket = connect();
+        try {
+            write(socket, HANDSHAKE.replace("Sec-WebSocket-Version: 13", "Sec-WebSocket-Version: 7"));
+            assertStatus(426, socket);
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private static void write(Socket socket, String data) throws IOException {
+        final OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(data.getBytes(ISO_8859_1));
+        outputStream.flush();
+    }
+
+    private static byte[] read(Socket socket, int length) throws IOException {
+        final InputStream inputStream = socket.getInputStream();
+        final byte[] data = new byte[length];
+        int read = 0;
+        while (read < length) {
+            final int n = inputStream.read(data, read, length - read);
+            if (n == -1) {
+                throw new IOException("Connection closed.");
+            }
+            read += n;
+        }
+        return data;
+    }
+
+    /**
+     * Read response status line and headers, assert status code.
+     */
+    private static void assertStatus(int expected, Socket socket) throws IOException {
+        final InputStream inputStream = socket.getInputStream();
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < 4 || !sb.substring(sb.length() - 4).equals("\r\n\r\n")) {
+            final int b = inputStream.read();
+            if (b == -1) {
+                throw new IOException("Connection closed, response so far: " + sb);
+            }
+            sb.append((char) b);
+        }
+
+        final String response = sb.toString();
+        assertTrue(response, response.startsWith("HTTP/1.1 " + expected + " "));
+    }
+
+    private static void assertClosed(Socket socket) throws IOException {
+        assertEquals(-1, socket.getInputStream().read());
+    }
+
+    private static void assertEcho(Socket socket, String message) throws IOException {
+        socket.getOutputStream().write(maskedTextFrame(message));
+        socket.getOutputStream().flush();
+        assertArrayEquals(textFrame(message), read(socket, textFrame(message).length));
+    }
+
+    private static byte[] textFrame(String message) {
+        final byte[] payload = message.getBytes(Charset.forName("UTF-8"));
+        final byte[] frame = new byte[payload.length + 2];
+        frame[0] = (byte) 0x81;
+        frame[1] = (byte) payload.length;
+        System.arraycopy(payload, 0, frame, 2, payload.length);
+        return frame;
+    }
+
+    private static byte[] maskedTextFrame(String message) {
+        final byte[] mask = {0x12, 0x34, 0x56, 0x78};
+        final byte[] payload = message.getBytes(Charset.forName("UTF-8"));
+        final byte[] frame = new byte[payload.length + 6];
+        frame[0] = (byte) 0x81;
+        frame[1] = (byte) (0x80 | payload.length);
+        System.arraycopy(mask, 0, frame, 2, 4);
+        for (int i = 0; i < payload.length; i++) {
+            frame[i + 6] = (byte) (payload[i] ^ mask[i % 4]);
+        }
+        return frame;
+    }
+
+    private static int getFreePort() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final int port = serverSocket.getLocalPort();
+        serverSocket.close();
+        return port;
+    }
+
+    @ServerEndpoint("/echo")
+    public static class EchoEndpoint {
+
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+    }
+}
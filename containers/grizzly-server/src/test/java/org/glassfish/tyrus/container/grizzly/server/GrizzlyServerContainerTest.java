@@ -0,0 +1,109 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.grizzly.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.strategies.SameThreadIOStrategy;
+import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests {@link GrizzlyServerContainer}.
+ */
+public class GrizzlyServerContainerTest {
+
+    @Test
+    public void configureTransport() {
+        final ThreadPoolConfig workerThreadPoolConfig = ThreadPoolConfig.defaultConfig().setCorePoolSize(3).setMaxPoolSize(3);
+
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(GrizzlyServerContainer.IO_STRATEGY, SameThreadIOStrategy.getInstance());
+        properties.put(GrizzlyServerContainer.WORKER_THREAD_POOL_CONFIG, workerThreadPoolConfig);
+        properties.put(GrizzlyServerContainer.SELECTOR_RUNNERS_COUNT, 3);
+        properties.put(GrizzlyServerContainer.TCP_NO_DELAY, false);
+        properties.put(GrizzlyServerContainer.SERVER_SOCKET_BACKLOG, 123);
+        properties.put(GrizzlyServerContainer.SOCKET_RECEIVE_BUFFER_SIZE, 32768);
+        properties.put(GrizzlyServerContainer.SOCKET_SEND_BUFFER_SIZE, 65536);
+
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        GrizzlyServerContainer.configureTransport(transport, properties);
+
+        assertSame(SameThreadIOStrategy.getInstance(), transport.getIOStrategy());
+        assertSame(workerThreadPoolConfig, transport.getWorkerThreadPoolConfig());
+        assertEquals(3, transport.getSelectorRunnersCount());
+        assertFalse(transport.isTcpNoDelay());
+        assertEquals(123, transport.getServerConnectionBackLog());
+        assertEquals(32768, transport.getReadBufferSize());
+        assertEquals(65536, transport.getWriteBufferSize());
+    }
+
+    @Test
+    public void configureTransportDefaults() {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        final int backlog = transport.getServerConnectionBackLog();
+
+        GrizzlyServerContainer.configureTransport(transport, null);
+
+        assertSame(WorkerThreadIOStrategy.getInstance(), transport.getIOStrategy());
+        assertEquals(backlog, transport.getServerConnectionBackLog());
+    }
+
+    @Test
+    public void invalidPropertyIgnored() {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(GrizzlyServerContainer.SERVER_SOCKET_BACKLOG, "123");
+
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        final int backlog = transport.getServerConnectionBackLog();
+
+        GrizzlyServerContainer.configureTransport(transport, properties);
+
+        assertEquals(backlog, transport.getServerConnectionBackLog());
+    }
+}
@@ -45,15 +45,19 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.DeploymentException;
 import javax.websocket.server.ServerApplicationConfig;
-import javax.websocket.server.ServerEndpointConfig;
 
+import org.glassfish.tyrus.client.TyrusClientEngine;
 import org.glassfish.tyrus.core.RequestContext;
 import org.glassfish.tyrus.core.TyrusUpgradeResponse;
-import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.server.TyrusServerContainer;
 import org.glassfish.tyrus.spi.ClientContainer;
 import org.glassfish.tyrus.spi.ClientEngine;
@@ -65,40 +69,55 @@ import org.glassfish.tyrus.spi.WebSocketEngine;
 import org.glassfish.tyrus.spi.Writer;
 
 /**
+ * In-memory {@link ClientContainer}.
+ * <p/>
+ * Host part of the URI passed to the client is used as a name of {@link InMemoryServer} to connect to. When there is
+ * no such server running, new single-use server is created for the connection using {@link ServerApplicationConfig}
+ * passed as {@link #SERVER_CONFIG} user property of {@link ClientEndpointConfig}.
+ *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 public class InMemoryClientContainer implements ClientContainer {
 
     public static final String SERVER_CONFIG = "org.glassfish.tyrus.container.inmemory.ServerConfig";
 
+    /**
+     * Client property.
+     * <p/>
+     * Value must be positive {@code int}; when set, messages are not delivered synchronously on the sender's thread,
+     * but put into a queue (per connection and direction) and delivered by the server container executor. When the
+     * queue holds given number of messages, the writer (and the session) becomes
+     * {@link Writer#isWritable() not writable} until the queue is drained to half of it; the sender is never blocked.
+     * By default, messages are delivered synchronously.
+     */
+    public static final String ASYNC_DELIVERY_QUEUE_SIZE = "org.glassfish.tyrus.container.inmemory.AsyncDeliveryQueueSize";
+
+    /**
+     * Client property.
+     * <p/>
+     * Value must be {@link Boolean}; when {@code true}, the server is considered to be trusted - outgoing frames are
+     * not masked and received text messages are not validated again. Default value is {@code false}.
+     *
+     * @see InMemoryServer#TRUSTED_PEERS
+     */
+    public static final String TRUSTED_PEERS = "org.glassfish.tyrus.container.inmemory.TrustedPeers";
+
     @Override
     public void openClientSocket(String url, ClientEndpointConfig cec, Map<String, Object> properties, ClientEngine clientEngine) throws DeploymentException, IOException {
-        final UpgradeRequest upgradeRequest = clientEngine.createUpgradeRequest(URI.create(url), null);
+        final URI uri = URI.create(url);
 
-        final ServerApplicationConfig serverApplicationConfig = getServerApplicationConfig(cec);
-        final TyrusServerContainer tyrusServerContainer = new TyrusServerContainer(serverApplicationConfig) {
-            private final WebSocketEngine webSocketEngine = new TyrusWebSocketEngine(getClientManager());
-
-            @Override
-            public void register(Class<?> endpointClass) throws DeploymentException {
-                webSocketEngine.register(endpointClass, "/");
-            }
+        InMemoryServer server = InMemoryServer.get(uri.getHost());
+        if (server == null) {
+            server = InMemoryServer.createUnregistered(getServerApplicationConfig(cec));
+        }
 
-            @Override
-            public void register(ServerEndpointConfig serverEndpointConfig) throws DeploymentException {
-                webSocketEngine.register(serverEndpointConfig, "/");
-            }
+        final TyrusServerContainer tyrusServerContainer = server.getServerContainer();
 
-            @Override
-            public WebSocketEngine getWebSocketEngine() {
-                return webSocketEngine;
-            }
-        };
-
-        tyrusServerContainer.doneDeployment();
-        // placeholder values, not used anywhere in this case.
-        tyrusServerContainer.start("/inmemory", 0);
+        if (properties != null && Boolean.TRUE.equals(properties.get(TRUSTED_PEERS)) && clientEngine instanceof TyrusClientEngine) {
+            ((TyrusClientEngine) clientEngine).setTrustedPeer(true);
+        }
 
+        final UpgradeRequest upgradeRequest = clientEngine.createUpgradeRequest(uri, null);
         final TyrusUpgradeResponse upgradeResponse = new TyrusUpgradeResponse();
 
         StringBuilder sb = new StringBuilder();
@@ -106,7 +125,7 @@ public class InMemoryClientContainer implements ClientContainer {
         if (upgradeRequest.getRequestURI().getQuery() != null) {
             sb.append('?').append(upgradeRequest.getRequestURI().getQuery());
         }
-        if(sb.length() == 0) {
+        if (sb.length() == 0) {
             sb.append('/');
         }
 
@@ -121,8 +140,11 @@ public class InMemoryClientContainer implements ClientContainer {
                 throw new DeploymentException("");
             case SUCCESS:
 
-                final InMemoryWriter clientWriter = new InMemoryWriter();
-                final InMemoryWriter serverWriter = new InMemoryWriter();
+                final int queueSize = getAsyncDeliveryQueueSize(properties);
+                final Executor executor = tyrusServerContainer.getExecutorService();
+
+                final InMemoryWriter clientWriter = queueSize > 0 ? new InMemoryWriter(queueSize, executor) : new InMemoryWriter();
+                final InMemoryWriter serverWriter = queueSize > 0 ? new InMemoryWriter(queueSize, executor) : new InMemoryWriter();
 
                 final Connection serverConnection = upgradeInfo.createConnection(serverWriter, null);
                 final Connection clientConnection = clientEngine.processResponse(upgradeResponse, clientWriter, null);
@@ -145,23 +167,99 @@ public class InMemoryClientContainer implements ClientContainer {
         throw new DeploymentException("ServerApplicationConfig not present.");
     }
 
+    private static int getAsyncDeliveryQueueSize(Map<String, Object> properties) {
+        final Object o = properties == null ? null : properties.get(ASYNC_DELIVERY_QUEUE_SIZE);
+        if (o instanceof Integer) {
+            return (Integer) o;
+        }
+
+        return 0;
+    }
 
+    /**
+     * {@link Writer} which passes written buffers directly to the {@link ReadHandler} of the other peer.
+     * <p/>
+     * Buffers are delivered either synchronously (in the thread calling {@link #write(ByteBuffer, CompletionHandler)})
+     * or asynchronously through a queue drained by a single task at a time, which preserves the ordering. Queue size
+     * is reflected by {@link #isWritable()}.
+     * Buffers written before the other peer is connected are cached and delivered once its {@link ReadHandler} is set.
+     */
     private static class InMemoryWriter extends Writer {
 
         private final List<ByteBuffer> cache = new ArrayList<ByteBuffer>();
+        private final Queue<ByteBuffer> queue;
+        private final AtomicInteger queued = new AtomicInteger(0);
+        private final int highWatermark;
+        private final Executor executor;
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final Object writabilityLock = new Object();
+        private volatile boolean writable = true;
         private volatile ReadHandler readHandler = null;
 
+        private final Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                final ReadHandler handler = readHandler;
+                while (true) {
+                    try {
+                        ByteBuffer buffer;
+                        while ((buffer = queue.poll()) != null) {
+                            queued.decrementAndGet();
+                            updateWritability();
+                            handler.handle(buffer);
+                        }
+                    } finally {
+                        draining.set(false);
+                    }
+
+                    // buffer offered after the last poll might not have been scheduled; keep draining on this thread.
+                    if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            }
+        };
+
+        private InMemoryWriter() {
+            this.queue = null;
+            this.highWatermark = 0;
+            this.executor = null;
+        }
+
+        private InMemoryWriter(int queueSize, Executor executor) {
+            this.queue = new ConcurrentLinkedQueue<ByteBuffer>();
+            this.highWatermark = queueSize;
+            this.executor = executor;
+        }
+
         @Override
         public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
-            synchronized (cache) {
-                if (readHandler == null) {
-                    cache.add(buffer);
-                } else {
-                    readHandler.handle(buffer);
+            if (queue == null || readHandler == null) {
+                synchronized (cache) {
+                    if (readHandler == null) {
+                        // other peer not connected yet.
+                        cache.add(buffer);
+                        completionHandler.completed(buffer);
+                        return;
+                    } else if (queue == null) {
+                        readHandler.handle(buffer);
+                        completionHandler.completed(buffer);
+                        return;
+                    }
                 }
-
-                completionHandler.completed(buffer);
             }
+
+            queue.offer(buffer);
+            queued.incrementAndGet();
+            updateWritability();
+
+            completionHandler.completed(buffer);
+            scheduleDrain();
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
         }
 
         @Override
@@ -169,13 +267,41 @@ public class InMemoryClientContainer implements ClientContainer {
             // do nothing.
         }
 
+        /**
+         * Compare queue size with the watermarks and notify the listener when writability changes. Done under a lock,
+         * so notifications are delivered in the order of the changes.
+         */
+        private void updateWritability() {
+            synchronized (writabilityLock) {
+                final int size = queued.get();
+                if (writable && size >= highWatermark) {
+                    writable = false;
+                    onWritabilityChanged(false);
+                } else if (!writable && size <= highWatermark / 2) {
+                    writable = true;
+                    onWritabilityChanged(true);
+                }
+            }
+        }
+
+        private void scheduleDrain() {
+            if (readHandler != null && draining.compareAndSet(false, true)) {
+                executor.execute(drain);
+            }
+        }
+
         private void setReadHandler(ReadHandler readHandler) {
             synchronized (cache) {
                 for (ByteBuffer buffer : cache) {
                     readHandler.handle(buffer);
                 }
+                cache.clear();
                 this.readHandler = readHandler;
             }
+
+            if (queue != null) {
+                scheduleDrain();
+            }
         }
     }
 }
@@ -0,0 +1,242 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.inmemory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.core.BroadcastBus;
+import org.glassfish.tyrus.core.HeartbeatService;
+import org.glassfish.tyrus.core.InboundMemoryBudget;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.server.TyrusServerContainer;
+import org.glassfish.tyrus.spi.WebSocketEngine;
+
+/**
+ * Long-lived in-memory server.
+ * <p/>
+ * Started server is registered under its name and any number of clients using {@link InMemoryClientContainer} can
+ * connect to it using {@code ws://<name>/<endpoint path>} URI without any network involved:
+ * <pre>
+ * final InMemoryServer server = InMemoryServer.start("quotes", serverApplicationConfig, null);
+ * final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+ * client.connectToServer(QuotesClient.class, URI.create("ws://quotes/quotes"));
+ * // ...
+ * server.stop();
+ * </pre>
+ */
+public class InMemoryServer {
+
+    /**
+     * Server property.
+     * <p/>
+     * Value must be {@link Boolean}; when {@code true}, all clients are considered to be trusted - text messages
+     * received from them are not validated again (see {@link InMemoryClientContainer#TRUSTED_PEERS} for client side
+     * counterpart). Default value is {@code false}.
+     */
+    public static final String TRUSTED_PEERS = InMemoryClientContainer.TRUSTED_PEERS;
+
+    private static final ConcurrentMap<String, InMemoryServer> SERVERS = new ConcurrentHashMap<String, InMemoryServer>();
+
+    private final String name;
+    private final TyrusServerContainer serverContainer;
+
+    private InMemoryServer(String name, ServerApplicationConfig serverApplicationConfig, Map<String, Object> properties) {
+        this.name = name;
+
+        final Map<String, Object> localProperties = properties == null ?
+                Collections.<String, Object>emptyMap() : new HashMap<String, Object>(properties);
+
+        final Object incomingBufferSize = localProperties.get(TyrusWebSocketEngine.INCOMING_BUFFER_SIZE);
+        final Object maxOutgoingFrameSize = localProperties.get(TyrusWebSocketEngine.MAX_OUTGOING_FRAME_SIZE);
+        final Object broadcastBus = localProperties.get(TyrusWebSocketEngine.BROADCAST_BUS);
+        final Object inboundMemoryBudget = localProperties.get(TyrusWebSocketEngine.INBOUND_MEMORY_BUDGET);
+
+        this.serverContainer = new TyrusServerContainer(serverApplicationConfig) {
+            private final TyrusWebSocketEngine webSocketEngine = new TyrusWebSocketEngine(this,
+                    incomingBufferSize instanceof Integer ? (Integer) incomingBufferSize : null);
+
+            {
+                webSocketEngine.setTrustedPeers(Boolean.TRUE.equals(localProperties.get(TRUSTED_PEERS)));
+                if (maxOutgoingFrameSize instanceof Integer) {
+                    webSocketEngine.setMaxOutgoingFrameSize((Integer) maxOutgoingFrameSize);
+                }
+                if (broadcastBus instanceof BroadcastBus) {
+                    webSocketEngine.setBroadcastBus((BroadcastBus) broadcastBus);
+                }
+                if (inboundMemoryBudget instanceof Number) {
+                    webSocketEngine.setInboundMemoryBudget(new InboundMemoryBudget(((Number) inboundMemoryBudget).longValue()));
+                }
+            }
+
+            @Override
+            public void register(Class<?> endpointClass) throws DeploymentException {
+                webSocketEngine.register(endpointClass, "/");
+            }
+
+            @Override
+            public void register(ServerEndpointConfig serverEndpointConfig) throws DeploymentException {
+                webSocketEngine.register(serverEndpointConfig, "/");
+            }
+
+            @Override
+            public WebSocketEngine getWebSocketEngine() {
+                return webSocketEngine;
+            }
+
+            @Override
+            public void stop() {
+                super.stop();
+                webSocketEngine.setBroadcastBus(null);
+            }
+
+            @Override
+            protected ExecutorService newExecutorService() {
+                return newExecutorService(localProperties);
+            }
+
+            @Override
+            protected HeartbeatService newHeartbeatService() {
+                return new HeartbeatService(getScheduledExecutorService(), localProperties);
+            }
+        };
+    }
+
+    /**
+     * Start new in-memory server and register it under given name.
+     *
+     * @param name                    server name, used as host part of URIs passed to the client.
+     * @param serverApplicationConfig endpoints to be deployed.
+     * @param properties              server properties, can be {@code null}. {@link #TRUSTED_PEERS},
+     *                                {@link TyrusWebSocketEngine#INCOMING_BUFFER_SIZE},
+     *                                {@link TyrusWebSocketEngine#MAX_OUTGOING_FRAME_SIZE},
+     *                                {@link TyrusWebSocketEngine#BROADCAST_BUS},
+     *                                {@link TyrusWebSocketEngine#INBOUND_MEMORY_BUDGET} and executor related properties
+     *                                of {@link org.glassfish.tyrus.core.BaseContainer} are supported.
+     * @return started server.
+     * @throws DeploymentException when server with the same name is already running or when the deployment fails.
+     */
+    public static InMemoryServer start(String name, ServerApplicationConfig serverApplicationConfig, Map<String, Object> properties) throws DeploymentException {
+        final InMemoryServer server = new InMemoryServer(name, serverApplicationConfig, properties);
+        if (SERVERS.putIfAbsent(name, server) != null) {
+            throw new DeploymentException(String.format("In-memory server with name '%s' is already running.", name));
+        }
+
+        try {
+            server.deploy();
+        } catch (DeploymentException e) {
+            SERVERS.remove(name, server);
+            throw e;
+        }
+
+        return server;
+    }
+
+    /**
+     * Create in-memory server which is not registered and serves only one connection.
+     *
+     * @param serverApplicationConfig endpoints to be deployed.
+     * @return deployed server.
+     * @throws DeploymentException when the deployment fails.
+     */
+    static InMemoryServer createUnregistered(ServerApplicationConfig serverApplicationConfig) throws DeploymentException {
+        final InMemoryServer server = new InMemoryServer(null, serverApplicationConfig, null);
+        server.deploy();
+        return server;
+    }
+
+    /**
+     * Get running server.
+     *
+     * @param name server name.
+     * @return server registered under given name or {@code null} when there is no such server.
+     */
+    static InMemoryServer get(String name) {
+        return name == null ? null : SERVERS.get(name);
+    }
+
+    private void deploy() throws DeploymentException {
+        serverContainer.doneDeployment();
+        try {
+            // placeholder values, not used anywhere in this case.
+            serverContainer.start("/inmemory", 0);
+        } catch (IOException e) {
+            throw new DeploymentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get server name.
+     *
+     * @return server name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get underlying server container.
+     *
+     * @return server container.
+     */
+    public TyrusServerContainer getServerContainer() {
+        return serverContainer;
+    }
+
+    /**
+     * Stop the server. New connections won't be accepted, already opened sessions are not affected except that they
+     * no longer receive broadcasts from other nodes (broadcast bus, if set, is stopped).
+     */
+    public void stop() {
+        if (name != null) {
+            SERVERS.remove(name, this);
+        }
+        serverContainer.stop();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.inmemory;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.BulkConnector;
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BulkConnectorTest {
+
+    private static final int CLIENTS = 50;
+
+    @Test
+    public void testBulkConnect() throws Exception {
+        final ServerApplicationConfig serverConfig = new TyrusServerConfiguration(new HashSet<Class<?>>(Arrays.<Class<?>>asList(EchoEndpoint.class)), Collections.<ServerEndpointConfig>emptySet());
+        final InMemoryServer server = InMemoryServer.start("bulk", serverConfig, Collections.<String, Object>emptyMap());
+
+        try {
+            final AtomicInteger connected = new AtomicInteger(0);
+
+            final BulkConnector.Result result = new BulkConnector(ClientManager.createClient(InMemoryClientContainer.class.getName()))
+                    .maxInFlight(4)
+                    .listener(new CountingListener(connected))
+                    .connect(URI.create("ws://bulk/echo"), CLIENTS, new BulkConnector.EndpointFactory() {
+                        @Override
+                        public Object createEndpoint(int index, URI uri) {
+                            return new NoopEndpoint();
+                        }
+                    }).get(10, TimeUnit.SECONDS);
+
+            assertEquals(CLIENTS, result.getConnectedCount());
+            assertEquals(0, result.getFailedCount());
+            assertEquals(CLIENTS, connected.get());
+            for (Session session : result.getSessions()) {
+                assertNotNull(session);
+                assertTrue(session.isOpen());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testBulkConnectRetries() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger(0);
+
+        // no server is running.
+        final BulkConnector.Result result = new BulkConnector(ClientManager.createClient(InMemoryClientContainer.class.getName()))
+                .maxInFlight(2)
+                .retries(2)
+                .backoff(1, 10)
+                .connect(URI.create("ws://bulk-missing/echo"), 5, new BulkConnector.EndpointFactory() {
+                    @Override
+                    public Object createEndpoint(int index, URI uri) {
+                        attempts.incrementAndGet();
+                        return new NoopEndpoint();
+                    }
+                }).get(10, TimeUnit.SECONDS);
+
+        assertEquals(0, result.getConnectedCount());
+        assertEquals(5, result.getFailedCount());
+        assertEquals(5 * 3, attempts.get());
+    }
+
+    private static class CountingListener implements BulkConnector.Listener {
+
+        private final AtomicInteger connected;
+
+        private CountingListener(AtomicInteger connected) {
+            this.connected = connected;
+        }
+
+        @Override
+        public void onConnected(int index, Session session) {
+            connected.incrementAndGet();
+        }
+
+        @Override
+        public void onFailed(int index, Throwable throwable) {
+        }
+
+        @Override
+        public void onCompleted(BulkConnector.Result result) {
+        }
+    }
+
+    private static class NoopEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    @ServerEndpoint("/echo")
+    public static class EchoEndpoint {
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+    }
+}
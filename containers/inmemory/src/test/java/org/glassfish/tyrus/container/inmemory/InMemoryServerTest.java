@@ -0,0 +1,353 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.container.inmemory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.EncodeException;
+import javax.websocket.Encoder;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.LoopbackBroadcastBus;
+import org.glassfish.tyrus.core.TyrusSession;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InMemoryServerTest {
+
+    private static final int CLIENTS = 5;
+    private static final int MESSAGES = 100;
+
+    @Test
+    public void testSharedServer() throws IOException, DeploymentException, InterruptedException {
+        testSharedServer(Collections.<String, Object>emptyMap());
+    }
+
+    @Test
+    public void testSharedServerAsyncTrusted() throws IOException, DeploymentException, InterruptedException {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(InMemoryClientContainer.ASYNC_DELIVERY_QUEUE_SIZE, 16);
+        properties.put(InMemoryClientContainer.TRUSTED_PEERS, true);
+
+        testSharedServer(properties);
+    }
+
+    private void testSharedServer(Map<String, Object> properties) throws IOException, DeploymentException, InterruptedException {
+        final ServerApplicationConfig serverConfig = new TyrusServerConfiguration(new HashSet<Class<?>>(Arrays.<Class<?>>asList(EchoEndpoint.class)), Collections.<ServerEndpointConfig>emptySet());
+        final InMemoryServer server = InMemoryServer.start("shared", serverConfig, properties);
+
+        try {
+            final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+            client.getProperties().putAll(properties);
+
+            final CountDownLatch messageLatch = new CountDownLatch(CLIENTS * MESSAGES);
+
+            for (int i = 0; i < CLIENTS; i++) {
+                client.connectToServer(new Endpoint() {
+                    @Override
+                    public void onOpen(Session session, EndpointConfig config) {
+                        session.addMessageHandler(new MessageHandler.Whole<String>() {
+                            private int expected = 0;
+
+                            @Override
+                            public void onMessage(String message) {
+                                // messages have to be received in order.
+                                if (message.equals("message-" + expected)) {
+                                    expected++;
+                                    messageLatch.countDown();
+                                }
+                            }
+                        });
+
+                        for (int j = 0; j < MESSAGES; j++) {
+                            session.getAsyncRemote().sendText("message-" + j);
+                        }
+                    }
+                }, ClientEndpointConfig.Builder.create().build(), URI.create("ws://shared/echo"));
+            }
+
+            assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop();
+        }
+
+        try {
+            ClientManager.createClient(InMemoryClientContainer.class.getName()).connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                }
+            }, ClientEndpointConfig.Builder.create().build(), URI.create("ws://shared/echo"));
+            fail("DeploymentException expected, server is not running.");
+        } catch (DeploymentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBroadcastAcrossServers() throws IOException, DeploymentException, InterruptedException {
+        final ServerApplicationConfig serverConfig = new TyrusServerConfiguration(new HashSet<Class<?>>(Arrays.<Class<?>>asList(BroadcastEndpoint.class)), Collections.<ServerEndpointConfig>emptySet());
+        final LoopbackBroadcastBus.Group group = new LoopbackBroadcastBus.Group();
+        final String[] nodes = {"node-a", "node-b", "node-c"};
+        final InMemoryServer[] servers = new InMemoryServer[nodes.length];
+
+        try {
+            for (int i = 0; i < nodes.length; i++) {
+                final Map<String, Object> properties = new HashMap<String, Object>();
+                properties.put(TyrusWebSocketEngine.BROADCAST_BUS, new LoopbackBroadcastBus(group, nodes[i]));
+                servers[i] = InMemoryServer.start(nodes[i], serverConfig, properties);
+            }
+
+            final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+            final CountDownLatch messageLatch = new CountDownLatch(nodes.length * MESSAGES);
+            final Session[] sessions = new Session[nodes.length];
+
+            for (int i = 0; i < nodes.length; i++) {
+                sessions[i] = client.connectToServer(new Endpoint() {
+                    @Override
+                    public void onOpen(Session session, EndpointConfig config) {
+                        session.addMessageHandler(new MessageHandler.Whole<String>() {
+                            private int expected = 0;
+
+                            @Override
+                            public void onMessage(String message) {
+                                // messages from one node have to be received in order.
+                                if (message.equals("message-" + expected)) {
+                                    expected++;
+                                    messageLatch.countDown();
+                                }
+                            }
+                        });
+                    }
+                }, ClientEndpointConfig.Builder.create().build(), URI.create("ws://" + nodes[i] + "/broadcast"));
+            }
+
+            for (int j = 0; j < MESSAGES; j++) {
+                sessions[0].getAsyncRemote().sendText("message-" + j);
+            }
+
+            assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        } finally {
+            for (InMemoryServer server : servers) {
+                if (server != null) {
+                    server.stop();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testObjectBroadcastEncodedOnce() throws IOException, DeploymentException, InterruptedException {
+        final ServerApplicationConfig serverConfig = new TyrusServerConfiguration(new HashSet<Class<?>>(Arrays.<Class<?>>asList(ObjectBroadcastEndpoint.class)), Collections.<ServerEndpointConfig>emptySet());
+        final InMemoryServer server = InMemoryServer.start("object-broadcast", serverConfig, null);
+        QuoteEncoder.ENCODED.set(0);
+
+        try {
+            final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+            final CountDownLatch messageLatch = new CountDownLatch(CLIENTS);
+            final Session[] sessions = new Session[CLIENTS];
+
+            for (int i = 0; i < CLIENTS; i++) {
+                sessions[i] = client.connectToServer(new Endpoint() {
+                    @Override
+                    public void onOpen(Session session, EndpointConfig config) {
+                        session.addMessageHandler(new MessageHandler.Whole<String>() {
+                            @Override
+                            public void onMessage(String message) {
+                                if (message.equals("quote:ORCL")) {
+                                    messageLatch.countDown();
+                                }
+                            }
+                        });
+                    }
+                }, ClientEndpointConfig.Builder.create().build(), URI.create("ws://object-broadcast/quotes"));
+            }
+
+            sessions[0].getBasicRemote().sendText("ORCL");
+
+            assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+            assertEquals(1, QuoteEncoder.ENCODED.get());
+        } finally {
+            server.stop();
+        }
+
+        // encoder shared by broadcasts is destroyed when the server stops.
+        assertTrue(QuoteEncoder.LAST_USED.get().destroyed);
+    }
+
+    @Test
+    public void testAsyncDeliveryWritability() throws IOException, DeploymentException, InterruptedException {
+        final ServerApplicationConfig serverConfig = new TyrusServerConfiguration(new HashSet<Class<?>>(Arrays.<Class<?>>asList(BlockingEndpoint.class)), Collections.<ServerEndpointConfig>emptySet());
+        final InMemoryServer server = InMemoryServer.start("writability", serverConfig, null);
+        BlockingEndpoint.RECEIVED.set(0);
+
+        try {
+            final ClientManager client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+            client.getProperties().put(InMemoryClientContainer.ASYNC_DELIVERY_QUEUE_SIZE, 4);
+
+            final Session session = client.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                }
+            }, ClientEndpointConfig.Builder.create().build(), URI.create("ws://writability/blocking"));
+
+            final List<Boolean> changes = Collections.synchronizedList(new ArrayList<Boolean>());
+            ((TyrusSession) session).setWritabilityListener(new TyrusSession.WritabilityListener() {
+                @Override
+                public void onWritabilityChanged(Session session, boolean writable) {
+                    changes.add(writable);
+                }
+            });
+
+            // server handler blocks on the first message, the rest stays queued; the sender is not blocked.
+            for (int i = 0; i < 10; i++) {
+                session.getAsyncRemote().sendText("message-" + i);
+            }
+            assertFalse(((TyrusSession) session).isWritable());
+
+            BlockingEndpoint.RELEASE.countDown();
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (BlockingEndpoint.RECEIVED.get() < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(10, BlockingEndpoint.RECEIVED.get());
+            assertTrue(((TyrusSession) session).isWritable());
+            assertEquals(Arrays.asList(false, true), changes);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @ServerEndpoint("/blocking")
+    public static class BlockingEndpoint {
+        static final CountDownLatch RELEASE = new CountDownLatch(1);
+        static final AtomicInteger RECEIVED = new AtomicInteger(0);
+
+        @OnMessage
+        public void onMessage(String message) throws InterruptedException {
+            RELEASE.await(5, TimeUnit.SECONDS);
+            RECEIVED.incrementAndGet();
+        }
+    }
+
+    @ServerEndpoint(value = "/quotes", encoders = QuoteEncoder.class)
+    public static class ObjectBroadcastEndpoint {
+        @OnMessage
+        public void onMessage(String symbol, Session session) throws IOException, EncodeException {
+            ((TyrusSession) session).broadcast(new Quote(symbol));
+        }
+    }
+
+    public static class Quote {
+        private final String symbol;
+
+        public Quote(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    public static class QuoteEncoder implements Encoder.Text<Quote> {
+
+        static final AtomicInteger ENCODED = new AtomicInteger(0);
+        static final AtomicReference<QuoteEncoder> LAST_USED = new AtomicReference<QuoteEncoder>();
+
+        private volatile boolean destroyed = false;
+
+        @Override
+        public String encode(Quote quote) throws EncodeException {
+            ENCODED.incrementAndGet();
+            LAST_USED.set(this);
+            return "quote:" + quote.symbol;
+        }
+
+        @Override
+        public void init(EndpointConfig config) {
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+    }
+
+    @ServerEndpoint("/broadcast")
+    public static class BroadcastEndpoint {
+        @OnMessage
+        public void onMessage(String message, Session session) {
+            ((TyrusSession) session).broadcast(message);
+        }
+    }
+
+    @ServerEndpoint("/echo")
+    public static class EchoEndpoint {
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+    }
+}
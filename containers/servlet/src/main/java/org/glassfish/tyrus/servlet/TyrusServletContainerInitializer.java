@@ -58,6 +58,7 @@ import javax.servlet.ServletException;
 import javax.servlet.annotation.HandlesTypes;
 
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.server.EndpointIndex;
 import org.glassfish.tyrus.server.TyrusServerContainer;
 import org.glassfish.tyrus.spi.WebSocketEngine;
 
@@ -84,7 +85,11 @@ public class TyrusServletContainerInitializer implements ServletContainerInitial
     @Override
     public void onStartup(Set<Class<?>> classes, final ServletContext ctx) throws ServletException {
         if (classes == null || classes.isEmpty()) {
-            return;
+            // annotation scanning might be disabled, try build-time generated index.
+            classes = EndpointIndex.load(ctx.getClassLoader());
+            if (classes.isEmpty()) {
+                return;
+            }
         }
 
         classes.removeAll(FILTERED_CLASSES);
@@ -107,6 +112,12 @@ public class TyrusServletContainerInitializer implements ServletContainerInitial
             public WebSocketEngine getWebSocketEngine() {
                 return engine;
             }
+
+            @Override
+            protected int getDeploymentParallelism() {
+                // component providers might need naming context bound to the deploying thread.
+                return 1;
+            }
         };
         ctx.setAttribute(ServerContainer.class.getName(), serverContainer);
 
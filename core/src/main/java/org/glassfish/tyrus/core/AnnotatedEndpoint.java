@@ -122,6 +122,44 @@ public class AnnotatedEndpoint extends Endpoint {
         return new AnnotatedEndpoint(annotatedInstance.getClass(), annotatedInstance, componentProvider, isServerEndpoint, collector);
     }
 
+    /**
+     * Create {@link AnnotatedEndpoint} bound to given instance which shares already analysed metadata (resolved
+     * methods, parameter extractors and message handler factories) with this endpoint.
+     * <p/>
+     * Allows to skip reflective analysis when the same annotated class is used repeatedly. Configuration is created
+     * again from the annotation, so each endpoint has its own configurator and user properties.
+     *
+     * @param annotatedInstance annotated instance, has to be instance of the class this endpoint was created for;
+     *                          {@code null} when the instance is obtained from component provider for each session.
+     * @param collector         error collector.
+     * @return new instance.
+     */
+    public AnnotatedEndpoint withInstance(Object annotatedInstance, ErrorCollector collector) {
+        if (annotatedInstance != null && !annotatedClass.equals(annotatedInstance.getClass())) {
+            throw new IllegalArgumentException(String.format("Instance of %s expected.", annotatedClass.getName()));
+        }
+
+        return new AnnotatedEndpoint(this, annotatedInstance,
+                createEndpointConfig(annotatedClass, configuration instanceof ServerEndpointConfig, collector));
+    }
+
+    private AnnotatedEndpoint(AnnotatedEndpoint model, Object instance, EndpointConfig configuration) {
+        this.annotatedInstance = instance;
+        this.annotatedClass = model.annotatedClass;
+        this.configuration = configuration;
+        this.componentProvider = model.componentProvider;
+        this.onOpenMethod = model.onOpenMethod;
+        this.onCloseMethod = model.onCloseMethod;
+        this.onErrorMethod = model.onErrorMethod;
+        this.onOpenParameters = model.onOpenParameters;
+        this.onCloseParameters = model.onCloseParameters;
+        this.onErrorParameters = model.onErrorParameters;
+        // factories are bound to the endpoint which created them, handlers have to invoke this endpoint's instance.
+        for (MessageHandlerFactory factory : model.messageHandlerFactories) {
+            this.messageHandlerFactories.add(factory.bindTo(this));
+        }
+    }
+
     private AnnotatedEndpoint(Class<?> annotatedClass, Object instance, ComponentProviderService componentProvider, Boolean isServerEndpoint, ErrorCollector collector) {
         this.configuration = createEndpointConfig(annotatedClass, isServerEndpoint, collector);
         this.annotatedInstance = instance;
@@ -133,6 +171,14 @@ public class AnnotatedEndpoint extends Endpoint {
             }
         } : componentProvider;
 
+        if (isServerEndpoint && instance == null) {
+            try {
+                this.componentProvider.configureEndpointInstances(annotatedClass, configuration);
+            } catch (DeploymentException e) {
+                collector.addException(e);
+            }
+        }
+
         Method onOpen = null;
         Method onClose = null;
         Method onError = null;
@@ -464,6 +510,16 @@ public class AnnotatedEndpoint extends Endpoint {
         }
     }
 
+    /**
+     * Destroy endpoint instances kept according to {@link EndpointInstancePolicy}, called when the server endpoint
+     * is undeployed.
+     */
+    void destroyEndpointInstances() {
+        if (annotatedInstance == null && configuration instanceof ServerEndpointConfig) {
+            componentProvider.destroyEndpointInstances(annotatedClass);
+        }
+    }
+
     //    @Override
     public EndpointConfig getEndpointConfig() {
         return configuration;
@@ -511,6 +567,14 @@ public class AnnotatedEndpoint extends Endpoint {
         }
 
         abstract MessageHandler create(Session session);
+
+        /**
+         * Create factory with the same metadata which creates handlers invoking given endpoint.
+         *
+         * @param endpoint endpoint to bind the new factory to.
+         * @return new factory.
+         */
+        abstract MessageHandlerFactory bindTo(AnnotatedEndpoint endpoint);
     }
 
     class WholeHandler extends MessageHandlerFactory {
@@ -518,6 +582,11 @@ public class AnnotatedEndpoint extends Endpoint {
             super(method, extractors, type, maxMessageSize);
         }
 
+        @Override
+        MessageHandlerFactory bindTo(AnnotatedEndpoint endpoint) {
+            return endpoint.new WholeHandler(method, extractors, type, maxMessageSize);
+        }
+
         @Override
         public MessageHandler create(final Session session) {
             return new BasicMessageHandler() {
@@ -551,6 +620,11 @@ public class AnnotatedEndpoint extends Endpoint {
             super(method, extractors, type, maxMessageSize);
         }
 
+        @Override
+        MessageHandlerFactory bindTo(AnnotatedEndpoint endpoint) {
+            return endpoint.new PartialHandler(method, extractors, type, maxMessageSize);
+        }
+
         @Override
         public MessageHandler create(final Session session) {
             return new AsyncMessageHandler() {
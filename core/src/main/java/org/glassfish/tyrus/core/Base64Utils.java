@@ -33,6 +33,13 @@ package org.glassfish.tyrus.core;
 
 import java.util.Arrays;
 
+/**
+ * Base64 encoding and decoding utilities.
+ *
+ * @deprecated not used by tyrus anymore, Sec-WebSocket-Key and Sec-WebSocket-Accept values are handled by
+ * {@link org.glassfish.tyrus.spi.SecKeyUtils}. Kept for compatibility of applications which use it directly.
+ */
+@Deprecated
 public class Base64Utils {
     private static final char[] CA = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
     private static final int[] IA = new int[256];
@@ -39,10 +39,14 @@
  */
 package org.glassfish.tyrus.core;
 
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.WebSocketContainer;
@@ -57,18 +61,69 @@ import javax.naming.InitialContext;
  * @author Jitendra Kotamraju
  */
 public abstract class BaseContainer extends ExecutorServiceProvider implements WebSocketContainer {
-    private final ExecutorService executorService;
+
+    /**
+     * Container property (see {@link #newExecutorService(java.util.Map)}).
+     * <p/>
+     * Value must be {@link ExecutorService} instance which will be used for running streaming message handlers and
+     * other container tasks instead of the default one (for example virtual-thread-per-task executor on JDKs which
+     * support it). Containers do not shut down provided executor.
+     */
+    public static final String EXECUTOR_SERVICE = "org.glassfish.tyrus.core.BaseContainer.ExecutorService";
+
+    /**
+     * Container property (see {@link #newExecutorService(java.util.Map)}).
+     * <p/>
+     * Value must be positive {@code int} and represents maximal number of threads in the container executor. When
+     * set, bounded executor created by {@link #newBoundedExecutorService(int)} is used instead of unbounded cached
+     * thread pool. Ignored when {@link #EXECUTOR_SERVICE} is set.
+     */
+    public static final String MAX_WORKER_THREADS = "org.glassfish.tyrus.core.BaseContainer.MaxWorkerThreads";
+
+    /**
+     * Container property (see {@link #newExecutorService(java.util.Map)}).
+     * <p/>
+     * Value must be positive {@code int} and represents maximal number of tasks waiting for a thread of the bounded
+     * executor created when {@link #MAX_WORKER_THREADS} is set. Default value is {@value #DEFAULT_MAX_QUEUED_TASKS}.
+     */
+    public static final String MAX_QUEUED_TASKS = "org.glassfish.tyrus.core.BaseContainer.MaxQueuedTasks";
+
+    /**
+     * Default maximal number of tasks waiting for a thread of the bounded executor.
+     */
+    public static final int DEFAULT_MAX_QUEUED_TASKS = 1024;
+
+    private final Object executorServiceLock = new Object();
     private final ScheduledExecutorService scheduledExecutorService;
+    private volatile ExecutorService executorService;
+    private volatile HeartbeatService heartbeatService;
     private ThreadFactory threadFactory = null;
 
     public BaseContainer() {
-        this.executorService = newExecutorService();
         this.scheduledExecutorService = newScheduledExecutorService();
     }
 
+    /**
+     * Get the {@link ExecutorService}.
+     * <p/>
+     * Executor is created lazily (by {@link #newExecutorService()}) when first requested, so container
+     * properties set after container construction are taken into account.
+     *
+     * @return executor service.
+     */
     @Override
     public ExecutorService getExecutorService() {
-        return executorService;
+        ExecutorService es = executorService;
+        if (es == null) {
+            synchronized (executorServiceLock) {
+                es = executorService;
+                if (es == null) {
+                    es = newExecutorService();
+                    executorService = es;
+                }
+            }
+        }
+        return es;
     }
 
     @Override
@@ -76,7 +131,52 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         return scheduledExecutorService;
     }
 
-    private ExecutorService newExecutorService() {
+    /**
+     * Get the {@link HeartbeatService} of this container.
+     * <p/>
+     * Service is created lazily (by {@link #newHeartbeatService()}) when first requested.
+     *
+     * @return heartbeat service.
+     */
+    public HeartbeatService getHeartbeatService() {
+        HeartbeatService hs = heartbeatService;
+        if (hs == null) {
+            synchronized (executorServiceLock) {
+                hs = heartbeatService;
+                if (hs == null) {
+                    hs = newHeartbeatService();
+                    heartbeatService = hs;
+                }
+            }
+        }
+        return hs;
+    }
+
+    /**
+     * Create new {@link HeartbeatService} used by this container.
+     * <p/>
+     * Can be overridden to pass container properties to the service; default implementation creates service with
+     * heartbeat disabled unless enabled by endpoint config user properties.
+     *
+     * @return new heartbeat service.
+     */
+    protected HeartbeatService newHeartbeatService() {
+        return new HeartbeatService(getScheduledExecutorService(), null);
+    }
+
+    /**
+     * Create new {@link ExecutorService} used by this container.
+     * <p/>
+     * Can be overridden to provide container specific executor; default implementation uses
+     * {@code java:comp/DefaultManagedExecutorService} if available, unbounded cached thread pool otherwise.
+     *
+     * @return new executor service.
+     */
+    protected ExecutorService newExecutorService() {
+        return newDefaultExecutorService();
+    }
+
+    private ExecutorService newDefaultExecutorService() {
         ExecutorService es = null;
 
         // Get the default ManagedExecutorService, if available
@@ -90,15 +190,76 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         }
 
         if (es == null) {
-            if (threadFactory == null) {
-                threadFactory = new DaemonThreadFactory();
-            }
-            es = Executors.newCachedThreadPool(threadFactory);
+            es = Executors.newCachedThreadPool(getThreadFactory());
         }
 
         return es;
     }
 
+    /**
+     * Create new {@link ExecutorService} according to provided container properties.
+     * <p/>
+     * {@link #EXECUTOR_SERVICE} has the highest priority, then {@link #MAX_WORKER_THREADS}; when none of these is
+     * set, default executor (see {@link #newExecutorService()}) is returned.
+     *
+     * @param properties container properties, can be {@code null}.
+     * @return new executor service.
+     */
+    protected ExecutorService newExecutorService(Map<String, Object> properties) {
+        if (properties != null) {
+            final Object executor = properties.get(EXECUTOR_SERVICE);
+            if (executor instanceof ExecutorService) {
+                return (ExecutorService) executor;
+            }
+
+            final Object maxThreads = properties.get(MAX_WORKER_THREADS);
+            if (maxThreads instanceof Integer && (Integer) maxThreads > 0) {
+                final Object maxQueuedTasks = properties.get(MAX_QUEUED_TASKS);
+                return newBoundedExecutorService((Integer) maxThreads,
+                        maxQueuedTasks instanceof Integer && (Integer) maxQueuedTasks > 0 ? (Integer) maxQueuedTasks : DEFAULT_MAX_QUEUED_TASKS);
+            }
+        }
+
+        return newDefaultExecutorService();
+    }
+
+    /**
+     * Create new bounded {@link ExecutorService} with {@link #DEFAULT_MAX_QUEUED_TASKS default} queue size.
+     *
+     * @param maxThreads maximal number of threads.
+     * @return new bounded executor service.
+     * @see #newBoundedExecutorService(int, int)
+     */
+    public static ExecutorService newBoundedExecutorService(int maxThreads) {
+        return newBoundedExecutorService(maxThreads, DEFAULT_MAX_QUEUED_TASKS);
+    }
+
+    /**
+     * Create new bounded {@link ExecutorService}.
+     * <p/>
+     * When all threads are busy, tasks wait in a queue of limited size; when the queue is full, the task is rejected
+     * with {@link java.util.concurrent.RejectedExecutionException}. Submitting thread (usually the one reading from
+     * a connection) is never blocked, a rejected message fails and its session is closed with
+     * {@link javax.websocket.CloseReason.CloseCodes#TRY_AGAIN_LATER}.
+     *
+     * @param maxThreads     maximal number of threads.
+     * @param maxQueuedTasks maximal number of tasks waiting for a thread.
+     * @return new bounded executor service.
+     */
+    public static ExecutorService newBoundedExecutorService(int maxThreads, int maxQueuedTasks) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(maxQueuedTasks), new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private synchronized ThreadFactory getThreadFactory() {
+        if (threadFactory == null) {
+            threadFactory = new DaemonThreadFactory();
+        }
+        return threadFactory;
+    }
+
     private ScheduledExecutorService newScheduledExecutorService() {
         ScheduledExecutorService service = null;
 
@@ -112,22 +273,24 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         }
 
         if (service == null) {
-            if (threadFactory == null) {
-                threadFactory = new DaemonThreadFactory();
-            }
-
-            service = Executors.newScheduledThreadPool(10, threadFactory);
+            service = Executors.newScheduledThreadPool(10, getThreadFactory());
         }
 
         return service;
     }
 
-    private static class DaemonThreadFactory implements ThreadFactory {
+    /**
+     * Creates daemon threads named {@code tyrus-<pool>-thread-<thread>}.
+     */
+    protected static class DaemonThreadFactory implements ThreadFactory {
         static final AtomicInteger poolNumber = new AtomicInteger(1);
         final AtomicInteger threadNumber = new AtomicInteger(1);
         final String namePrefix;
 
-        DaemonThreadFactory() {
+        /**
+         * Create new thread factory.
+         */
+        public DaemonThreadFactory() {
             namePrefix = "tyrus-" + poolNumber.getAndIncrement() + "-thread-";
         }
 
@@ -94,6 +94,15 @@ class BinaryBuffer {
         return b;
     }
 
+    /**
+     * Get number of currently buffered bytes.
+     *
+     * @return buffered bytes.
+     */
+    int getBufferedSize() {
+        return currentlyBuffered;
+    }
+
     /**
      * Reset buffer with setting maximal buffer size.
      *
@@ -0,0 +1,476 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.tyrus.core.frame.BinaryFrame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+
+/**
+ * SPI for propagating broadcasts to other nodes of a cluster.
+ * <p/>
+ * When a bus is set on {@link TyrusWebSocketEngine#setBroadcastBus(BroadcastBus) engine}, every
+ * {@link TyrusEndpointWrapper#broadcast(String) broadcast} is published to all peers as a pre-encoded
+ * {@link Message} addressed by endpoint path. Messages received from peers are delivered to local sessions of the
+ * endpoint registered under the same path, using the same single frame for all of them; they are not published
+ * again.
+ * <p/>
+ * Messages are queued per peer and sent in batches of at most {@link #getMaxBatchSize()} messages using the
+ * executor passed to {@link #start(Receiver, Executor)}. Only one batch per peer is being sent at any time, so the
+ * order of messages sent to a peer is preserved and all messages published while a batch is being sent are sent
+ * together in the next one.
+ * <p/>
+ * Each peer queue holds at most {@link #getMaxQueueSize()} messages; when a slow peer lets its queue fill up, messages
+ * are dropped according to the {@link OverflowPolicy} and counted in {@link #getDroppedMessageCount()}.
+ * <p/>
+ * Implementations provide the list of peers and the transport of a batch; see {@link LoopbackBroadcastBus} for an
+ * in-process implementation.
+ */
+public abstract class BroadcastBus {
+
+    /**
+     * Default maximal number of messages sent to a peer at once.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Default maximal number of messages queued for a peer.
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 4096;
+
+    private static final Logger LOGGER = Logger.getLogger(BroadcastBus.class.getName());
+
+    private final int maxBatchSize;
+    private final int maxQueueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final ConcurrentMap<String, PeerQueue> peerQueues = new ConcurrentHashMap<String, PeerQueue>();
+
+    private volatile Receiver receiver;
+    private volatile Executor executor;
+
+    /**
+     * Create bus with {@link #DEFAULT_MAX_BATCH_SIZE default} maximal batch size.
+     */
+    protected BroadcastBus() {
+        this(DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Create bus with {@link #DEFAULT_MAX_QUEUE_SIZE default} maximal queue size, dropping the oldest messages when a
+     * peer queue is full.
+     *
+     * @param maxBatchSize maximal number of messages sent to a peer at once.
+     */
+    protected BroadcastBus(int maxBatchSize) {
+        this(maxBatchSize, DEFAULT_MAX_QUEUE_SIZE, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Create bus.
+     *
+     * @param maxBatchSize   maximal number of messages sent to a peer at once.
+     * @param maxQueueSize   maximal number of messages queued for a peer.
+     * @param overflowPolicy what to do when a message is published to a peer with full queue.
+     */
+    protected BroadcastBus(int maxBatchSize, int maxQueueSize, OverflowPolicy overflowPolicy) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive.");
+        }
+        if (maxQueueSize < 1) {
+            throw new IllegalArgumentException("maxQueueSize must be positive.");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy must not be null.");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxQueueSize = maxQueueSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Policy applied when a message is published to a peer which queue is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Drop the oldest queued message and queue the published one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Drop the published message.
+         */
+        DROP_NEWEST
+    }
+
+    /**
+     * Receiver of messages published by peers.
+     */
+    public interface Receiver {
+
+        /**
+         * Called for each message received from a peer.
+         *
+         * @param message received message.
+         */
+        void onMessage(Message message);
+    }
+
+    /**
+     * Start the bus. Called by {@link TyrusWebSocketEngine} when the bus is set.
+     *
+     * @param receiver receiver of messages published by peers.
+     * @param executor executor used for sending batches to peers. At most one task per peer is submitted at any time;
+     *                 the executor must not block the submitting thread, since {@link #publish(Message)} is called
+     *                 from broadcasting threads. {@link TyrusWebSocketEngine} passes a dedicated executor.
+     * @throws IllegalStateException when the bus is already started.
+     */
+    public final void start(Receiver receiver, Executor executor) {
+        if (this.receiver != null) {
+            throw new IllegalStateException("Broadcast bus is already started.");
+        }
+        this.executor = executor;
+        this.receiver = receiver;
+        try {
+            onStart();
+        } catch (RuntimeException e) {
+            this.receiver = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Stop the bus. Messages not sent yet are discarded and messages received afterwards are ignored.
+     */
+    public final void stop() {
+        if (receiver == null) {
+            return;
+        }
+        receiver = null;
+        onStop();
+        for (String peer : peerQueues.keySet()) {
+            removePeer(peer);
+        }
+    }
+
+    /**
+     * Publish message to all peers.
+     *
+     * @param message message to be published.
+     * @throws IllegalStateException when the bus is not started.
+     */
+    public void publish(Message message) {
+        if (receiver == null) {
+            throw new IllegalStateException("Broadcast bus is not started.");
+        }
+
+        for (String peer : getPeers()) {
+            PeerQueue queue = peerQueues.get(peer);
+            if (queue == null) {
+                final PeerQueue newQueue = new PeerQueue(peer);
+                queue = peerQueues.putIfAbsent(peer, newQueue);
+                if (queue == null) {
+                    queue = newQueue;
+                }
+            }
+            queue.offer(message);
+        }
+    }
+
+    /**
+     * Get maximal number of messages sent to a peer at once.
+     *
+     * @return maximal batch size.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Get maximal number of messages queued for a peer.
+     * <p/>
+     * The limit is not strict; concurrent publishers can exceed it by at most the number of publishing threads.
+     *
+     * @return maximal queue size.
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Get policy applied when a peer queue is full.
+     *
+     * @return overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Get number of messages dropped so far because a peer queue was full, summed over all peers.
+     *
+     * @return number of dropped messages.
+     */
+    public long getDroppedMessageCount() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Called when the bus is started, before any message is published. Default implementation does nothing.
+     */
+    protected void onStart() {
+    }
+
+    /**
+     * Called when the bus is stopped. Default implementation does nothing.
+     */
+    protected void onStop() {
+    }
+
+    /**
+     * Get identifiers of peers to which published messages are sent. Must not contain this node.
+     *
+     * @return current peers.
+     */
+    protected abstract Collection<String> getPeers();
+
+    /**
+     * Send batch of messages to a peer, which should pass it to {@link #receive(List)} of its bus.
+     * <p/>
+     * Called from the executor passed to {@link #start(Receiver, Executor)}, never concurrently for the same peer.
+     * Batch is not sent again when this method fails.
+     *
+     * @param peer  peer identifier, as returned from {@link #getPeers()}.
+     * @param batch messages to be sent, in the order in which they were published.
+     * @throws IOException when the batch cannot be sent.
+     */
+    protected abstract void send(String peer, List<Message> batch) throws IOException;
+
+    /**
+     * Deliver batch of messages received from a peer to local endpoints.
+     *
+     * @param batch received messages.
+     */
+    protected final void receive(List<Message> batch) {
+        final Receiver r = receiver;
+        if (r == null) {
+            return;
+        }
+
+        for (Message message : batch) {
+            try {
+                r.onMessage(message);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, String.format("Delivery of message for '%s' failed.", message.getEndpointPath()), e);
+            }
+        }
+    }
+
+    /**
+     * Discard messages queued for a peer which left the cluster.
+     *
+     * @param peer peer identifier.
+     */
+    protected final void removePeer(String peer) {
+        final PeerQueue queue = peerQueues.remove(peer);
+        if (queue != null) {
+            queue.discard();
+        }
+    }
+
+    private class PeerQueue implements Runnable {
+
+        private final String peer;
+        private final Queue<Message> messages = new ConcurrentLinkedQueue<Message>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        PeerQueue(String peer) {
+            this.peer = peer;
+        }
+
+        void offer(Message message) {
+            if (size.incrementAndGet() > maxQueueSize) {
+                if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                    size.decrementAndGet();
+                    dropped();
+                    return;
+                }
+                if (poll() != null) {
+                    dropped();
+                }
+            }
+            messages.offer(message);
+            schedule();
+        }
+
+        private Message poll() {
+            final Message message = messages.poll();
+            if (message != null) {
+                size.decrementAndGet();
+            }
+            return message;
+        }
+
+        void discard() {
+            while (poll() != null) {
+                // discard all queued messages
+            }
+        }
+
+        private void dropped() {
+            if (droppedMessages.getAndIncrement() == 0) {
+                LOGGER.log(Level.WARNING, String.format("Queue for peer '%s' is full, dropping messages.", peer));
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // executor shut down (bus is being replaced) or saturated; messages are dropped, not retried.
+                    scheduled.set(false);
+                    discard();
+                    LOGGER.log(Level.WARNING, String.format("Messages for peer '%s' discarded.", peer), e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final List<Message> batch = new ArrayList<Message>(Math.min(maxBatchSize, 16));
+                Message message;
+                while (batch.size() < maxBatchSize && (message = poll()) != null) {
+                    batch.add(message);
+                }
+
+                if (batch.isEmpty()) {
+                    scheduled.set(false);
+                    // message offered after the last poll might not have been scheduled.
+                    if (messages.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                try {
+                    send(peer, batch);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, String.format("Sending %d message(s) to peer '%s' failed.", batch.size(), peer), e);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, String.format("Sending %d message(s) to peer '%s' failed.", batch.size(), peer), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pre-encoded broadcast message.
+     */
+    public static final class Message {
+
+        private final String endpointPath;
+        private final boolean text;
+        private final byte[] payload;
+
+        /**
+         * Create message.
+         *
+         * @param endpointPath path of the endpoint to which sessions the message is sent, see
+         *                     {@link org.glassfish.tyrus.core.EndpointWrapper#getEndpointPath()}.
+         * @param text         {@code true} for text message, {@code false} for binary one.
+         * @param payload      message payload, UTF-8 encoded for text messages. Must not be modified afterwards.
+         */
+        public Message(String endpointPath, boolean text, byte[] payload) {
+            this.endpointPath = endpointPath;
+            this.text = text;
+            this.payload = payload;
+        }
+
+        /**
+         * Get path of the endpoint to which sessions the message is sent.
+         *
+         * @return endpoint path.
+         */
+        public String getEndpointPath() {
+            return endpointPath;
+        }
+
+        /**
+         * Get message type.
+         *
+         * @return {@code true} for text message, {@code false} for binary one.
+         */
+        public boolean isText() {
+            return text;
+        }
+
+        /**
+         * Get message payload. Returned array must not be modified.
+         *
+         * @return payload, UTF-8 encoded for text messages.
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        DataFrame toDataFrame() {
+            return new DataFrame(text ? new TextFrame() : new BinaryFrame(), payload);
+        }
+    }
+}
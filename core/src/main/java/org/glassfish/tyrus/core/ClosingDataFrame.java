@@ -98,7 +98,7 @@ public class ClosingDataFrame extends DataFrame {
         }
 
         final byte[] bytes = Utils.toArray(code);
-        final byte[] reasonBytes = reason == null ? EMPTY_BYTES : reason.getBytes(new StrictUtf8());
+        final byte[] reasonBytes = reason == null ? EMPTY_BYTES : reason.getBytes(StrictUtf8.INSTANCE);
         final byte[] frameBytes = new byte[2 + reasonBytes.length];
         System.arraycopy(bytes, bytes.length - 2, frameBytes, 0, 2);
         System.arraycopy(reasonBytes, 0, frameBytes, 2, reasonBytes.length);
@@ -121,7 +121,7 @@ public class ClosingDataFrame extends DataFrame {
 
     private void utf8Decode(byte[] data) {
         final ByteBuffer b = ByteBuffer.wrap(data, 2, data.length - 2);
-        Charset charset = new StrictUtf8();
+        Charset charset = StrictUtf8.INSTANCE;
         final CharsetDecoder decoder = charset.newDecoder();
         int n = (int) (b.remaining() * decoder.averageCharsPerByte());
         CharBuffer cb = CharBuffer.allocate(n);
@@ -39,13 +39,19 @@
  */
 package org.glassfish.tyrus.core;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.websocket.Decoder;
 import javax.websocket.DeploymentException;
@@ -62,19 +68,64 @@ import javax.websocket.Session;
  */
 public class ComponentProviderService {
 
+    /**
+     * Endpoint config user property, value is {@link EndpointInstancePolicy.Policy} or its name.
+     * <p/>
+     * Overrides {@link EndpointInstancePolicy} annotation of the endpoint class.
+     */
+    public static final String ENDPOINT_INSTANCE_POLICY = "org.glassfish.tyrus.core.endpointInstancePolicy";
+
+    /**
+     * Endpoint config user property, value is {@link Integer}; see {@link EndpointInstancePolicy#poolSize()}.
+     */
+    public static final String ENDPOINT_INSTANCE_POOL_SIZE = "org.glassfish.tyrus.core.endpointInstancePoolSize";
+
+    private static final Logger LOGGER = Logger.getLogger(ComponentProviderService.class.getName());
+
+    /**
+     * Initial capacity of per session instance maps; sessions usually hold only the endpoint and few coders.
+     */
+    private static final int SESSION_MAP_CAPACITY = 4;
+
     private final Map<Session, Map<Class<?>, Object>> sessionToObject;
+    private final ConcurrentMap<Class<?>, EndpointInstanceCache> endpointInstanceCaches;
     private final List<ComponentProvider> providers;
 
+    /**
+     * Found providers per context class loader. Values are weakly referenced, so the cache does not prevent class loader
+     * (which is referenced by provider classes) from being collected; the list is kept alive by the services using it.
+     */
+    private static final Map<ClassLoader, WeakReference<List<ComponentProvider>>> PROVIDERS_CACHE =
+            new WeakHashMap<ClassLoader, WeakReference<List<ComponentProvider>>>();
+
     /**
      * Create new instance of {@link ComponentProviderService}.
      * </p>
-     * Searches for registered {@link ComponentProvider}s and registers them with this service.
+     * Searches for registered {@link ComponentProvider}s and registers them with this service. Found providers are
+     * cached per context class loader, so subsequent calls do not scan {@code META-INF/services} again.
      * </p>
      * {@link DefaultComponentProvider} is always added to found providers.
      *
      * @return initialized {@link ComponentProviderService}.
      */
     public static ComponentProviderService create() {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            return new ComponentProviderService(findProviders());
+        }
+
+        synchronized (PROVIDERS_CACHE) {
+            final WeakReference<List<ComponentProvider>> reference = PROVIDERS_CACHE.get(classLoader);
+            List<ComponentProvider> providers = reference == null ? null : reference.get();
+            if (providers == null) {
+                providers = findProviders();
+                PROVIDERS_CACHE.put(classLoader, new WeakReference<List<ComponentProvider>>(providers));
+            }
+            return new ComponentProviderService(providers);
+        }
+    }
+
+    private static List<ComponentProvider> findProviders() {
         final List<ComponentProvider> foundProviders = new ArrayList<ComponentProvider>();
         ServiceFinder<ComponentProvider> finder = ServiceFinder.find(ComponentProvider.class);
 
@@ -83,12 +134,13 @@ public class ComponentProviderService {
         }
 
         foundProviders.add(new DefaultComponentProvider());
-        return new ComponentProviderService(Collections.unmodifiableList(foundProviders));
+        return Collections.unmodifiableList(foundProviders);
     }
 
     private ComponentProviderService(List<ComponentProvider> providers) {
         this.providers = providers;
         this.sessionToObject = new ConcurrentHashMap<Session, Map<Class<?>, Object>>();
+        this.endpointInstanceCaches = new ConcurrentHashMap<Class<?>, EndpointInstanceCache>();
     }
 
     /**
@@ -99,6 +151,86 @@ public class ComponentProviderService {
     public ComponentProviderService(ComponentProviderService componentProviderService) {
         this.providers = componentProviderService.providers;
         this.sessionToObject = componentProviderService.sessionToObject;
+        this.endpointInstanceCaches = componentProviderService.endpointInstanceCaches;
+    }
+
+    /**
+     * Configure how instances of given endpoint class are created.
+     * <p/>
+     * Policy is taken from {@link #ENDPOINT_INSTANCE_POLICY} user property of the endpoint config or from
+     * {@link EndpointInstancePolicy} annotation of the endpoint class; new instance per session is used when none
+     * of these is present.
+     * <p/>
+     * Policy is shared by all deployments of the endpoint class. Configuring the class again with the same policy
+     * keeps already created instances (singleton or pooled ones), different policy is refused until all deployments
+     * are {@link #destroyEndpointInstances(Class) undeployed}.
+     *
+     * @param endpointClass  endpoint class.
+     * @param endpointConfig endpoint configuration, can be {@code null}.
+     * @throws DeploymentException when the endpoint class is already configured with different policy.
+     */
+    public void configureEndpointInstances(Class<?> endpointClass, EndpointConfig endpointConfig) throws DeploymentException {
+        final EndpointInstancePolicy annotation = endpointClass.getAnnotation(EndpointInstancePolicy.class);
+        EndpointInstancePolicy.Policy policy = annotation == null ? EndpointInstancePolicy.Policy.PER_SESSION : annotation.value();
+        int poolSize = annotation == null ? 16 : annotation.poolSize();
+
+        final Map<String, Object> userProperties = endpointConfig == null ? null : endpointConfig.getUserProperties();
+        if (userProperties != null) {
+            final Object policyProperty = userProperties.get(ENDPOINT_INSTANCE_POLICY);
+            if (policyProperty instanceof EndpointInstancePolicy.Policy) {
+                policy = (EndpointInstancePolicy.Policy) policyProperty;
+            } else if (policyProperty != null) {
+                try {
+                    policy = EndpointInstancePolicy.Policy.valueOf(policyProperty.toString().toUpperCase(Locale.US));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.log(Level.WARNING, String.format("Unknown endpoint instance policy '%s' ignored.", policyProperty));
+                }
+            }
+
+            final Object poolSizeProperty = userProperties.get(ENDPOINT_INSTANCE_POOL_SIZE);
+            if (poolSizeProperty instanceof Integer) {
+                poolSize = (Integer) poolSizeProperty;
+            }
+        }
+
+        final EndpointInstanceCache cache = new EndpointInstanceCache(policy, poolSize);
+        synchronized (endpointInstanceCaches) {
+            final EndpointInstanceCache existing = endpointInstanceCaches.get(endpointClass);
+            if (existing == null || (!existing.isCompatible(cache) && existing.isReplaceable())) {
+                endpointInstanceCaches.put(endpointClass, cache);
+                cache.deployed();
+            } else if (existing.isCompatible(cache)) {
+                existing.deployed();
+            } else {
+                throw new DeploymentException(String.format(
+                        "Endpoint class %s is already deployed with instance policy %s, policy %s cannot be used.",
+                        endpointClass.getName(), existing, cache));
+            }
+        }
+    }
+
+    /**
+     * Release endpoint instances configured by {@link #configureEndpointInstances(Class, EndpointConfig)}, called when
+     * the endpoint is undeployed.
+     * <p/>
+     * When the last deployment of the endpoint class is undeployed, kept singleton or pooled instances which are not
+     * used by any session are destroyed; instances used by open sessions are destroyed when the sessions are closed.
+     *
+     * @param endpointClass endpoint class.
+     */
+    public void destroyEndpointInstances(Class<?> endpointClass) {
+        final List<Object> instances;
+        synchronized (endpointInstanceCaches) {
+            final EndpointInstanceCache cache = endpointInstanceCaches.get(endpointClass);
+            if (cache == null || !cache.undeployed()) {
+                return;
+            }
+            instances = cache.destroyAll();
+        }
+
+        for (Object instance : instances) {
+            destroy(instance);
+        }
     }
 
     /**
@@ -124,13 +256,13 @@ public class ComponentProviderService {
                         loaded = classObjectMap.get(c);
                     } else {
                         // returns not-null value
-                        loaded = getEndpointInstance(c);
+                        loaded = obtainEndpointInstance(c);
                         sessionToObject.get(session).put(c, loaded);
                     }
                 }
             } else {
-                loaded = getEndpointInstance(c);
-                final HashMap<Class<?>, Object> hashMap = new HashMap<Class<?>, Object>();
+                loaded = obtainEndpointInstance(c);
+                final HashMap<Class<?>, Object> hashMap = new HashMap<Class<?>, Object>(SESSION_MAP_CAPACITY);
                 hashMap.put(c, loaded);
                 sessionToObject.put(session, hashMap);
             }
@@ -187,7 +319,7 @@ public class ComponentProviderService {
                     } else if (loaded instanceof Decoder) {
                         ((Decoder) loaded).init(endpointConfig);
                     }
-                    final HashMap<Class<?>, Object> hashMap = new HashMap<Class<?>, Object>();
+                    final HashMap<Class<?>, Object> hashMap = new HashMap<Class<?>, Object>(SESSION_MAP_CAPACITY);
                     hashMap.put(c, loaded);
 
                     sessionToObject.put(session, hashMap);
@@ -200,6 +332,52 @@ public class ComponentProviderService {
         return loaded;
     }
 
+    /**
+     * Provide new instance of {@link javax.websocket.Encoder} or {@link javax.websocket.Decoder} which is not bound to
+     * any {@link Session}.
+     * <p/>
+     * Instance is initialized using {@link javax.websocket.Encoder#init(javax.websocket.EndpointConfig)} or
+     * {@link javax.websocket.Decoder#init(javax.websocket.EndpointConfig)}, but it is not cached and not destroyed by
+     * {@link #removeSession(Session)}; the caller is responsible for its lifecycle and has to pass it to
+     * {@link #destroyCoderInstance(Object)} when it is no longer used.
+     *
+     * @param c              {@link Class} whose instance will be provided.
+     * @param endpointConfig configuration used for initialization.
+     * @param collector      error collector.
+     * @param <T>            type of the provided instance.
+     * @return instance or {@code null} when it cannot be created.
+     */
+    public <T> Object getCoderInstance(Class<T> c, EndpointConfig endpointConfig, ErrorCollector collector) {
+        Object loaded = null;
+
+        try {
+            loaded = getInstance(c);
+            if (loaded instanceof Encoder) {
+                ((Encoder) loaded).init(endpointConfig);
+            } else if (loaded instanceof Decoder) {
+                ((Decoder) loaded).init(endpointConfig);
+            }
+        } catch (InstantiationException e) {
+            collector.addException(new DeploymentException(String.format("Exception thrown when providing instance of class %s", c.getName()), e));
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Destroy instance provided by {@link #getCoderInstance(Class, EndpointConfig, ErrorCollector)}.
+     *
+     * @param coder {@link javax.websocket.Encoder} or {@link javax.websocket.Decoder} instance to be destroyed.
+     */
+    public void destroyCoderInstance(Object coder) {
+        destroy(coder);
+    }
+
+    private Object obtainEndpointInstance(Class<?> c) throws InstantiationException {
+        final EndpointInstanceCache cache = endpointInstanceCaches.get(c);
+        return cache == null ? getEndpointInstance(c) : cache.obtain(this, c);
+    }
+
     public Method getInvocableMethod(Method method) {
         for (ComponentProvider componentProvider : providers) {
             if (componentProvider.isApplicable(method.getDeclaringClass())) {
@@ -232,18 +410,15 @@ public class ComponentProviderService {
         final Map<Class<?>, Object> classObjectMap = sessionToObject.get(session);
         if (classObjectMap != null) {
             synchronized (classObjectMap) {
-                for (Object o : classObjectMap.values()) {
-                    if (o instanceof Encoder) {
-                        ((Encoder) o).destroy();
-                    } else if (o instanceof Decoder) {
-                        ((Decoder) o).destroy();
+                for (Map.Entry<Class<?>, Object> entry : classObjectMap.entrySet()) {
+                    final Object o = entry.getValue();
+                    final EndpointInstanceCache cache = endpointInstanceCaches.get(entry.getKey());
+                    if (cache != null && cache.release(o)) {
+                        // shared or pooled endpoint instance, must not be destroyed.
+                        continue;
                     }
 
-                    for (ComponentProvider componentProvider : providers) {
-                        if (componentProvider.destroy(o)) {
-                            break;
-                        }
-                    }
+                    destroy(o);
                 }
             }
         }
@@ -251,6 +426,20 @@ public class ComponentProviderService {
         sessionToObject.remove(session);
     }
 
+    private void destroy(Object o) {
+        if (o instanceof Encoder) {
+            ((Encoder) o).destroy();
+        } else if (o instanceof Decoder) {
+            ((Decoder) o).destroy();
+        }
+
+        for (ComponentProvider componentProvider : providers) {
+            if (componentProvider.destroy(o)) {
+                break;
+            }
+        }
+    }
+
     /**
      * This method is called by the container each time a new client
      * connects to the logical endpoint this configurator configures.
@@ -0,0 +1,204 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+/**
+ * Outbound queue of a session which keeps only the latest message for each key.
+ * <p/>
+ * Suitable for streams where only the most recent value matters, like price updates of individual symbols. When a
+ * message is queued while previous message with the same key is still waiting to be sent, the previous message is
+ * replaced in place, keeping its position in the queue. Messages are written one at a time, in the order in which
+ * their keys were first queued, and only while the session {@link TyrusSession#isWritable() is writable}; the
+ * queue is drained again when the session becomes writable.
+ * <p/>
+ * Memory used by the queue is thus bounded by the number of distinct keys, regardless of the rate of updates or
+ * the speed of the peer.
+ *
+ * @see TyrusSession#getConflationQueue()
+ */
+public class ConflationQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(ConflationQueue.class.getName());
+
+    private final TyrusSession session;
+    private final RemoteEndpoint remoteEndpoint;
+    private final Object lock = new Object();
+    private final Map<Object, Object> pending = new LinkedHashMap<Object, Object>();
+    private final SendHandler sendHandler = new SendHandler() {
+        @Override
+        public void onResult(SendResult result) {
+            if (!result.isOK()) {
+                LOGGER.log(Level.FINE, "Conflated message was not sent.", result.getException());
+            }
+
+            synchronized (lock) {
+                inFlight = false;
+                if (writing) {
+                    // completed synchronously, drain() loop continues.
+                    return;
+                }
+            }
+            drain();
+        }
+    };
+
+    // guarded by lock
+    private boolean inFlight = false;
+    private boolean writing = false;
+
+    ConflationQueue(TyrusSession session, RemoteEndpoint remoteEndpoint) {
+        this.session = session;
+        this.remoteEndpoint = remoteEndpoint;
+    }
+
+    /**
+     * Queue text message, replacing not yet sent message with the same key.
+     *
+     * @param key     key of the message, compared using {@link Object#equals(Object)}.
+     * @param message message to be sent.
+     */
+    public void send(Object key, String message) {
+        offer(key, message);
+    }
+
+    /**
+     * Queue binary message, replacing not yet sent message with the same key.
+     * <p/>
+     * The buffer must not be modified until the message is sent or replaced.
+     *
+     * @param key     key of the message, compared using {@link Object#equals(Object)}.
+     * @param message message to be sent.
+     */
+    public void send(Object key, ByteBuffer message) {
+        offer(key, message);
+    }
+
+    /**
+     * Get number of messages waiting to be sent.
+     *
+     * @return number of queued keys.
+     */
+    public int size() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Discard all messages waiting to be sent.
+     */
+    public void clear() {
+        synchronized (lock) {
+            pending.clear();
+        }
+    }
+
+    private void offer(Object key, Object message) {
+        Utils.checkNotNull(key, "Argument 'key' cannot be null.");
+        Utils.checkNotNull(message, "Argument 'message' cannot be null.");
+
+        synchronized (lock) {
+            // LinkedHashMap keeps the original position of the key when the value is replaced.
+            pending.put(key, message);
+        }
+        drain();
+    }
+
+    /**
+     * Write queued messages for as long as the session is writable and writes are completed synchronously.
+     */
+    void drain() {
+        while (true) {
+            final Object message;
+            synchronized (lock) {
+                if (inFlight || pending.isEmpty()) {
+                    return;
+                }
+                if (!session.isOpen()) {
+                    pending.clear();
+                    return;
+                }
+                if (!session.isWritable()) {
+                    return;
+                }
+
+                final Iterator<Object> iterator = pending.values().iterator();
+                message = iterator.next();
+                iterator.remove();
+                inFlight = true;
+                writing = true;
+            }
+
+            boolean stillInFlight;
+            try {
+                if (message instanceof String) {
+                    remoteEndpoint.sendText((String) message, sendHandler);
+                } else {
+                    remoteEndpoint.sendBinary((ByteBuffer) message, sendHandler);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Conflated message was not sent.", e);
+                synchronized (lock) {
+                    inFlight = false;
+                }
+            } finally {
+                synchronized (lock) {
+                    writing = false;
+                    stillInFlight = inFlight;
+                }
+            }
+
+            if (stillInFlight) {
+                // completion handler will resume draining.
+                return;
+            }
+        }
+    }
+}
@@ -100,7 +100,7 @@ public class DataFrame {
 
     public byte[] getBytes() {
         if (payload != null) {
-            bytes = Utf8Utils.encode(new StrictUtf8(), payload);
+            bytes = Utf8Utils.encode(StrictUtf8.INSTANCE, payload);
         }
         return Arrays.copyOf(bytes, bytes.length);
     }
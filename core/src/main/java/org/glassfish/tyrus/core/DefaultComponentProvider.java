@@ -40,7 +40,11 @@
 
 package org.glassfish.tyrus.core;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Provides instances using reflection.
@@ -49,6 +53,11 @@ import java.lang.reflect.Method;
  */
 public class DefaultComponentProvider extends ComponentProvider {
 
+    /**
+     * Resolved public no-arg constructors, so the lookup and access check are done only once per class.
+     */
+    private final ConcurrentMap<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
     @Override
     public boolean isApplicable(Class<?> c) {
         return true;
@@ -57,12 +66,40 @@ public class DefaultComponentProvider extends ComponentProvider {
     @Override
     public <T> Object create(Class<T> toLoad) {
         try {
-            return ReflectionHelper.getInstance(toLoad);
+            Constructor<?> constructor = constructors.get(toLoad);
+            if (constructor == null) {
+                constructor = toLoad.getDeclaredConstructor();
+                if (!isAccessible(constructor)) {
+                    return null;
+                }
+                constructor.setAccessible(true);
+                constructors.putIfAbsent(toLoad, constructor);
+            }
+            return constructor.newInstance();
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * Check the constructor the same way {@link Class#newInstance()} called from this package would: public
+     * constructors and non-private constructors of classes from this package are allowed.
+     */
+    private static boolean isAccessible(Constructor<?> constructor) {
+        final int modifiers = constructor.getModifiers();
+        if (Modifier.isPublic(modifiers)) {
+            return true;
+        }
+        return !Modifier.isPrivate(modifiers) && getPackageName(constructor.getDeclaringClass()).equals(
+                getPackageName(DefaultComponentProvider.class));
+    }
+
+    private static String getPackageName(Class<?> c) {
+        final String name = c.getName();
+        final int index = name.lastIndexOf('.');
+        return index < 0 ? "" : name.substring(0, index);
+    }
+
     @Override
     public boolean destroy(Object o) {
         return false;
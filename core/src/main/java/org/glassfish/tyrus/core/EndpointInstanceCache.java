@@ -0,0 +1,223 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds endpoint instances which are shared or reused according to {@link EndpointInstancePolicy}.
+ * <p/>
+ * Cache is shared by all deployments of the endpoint class; when the last one is undeployed, kept instances are
+ * handed over for destruction by {@link #destroyAll()} and the cache stops keeping instances released afterwards.
+ */
+class EndpointInstanceCache {
+
+    private final EndpointInstancePolicy.Policy policy;
+    private final int poolSize;
+    private final Queue<Object> pool = new ConcurrentLinkedQueue<Object>();
+    private final AtomicInteger pooled = new AtomicInteger(0);
+    private final Object singletonLock = new Object();
+
+    // guarded by singletonLock
+    private Object singleton;
+    private int singletonUsers = 0;
+
+    // guarded by the owning ComponentProviderService
+    private int deployments = 0;
+
+    private volatile boolean destroyed = false;
+
+    EndpointInstanceCache(EndpointInstancePolicy.Policy policy, int poolSize) {
+        this.policy = policy;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Get endpoint instance for new session.
+     *
+     * @param service       used for creating new instances.
+     * @param endpointClass endpoint class.
+     * @return endpoint instance.
+     * @throws InstantiationException when the instance cannot be created.
+     */
+    Object obtain(ComponentProviderService service, Class<?> endpointClass) throws InstantiationException {
+        if (policy == EndpointInstancePolicy.Policy.PER_SESSION || destroyed) {
+            return service.getEndpointInstance(endpointClass);
+        }
+
+        if (policy == EndpointInstancePolicy.Policy.SINGLETON) {
+            synchronized (singletonLock) {
+                if (singleton == null) {
+                    singleton = service.getEndpointInstance(endpointClass);
+                }
+                singletonUsers++;
+                return singleton;
+            }
+        }
+
+        final Object instance = pool.poll();
+        if (instance != null) {
+            pooled.decrementAndGet();
+            return instance;
+        }
+
+        return service.getEndpointInstance(endpointClass);
+    }
+
+    /**
+     * Release endpoint instance of closed session.
+     *
+     * @param instance endpoint instance.
+     * @return {@code true} when the instance is kept for reuse (or still used by other sessions) and must not be
+     *         destroyed.
+     */
+    boolean release(Object instance) {
+        if (policy == EndpointInstancePolicy.Policy.PER_SESSION) {
+            return false;
+        }
+
+        if (policy == EndpointInstancePolicy.Policy.SINGLETON) {
+            synchronized (singletonLock) {
+                if (instance != singleton) {
+                    return false;
+                }
+                singletonUsers--;
+                if (destroyed && singletonUsers == 0) {
+                    // last session of undeployed endpoint.
+                    singleton = null;
+                    return false;
+                }
+                return true;
+            }
+        }
+
+        if (destroyed) {
+            return false;
+        }
+
+        if (pooled.incrementAndGet() <= poolSize) {
+            pool.add(instance);
+            // destroyAll() might have drained the pool meanwhile.
+            if (destroyed && pool.remove(instance)) {
+                pooled.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        pooled.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Register new deployment using this cache. Revives cache destroyed by undeployment of the last previous one.
+     */
+    void deployed() {
+        deployments++;
+        destroyed = false;
+    }
+
+    /**
+     * Unregister deployment using this cache.
+     *
+     * @return {@code true} when the last deployment was undeployed and the cache should be {@link #destroyAll()
+     *         destroyed}.
+     */
+    boolean undeployed() {
+        return deployments > 0 && --deployments == 0;
+    }
+
+    /**
+     * Stop keeping instances and return those which are not used by any session. Instances still in use are not
+     * kept when released, so they are destroyed together with their sessions.
+     *
+     * @return instances to be destroyed.
+     */
+    List<Object> destroyAll() {
+        destroyed = true;
+
+        final List<Object> instances = new ArrayList<Object>();
+        synchronized (singletonLock) {
+            if (singleton != null && singletonUsers == 0) {
+                instances.add(singleton);
+                singleton = null;
+            }
+        }
+
+        Object instance;
+        while ((instance = pool.poll()) != null) {
+            pooled.decrementAndGet();
+            instances.add(instance);
+        }
+
+        return instances;
+    }
+
+    /**
+     * Check whether the cache can be replaced by a cache with different policy, i.e. it was destroyed and no session
+     * uses the shared instance.
+     *
+     * @return {@code true} when the cache can be replaced.
+     */
+    boolean isReplaceable() {
+        synchronized (singletonLock) {
+            return destroyed && singleton == null;
+        }
+    }
+
+    /**
+     * Check whether the other cache is configured the same way, so this one can be used instead.
+     *
+     * @param other cache to compare with.
+     * @return {@code true} when both caches have the same policy (and pool size for pooled instances).
+     */
+    boolean isCompatible(EndpointInstanceCache other) {
+        return policy == other.policy && (policy != EndpointInstancePolicy.Policy.POOLED || poolSize == other.poolSize);
+    }
+
+    @Override
+    public String toString() {
+        return policy == EndpointInstancePolicy.Policy.POOLED ? policy + "(" + poolSize + ")" : policy.toString();
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2012-2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -39,78 +39,63 @@
  */
 package org.glassfish.tyrus.core;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 
 /**
- * Implementation of Future for SendResults.
- * Currently this does not support cancelling the operations but it may in the future.
- *
- * @author Danny Coward (danny.coward at oracle.com)
- * @author Martin Matula (martin.matula at oracle.com)
- * @author Stepan Kopriva (stepan.kopriva at oracle.com)
+ * Controls how many instances of a server endpoint class are created.
+ * <p/>
+ * By default (as required by the specification) new endpoint instance is created for each connected client.
+ * Stateless endpoints can declare that their instances can be shared or reused, which saves instantiation
+ * (and injection) cost per connection. The same can be configured for programmatic endpoints by
+ * {@link ComponentProviderService#ENDPOINT_INSTANCE_POLICY} and {@link ComponentProviderService#ENDPOINT_INSTANCE_POOL_SIZE}
+ * user properties of the endpoint config, no custom {@link javax.websocket.server.ServerEndpointConfig.Configurator}
+ * is needed.
+ * <p/>
+ * Instances are still obtained through the configured configurator and component providers, the policy only
+ * controls how often they are asked for a new one.
  */
-class FutureSendResult implements Future<Void> {
-
-    private final CountDownLatch latch = new CountDownLatch(1);
-    private volatile Throwable throwable = null;
-
-    @Override
-    public boolean cancel(boolean mayInterruptIfRunning) {
-        return false;
-    }
-
-    @Override
-    public boolean isCancelled() {
-        return false;
-    }
-
-    @Override
-    public boolean isDone() {
-        return (latch.getCount() == 0);
-    }
-
-    @Override
-    public Void get() throws InterruptedException, ExecutionException {
-        latch.await();
-
-        if (throwable != null) {
-            throw new ExecutionException(throwable);
-        }
-
-        return null;
-    }
-
-    @Override
-    public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        if (latch.await(timeout, unit) && throwable != null) {
-            throw new ExecutionException(throwable);
-        }
-
-        return null;
-    }
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface EndpointInstancePolicy {
 
     /**
-     * Sets that the task is done.
+     * Instance policy.
+     *
+     * @return instance policy.
      */
-    public void setDone() {
-        if (latch.getCount() == 1) {
-            latch.countDown();
-        }
-    }
+    Policy value() default Policy.PER_SESSION;
 
     /**
-     * Task was not finished.
+     * Maximal number of idle instances kept for reuse when {@link Policy#POOLED} is used.
      *
-     * @param thr throwable.
+     * @return pool size.
      */
-    public void setFailure(Throwable thr) {
-        if (latch.getCount() == 1) {
-            this.throwable = thr;
-            latch.countDown();
-        }
+    int poolSize() default 16;
+
+    /**
+     * Endpoint instance policies.
+     */
+    enum Policy {
+
+        /**
+         * New instance for each session (default).
+         */
+        PER_SESSION,
+
+        /**
+         * Instances of closed sessions are kept and reused for new sessions. Endpoint must not keep any session
+         * related state in its fields.
+         */
+        POOLED,
+
+        /**
+         * Single instance shared by all sessions. Endpoint methods are invoked concurrently.
+         */
+        SINGLETON
     }
-}
\ No newline at end of file
+}
@@ -174,6 +174,16 @@ public abstract class EndpointWrapper {
      */
     public abstract String getNegotiatedProtocol(List<String> clientProtocols);
 
+    /**
+     * Get information whether {@link #getNegotiatedProtocol(List)} and {@link #getNegotiatedExtensions(List)} results
+     * depend only on passed client values, so they can be cached and reused for subsequent handshakes.
+     *
+     * @return {@code true} when negotiation results can be cached, {@code false} otherwise.
+     */
+    public boolean isNegotiationCacheable() {
+        return false;
+    }
+
     /**
      * Get the endpoint's open {@link Session}s.
      *
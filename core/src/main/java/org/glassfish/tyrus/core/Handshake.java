@@ -148,10 +148,14 @@ public final class Handshake {
     }
 
     private static void validate(String header, String validValue, String value) {
+        if (value == null) {
+            throw new HandshakeException(String.format("Missing %s header", header));
+        }
+
         // http://java.net/jira/browse/TYRUS-55
         // Firefox workaround (it sends "Connections: keep-alive, upgrade").
         if (header.equalsIgnoreCase(UpgradeRequest.CONNECTION)) {
-            if (!value.toLowerCase().contains(validValue.toLowerCase())) {
+            if (!containsIgnoreCase(value, validValue)) {
                 throw new HandshakeException(String.format("Invalid %s header returned: '%s'", header, value));
             }
         } else {
@@ -161,6 +165,16 @@ public final class Handshake {
         }
     }
 
+    private static boolean containsIgnoreCase(String value, String part) {
+        for (int i = 0; i <= value.length() - part.length(); i++) {
+            if (value.regionMatches(true, i, part, 0, part.length())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private static void determineHostAndPort(Handshake handshake, UpgradeRequest request) {
         String header = request.getHeader(UpgradeRequest.HOST);
 
@@ -170,7 +184,7 @@ public final class Handshake {
             handshake.port = 80;
         } else {
             handshake.serverHostName = header.substring(0, i);
-            handshake.port = Integer.valueOf(header.substring(i + 1));
+            handshake.port = Integer.parseInt(header.substring(i + 1));
         }
     }
 
@@ -329,6 +343,7 @@ public final class Handshake {
     void respond(UpgradeResponse response, WebSocketApplication application/*, TyrusUpgradeResponse response*/) {
         response.setStatus(101);
 
+        // fresh lists, Configurator#modifyHandshake can modify them.
         response.getHeaders().put(UpgradeRequest.UPGRADE, Arrays.asList(UpgradeRequest.WEBSOCKET));
         response.getHeaders().put(UpgradeRequest.CONNECTION, Arrays.asList(UpgradeRequest.UPGRADE));
         response.setReasonPhrase(UpgradeRequest.RESPONSE_CODE_MESSAGE);
@@ -0,0 +1,416 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.CloseReason;
+
+/**
+ * Container-wide heartbeat service.
+ * <p/>
+ * Sends pings to registered sessions in configured interval, matches received pongs to measure round trip time and
+ * closes sessions which did not respond to {@link #MAX_MISSED_PONGS} consecutive pings. All sessions share a single
+ * timing wheel driven by one periodic task on the container {@link ScheduledExecutorService}, so the number of
+ * scheduled tasks does not grow with the number of sessions.
+ * <p/>
+ * Heartbeat is configured by {@link #INTERVAL} and {@link #MAX_MISSED_PONGS} which can be set as container properties
+ * (defaults for all endpoints) or as endpoint config user properties (override for particular endpoint).
+ *
+ * @see TyrusSession#getHeartbeat()
+ */
+public class HeartbeatService {
+
+    /**
+     * Heartbeat interval in milliseconds ({@link Number}). Heartbeat is disabled when not set or not positive.
+     */
+    public static final String INTERVAL = "org.glassfish.tyrus.heartbeat.interval";
+
+    /**
+     * Number of consecutive pings without pong after which the session is closed ({@link Integer}, default 3).
+     */
+    public static final String MAX_MISSED_PONGS = "org.glassfish.tyrus.heartbeat.maxMissedPongs";
+
+    /**
+     * Resolution of the timing wheel in milliseconds ({@link Number}, default 100). Container property only.
+     */
+    public static final String TICK_DURATION = "org.glassfish.tyrus.heartbeat.tickDuration";
+
+    private static final Logger LOGGER = Logger.getLogger(HeartbeatService.class.getName());
+    private static final int DEFAULT_MAX_MISSED_PONGS = 3;
+    private static final long DEFAULT_TICK_DURATION = 100;
+    private static final int WHEEL_SIZE = 512;
+
+    /**
+     * Prefix of heartbeat ping payload, followed by 8 bytes of sequence number.
+     */
+    private static final byte[] MAGIC = new byte[]{'T', 'H', 'B', 1};
+    private static final int PAYLOAD_LENGTH = MAGIC.length + 8;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final long defaultInterval;
+    private final int defaultMaxMissedPongs;
+    private final long tickDuration;
+    private final Queue<Heartbeat>[] wheel;
+    private final AtomicLong currentTick = new AtomicLong(0);
+    private final AtomicInteger registered = new AtomicInteger(0);
+    private final Object startLock = new Object();
+    private ScheduledFuture<?> tickFuture = null;
+
+    /**
+     * Create new heartbeat service.
+     *
+     * @param scheduledExecutorService executor used for driving the timing wheel.
+     * @param properties               container properties, can be {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public HeartbeatService(ScheduledExecutorService scheduledExecutorService, Map<String, Object> properties) {
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.defaultInterval = getLong(properties, INTERVAL, 0);
+        this.defaultMaxMissedPongs = (int) getLong(properties, MAX_MISSED_PONGS, DEFAULT_MAX_MISSED_PONGS);
+        final long tick = getLong(properties, TICK_DURATION, DEFAULT_TICK_DURATION);
+        this.tickDuration = tick > 0 ? tick : DEFAULT_TICK_DURATION;
+
+        this.wheel = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<Heartbeat>();
+        }
+    }
+
+    /**
+     * Start heartbeat for given session.
+     *
+     * @param session            session to be monitored.
+     * @param endpointProperties endpoint config user properties, override container defaults; can be {@code null}.
+     * @return heartbeat of the session or {@code null} when the heartbeat is not enabled.
+     */
+    Heartbeat register(TyrusSession session, Map<String, Object> endpointProperties) {
+        final long interval = getLong(endpointProperties, INTERVAL, defaultInterval);
+        if (interval <= 0) {
+            return null;
+        }
+
+        final int maxMissedPongs = (int) getLong(endpointProperties, MAX_MISSED_PONGS, defaultMaxMissedPongs);
+        final Heartbeat heartbeat = new Heartbeat(session, interval, maxMissedPongs > 0 ? maxMissedPongs : 1);
+
+        registered.incrementAndGet();
+        start();
+        schedule(heartbeat);
+        return heartbeat;
+    }
+
+    /**
+     * Get number of sessions with active heartbeat.
+     *
+     * @return number of monitored sessions.
+     */
+    public int getSessionCount() {
+        return registered.get();
+    }
+
+    private void start() {
+        synchronized (startLock) {
+            if (tickFuture == null) {
+                tickFuture = scheduledExecutorService.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        tick();
+                    }
+                }, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void schedule(Heartbeat heartbeat) {
+        final long ticks = Math.max(1, (heartbeat.interval + tickDuration - 1) / tickDuration);
+        final long deadline = currentTick.get() + ticks;
+        heartbeat.deadline = deadline;
+        wheel[(int) (deadline % WHEEL_SIZE)].add(heartbeat);
+    }
+
+    private void tick() {
+        final long tick = currentTick.incrementAndGet();
+        final Queue<Heartbeat> bucket = wheel[(int) (tick % WHEEL_SIZE)];
+
+        final List<Heartbeat> due = new ArrayList<Heartbeat>();
+        final List<Heartbeat> notYet = new ArrayList<Heartbeat>();
+        Heartbeat heartbeat;
+        while ((heartbeat = bucket.poll()) != null) {
+            if (heartbeat.cancelled) {
+                continue;
+            }
+            if (heartbeat.deadline > tick) {
+                notYet.add(heartbeat);
+            } else {
+                due.add(heartbeat);
+            }
+        }
+        bucket.addAll(notYet);
+
+        for (Heartbeat h : due) {
+            try {
+                if (h.beat()) {
+                    schedule(h);
+                }
+            } catch (Throwable t) {
+                LOGGER.log(Level.FINE, "Heartbeat failed.", t);
+            }
+        }
+    }
+
+    private static long getLong(Map<String, Object> properties, String key, long defaultValue) {
+        final Object value = properties == null ? null : properties.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value != null) {
+            LOGGER.log(Level.WARNING, String.format("Property '%s' ignored, value is expected to be a number, but was %s.", key, value));
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Heartbeat of a single session; provides round trip time statistics.
+     */
+    public class Heartbeat {
+
+        private final TyrusSession session;
+        private final long interval;
+        private final int maxMissedPongs;
+
+        private volatile boolean cancelled = false;
+        private volatile long deadline;
+
+        // guarded by this.
+        private long sequence = 0;
+        private long sentAt = 0;
+        private boolean awaitingPong = false;
+        private int missedPongs = 0;
+        private long pongCount = 0;
+        private long lastRtt = -1;
+        private long minRtt = -1;
+        private long maxRtt = -1;
+        private long totalRtt = 0;
+
+        private Heartbeat(TyrusSession session, long interval, int maxMissedPongs) {
+            this.session = session;
+            this.interval = interval;
+            this.maxMissedPongs = maxMissedPongs;
+        }
+
+        /**
+         * Send next ping or close the session when too many pongs were missed.
+         *
+         * @return {@code true} when the heartbeat should be scheduled again.
+         */
+        private boolean beat() {
+            if (cancelled || !session.isOpen()) {
+                cancel();
+                return false;
+            }
+
+            final ByteBuffer payload;
+            synchronized (this) {
+                if (awaitingPong) {
+                    missedPongs++;
+                    if (missedPongs >= maxMissedPongs) {
+                        closeSession();
+                        return false;
+                    }
+                }
+
+                sequence++;
+                sentAt = System.nanoTime();
+                awaitingPong = true;
+
+                payload = ByteBuffer.allocate(PAYLOAD_LENGTH);
+                payload.put(MAGIC).putLong(sequence).flip();
+            }
+
+            session.sendHeartbeatPing(payload);
+            return true;
+        }
+
+        private void closeSession() {
+            final int missed = missedPongs;
+            cancel();
+            scheduledExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY,
+                                String.format("No pong received for %d pings.", missed)));
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Closing session after missed heartbeat failed.", e);
+                    } catch (IllegalStateException e) {
+                        // session already closed.
+                    }
+                }
+            });
+        }
+
+        /**
+         * Process received pong.
+         *
+         * @param bytes pong payload.
+         * @return {@code true} when the pong is a response to heartbeat ping (and should not be passed to application).
+         */
+        boolean onPong(ByteBuffer bytes) {
+            if (bytes == null || bytes.remaining() != PAYLOAD_LENGTH) {
+                return false;
+            }
+
+            final int position = bytes.position();
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (bytes.get(position + i) != MAGIC[i]) {
+                    return false;
+                }
+            }
+            final long receivedSequence = bytes.getLong(position + MAGIC.length);
+            final long now = System.nanoTime();
+
+            synchronized (this) {
+                // any heartbeat pong proves the peer is alive, only the current one is used for RTT.
+                missedPongs = 0;
+                if (awaitingPong && receivedSequence == sequence) {
+                    awaitingPong = false;
+                    final long rtt = now - sentAt;
+                    lastRtt = rtt;
+                    minRtt = minRtt < 0 ? rtt : Math.min(minRtt, rtt);
+                    maxRtt = Math.max(maxRtt, rtt);
+                    totalRtt += rtt;
+                    pongCount++;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Stop the heartbeat.
+         */
+        void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                registered.decrementAndGet();
+            }
+        }
+
+        /**
+         * Get heartbeat interval.
+         *
+         * @param unit time unit of returned value.
+         * @return heartbeat interval.
+         */
+        public long getInterval(TimeUnit unit) {
+            return unit.convert(interval, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Get round trip time measured by the last answered ping.
+         *
+         * @param unit time unit of returned value.
+         * @return last round trip time or {@code -1} when no pong was received yet.
+         */
+        public synchronized long getLastRtt(TimeUnit unit) {
+            return lastRtt < 0 ? -1 : unit.convert(lastRtt, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get minimal measured round trip time.
+         *
+         * @param unit time unit of returned value.
+         * @return minimal round trip time or {@code -1} when no pong was received yet.
+         */
+        public synchronized long getMinRtt(TimeUnit unit) {
+            return minRtt < 0 ? -1 : unit.convert(minRtt, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get maximal measured round trip time.
+         *
+         * @param unit time unit of returned value.
+         * @return maximal round trip time or {@code -1} when no pong was received yet.
+         */
+        public synchronized long getMaxRtt(TimeUnit unit) {
+            return maxRtt < 0 ? -1 : unit.convert(maxRtt, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get average measured round trip time.
+         *
+         * @param unit time unit of returned value.
+         * @return average round trip time or {@code -1} when no pong was received yet.
+         */
+        public synchronized long getAverageRtt(TimeUnit unit) {
+            return pongCount == 0 ? -1 : unit.convert(totalRtt / pongCount, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get number of received heartbeat pongs used for round trip time measurement.
+         *
+         * @return number of received pongs.
+         */
+        public synchronized long getPongCount() {
+            return pongCount;
+        }
+
+        /**
+         * Get number of consecutive pings which were not answered.
+         *
+         * @return number of missed pongs.
+         */
+        public synchronized int getMissedPongs() {
+            return missedPongs;
+        }
+    }
+}
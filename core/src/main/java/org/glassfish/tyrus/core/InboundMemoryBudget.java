@@ -0,0 +1,242 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.tyrus.spi.Writer;
+
+/**
+ * Memory budget for inbound data shared by all connections of a container.
+ * <p/>
+ * Each connection reserves space for data it keeps between reads - incomplete frames and partially received messages
+ * buffered for {@link javax.websocket.MessageHandler.Whole} handlers. When the reservations exceed the limit, reading
+ * from connections which need more space is {@link Writer#pauseReading() paused} until other connections release
+ * their reservations, so a burst of big messages slows the senders down instead of exhausting the heap.
+ * <p/>
+ * One connection at a time is allowed to exceed the limit, so at least one incomplete message can always be
+ * completed; the per-connection limits ({@code incomingBufferSize}, {@code maxTextMessageBufferSize},
+ * {@code maxBinaryMessageBufferSize}) still apply. Connections whose transport does not support pausing are
+ * accounted for, but never paused.
+ *
+ * @see TyrusWebSocketEngine#INBOUND_MEMORY_BUDGET
+ */
+public class InboundMemoryBudget {
+
+    private static final Logger LOGGER = Logger.getLogger(InboundMemoryBudget.class.getName());
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong(0);
+    private final AtomicReference<Reservation> overdraft = new AtomicReference<Reservation>();
+    private final Queue<Reservation> paused = new ConcurrentLinkedQueue<Reservation>();
+    private final AtomicBoolean pauseUnsupportedLogged = new AtomicBoolean(false);
+
+    /**
+     * Create budget.
+     *
+     * @param limit maximal number of bytes reserved by all connections.
+     */
+    public InboundMemoryBudget(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Get maximal number of bytes reserved by all connections.
+     *
+     * @return limit in bytes.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get number of bytes currently reserved by all connections.
+     *
+     * @return reserved bytes.
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * Get number of connections with paused reading.
+     *
+     * @return paused connection count.
+     */
+    public int getPausedCount() {
+        return paused.size();
+    }
+
+    /**
+     * Create reservation for a new connection.
+     *
+     * @param writer writer of the connection, used for pausing and resuming reading.
+     * @return new reservation.
+     */
+    Reservation newReservation(Writer writer) {
+        return new Reservation(writer);
+    }
+
+    private void pause(Reservation reservation) {
+        if (!reservation.writer.pauseReading()) {
+            if (pauseUnsupportedLogged.compareAndSet(false, true)) {
+                LOGGER.log(Level.CONFIG, String.format(
+                        "Transport writer %s does not support pausing reading; inbound memory budget cannot be enforced.",
+                        reservation.writer.getClass().getName()));
+            }
+            return;
+        }
+
+        paused.add(reservation);
+
+        // budget might have been released before the reservation was added to the queue.
+        if (canResume()) {
+            resumePaused();
+        }
+    }
+
+    private boolean canResume() {
+        return used.get() <= limit || overdraft.get() == null;
+    }
+
+    private void resumePaused() {
+        Reservation reservation;
+        while ((reservation = paused.poll()) != null) {
+            reservation.writer.resumeReading();
+
+            // over the limit only the overdraft is free; it is handed to the next connection only.
+            if (used.get() > limit) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reservation of a single connection.
+     * <p/>
+     * Sizes are set by the thread reading from the connection and applied to the budget by {@link #commit()}, which
+     * is called when the thread finishes processing of the data passed by the transport.
+     */
+    final class Reservation {
+
+        private final Writer writer;
+
+        // guarded by this
+        private long frameBytes = 0;
+        private long messageBytes = 0;
+        private long reserved = 0;
+        private boolean released = false;
+
+        private Reservation(Writer writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Set size of retained incomplete frame data.
+         *
+         * @param frameBytes size in bytes.
+         */
+        synchronized void setFrameBytes(long frameBytes) {
+            this.frameBytes = frameBytes;
+        }
+
+        /**
+         * Set size of buffered partially received message.
+         *
+         * @param messageBytes size in bytes.
+         */
+        synchronized void setMessageBytes(long messageBytes) {
+            this.messageBytes = messageBytes;
+        }
+
+        /**
+         * Apply sizes set since the last call to the budget and pause reading when the budget is exhausted.
+         */
+        void commit() {
+            final boolean pause;
+
+            synchronized (this) {
+                final long total = released ? 0 : frameBytes + messageBytes;
+                final long delta = total - reserved;
+                reserved = total;
+
+                final long nowUsed = delta == 0 ? used.get() : used.addAndGet(delta);
+
+                // shrinking reservation has completed a message (or the connection was closed), so the overdraft
+                // is handed back to let another connection complete its message.
+                if (delta < 0 || total == 0) {
+                    overdraft.compareAndSet(this, null);
+                }
+
+                pause = delta > 0 && nowUsed > limit
+                        && overdraft.get() != this && !overdraft.compareAndSet(null, this);
+            }
+
+            if (pause) {
+                pause(this);
+            } else if (!paused.isEmpty() && canResume()) {
+                resumePaused();
+            }
+        }
+
+        /**
+         * Release all space reserved by the connection, called when the connection is closed.
+         */
+        void release() {
+            synchronized (this) {
+                released = true;
+            }
+            // suspended read has to be resumed, so that the transport can finish closing of the connection.
+            if (paused.remove(this)) {
+                writer.resumeReading();
+            }
+            commit();
+        }
+    }
+}
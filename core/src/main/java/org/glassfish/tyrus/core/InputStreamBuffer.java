@@ -44,7 +44,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -67,7 +67,7 @@ class InputStreamBuffer {
     private final Condition condition = lock.newCondition();
 
     private final List<ByteBuffer> bufferedFragments = new ArrayList<ByteBuffer>();
-    private final ExecutorService executorService;
+    private final Executor executor;
 
     private static final Logger LOGGER = Logger.getLogger(InputStreamBuffer.class.getName());
 
@@ -80,8 +80,8 @@ class InputStreamBuffer {
     /**
      * Constructor.
      */
-    public InputStreamBuffer(ExecutorService executorService) {
-        this.executorService = executorService;
+    public InputStreamBuffer(Executor executor) {
+        this.executor = executor;
         currentlyBuffered = 0;
     }
 
@@ -165,7 +165,7 @@ class InputStreamBuffer {
 
         if (this.inputStream == null) {
             this.inputStream = new BufferedInputStream(this);
-            executorService.execute(new Runnable() {
+            executor.execute(new Runnable() {
                 @Override
                 public void run() {
                     messageHandler.onMessage(inputStream);
@@ -0,0 +1,149 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process {@link BroadcastBus}.
+ * <p/>
+ * All buses created with the same {@link Group} are peers of each other; batches are passed directly to the
+ * receiving bus. Intended for running several containers in one JVM, for example in tests:
+ * <pre>
+ * final LoopbackBroadcastBus.Group group = new LoopbackBroadcastBus.Group();
+ * engineA.setBroadcastBus(new LoopbackBroadcastBus(group, "a"));
+ * engineB.setBroadcastBus(new LoopbackBroadcastBus(group, "b"));
+ * </pre>
+ */
+public class LoopbackBroadcastBus extends BroadcastBus {
+
+    private final Group group;
+    private final String nodeId;
+
+    /**
+     * Create bus with default maximal batch size.
+     *
+     * @param group  group of peers.
+     * @param nodeId identifier of this node, unique within the group.
+     */
+    public LoopbackBroadcastBus(Group group, String nodeId) {
+        this(group, nodeId, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Create bus.
+     *
+     * @param group        group of peers.
+     * @param nodeId       identifier of this node, unique within the group.
+     * @param maxBatchSize maximal number of messages sent to a peer at once.
+     */
+    public LoopbackBroadcastBus(Group group, String nodeId, int maxBatchSize) {
+        this(group, nodeId, maxBatchSize, DEFAULT_MAX_QUEUE_SIZE, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Create bus.
+     *
+     * @param group          group of peers.
+     * @param nodeId         identifier of this node, unique within the group.
+     * @param maxBatchSize   maximal number of messages sent to a peer at once.
+     * @param maxQueueSize   maximal number of messages queued for a peer.
+     * @param overflowPolicy what to do when a message is published to a peer with full queue.
+     */
+    public LoopbackBroadcastBus(Group group, String nodeId, int maxBatchSize, int maxQueueSize,
+                                OverflowPolicy overflowPolicy) {
+        super(maxBatchSize, maxQueueSize, overflowPolicy);
+        this.group = group;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Get identifier of this node.
+     *
+     * @return node identifier.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    protected void onStart() {
+        if (group.members.putIfAbsent(nodeId, this) != null) {
+            throw new IllegalStateException(String.format("Node '%s' is already a member of the group.", nodeId));
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        group.members.remove(nodeId, this);
+    }
+
+    @Override
+    protected Collection<String> getPeers() {
+        final List<String> peers = new ArrayList<String>(group.members.size());
+        for (String member : group.members.keySet()) {
+            if (!member.equals(nodeId)) {
+                peers.add(member);
+            }
+        }
+        return peers;
+    }
+
+    @Override
+    protected void send(String peer, List<Message> batch) {
+        final LoopbackBroadcastBus target = group.members.get(peer);
+        if (target == null) {
+            removePeer(peer);
+        } else {
+            target.receive(batch);
+        }
+    }
+
+    /**
+     * Group of {@link LoopbackBroadcastBus buses} which are peers of each other.
+     */
+    public static class Group {
+        private final ConcurrentMap<String, LoopbackBroadcastBus> members = new ConcurrentHashMap<String, LoopbackBroadcastBus>();
+    }
+}
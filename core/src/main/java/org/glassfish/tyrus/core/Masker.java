@@ -83,11 +83,26 @@ class Masker {
     }
 
     public void mask(byte[] target, int location, byte[] bytes) {
+        if (bytes != null) {
+            mask(target, location, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Mask part of given array and store the result into target array.
+     *
+     * @param target   target array.
+     * @param location position in target array where the masked data will be stored.
+     * @param bytes    source array.
+     * @param offset   offset in source array.
+     * @param length   number of bytes to be masked.
+     */
+    void mask(byte[] target, int location, byte[] bytes, int offset, int length) {
         if (bytes != null && target != null) {
-            for (int i = 0; i < bytes.length; i++) {
+            for (int i = 0; i < length; i++) {
                 target[location + i] = mask == null
-                        ? bytes[i]
-                        : (byte) (bytes[i] ^ mask[index++ % ProtocolHandler.MASK_SIZE]);
+                        ? bytes[offset + i]
+                        : (byte) (bytes[offset + i] ^ mask[index++ % ProtocolHandler.MASK_SIZE]);
             }
         }
     }
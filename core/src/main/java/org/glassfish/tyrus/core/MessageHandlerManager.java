@@ -107,7 +107,19 @@ class MessageHandlerManager {
      * @param decoders registered {@link Decoder}s.
      */
     static MessageHandlerManager fromDecoderInstances(List<Decoder> decoders) {
-        List<Class<? extends Decoder>> decoderList = new ArrayList<Class<? extends Decoder>>();
+        return new MessageHandlerManager(getDecoderClasses(decoders));
+    }
+
+    /**
+     * Get classes of given {@link Decoder}s.
+     * <p/>
+     * Result can be shared by managers of all sessions of one endpoint.
+     *
+     * @param decoders {@link Decoder} instances or {@link CoderWrapper}s.
+     * @return unmodifiable list of decoder classes.
+     */
+    static List<Class<? extends Decoder>> getDecoderClasses(List<Decoder> decoders) {
+        List<Class<? extends Decoder>> decoderList = new ArrayList<Class<? extends Decoder>>(decoders.size());
         for (Decoder decoder : decoders) {
             if (decoder instanceof CoderWrapper) {
                 decoderList.add(((CoderWrapper<? extends Decoder>) decoder).getCoderClass());
@@ -116,7 +128,7 @@ class MessageHandlerManager {
             }
         }
 
-        return new MessageHandlerManager(decoderList);
+        return Collections.unmodifiableList(decoderList);
     }
 
     /**
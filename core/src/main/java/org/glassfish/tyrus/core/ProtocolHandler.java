@@ -48,12 +48,16 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.websocket.CloseReason;
 import javax.websocket.SendHandler;
@@ -76,22 +80,37 @@ public final class ProtocolHandler {
 
     public static final int MASK_SIZE = 4;
 
-    private final Charset utf8 = new StrictUtf8();
-    private final CharsetDecoder currentDecoder = utf8.newDecoder();
-    private final AtomicBoolean onClosedCalled = new AtomicBoolean(false);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final AtomicIntegerFieldUpdater<ProtocolHandler> ON_CLOSED_CALLED =
+            AtomicIntegerFieldUpdater.newUpdater(ProtocolHandler.class, "onClosedCalled");
+    private static final AtomicIntegerFieldUpdater<ProtocolHandler> DRAINING =
+            AtomicIntegerFieldUpdater.newUpdater(ProtocolHandler.class, "draining");
+    private static final AtomicReferenceFieldUpdater<ProtocolHandler, Queue> OUTBOUND_QUEUE =
+            AtomicReferenceFieldUpdater.newUpdater(ProtocolHandler.class, Queue.class, "outboundQueue");
+
     private final boolean maskData;
-    private final ParsingState state = new ParsingState();
+    // created lazily, idle connections do not need them.
+    private CharsetDecoder currentDecoder;
+    private ParsingState state;
+    private volatile int onClosedCalled = 0;
     private WebSocket webSocket;
     private byte outFragmentedType;
     private ByteBuffer remainder;
     private long writeTimeoutMs = -1;
     private WebSocketContainer container;
+    private volatile boolean trustedPeer = false;
+    private volatile int maxFrameSize = 0;
+    // used only when fragmentation is enabled, created lazily.
+    private volatile Queue<PendingWrite> outboundQueue;
+    private volatile int draining = 0;
+    private volatile InboundMemoryBudget.Reservation inboundReservation;
 
     public Writer getWriter() {
         return writer;
     }
 
-    private Writer writer;
+    private volatile Writer writer;
+    private volatile Writer.WritabilityListener writabilityListener;
     private byte inFragmentedType;
     private boolean processingFragment;
 
@@ -107,6 +126,85 @@ public final class ProtocolHandler {
 
     public void setWriter(Writer handler) {
         this.writer = handler;
+        if (handler != null && writabilityListener != null) {
+            handler.setWritabilityListener(writabilityListener);
+        }
+    }
+
+    /**
+     * Get writability of underlying {@link Writer}.
+     *
+     * @return {@code true} when the writer is writable or not set yet.
+     * @see Writer#isWritable()
+     */
+    boolean isWritable() {
+        final Writer localWriter = writer;
+        return localWriter == null || localWriter.isWritable();
+    }
+
+    /**
+     * Set {@link Writer.WritabilityListener} on current and future {@link Writer}.
+     *
+     * @param writabilityListener listener to be set.
+     */
+    void setWritabilityListener(Writer.WritabilityListener writabilityListener) {
+        this.writabilityListener = writabilityListener;
+        final Writer localWriter = writer;
+        if (localWriter != null) {
+            localWriter.setWritabilityListener(writabilityListener);
+        }
+    }
+
+    /**
+     * Account inbound data retained by this connection in given budget. Has to be called after
+     * {@link #setWriter(Writer)}, the writer is used for pausing reading when the budget is exhausted.
+     *
+     * @param inboundMemoryBudget budget shared by connections, {@code null} disables accounting.
+     */
+    public void setInboundMemoryBudget(InboundMemoryBudget inboundMemoryBudget) {
+        final InboundMemoryBudget.Reservation previous = inboundReservation;
+        inboundReservation = inboundMemoryBudget == null ? null : inboundMemoryBudget.newReservation(writer);
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * Called by the read handler when it finished processing of the data passed by the transport; applies changes of
+     * retained inbound data to the {@link #setInboundMemoryBudget(InboundMemoryBudget) budget}, which may pause
+     * reading.
+     *
+     * @param retainedBytes number of bytes retained by the read handler for the next read (incomplete frame).
+     */
+    public void onReadProcessed(int retainedBytes) {
+        final InboundMemoryBudget.Reservation reservation = inboundReservation;
+        if (reservation != null) {
+            reservation.setFrameBytes(retainedBytes);
+            reservation.commit();
+        }
+    }
+
+    /**
+     * Set size of partially received message buffered by the session; applied to the budget by
+     * {@link #onReadProcessed(int)}.
+     *
+     * @param bufferedBytes buffered size in bytes.
+     */
+    void setBufferedMessageSize(long bufferedBytes) {
+        final InboundMemoryBudget.Reservation reservation = inboundReservation;
+        if (reservation != null) {
+            reservation.setMessageBytes(bufferedBytes);
+        }
+    }
+
+    /**
+     * Release all inbound data reserved by this connection, called when the connection is closed.
+     */
+    void releaseInboundReservation() {
+        final InboundMemoryBudget.Reservation reservation = inboundReservation;
+        if (reservation != null) {
+            reservation.release();
+        }
     }
 
     public void setWebSocket(WebSocket webSocket) {
@@ -133,73 +231,96 @@ public final class ProtocolHandler {
         return Handshake.createClientHandShake(webSocketRequest);
     }
 
-    public final Future<DataFrame> send(DataFrame frame, boolean useTimeout) {
+    public final Future<Void> send(DataFrame frame, boolean useTimeout) {
         return send(frame, null, useTimeout);
     }
 
-    public final Future<DataFrame> send(DataFrame frame) {
+    public final Future<Void> send(DataFrame frame) {
         return send(frame, null, true);
     }
 
-    Future<DataFrame> send(DataFrame frame,
+    /**
+     * Send a frame.
+     * <p/>
+     * Returned future completes with {@code null} result, only the completion state is relevant.
+     *
+     * @param frame             frame to be sent.
+     * @param completionHandler handler to be notified about the write, can be {@code null}.
+     * @param useTimeout        whether the write timeout should be applied.
+     * @return future completed when the frame is written.
+     */
+    Future<Void> send(DataFrame frame,
                            CompletionHandler<DataFrame> completionHandler, Boolean useTimeout) {
-        return write(frame, completionHandler, useTimeout);
+        final TyrusFuture<Void> future = new TyrusFuture<Void>();
+        write(frame, new CompletionHandlerWrapper(completionHandler, null, future, frame), useTimeout);
+        return future;
     }
 
-    Future<DataFrame> send(ByteBuffer frame,
+    Future<Void> send(ByteBuffer frame,
                            CompletionHandler<DataFrame> completionHandler, Boolean useTimeout) {
-        return write(frame, completionHandler, useTimeout);
+        final TyrusFuture<Void> future = new TyrusFuture<Void>();
+        write(frame, new CompletionHandlerWrapper(completionHandler, null, future, null), useTimeout);
+        return future;
     }
 
-    public Future<DataFrame> send(byte[] data) {
+    public Future<Void> send(byte[] data) {
         return send(new DataFrame(new BinaryFrame(), data), null, true);
     }
 
     public void send(final byte[] data, final SendHandler handler) {
-        send(new DataFrame(new BinaryFrame(), data), new CompletionHandler<DataFrame>() {
-            @Override
-            public void failed(Throwable throwable) {
-                handler.onResult(new SendResult(throwable));
-            }
+        final DataFrame frame = new DataFrame(new BinaryFrame(), data);
+        write(frame, new CompletionHandlerWrapper(null, handler, null, frame), true);
+    }
 
-            @Override
-            public void completed(DataFrame result) {
-                handler.onResult(new SendResult());
-            }
-        }, true);
+    /**
+     * Send binary message.
+     * <p/>
+     * Payload is copied directly from the given buffer to the outgoing frame (or frames when the message is
+     * fragmented), position of the buffer is not changed. The buffer must not be modified until the message is
+     * written.
+     *
+     * @param data message payload, bytes between position and limit are sent.
+     * @return future completed when the message is written.
+     */
+    public Future<Void> sendBinary(ByteBuffer data) {
+        final TyrusFuture<Void> future = new TyrusFuture<Void>();
+        writeBinary(data, new CompletionHandlerWrapper(null, null, future, null));
+        return future;
+    }
+
+    /**
+     * Send binary message.
+     *
+     * @param data    message payload, bytes between position and limit are sent.
+     * @param handler notified when the message is written.
+     * @see #sendBinary(ByteBuffer)
+     */
+    public void sendBinary(ByteBuffer data, SendHandler handler) {
+        writeBinary(data, new CompletionHandlerWrapper(null, handler, null, null));
     }
 
-    public Future<DataFrame> send(String data) {
+    public Future<Void> send(String data) {
         return send(new DataFrame(new TextFrame(), data));
     }
 
     public void send(final String data, final SendHandler handler) {
-        send(new DataFrame(new TextFrame(), data), new CompletionHandler<DataFrame>() {
-            @Override
-            public void failed(Throwable throwable) {
-                handler.onResult(new SendResult(throwable));
-            }
-
-            @Override
-            public void completed(DataFrame result) {
-                handler.onResult(new SendResult());
-            }
-        }, true);
+        final DataFrame frame = new DataFrame(new TextFrame(), data);
+        write(frame, new CompletionHandlerWrapper(null, handler, null, frame), true);
     }
 
-    public Future<DataFrame> sendRawFrame(ByteBuffer data) {
+    public Future<Void> sendRawFrame(ByteBuffer data) {
         return send(data, null, true);
     }
 
-    public Future<DataFrame> stream(boolean last, byte[] bytes, int off, int len) {
+    public Future<Void> stream(boolean last, byte[] bytes, int off, int len) {
         return send(new DataFrame(new BinaryFrame(), Arrays.copyOfRange(bytes, off, off + len), last));
     }
 
-    public Future<DataFrame> stream(boolean last, String fragment) {
+    public Future<Void> stream(boolean last, String fragment) {
         return send(new DataFrame(new TextFrame(), fragment, last));
     }
 
-    public Future<DataFrame> close(final int code, final String reason) {
+    public Future<Void> close(final int code, final String reason) {
         final ClosingDataFrame outgoingClosingFrame;
         final CloseReason closeReason = new CloseReason(CloseReason.CloseCodes.getCloseCode(code), reason);
 
@@ -214,36 +335,41 @@ public final class ProtocolHandler {
 
             @Override
             public void cancelled() {
-                if (webSocket != null && !onClosedCalled.getAndSet(true)) {
+                if (webSocket != null && ON_CLOSED_CALLED.getAndSet(ProtocolHandler.this, 1) == 0) {
                     webSocket.onClose(closeReason);
                 }
             }
 
             @Override
             public void failed(final Throwable throwable) {
-                if (webSocket != null && !onClosedCalled.getAndSet(true)) {
+                if (webSocket != null && ON_CLOSED_CALLED.getAndSet(ProtocolHandler.this, 1) == 0) {
                     webSocket.onClose(closeReason);
                 }
             }
 
             @Override
             public void completed(DataFrame result) {
-                if (!maskData && (webSocket != null) && !onClosedCalled.getAndSet(true)) {
+                if (!maskData && (webSocket != null) && ON_CLOSED_CALLED.getAndSet(ProtocolHandler.this, 1) == 0) {
                     webSocket.onClose(closeReason);
                 }
             }
         }, false);
     }
 
-    @SuppressWarnings({"unchecked"})
-    private Future<DataFrame> write(final DataFrame frame, final CompletionHandler<DataFrame> completionHandler, boolean useTimeout) {
+    private void write(final DataFrame frame, final CompletionHandlerWrapper completionHandler, boolean useTimeout) {
         final Writer localWriter = writer;
-        final TyrusFuture<DataFrame> future = new TyrusFuture<DataFrame>();
 
         if (localWriter == null) {
             throw new IllegalStateException("Connection is null");
         }
 
+        if (maxFrameSize > 0 && !isControlFrame(getOpcode(frame.getType()))) {
+            final byte opcode = checkForLastFrame(frame, getOpcode(frame.getType()));
+            final byte[] bytes = frame.getType().getBytes(frame);
+            enqueue(new PendingWrite(localWriter, opcode, ByteBuffer.wrap(bytes), null, completionHandler));
+            return;
+        }
+
 //        if (useTimeout && writeTimeoutMs > 0 && container instanceof ExecutorServiceProvider) {
 //            ExecutorService executor = ((ExecutorServiceProvider) container).getExecutorService();
 //            try {
@@ -252,7 +378,7 @@ public final class ProtocolHandler {
 //                    @Override
 //                    public void run() {
         final ByteBuffer byteBuffer = frame(frame);
-        localWriter.write(byteBuffer, new CompletionHandlerWrapper(completionHandler, future, frame));
+        localWriter.write(byteBuffer, completionHandler);
 //                    }
 //                }).get(writeTimeoutMs, TimeUnit.MILLISECONDS);
 //            } catch (InterruptedException e) {
@@ -264,21 +390,40 @@ public final class ProtocolHandler {
 //            }
 //        } else {
 //            final ByteBuffer byteBuffer = frame(frame);
-//            localWriter.write(byteBuffer, new CompletionHandlerWrapper(completionHandler, future, frame));
+//            localWriter.write(byteBuffer, completionHandler);
 //        }
+    }
 
-        return future;
+    private void writeBinary(final ByteBuffer data, final CompletionHandlerWrapper completionHandler) {
+        final Writer localWriter = writer;
+
+        if (localWriter == null) {
+            throw new IllegalStateException("Connection is null");
+        }
+
+        final byte opcode = checkForLastFrame(true, getOpcode(new BinaryFrame()));
+        // caller's position is not changed.
+        final ByteBuffer payload = data.duplicate();
+
+        if (maxFrameSize > 0) {
+            enqueue(new PendingWrite(localWriter, opcode, payload, null, completionHandler));
+            return;
+        }
+
+        localWriter.write(frame(opcode, payload, payload.remaining()), completionHandler);
     }
 
-    @SuppressWarnings({"unchecked"})
-    private Future<DataFrame> write(final ByteBuffer frame, final CompletionHandler<DataFrame> completionHandler, boolean useTimeout) {
+    private void write(final ByteBuffer frame, final CompletionHandlerWrapper completionHandler, boolean useTimeout) {
         final Writer localWriter = writer;
-        final TyrusFuture<DataFrame> future = new TyrusFuture<DataFrame>();
 
         if (localWriter == null) {
             throw new IllegalStateException("Connection is null");
         }
 
+        if (maxFrameSize > 0 && frame.hasRemaining() && !isControlFrame((byte) (frame.get(frame.position()) & 0x0F))) {
+            enqueue(new PendingWrite(localWriter, (byte) 0, null, frame, completionHandler));
+            return;
+        }
 
         if (useTimeout && writeTimeoutMs > 0 && container instanceof ExecutorServiceProvider) {
             ExecutorService executor = ((ExecutorServiceProvider) container).getExecutorService();
@@ -287,21 +432,64 @@ public final class ProtocolHandler {
 
                     @Override
                     public void run() {
-                        localWriter.write(frame, new CompletionHandlerWrapper(completionHandler, future, null));
+                        localWriter.write(frame, completionHandler);
                     }
                 }).get(writeTimeoutMs, TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
-                future.setFailure(e);
+                completionHandler.setFutureFailure(e);
             } catch (ExecutionException e) {
-                future.setFailure(e);
+                completionHandler.setFutureFailure(e);
             } catch (TimeoutException e) {
-                future.setFailure(e);
+                completionHandler.setFutureFailure(e);
             }
         } else {
-            localWriter.write(frame, new CompletionHandlerWrapper(completionHandler, future, null));
+            localWriter.write(frame, completionHandler);
         }
+    }
 
-        return future;
+    /**
+     * Add data frame to the outbound queue and write it as soon as all previously queued frames are written.
+     * <p/>
+     * Used only when fragmentation of outgoing messages is enabled; data frames must not be interleaved with fragments
+     * of other message, control frames bypass the queue.
+     *
+     * @param pendingWrite frame to be written.
+     */
+    private void enqueue(PendingWrite pendingWrite) {
+        Queue<PendingWrite> queue = outboundQueue;
+        if (queue == null) {
+            OUTBOUND_QUEUE.compareAndSet(this, null, new ConcurrentLinkedQueue<PendingWrite>());
+            queue = outboundQueue;
+        }
+        queue.add(pendingWrite);
+        drainOutboundQueue();
+    }
+
+    private void drainOutboundQueue() {
+        final Queue<PendingWrite> queue = outboundQueue;
+        if (queue == null) {
+            return;
+        }
+
+        while (DRAINING.compareAndSet(this, 0, 1)) {
+            PendingWrite pendingWrite;
+            while ((pendingWrite = queue.poll()) != null) {
+                if (!pendingWrite.write()) {
+                    // fragmented message is still being written; draining will be resumed once it is done.
+                    return;
+                }
+            }
+            draining = 0;
+
+            if (queue.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void resumeDraining() {
+        draining = 0;
+        drainOutboundQueue();
     }
 
     public DataFrame unframe(ByteBuffer buffer) {
@@ -354,8 +542,12 @@ public final class ProtocolHandler {
     }
 
     byte checkForLastFrame(DataFrame frame, byte opcode) {
+        return checkForLastFrame(frame.isLast(), opcode);
+    }
+
+    private byte checkForLastFrame(boolean last, byte opcode) {
         byte local = opcode;
-        if (!frame.isLast()) {
+        if (!last) {
             validate(outFragmentedType, local);
             if (outFragmentedType != 0) {
                 local = 0x00;
@@ -386,6 +578,17 @@ public final class ProtocolHandler {
     }
 
     void utf8Decode(boolean finalFragment, byte[] data, DataFrame dataFrame) {
+        if (trustedPeer && finalFragment && remainder == null) {
+            // payload was produced by trusted peer from a String, no need to validate and re-encode it.
+            dataFrame.setPayload(new String(data, UTF8));
+            dataFrame.setPayload(data);
+            return;
+        }
+
+        if (currentDecoder == null) {
+            currentDecoder = StrictUtf8.INSTANCE.newDecoder();
+        }
+
         final ByteBuffer b = getByteBuffer(data);
         int n = (int) (b.remaining() * currentDecoder.averageCharsPerByte());
         CharBuffer cb = CharBuffer.allocate(n);
@@ -406,7 +609,7 @@ public final class ProtocolHandler {
                 cb.flip();
                 String res = cb.toString();
                 dataFrame.setPayload(res);
-                dataFrame.setPayload(Utf8Utils.encode(new StrictUtf8(), res));
+                dataFrame.setPayload(Utf8Utils.encode(StrictUtf8.INSTANCE, res));
                 break;
             }
             if (result.isOverflow()) {
@@ -445,6 +648,31 @@ public final class ProtocolHandler {
         this.writeTimeoutMs = timeoutMs;
     }
 
+    /**
+     * Set whether the remote peer is trusted (typically when both peers run in the same JVM).
+     * <p/>
+     * Outgoing frames are not masked and complete incoming text messages are decoded without strict UTF-8 validation
+     * when the peer is trusted. Must not be used for connections going over the network.
+     *
+     * @param trustedPeer {@code true} when the peer is trusted.
+     */
+    public void setTrustedPeer(boolean trustedPeer) {
+        this.trustedPeer = trustedPeer;
+    }
+
+    /**
+     * Set maximal payload size of outgoing data frames.
+     * <p/>
+     * Complete text and binary messages with bigger payload are split into continuation frames not bigger than given
+     * size. Control frames (ping, pong, close) can be sent between fragments, other messages are queued until
+     * the fragmented message is written.
+     *
+     * @param maxFrameSize maximal payload size in bytes, {@code 0} or less disables fragmentation.
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
     /**
      * Sets the container.
      *
@@ -457,26 +685,46 @@ public final class ProtocolHandler {
     public ByteBuffer frame(DataFrame frame) {
         byte opcode = checkForLastFrame(frame, getOpcode(frame.getType()));
         final byte[] bytes = frame.getType().getBytes(frame);
-        final byte[] lengthBytes = encodeLength(bytes.length);
+        return frame(opcode, bytes, 0, bytes.length);
+    }
+
+    private ByteBuffer frame(byte opcode, byte[] bytes, int offset, int payloadLength) {
+        return frame(opcode, ByteBuffer.wrap(bytes, offset, payloadLength), payloadLength);
+    }
 
-        int length = 1 + lengthBytes.length + bytes.length + (maskData ? MASK_SIZE : 0);
-        int payloadStart = 1 + lengthBytes.length + (maskData ? MASK_SIZE : 0);
+    /**
+     * Create frame containing next {@code payloadLength} bytes of the payload buffer.
+     *
+     * @param opcode        first byte of the frame (opcode and FIN bit).
+     * @param payload       payload source, position is advanced by {@code payloadLength}.
+     * @param payloadLength number of payload bytes.
+     * @return frame ready to be written.
+     */
+    private ByteBuffer frame(byte opcode, ByteBuffer payload, int payloadLength) {
+        final byte[] lengthBytes = encodeLength(payloadLength);
+
+        final boolean mask = maskData && !trustedPeer;
+        int length = 1 + lengthBytes.length + payloadLength + (mask ? MASK_SIZE : 0);
+        int payloadStart = 1 + lengthBytes.length + (mask ? MASK_SIZE : 0);
         final byte[] packet = new byte[length];
         packet[0] = opcode;
         System.arraycopy(lengthBytes, 0, packet, 1, lengthBytes.length);
-        if (maskData) {
+        payload.get(packet, payloadStart, payloadLength);
+        if (mask) {
             Masker masker = new Masker();
             packet[1] |= 0x80;
-            masker.mask(packet, payloadStart, bytes);
+            // masked in place.
+            masker.mask(packet, payloadStart, packet, payloadStart, payloadLength);
             System.arraycopy(masker.getMask(), 0, packet, payloadStart - MASK_SIZE,
                     MASK_SIZE);
-        } else {
-            System.arraycopy(bytes, 0, packet, payloadStart, bytes.length);
         }
         return ByteBuffer.wrap(packet);
     }
 
     DataFrame parse(ByteBuffer buffer) {
+        if (state == null) {
+            state = new ParsingState();
+        }
 
         try {
             // this do { .. } while cycle was forced by findbugs check - complained about missing break statements.
@@ -654,15 +902,24 @@ public final class ProtocolHandler {
 
     /**
      * Handler passed to the {@link org.glassfish.tyrus.spi.Writer}.
+     * <p/>
+     * The only per-write object besides the frame itself; notifies the frame {@link CompletionHandler}, the
+     * {@link SendHandler} (with shared {@link SendResult} instance in case of success) and the {@link TyrusFuture},
+     * whichever of them are present.
      */
     private static class CompletionHandlerWrapper extends CompletionHandler<ByteBuffer> {
 
+        private static final SendResult SEND_RESULT_OK = new SendResult();
+
         private final CompletionHandler<DataFrame> frameCompletionHandler;
-        private final TyrusFuture<DataFrame> future;
+        private final SendHandler sendHandler;
+        private final TyrusFuture<Void> future;
         private final DataFrame frame;
 
-        private CompletionHandlerWrapper(CompletionHandler<DataFrame> frameCompletionHandler, TyrusFuture<DataFrame> future, DataFrame frame) {
+        private CompletionHandlerWrapper(CompletionHandler<DataFrame> frameCompletionHandler, SendHandler sendHandler,
+                                         TyrusFuture<Void> future, DataFrame frame) {
             this.frameCompletionHandler = frameCompletionHandler;
+            this.sendHandler = sendHandler;
             this.future = future;
             this.frame = frame;
         }
@@ -673,8 +930,12 @@ public final class ProtocolHandler {
                 frameCompletionHandler.cancelled();
             }
 
-            if (future != null) {
-                future.setFailure(new RuntimeException("Frame writing was canceled."));
+            if (sendHandler != null || future != null) {
+                final RuntimeException exception = new RuntimeException("Frame writing was canceled.");
+                if (sendHandler != null) {
+                    sendHandler.onResult(new SendResult(exception));
+                }
+                setFutureFailure(exception);
             }
         }
 
@@ -684,9 +945,11 @@ public final class ProtocolHandler {
                 frameCompletionHandler.failed(throwable);
             }
 
-            if (future != null) {
-                future.setFailure(throwable);
+            if (sendHandler != null) {
+                sendHandler.onResult(new SendResult(throwable));
             }
+
+            setFutureFailure(throwable);
         }
 
         @Override
@@ -695,8 +958,18 @@ public final class ProtocolHandler {
                 frameCompletionHandler.completed(frame);
             }
 
+            if (sendHandler != null) {
+                sendHandler.onResult(SEND_RESULT_OK);
+            }
+
             if (future != null) {
-                future.setResult(frame);
+                future.setResult(null);
+            }
+        }
+
+        void setFutureFailure(Throwable throwable) {
+            if (future != null) {
+                future.setFailure(throwable);
             }
         }
 
@@ -708,6 +981,142 @@ public final class ProtocolHandler {
         }
     }
 
+    /**
+     * Data frame waiting in the outbound queue.
+     */
+    private final class PendingWrite {
+
+        private final Writer writer;
+        private final byte opcode;
+        private final ByteBuffer payload;
+        private final ByteBuffer rawFrame;
+        private final CompletionHandlerWrapper completionHandler;
+
+        private PendingWrite(Writer writer, byte opcode, ByteBuffer payload, ByteBuffer rawFrame,
+                             CompletionHandlerWrapper completionHandler) {
+            this.writer = writer;
+            this.opcode = opcode;
+            this.payload = payload;
+            this.rawFrame = rawFrame;
+            this.completionHandler = completionHandler;
+        }
+
+        /**
+         * Pass the frame to the {@link Writer}.
+         *
+         * @return {@code false} when the frame is being written as a fragmented message which is not finished yet.
+         */
+        boolean write() {
+            if (rawFrame != null) {
+                writer.write(rawFrame, completionHandler);
+                return true;
+            }
+
+            final int frameSize = maxFrameSize;
+            // only complete (non-streamed) messages are fragmented.
+            final boolean completeMessage = (opcode & 0x80) != 0 && (opcode & 0x0F) != 0;
+            if (frameSize > 0 && completeMessage && payload.remaining() > frameSize) {
+                return new FragmentedWrite(writer, opcode, payload, frameSize, completionHandler).write();
+            }
+
+            writer.write(frame(opcode, payload, payload.remaining()), completionHandler);
+            return true;
+        }
+    }
+
+    /**
+     * Writes a complete message as a sequence of fragments, each one is written after the previous one is completed.
+     * <p/>
+     * Fragments are sliced from the payload buffer just before they are written, so only one fragment is held in
+     * memory besides the payload itself.
+     */
+    private final class FragmentedWrite extends CompletionHandler<ByteBuffer> {
+
+        private static final int WRITING = 0;
+        private static final int COMPLETED = 1;
+        private static final int PENDING = 2;
+
+        private final Writer writer;
+        private final byte opcode;
+        private final ByteBuffer payload;
+        private final int frameSize;
+        private final CompletionHandlerWrapper completionHandler;
+        private final AtomicInteger state = new AtomicInteger(WRITING);
+        private boolean first = true;
+        private volatile boolean done = false;
+
+        private FragmentedWrite(Writer writer, byte opcode, ByteBuffer payload, int frameSize,
+                                CompletionHandlerWrapper completionHandler) {
+            this.writer = writer;
+            this.opcode = opcode;
+            this.payload = payload;
+            this.frameSize = frameSize;
+            this.completionHandler = completionHandler;
+        }
+
+        /**
+         * Write remaining fragments for as long as the writer completes them synchronously.
+         *
+         * @return {@code true} when the whole message was written (or failed), {@code false} when a fragment write
+         * is pending.
+         */
+        boolean write() {
+            do {
+                final int length = Math.min(frameSize, payload.remaining());
+                final boolean last = length == payload.remaining();
+                byte fragmentOpcode = first ? (byte) (opcode & 0x7F) : 0x00;
+                if (last) {
+                    fragmentOpcode |= (byte) 0x80;
+                }
+
+                final ByteBuffer packet = frame(fragmentOpcode, payload, length);
+                first = false;
+                done = last;
+                state.set(WRITING);
+                writer.write(packet, this);
+
+                if (state.compareAndSet(WRITING, PENDING)) {
+                    return false;
+                }
+            } while (!done);
+
+            return true;
+        }
+
+        @Override
+        public void completed(ByteBuffer result) {
+            if (done) {
+                completionHandler.completed(result);
+            }
+            onFragmentWritten();
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            done = true;
+            completionHandler.failed(throwable);
+            onFragmentWritten();
+        }
+
+        @Override
+        public void cancelled() {
+            done = true;
+            completionHandler.cancelled();
+            onFragmentWritten();
+        }
+
+        private void onFragmentWritten() {
+            if (state.compareAndSet(WRITING, COMPLETED)) {
+                // completed synchronously, write() loop continues.
+                return;
+            }
+
+            if (done || write()) {
+                resumeDraining();
+            }
+        }
+    }
+
     private static class ParsingState {
         int state = 0;
         byte opcode = (byte) -1;
@@ -41,7 +41,7 @@
 package org.glassfish.tyrus.core;
 
 import java.io.Reader;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -62,7 +62,7 @@ import javax.websocket.MessageHandler;
 class ReaderBuffer {
 
     private final AtomicBoolean buffering = new AtomicBoolean(true);
-    private final ExecutorService executorService;
+    private final Executor executor;
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
 
@@ -78,9 +78,9 @@ class ReaderBuffer {
     /**
      * Constructor.
      */
-    public ReaderBuffer(ExecutorService executorService) {
+    public ReaderBuffer(Executor executor) {
         this.buffer = new StringBuffer();
-        this.executorService = executorService;
+        this.executor = executor;
         currentlyBuffered = 0;
     }
 
@@ -161,7 +161,7 @@ class ReaderBuffer {
 
         if (this.reader == null) {
             this.reader = new BufferedStringReader(this);
-            executorService.execute(new Runnable() {
+            executor.execute(new Runnable() {
                 @Override
                 public void run() {
                     messageHandler.onMessage(reader);
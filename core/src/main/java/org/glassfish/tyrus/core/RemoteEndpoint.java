@@ -45,6 +45,8 @@ import java.util.concurrent.Future;
 import javax.websocket.CloseReason;
 import javax.websocket.SendHandler;
 
+import org.glassfish.tyrus.spi.Writer;
+
 /**
  * Subset of {@link javax.websocket.RemoteEndpoint} interface which should be implemented
  * by container implementations.
@@ -59,7 +61,7 @@ public abstract class RemoteEndpoint {
      * @param text the message to be sent.
      * @return {@link Future} related to send command.
      */
-    public abstract Future<?> sendText(String text);
+    public abstract Future<Void> sendText(String text);
 
     /**
      * Send text message.
@@ -76,7 +78,7 @@ public abstract class RemoteEndpoint {
      * @param data the message to be sent.
      * @return {@link Future} related to send command.
      */
-    public abstract Future<?> sendBinary(ByteBuffer data);
+    public abstract Future<Void> sendBinary(ByteBuffer data);
 
     /**
      * Send binary message.
@@ -95,7 +97,7 @@ public abstract class RemoteEndpoint {
      * @param fragment the piece of the message being sent.
      * @param isLast   Whether the fragment being sent is the last piece of the message.
      */
-    public abstract Future<?> sendText(String fragment, boolean isLast);
+    public abstract Future<Void> sendText(String fragment, boolean isLast);
 
     /**
      * Send a binary message in pieces, blocking until all of the message has been transmitted. The runtime
@@ -105,7 +107,7 @@ public abstract class RemoteEndpoint {
      * @param partialByte the piece of the message being sent.
      * @param isLast      Whether the fragment being sent is the last piece of the message.
      */
-    public abstract Future<?> sendBinary(ByteBuffer partialByte, boolean isLast); // or Iterable<byte[]>
+    public abstract Future<Void> sendBinary(ByteBuffer partialByte, boolean isLast); // or Iterable<byte[]>
 
     /**
      * Send a Ping message containing the given application data to the remote endpoint. The corresponding Pong message may be picked
@@ -113,7 +115,7 @@ public abstract class RemoteEndpoint {
      *
      * @param applicationData the data to be carried in the ping request.
      */
-    public abstract Future<?> sendPing(ByteBuffer applicationData);
+    public abstract Future<Void> sendPing(ByteBuffer applicationData);
 
     /**
      * Allows the developer to send an unsolicited Pong message containing the given application
@@ -122,7 +124,7 @@ public abstract class RemoteEndpoint {
      *
      * @param applicationData the application data to be carried in the pong response.
      */
-    public abstract Future<?> sendPong(ByteBuffer applicationData);
+    public abstract Future<Void> sendPong(ByteBuffer applicationData);
 
     /**
      * Send a Close message.
@@ -137,4 +139,36 @@ public abstract class RemoteEndpoint {
      * @param timeoutMs timeout in milliseconds.
      */
     public abstract void setWriteTimeout(long timeoutMs);
+
+    /**
+     * Get writability of the underlying connection.
+     * <p/>
+     * Default implementation always returns {@code true}.
+     *
+     * @return {@code true} when the connection can accept more data without further queueing.
+     * @see org.glassfish.tyrus.spi.Writer#isWritable()
+     */
+    public boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * Set listener notified when writability of the underlying connection changes.
+     * <p/>
+     * Default implementation does nothing.
+     *
+     * @param writabilityListener listener to be set.
+     */
+    public void setWritabilityListener(Writer.WritabilityListener writabilityListener) {
+    }
+
+    /**
+     * Set size of partially received message buffered for this remote endpoint, used for accounting of inbound
+     * memory. Default implementation does nothing.
+     *
+     * @param bufferedBytes buffered size in bytes.
+     * @see InboundMemoryBudget
+     */
+    void setBufferedMessageSize(long bufferedBytes) {
+    }
 }
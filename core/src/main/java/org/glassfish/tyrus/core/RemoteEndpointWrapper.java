@@ -47,8 +47,6 @@ import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
@@ -266,7 +264,7 @@ public abstract class RemoteEndpointWrapper implements javax.websocket.RemoteEnd
          * @return message sending callback {@link Future}
          */
         private Future<Void> sendAsync(final Object message, final AsyncMessageType type) {
-            Future<?> result = null;
+            Future<Void> result = null;
 
             switch (type) {
                 case TEXT:
@@ -282,36 +280,7 @@ public abstract class RemoteEndpointWrapper implements javax.websocket.RemoteEnd
                     break;
             }
 
-            final Future<?> finalResult = result;
-
-            return new Future<Void>() {
-                @Override
-                public boolean cancel(boolean mayInterruptIfRunning) {
-                    return finalResult.cancel(mayInterruptIfRunning);
-                }
-
-                @Override
-                public boolean isCancelled() {
-                    return finalResult.isCancelled();
-                }
-
-                @Override
-                public boolean isDone() {
-                    return finalResult.isDone();
-                }
-
-                @Override
-                public Void get() throws InterruptedException, ExecutionException {
-                    finalResult.get();
-                    return null;
-                }
-
-                @Override
-                public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-                    finalResult.get(timeout, unit);
-                    return null;
-                }
-            };
+            return result;
         }
 
         /**
@@ -347,8 +316,7 @@ public abstract class RemoteEndpointWrapper implements javax.websocket.RemoteEnd
         }
     }
 
-    @SuppressWarnings("unchecked")
-    Future<?> sendSyncObject(Object o) {
+    Future<Void> sendSyncObject(Object o) {
         if (o instanceof String) {
             return remoteEndpoint.sendText((String) o);
         } else {
@@ -356,32 +324,7 @@ public abstract class RemoteEndpointWrapper implements javax.websocket.RemoteEnd
             try {
                 toSend = tyrusEndpointWrapper.doEncode(session, o);
             } catch (final Exception e) {
-                return new Future<Object>() {
-                    @Override
-                    public boolean cancel(boolean mayInterruptIfRunning) {
-                        return false;
-                    }
-
-                    @Override
-                    public boolean isCancelled() {
-                        return false;
-                    }
-
-                    @Override
-                    public boolean isDone() {
-                        return true;
-                    }
-
-                    @Override
-                    public Object get() throws InterruptedException, ExecutionException {
-                        throw new ExecutionException(e);
-                    }
-
-                    @Override
-                    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-                        throw new ExecutionException(e);
-                    }
-                };
+                return TyrusFuture.failed(e);
             }
 
             if (toSend instanceof String) {
@@ -43,7 +43,6 @@ import java.net.URI;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,12 +64,7 @@ public final class RequestContext extends UpgradeRequest {
     private final Principal userPrincipal;
     private final Builder.IsUserInRoleDelegate isUserInRoleDelegate;
 
-    private Map<String, List<String>> headers = new TreeMap<String, List<String>>(new Comparator<String>() {
-        @Override
-        public int compare(String o1, String o2) {
-            return o1.toLowerCase().compareTo(o2.toLowerCase());
-        }
-    });
+    private Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
 
     private Map<String, List<String>> parameterMap;
 
@@ -107,6 +101,8 @@ public final class RequestContext extends UpgradeRequest {
         final List<String> stringList = headers.get(name);
         if (stringList == null) {
             return null;
+        } else if (stringList.size() == 1) {
+            return stringList.get(0);
         } else {
             StringBuilder sb = new StringBuilder();
             boolean first = true;
@@ -40,12 +40,10 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Random;
 
+import org.glassfish.tyrus.spi.SecKeyUtils;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 
 /**
@@ -56,21 +54,13 @@ import org.glassfish.tyrus.spi.UpgradeRequest;
 class SecKey {
     private static final Random random = new SecureRandom();
 
-    private static final int KEY_SIZE = 16;
-
     /**
      * Security key string representation, which includes chars and spaces.
      */
     private final String secKey;
 
     public SecKey() {
-        secKey = create();
-    }
-
-    private String create() {
-        byte[] bytes = new byte[KEY_SIZE];
-        random.nextBytes(bytes);
-        return Base64Utils.encodeToString(bytes, false);
+        secKey = SecKeyUtils.createKey(random);
     }
 
     public SecKey(String base64) {
@@ -86,24 +76,15 @@ class SecKey {
      *
      * @param clientKey client's Sec-WebSocket-Key
      * @return server key.
+     * @throws HandshakeException when the client key is not valid base64 encoded 16 byte value.
      */
     public static SecKey generateServerKey(SecKey clientKey) throws HandshakeException {
-        String key = clientKey.getSecKey() + UpgradeRequest.SERVER_KEY_HASH;
-        final MessageDigest instance;
-        try {
-            instance = MessageDigest.getInstance("SHA-1");
-            instance.update(key.getBytes("UTF-8"));
-            final byte[] digest = instance.digest();
-            if (digest.length != 20) {
-                throw new HandshakeException("Invalid key length.  Should be 20: " + digest.length);
-            }
-
-            return new SecKey(Base64Utils.encodeToString(digest, false));
-        } catch (NoSuchAlgorithmException e) {
-            throw new HandshakeException(e.getMessage());
-        } catch (UnsupportedEncodingException e) {
-            throw new HandshakeException(e.getMessage());
+        if (!SecKeyUtils.isValidKey(clientKey.getSecKey())) {
+            throw new HandshakeException(400, String.format("Invalid %s header: '%s'",
+                    UpgradeRequest.SEC_WEBSOCKET_KEY, clientKey.getSecKey()));
         }
+
+        return new SecKey(SecKeyUtils.generateAcceptKey(clientKey.getSecKey()));
     }
 
     /**
@@ -121,8 +102,7 @@ class SecKey {
     }
 
     public void validateServerKey(String serverKey) {
-        final SecKey key = generateServerKey(this);
-        if (!key.getSecKey().equals(serverKey)) {
+        if (!SecKeyUtils.isValidAcceptKey(secKey, serverKey)) {
             throw new HandshakeException("Server key returned does not match expected response");
         }
     }
@@ -70,6 +70,12 @@ import java.nio.charset.CodingErrorAction;
  */
 
 public class StrictUtf8 extends Charset {
+
+    /**
+     * Shared instance. Charset is immutable; only its encoders and decoders are stateful and must not be shared.
+     */
+    public static final Charset INSTANCE = new StrictUtf8();
+
     public StrictUtf8() {
         super("StrictUtf8", new String[]{});
     }
@@ -66,7 +66,19 @@ class TextBuffer {
     }
 
     String getBufferedContent() {
-        return buffer.toString();
+        final String content = buffer.toString();
+        // do not retain the buffer until the next message.
+        buffer = null;
+        return content;
+    }
+
+    /**
+     * Get number of currently buffered characters.
+     *
+     * @return buffered characters.
+     */
+    int getBufferedSize() {
+        return buffer == null ? 0 : buffer.length();
     }
 
     void resetBuffer(int bufferSize) {
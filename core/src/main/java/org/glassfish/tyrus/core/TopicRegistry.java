@@ -0,0 +1,222 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.frame.BinaryFrame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+
+/**
+ * Registry of named topics (rooms) to which sessions can subscribe.
+ * <p/>
+ * Membership is indexed both by topic and by session, so publishing a message costs O(subscribers of the topic) and
+ * unsubscribing a closed session costs O(topics of the session), independently of the total number of sessions.
+ * Published messages are framed once and the same frame is written to all subscribers.
+ * <p/>
+ * Each {@link TyrusEndpointWrapper} has its own registry; sessions are unsubscribed from all topics when closed.
+ *
+ * @see TyrusSession#subscribe(String)
+ * @see TyrusSession#publish(String, String)
+ */
+public class TopicRegistry {
+
+    private final ConcurrentMap<String, Topic> topics = new ConcurrentHashMap<String, Topic>();
+    private final ConcurrentMap<TyrusSession, Set<String>> sessionTopics = new ConcurrentHashMap<TyrusSession, Set<String>>();
+
+    /**
+     * Subscribe session to a topic.
+     *
+     * @param topic   topic name.
+     * @param session session to be subscribed.
+     * @return {@code true} when the session was not subscribed to the topic before.
+     */
+    public boolean subscribe(String topic, TyrusSession session) {
+        Utils.checkNotNull(topic, "Argument 'topic' cannot be null.");
+        Utils.checkNotNull(session, "Argument 'session' cannot be null.");
+
+        Set<String> subscribed = sessionTopics.get(session);
+        if (subscribed == null) {
+            final Set<String> newSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            subscribed = sessionTopics.putIfAbsent(session, newSet);
+            if (subscribed == null) {
+                subscribed = newSet;
+            }
+        }
+        subscribed.add(topic);
+
+        boolean added;
+        while (true) {
+            Topic t = topics.get(topic);
+            if (t == null) {
+                final Topic newTopic = new Topic();
+                t = topics.putIfAbsent(topic, newTopic);
+                if (t == null) {
+                    t = newTopic;
+                }
+            }
+
+            synchronized (t) {
+                // topic is removed from the registry once its last member leaves; retry with a new one.
+                if (!t.removed) {
+                    added = t.members.add(session);
+                    break;
+                }
+            }
+        }
+
+        if (!session.isOpen()) {
+            // session was closed concurrently, unsubscribeAll might have missed this subscription (and the set of
+            // its topics created above).
+            unsubscribeAll(session);
+        }
+
+        return added;
+    }
+
+    /**
+     * Unsubscribe session from a topic.
+     *
+     * @param topic   topic name.
+     * @param session session to be unsubscribed.
+     * @return {@code true} when the session was subscribed to the topic.
+     */
+    public boolean unsubscribe(String topic, TyrusSession session) {
+        final Set<String> subscribed = sessionTopics.get(session);
+        if (subscribed != null) {
+            subscribed.remove(topic);
+        }
+
+        return removeMember(topic, session);
+    }
+
+    /**
+     * Unsubscribe session from all topics.
+     *
+     * @param session session to be unsubscribed.
+     */
+    public void unsubscribeAll(TyrusSession session) {
+        final Set<String> subscribed = sessionTopics.remove(session);
+        if (subscribed != null) {
+            for (String topic : subscribed) {
+                removeMember(topic, session);
+            }
+        }
+    }
+
+    /**
+     * Get sessions subscribed to a topic.
+     *
+     * @param topic topic name.
+     * @return unmodifiable view of the subscribed sessions.
+     */
+    public Set<Session> getSubscribers(String topic) {
+        final Topic t = topics.get(topic);
+        return t == null ? Collections.<Session>emptySet() : Collections.<Session>unmodifiableSet(t.members);
+    }
+
+    /**
+     * Get names of topics with at least one subscriber.
+     *
+     * @return unmodifiable view of the topic names.
+     */
+    public Set<String> getTopics() {
+        return Collections.unmodifiableSet(topics.keySet());
+    }
+
+    /**
+     * Publish text message to all open sessions subscribed to a topic.
+     *
+     * @param topic   topic name.
+     * @param message message to be published.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     */
+    public Map<Session, Future<?>> publish(String topic, String message) {
+        final Topic t = topics.get(topic);
+        if (t == null) {
+            return Collections.emptyMap();
+        }
+        return TyrusEndpointWrapper.broadcast(t.members, new DataFrame(new TextFrame(), message));
+    }
+
+    /**
+     * Publish binary message to all open sessions subscribed to a topic.
+     *
+     * @param topic   topic name.
+     * @param message message to be published.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     */
+    public Map<Session, Future<?>> publish(String topic, ByteBuffer message) {
+        final Topic t = topics.get(topic);
+        if (t == null) {
+            return Collections.emptyMap();
+        }
+        return TyrusEndpointWrapper.broadcast(t.members, new DataFrame(new BinaryFrame(), Utils.getRemainingArray(message)));
+    }
+
+    private boolean removeMember(String topic, TyrusSession session) {
+        final Topic t = topics.get(topic);
+        if (t == null) {
+            return false;
+        }
+
+        synchronized (t) {
+            final boolean removed = t.members.remove(session);
+            if (t.members.isEmpty() && !t.removed) {
+                t.removed = true;
+                topics.remove(topic, t);
+            }
+            return removed;
+        }
+    }
+
+    private static class Topic {
+        private final Set<TyrusSession> members = Collections.newSetFromMap(new ConcurrentHashMap<TyrusSession, Boolean>());
+        private boolean removed = false;
+    }
+}
@@ -41,8 +41,11 @@ package org.glassfish.tyrus.core;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,6 +71,8 @@ import org.glassfish.tyrus.spi.UpgradeResponse;
  */
 public class TyrusEndpoint extends WebSocketApplication {
 
+    private static final int NEGOTIATION_CACHE_SIZE = 64;
+
     private final EndpointWrapper endpoint;
 
     /**
@@ -80,6 +85,14 @@ public class TyrusEndpoint extends WebSocketApplication {
      */
     private String temporaryNegotiatedProtocol;
 
+    /**
+     * Negotiation results keyed by client {@code Sec-WebSocket-Protocol} and {@code Sec-WebSocket-Extensions} header
+     * values. Used only when {@link EndpointWrapper#isNegotiationCacheable()}; clients usually send only a few
+     * distinct combinations, so the handshake does not need to parse the extensions and call the configurator again.
+     */
+    private final ConcurrentMap<List<List<String>>, Negotiation> negotiationCache =
+            new ConcurrentHashMap<List<List<String>>, Negotiation>();
+
     /**
      * Create {@link TyrusEndpoint} which represents given {@link EndpointWrapper}.
      *
@@ -92,14 +105,38 @@ public class TyrusEndpoint extends WebSocketApplication {
     @Override
     public boolean isApplicationRequest(UpgradeRequest webSocketRequest) {
         final List<String> protocols = webSocketRequest.getHeaders().get(UpgradeRequest.SEC_WEBSOCKET_PROTOCOL);
-        temporaryNegotiatedProtocol = endpoint.getNegotiatedProtocol(protocols);
-
-        final List<Extension> extensions = TyrusExtension.fromString(webSocketRequest.getHeaders().get(UpgradeRequest.SEC_WEBSOCKET_EXTENSIONS));
-        temporaryNegotiatedExtensions = endpoint.getNegotiatedExtensions(extensions);
+        final List<String> extensionHeaders = webSocketRequest.getHeaders().get(UpgradeRequest.SEC_WEBSOCKET_EXTENSIONS);
+
+        if (endpoint.isNegotiationCacheable()) {
+            final List<List<String>> key = Arrays.asList(copy(protocols), copy(extensionHeaders));
+            Negotiation negotiation = negotiationCache.get(key);
+            if (negotiation == null) {
+                negotiation = negotiate(protocols, extensionHeaders);
+                if (negotiationCache.size() < NEGOTIATION_CACHE_SIZE) {
+                    negotiationCache.putIfAbsent(key, negotiation);
+                }
+            }
+
+            temporaryNegotiatedProtocol = negotiation.protocol;
+            temporaryNegotiatedExtensions = negotiation.extensions;
+        } else {
+            final Negotiation negotiation = negotiate(protocols, extensionHeaders);
+            temporaryNegotiatedProtocol = negotiation.protocol;
+            temporaryNegotiatedExtensions = negotiation.extensions;
+        }
 
         return endpoint.checkHandshake(webSocketRequest);
     }
 
+    private Negotiation negotiate(List<String> protocols, List<String> extensionHeaders) {
+        return new Negotiation(endpoint.getNegotiatedProtocol(protocols),
+                endpoint.getNegotiatedExtensions(TyrusExtension.fromString(extensionHeaders)));
+    }
+
+    private static List<String> copy(List<String> list) {
+        return list == null ? null : new ArrayList<String>(list);
+    }
+
     @Override
     public String getPath() {
         return endpoint.getEndpointPath();
@@ -225,4 +262,18 @@ public class TyrusEndpoint extends WebSocketApplication {
     public int hashCode() {
         return endpoint.hashCode();
     }
+
+    /**
+     * Negotiated subprotocol and extensions.
+     */
+    private static final class Negotiation {
+        private final String protocol;
+        private final List<Extension> extensions;
+
+        private Negotiation(String protocol, List<Extension> extensions) {
+            this.protocol = protocol;
+            this.extensions = extensions == null ? Collections.<Extension>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<Extension>(extensions));
+        }
+    }
 }
@@ -52,6 +52,7 @@ import java.lang.reflect.Method;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -59,7 +60,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -100,7 +103,11 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
     private final String contextPath;
 
     private final List<CoderWrapper<Decoder>> decoders = new ArrayList<CoderWrapper<Decoder>>();
+    private volatile List<Class<? extends Decoder>> decoderClasses;
     private final List<CoderWrapper<Encoder>> encoders = new ArrayList<CoderWrapper<Encoder>>();
+    // encoders used for broadcasting, one instance per encoder class, created lazily.
+    private final ConcurrentMap<Class<?>, SharedEncoder> sharedEncoders = new ConcurrentHashMap<Class<?>, SharedEncoder>();
+    private volatile boolean undeployed = false;
 
     private final EndpointConfig configuration;
     private final Class<? extends Endpoint> endpointClass;
@@ -108,7 +115,10 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
     private final Map<RemoteEndpoint, TyrusSession> remoteEndpointToSession =
             new ConcurrentHashMap<RemoteEndpoint, TyrusSession>();
     private final ComponentProviderService componentProvider;
+    private final TopicRegistry topicRegistry = new TopicRegistry();
+    private volatile BroadcastBus broadcastBus = null;
     private final ServerEndpointConfig.Configurator configurator;
+    private final boolean negotiationCacheable;
     private final WebSocketContainer container;
 
     private final Method onOpen;
@@ -151,6 +161,7 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
         this.container = container;
         this.contextPath = contextPath;
         this.configurator = configurator;
+        this.negotiationCacheable = isDefaultNegotiation(configurator);
         this.componentProvider = configurator == null ? componentProvider : new ComponentProviderService(componentProvider) {
             @Override
             public <T> T getEndpointInstance(Class<T> endpointClass) throws InstantiationException {
@@ -218,6 +229,10 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
             }
         } : configuration;
 
+        if (endpointClass != null) {
+            this.componentProvider.configureEndpointInstances(endpointClass, this.configuration);
+        }
+
         for (Class<? extends Decoder> decoderClass : this.configuration.getDecoders()) {
             Class<?> type = getDecoderClassType(decoderClass);
             decoders.add(new CoderWrapper<Decoder>(decoderClass, type));
@@ -357,43 +372,108 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
     }
 
     Object doEncode(Session session, Object message) throws EncodeException, IOException {
-        for (CoderWrapper<Encoder> enc : encoders) {
-            final Class<? extends Encoder> encoderClass = enc.getCoderClass();
+        final CoderWrapper<Encoder> enc = findEncoder(message);
+        return encode(getCoderInstance(session, enc), message);
+    }
 
-            if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Binary encoder = (Encoder.Binary) getCoderInstance(session, enc);
+    /**
+     * Encode message using encoder instance shared by all sessions of this endpoint, see {@link #broadcast(Object)}.
+     * <p/>
+     * Encoders are not required to be thread safe, so the instance is locked while encoding. No encoder is created
+     * once the endpoint is {@link #destroy() undeployed}.
+     *
+     * @param message message to be encoded.
+     * @return encoded message, same as {@link #doEncode(Session, Object)} returns.
+     */
+    private Object doEncodeShared(Object message) throws EncodeException, IOException {
+        final CoderWrapper<Encoder> enc = findEncoder(message);
+
+        final Object coder = enc.getCoder();
+        if (coder != null) {
+            // built-in coder instance, owned by the wrapper.
+            synchronized (enc) {
+                return encode(coder, message);
+            }
+        }
 
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.Text.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Text encoder = (Encoder.Text) getCoderInstance(session, enc);
+        final Class<? extends Encoder> encoderClass = enc.getCoderClass();
+        SharedEncoder encoder = sharedEncoders.get(encoderClass);
+        if (encoder == null) {
+            if (undeployed) {
+                throw new EncodeException(message, "Endpoint is undeployed.");
+            }
 
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.BinaryStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                    final Encoder.BinaryStream encoder = (Encoder.BinaryStream) getCoderInstance(session, enc);
+            final ErrorCollector collector = new ErrorCollector();
+            final Object newEncoder = componentProvider.getCoderInstance(encoderClass, getEndpointConfig(), collector);
+            if (!collector.isEmpty()) {
+                throw new EncodeException(message, "Encoder could not be created.", collector.composeComprehensiveException());
+            }
 
-                    encoder.encode(message, stream);
-                    return stream;
+            final SharedEncoder newShared = new SharedEncoder(newEncoder);
+            encoder = sharedEncoders.putIfAbsent(encoderClass, newShared);
+            if (encoder == null) {
+                encoder = newShared;
+                // destroy() might have missed the new entry.
+                if (undeployed) {
+                    destroySharedEncoder(encoderClass);
                 }
-            } else if (Encoder.TextStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Writer writer = new StringWriter();
-                    final Encoder.TextStream encoder = (Encoder.TextStream) getCoderInstance(session, enc);
+            } else {
+                componentProvider.destroyCoderInstance(newEncoder);
+            }
+        }
 
-                    encoder.encode(message, writer);
-                    return writer;
-                }
+        synchronized (encoder) {
+            if (encoder.destroyed) {
+                throw new EncodeException(message, "Endpoint is undeployed.");
+            }
+            return encode(encoder.encoder, message);
+        }
+    }
+
+    private void destroySharedEncoder(Class<?> encoderClass) {
+        final SharedEncoder encoder = sharedEncoders.remove(encoderClass);
+        if (encoder != null) {
+            // waits for a broadcast which is using the encoder.
+            synchronized (encoder) {
+                encoder.destroyed = true;
+                componentProvider.destroyCoderInstance(encoder.encoder);
+            }
+        }
+    }
+
+    private CoderWrapper<Encoder> findEncoder(Object message) throws EncodeException {
+        for (CoderWrapper<Encoder> enc : encoders) {
+            final Class<? extends Encoder> encoderClass = enc.getCoderClass();
+
+            if ((Encoder.Binary.class.isAssignableFrom(encoderClass)
+                    || Encoder.Text.class.isAssignableFrom(encoderClass)
+                    || Encoder.BinaryStream.class.isAssignableFrom(encoderClass)
+                    || Encoder.TextStream.class.isAssignableFrom(encoderClass))
+                    && enc.getType().isAssignableFrom(message.getClass())) {
+                return enc;
             }
         }
 
         throw new EncodeException(message, "Encoding failed.");
     }
 
+    @SuppressWarnings("unchecked")
+    private static Object encode(Object encoder, Object message) throws EncodeException, IOException {
+        if (encoder instanceof Encoder.Binary) {
+            return ((Encoder.Binary) encoder).encode(message);
+        } else if (encoder instanceof Encoder.Text) {
+            return ((Encoder.Text) encoder).encode(message);
+        } else if (encoder instanceof Encoder.BinaryStream) {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            ((Encoder.BinaryStream) encoder).encode(message, stream);
+            return stream;
+        } else {
+            final Writer writer = new StringWriter();
+            ((Encoder.TextStream) encoder).encode(message, writer);
+            return writer;
+        }
+    }
+
     @Override
     public List<Extension> getNegotiatedExtensions(List<Extension> clientExtensions) {
         if (configuration instanceof ServerEndpointConfig) {
@@ -412,6 +492,38 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
         }
     }
 
+    @Override
+    public boolean isNegotiationCacheable() {
+        return negotiationCacheable;
+    }
+
+    /**
+     * Check whether the configurator uses Tyrus default subprotocol and extension negotiation, which depends only on
+     * endpoint configuration and values sent by the client.
+     *
+     * @param configurator configurator to be checked.
+     * @return {@code true} when negotiation methods are not overridden by the application.
+     */
+    private static boolean isDefaultNegotiation(ServerEndpointConfig.Configurator configurator) {
+        if (configurator == null) {
+            return false;
+        }
+
+        try {
+            final Class<?> clazz = configurator.getClass();
+            return isDefaultConfigurator(clazz.getMethod("getNegotiatedSubprotocol", List.class, List.class).getDeclaringClass())
+                    && isDefaultConfigurator(clazz.getMethod("getNegotiatedExtensions", List.class, List.class).getDeclaringClass());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDefaultConfigurator(Class<?> clazz) {
+        // subclasses inherit the marker, only classes declaring it directly are trusted.
+        return clazz == ServerEndpointConfig.Configurator.class
+                || Arrays.asList(clazz.getInterfaces()).contains(CacheableNegotiation.class);
+    }
+
     @Override
     public Set<Session> getOpenSessions() {
         Set<Session> result = new HashSet<Session>();
@@ -494,6 +606,7 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
                 }
             }
 
+            session.startHeartbeat(configuration.getUserProperties());
             return session;
         }
     }
@@ -605,8 +718,7 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
                 switch (state) {
                     case RUNNING:
                         if (buffer == null) {
-                            // TODO:
-                            buffer = new ReaderBuffer(((BaseContainer) container).getExecutorService());
+                            buffer = new ReaderBuffer(session.getExecutor());
                             session.setReaderBuffer(buffer);
                         }
                         buffer.resetBuffer(session.getMaxTextMessageBufferSize());
@@ -668,6 +780,10 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
                     LOGGER.log(Level.WARNING, deploymentException.getMessage(), deploymentException);
                 }
             }
+        } finally {
+            if (session != null) {
+                session.updateBufferedMessageSize();
+            }
         }
     }
 
@@ -688,8 +804,7 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
                 switch (state) {
                     case RUNNING:
                         if (buffer == null) {
-                            // TODO
-                            buffer = new InputStreamBuffer(((BaseContainer) container).getExecutorService());
+                            buffer = new InputStreamBuffer(session.getExecutor());
                             session.setInputStreamBuffer(buffer);
                         }
                         buffer.resetBuffer(session.getMaxBinaryMessageBufferSize());
@@ -751,6 +866,10 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
                     LOGGER.log(Level.WARNING, deploymentException.getMessage(), deploymentException);
                 }
             }
+        } finally {
+            if (session != null) {
+                session.updateBufferedMessageSize();
+            }
         }
     }
 
@@ -776,12 +895,28 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
             }
         }
 
+        if (throwable instanceof RejectedExecutionException) {
+            // container executor is saturated, message handler could not be started.
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Server overloaded."));
+                return false;
+            } catch (IOException e) {
+                // we don't care.
+            }
+        }
+
         return false;
     }
 
     @Override
     public void onPong(RemoteEndpoint gs, final ByteBuffer bytes) {
         TyrusSession session = getSession(gs);
+
+        // heartbeat pongs are not application activity and are not passed to the application.
+        if (session.onHeartbeatPong(bytes)) {
+            return;
+        }
+
         session.restartIdleTimeoutExecutor();
 
         if (session.isPongHandlerPreset()) {
@@ -851,6 +986,8 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
             }
         } finally {
             session.setState(TyrusSession.State.CLOSED);
+            session.stopHeartbeat();
+            topicRegistry.unsubscribeAll(session);
 
             synchronized (remoteEndpointToSession) {
                 remoteEndpointToSession.remove(gs);
@@ -866,69 +1003,169 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
 
     /**
      * Broadcasts text message to all connected clients.
+     * <p/>
+     * When {@link BroadcastBus} is set, the message is also published to clients connected to other nodes.
      *
      * @param message message to be broadcasted.
-     * @return map of sessions and futures for user to get the information about status of the message.
+     * @return map of sessions and futures for user to get the information about status of the message. Contains
+     * only sessions connected to this node.
      */
     public Map<Session, Future<?>> broadcast(final String message) {
+        final BroadcastBus bus = broadcastBus;
+        if (bus == null) {
+            return broadcast(remoteEndpointToSession.values(), new DataFrame(new TextFrame(), message));
+        }
 
-        final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
-        byte[] frame = null;
+        return publish(bus, new BroadcastBus.Message(getEndpointPath(), true, Utf8Utils.encode(StrictUtf8.INSTANCE, message)));
+    }
 
-        for (Map.Entry<RemoteEndpoint, TyrusSession> e : remoteEndpointToSession.entrySet()) {
-            if (e.getValue().isOpen()) {
+    /**
+     * Broadcasts binary message to all connected clients.
+     * <p/>
+     * When {@link BroadcastBus} is set, the message is also published to clients connected to other nodes.
+     *
+     * @param message message to be broadcasted.
+     * @return map of sessions and futures for user to get the information about status of the message. Contains
+     * only sessions connected to this node.
+     */
+    public Map<Session, Future<?>> broadcast(final ByteBuffer message) {
+        final BroadcastBus bus = broadcastBus;
+        if (bus == null) {
+            return broadcast(remoteEndpointToSession.values(), new DataFrame(new BinaryFrame(), Utils.getRemainingArray(message)));
+        }
 
-                final TyrusRemoteEndpoint remoteEndpoint = (TyrusRemoteEndpoint) e.getKey();
+        return publish(bus, new BroadcastBus.Message(getEndpointPath(), false, Utils.getRemainingArray(message)));
+    }
 
-                if (frame == null) {
-                    final DataFrame dataFrame = new DataFrame(new TextFrame(), message);
-                    final ByteBuffer byteBuffer = ((TyrusWebSocket) remoteEndpoint.getSocket()).getProtocolHandler().frame(dataFrame);
-                    frame = new byte[byteBuffer.remaining()];
-                    byteBuffer.get(frame);
-                }
+    /**
+     * Broadcasts object to all connected clients.
+     * <p/>
+     * The object is encoded only once, by the first registered {@link Encoder} able to encode it (the same one
+     * {@link javax.websocket.RemoteEndpoint#sendObject(Object)} would use), and the resulting frame is sent to all
+     * sessions. The encoder instance is shared by all broadcasts of this endpoint, so it is not bound to any session
+     * and its {@code encode} method is never called concurrently.
+     * <p/>
+     * When {@link BroadcastBus} is set, the encoded message is also published to clients connected to other nodes.
+     *
+     * @param message message to be broadcasted.
+     * @return map of sessions and futures for user to get the information about status of the message. Contains
+     * only sessions connected to this node.
+     * @throws EncodeException when the message cannot be encoded.
+     * @throws IOException     when the encoder fails to write the message.
+     */
+    public Map<Session, Future<?>> broadcast(final Object message) throws EncodeException, IOException {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null.");
+        }
+        if (message instanceof String) {
+            return broadcast((String) message);
+        }
 
-                final Future<DataFrame> frameFuture = remoteEndpoint.sendRawFrame(ByteBuffer.wrap(frame));
-                futures.put(e.getValue(), frameFuture);
-            }
+        final Object encoded = doEncodeShared(message);
+
+        if (encoded instanceof String) {
+            return broadcast((String) encoded);
+        } else if (encoded instanceof ByteBuffer) {
+            return broadcast((ByteBuffer) encoded);
+        } else if (encoded instanceof StringWriter) {
+            return broadcast(((StringWriter) encoded).getBuffer().toString());
+        } else if (encoded instanceof ByteArrayOutputStream) {
+            return broadcast(ByteBuffer.wrap(((ByteArrayOutputStream) encoded).toByteArray()));
         }
 
-        return futures;
+        throw new EncodeException(message, "Encoding failed.");
+    }
+
+    private Map<Session, Future<?>> publish(BroadcastBus bus, BroadcastBus.Message message) {
+        try {
+            bus.publish(message);
+        } catch (IllegalStateException e) {
+            // bus was stopped concurrently.
+            LOGGER.log(Level.FINE, "Broadcast was not published.", e);
+        }
+        return deliver(message);
     }
 
     /**
-     * Broadcasts binary message to all connected clients.
+     * Broadcast message received from {@link BroadcastBus} to sessions of this endpoint.
      *
-     * @param message message to be broadcasted.
+     * @param message received message.
      * @return map of sessions and futures for user to get the information about status of the message.
      */
-    public Map<Session, Future<?>> broadcast(final ByteBuffer message) {
+    Map<Session, Future<?>> deliver(BroadcastBus.Message message) {
+        return broadcast(remoteEndpointToSession.values(), message.toDataFrame());
+    }
 
+    /**
+     * Set bus to which broadcasts are published, called by {@link TyrusWebSocketEngine}.
+     *
+     * @param broadcastBus bus, can be {@code null}.
+     */
+    void setBroadcastBus(BroadcastBus broadcastBus) {
+        this.broadcastBus = broadcastBus;
+    }
+
+    /**
+     * Destroy encoder instances created for {@link #broadcast(Object) broadcasting} and endpoint instances kept
+     * according to {@link EndpointInstancePolicy}. Called by {@link TyrusWebSocketEngine} when the endpoint is
+     * unregistered; broadcasting of objects fails afterwards.
+     */
+    void destroy() {
+        undeployed = true;
+
+        if (endpointClass != null) {
+            componentProvider.destroyEndpointInstances(endpointClass);
+        } else if (endpoint instanceof AnnotatedEndpoint) {
+            ((AnnotatedEndpoint) endpoint).destroyEndpointInstances();
+        }
+
+        for (Class<?> encoderClass : sharedEncoders.keySet()) {
+            destroySharedEncoder(encoderClass);
+        }
+    }
+
+    /**
+     * Send data frame to all open sessions from given collection.
+     * <p/>
+     * The frame is serialized only once, using {@link ProtocolHandler} of the first open session; all sessions then
+     * write the same bytes.
+     *
+     * @param sessions  sessions to send the frame to.
+     * @param dataFrame frame to be sent.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     */
+    static Map<Session, Future<?>> broadcast(Iterable<TyrusSession> sessions, DataFrame dataFrame) {
         final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
         byte[] frame = null;
 
-        for (Map.Entry<RemoteEndpoint, TyrusSession> e : remoteEndpointToSession.entrySet()) {
-            if (e.getValue().isOpen()) {
+        for (TyrusSession session : sessions) {
+            if (session.isOpen()) {
 
-                final TyrusRemoteEndpoint remoteEndpoint = (TyrusRemoteEndpoint) e.getKey();
+                final TyrusRemoteEndpoint remoteEndpoint = (TyrusRemoteEndpoint) session.getRemoteEndpoint();
 
                 if (frame == null) {
-                    byte[] byteArrayMessage = new byte[message.remaining()];
-                    message.get(byteArrayMessage);
-
-                    final DataFrame dataFrame = new DataFrame(new BinaryFrame(), byteArrayMessage);
                     final ByteBuffer byteBuffer = ((TyrusWebSocket) remoteEndpoint.getSocket()).getProtocolHandler().frame(dataFrame);
                     frame = new byte[byteBuffer.remaining()];
                     byteBuffer.get(frame);
                 }
 
-                final Future<DataFrame> frameFuture = remoteEndpoint.sendRawFrame(ByteBuffer.wrap(frame));
-                futures.put(e.getValue(), frameFuture);
+                final Future<Void> frameFuture = remoteEndpoint.sendRawFrame(ByteBuffer.wrap(frame));
+                futures.put(session, frameFuture);
             }
         }
 
         return futures;
     }
 
+    /**
+     * Get registry of topics to which sessions of this endpoint can subscribe.
+     *
+     * @return topic registry.
+     */
+    public TopicRegistry getTopicRegistry() {
+        return topicRegistry;
+    }
+
     /**
      * Registered {@link Decoder}s.
      *
@@ -938,6 +1175,20 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
         return (List<Decoder>) (List<?>) decoders;
     }
 
+    /**
+     * Classes of registered {@link Decoder}s, shared by {@link MessageHandlerManager}s of all sessions.
+     *
+     * @return unmodifiable {@link List} of registered {@link Decoder} classes.
+     */
+    List<Class<? extends Decoder>> getDecoderClasses() {
+        List<Class<? extends Decoder>> result = decoderClasses;
+        if (result == null) {
+            result = MessageHandlerManager.getDecoderClasses(getDecoders());
+            decoderClasses = result;
+        }
+        return result;
+    }
+
     private Class<?> getEncoderClassType(Class<?> encoderClass) {
         if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
             return ReflectionHelper.getClassType(encoderClass, Encoder.Binary.class);
@@ -984,4 +1235,18 @@ public class TyrusEndpointWrapper extends EndpointWrapper {
         sb.append('}');
         return sb.toString();
     }
+
+    /**
+     * Encoder shared for broadcasting; the entry (not the user encoder) is locked while encoding.
+     */
+    private static final class SharedEncoder {
+
+        private final Object encoder;
+        // guarded by this
+        private boolean destroyed = false;
+
+        SharedEncoder(Object encoder) {
+            this.encoder = encoder;
+        }
+    }
 }
@@ -40,22 +40,56 @@
 
 package org.glassfish.tyrus.core;
 
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
 
 /**
- * Represents the result of writing a {@link DataFrame}.
+ * Represents the result of an asynchronous operation, like writing a {@link DataFrame}.
+ * <p/>
+ * The result can be consumed either by blocking in {@link #get()} or by registering a {@link CompletionHandler}
+ * using {@link #addCompletionHandler(CompletionHandler)}. Nothing is allocated for the blocking case unless some
+ * thread actually needs to wait for the result, registered handlers are notified exactly once, in the order in which
+ * they were added.
  *
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
+ * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 public class TyrusFuture<T> implements Future<T> {
 
-    private volatile T result;
-    private volatile Throwable throwable = null;
-    private final CountDownLatch latch = new CountDownLatch(1);
+    private static final Object NULL_RESULT = new Object();
+    private static final Listener NOTIFIED = new Listener(null, null);
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TyrusFuture, Object> OUTCOME =
+            AtomicReferenceFieldUpdater.newUpdater(TyrusFuture.class, Object.class, "outcome");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TyrusFuture, Listener> LISTENERS =
+            AtomicReferenceFieldUpdater.newUpdater(TyrusFuture.class, Listener.class, "listeners");
+
+    /**
+     * {@code null} while not done, {@link #NULL_RESULT}, {@link Failure} or the result otherwise.
+     */
+    private volatile Object outcome = null;
+    private volatile Listener listeners = null;
+    private volatile int waiters = 0;
+
+    /**
+     * Create future which is already completed with given failure.
+     *
+     * @param throwable failure.
+     * @param <T>       result type.
+     * @return completed future.
+     */
+    public static <T> TyrusFuture<T> failed(Throwable throwable) {
+        final TyrusFuture<T> future = new TyrusFuture<T>();
+        future.setFailure(throwable);
+        return future;
+    }
 
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
@@ -69,50 +103,158 @@ public class TyrusFuture<T> implements Future<T> {
 
     @Override
     public boolean isDone() {
-        return (latch.getCount() == 0);
+        return outcome != null;
     }
 
     @Override
     public T get() throws InterruptedException, ExecutionException {
-        latch.await();
-
-        if (throwable != null) {
-            throw new ExecutionException(throwable);
+        Object o = outcome;
+        if (o == null) {
+            synchronized (this) {
+                waiters++;
+                try {
+                    while ((o = outcome) == null) {
+                        wait();
+                    }
+                } finally {
+                    waiters--;
+                }
+            }
         }
 
-        return result;
+        return report(o);
     }
 
     @Override
     public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        if (latch.await(timeout, unit) && throwable != null) {
-            throw new ExecutionException(throwable);
+        Object o = outcome;
+        if (o == null) {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (this) {
+                waiters++;
+                try {
+                    while ((o = outcome) == null) {
+                        final long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new TimeoutException();
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } finally {
+                    waiters--;
+                }
+            }
         }
 
-        return result;
+        return report(o);
     }
 
     /**
      * Sets the result of the message writing process.
+     * <p/>
+     * Ignored when the future is already done.
      *
      * @param result result
      */
     public void setResult(T result) {
-        if (latch.getCount() == 1) {
-            this.result = result;
-            latch.countDown();
-        }
+        complete(result == null ? NULL_RESULT : result);
     }
 
     /**
      * Sets the failure result of message writing process.
+     * <p/>
+     * Ignored when the future is already done.
      *
      * @param throwable throwable.
      */
     public void setFailure(Throwable throwable) {
-        if (latch.getCount() == 1) {
+        complete(new Failure(throwable));
+    }
+
+    /**
+     * Register handler to be notified when this future is done.
+     * <p/>
+     * {@link CompletionHandler#completed(Object)} or {@link CompletionHandler#failed(Throwable)} is invoked exactly
+     * once, immediately in the calling thread when this future is already done, or otherwise in the thread which
+     * completes it.
+     *
+     * @param completionHandler handler to be notified.
+     * @return this future, so registrations can be chained.
+     */
+    public TyrusFuture<T> addCompletionHandler(CompletionHandler<? super T> completionHandler) {
+        while (true) {
+            final Listener current = listeners;
+            if (current == NOTIFIED) {
+                notifyHandler(completionHandler, outcome);
+                return this;
+            }
+
+            if (LISTENERS.compareAndSet(this, current, new Listener(completionHandler, current))) {
+                return this;
+            }
+        }
+    }
+
+    private void complete(Object o) {
+        if (!OUTCOME.compareAndSet(this, null, o)) {
+            return;
+        }
+
+        if (waiters > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        Listener listener = LISTENERS.getAndSet(this, NOTIFIED);
+        if (listener != null && listener.next == null) {
+            notifyHandler(listener.completionHandler, o);
+        } else if (listener != null) {
+            // listeners are stacked, reverse them to keep registration order.
+            Listener reversed = null;
+            while (listener != null) {
+                reversed = new Listener(listener.completionHandler, reversed);
+                listener = listener.next;
+            }
+            for (Listener l = reversed; l != null; l = l.next) {
+                notifyHandler(l.completionHandler, o);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyHandler(CompletionHandler completionHandler, Object o) {
+        if (o instanceof Failure) {
+            completionHandler.failed(((Failure) o).throwable);
+        } else {
+            completionHandler.completed(o == NULL_RESULT ? null : o);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T report(Object o) throws ExecutionException {
+        if (o instanceof Failure) {
+            throw new ExecutionException(((Failure) o).throwable);
+        }
+
+        return o == NULL_RESULT ? null : (T) o;
+    }
+
+    private static final class Failure {
+        private final Throwable throwable;
+
+        private Failure(Throwable throwable) {
             this.throwable = throwable;
-            latch.countDown();
+        }
+    }
+
+    private static final class Listener {
+        private final CompletionHandler completionHandler;
+        private final Listener next;
+
+        private Listener(CompletionHandler completionHandler, Listener next) {
+            this.completionHandler = completionHandler;
+            this.next = next;
         }
     }
 }
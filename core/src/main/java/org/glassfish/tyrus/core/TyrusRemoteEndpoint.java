@@ -45,6 +45,8 @@ import java.util.concurrent.Future;
 import javax.websocket.CloseReason;
 import javax.websocket.SendHandler;
 
+import org.glassfish.tyrus.spi.Writer;
+
 /**
  * {@link RemoteEndpoint} implementation.
  *
@@ -65,7 +67,7 @@ public class TyrusRemoteEndpoint extends RemoteEndpoint {
     }
 
     @Override
-    public Future<DataFrame> sendText(String text) {
+    public Future<Void> sendText(String text) {
         return socket.send(text);
     }
 
@@ -75,33 +77,33 @@ public class TyrusRemoteEndpoint extends RemoteEndpoint {
     }
 
     @Override
-    public Future<DataFrame> sendBinary(ByteBuffer byteBuffer) {
-        return socket.send(Utils.getRemainingArray(byteBuffer));
+    public Future<Void> sendBinary(ByteBuffer byteBuffer) {
+        return socket.sendBinary(byteBuffer);
     }
 
     @Override
     public void sendBinary(ByteBuffer data, SendHandler handler) {
-        socket.send(Utils.getRemainingArray(data), handler);
+        socket.sendBinary(data, handler);
     }
 
     @Override
-    public Future<DataFrame> sendText(String fragment, boolean isLast) {
+    public Future<Void> sendText(String fragment, boolean isLast) {
         return socket.stream(isLast, fragment);
     }
 
     @Override
-    public Future<DataFrame> sendBinary(ByteBuffer byteBuffer, boolean b) {
+    public Future<Void> sendBinary(ByteBuffer byteBuffer, boolean b) {
         byte[] bytes = Utils.getRemainingArray(byteBuffer);
         return socket.stream(b, bytes, 0, bytes.length);
     }
 
     @Override
-    public Future<DataFrame> sendPing(ByteBuffer byteBuffer) {
+    public Future<Void> sendPing(ByteBuffer byteBuffer) {
         return socket.sendPing(Utils.getRemainingArray(byteBuffer));
     }
 
     @Override
-    public Future<DataFrame> sendPong(ByteBuffer byteBuffer) {
+    public Future<Void> sendPong(ByteBuffer byteBuffer) {
         return socket.sendPong(Utils.getRemainingArray(byteBuffer));
     }
 
@@ -115,6 +117,25 @@ public class TyrusRemoteEndpoint extends RemoteEndpoint {
         socket.setWriteTimeout(timeoutMs);
     }
 
+    @Override
+    public boolean isWritable() {
+        return !(socket instanceof TyrusWebSocket) || ((TyrusWebSocket) socket).getProtocolHandler().isWritable();
+    }
+
+    @Override
+    public void setWritabilityListener(Writer.WritabilityListener writabilityListener) {
+        if (socket instanceof TyrusWebSocket) {
+            ((TyrusWebSocket) socket).getProtocolHandler().setWritabilityListener(writabilityListener);
+        }
+    }
+
+    @Override
+    void setBufferedMessageSize(long bufferedBytes) {
+        if (socket instanceof TyrusWebSocket) {
+            ((TyrusWebSocket) socket).getProtocolHandler().setBufferedMessageSize(bufferedBytes);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -138,7 +159,7 @@ public class TyrusRemoteEndpoint extends RemoteEndpoint {
      * @param dataFrame bytes to be send.
      * @return future can be used to get information about sent message.
      */
-    public Future<DataFrame> sendRawFrame(ByteBuffer dataFrame) {
+    public Future<Void> sendRawFrame(ByteBuffer dataFrame) {
         return socket.sendRawFrame(dataFrame);
     }
 
@@ -54,23 +54,28 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.websocket.CloseReason;
 import javax.websocket.DecodeException;
 import javax.websocket.Decoder;
+import javax.websocket.EncodeException;
 import javax.websocket.Extension;
 import javax.websocket.MessageHandler;
 import javax.websocket.PongMessage;
 import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
 
+import org.glassfish.tyrus.spi.Writer;
+
 /**
  * Implementation of the {@link Session}.
  *
@@ -83,10 +88,14 @@ public class TyrusSession implements Session {
 
     private static final Logger LOGGER = Logger.getLogger(TyrusSession.class.getName());
     private static final String SESSION_CLOSED = "The connection has been closed.";
+    private static final AtomicReferenceFieldUpdater<TyrusSession, State> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(TyrusSession.class, State.class, "state");
+
     private final WebSocketContainer container;
     private final TyrusEndpointWrapper endpoint;
     private final RemoteEndpointWrapper.Basic basicRemote;
     private final RemoteEndpointWrapper.Async asyncRemote;
+    private final RemoteEndpoint remoteEndpoint;
     private final boolean isSecure;
     private final URI uri;
     private final String queryString;
@@ -94,12 +103,7 @@ public class TyrusSession implements Session {
     private final Principal userPrincipal;
     private final Map<String, List<String>> requestParameterMap;
     private final Object idleTimeoutLock = new Object();
-    private final String id = UUID.randomUUID().toString();
-    private final Map<String, Object> userProperties = new HashMap<String, Object>();
     private final MessageHandlerManager handlerManager;
-    private final AtomicReference<State> state = new AtomicReference<State>(State.RUNNING);
-    private final TextBuffer textBuffer = new TextBuffer();
-    private final BinaryBuffer binaryBuffer = new BinaryBuffer();
     private final List<Extension> negotiatedExtensions;
     private final String negotiatedSubprotocol;
 
@@ -110,6 +114,17 @@ public class TyrusSession implements Session {
     private ScheduledFuture<?> idleTimeoutFuture = null;
     private ReaderBuffer readerBuffer;
     private InputStreamBuffer inputStreamBuffer;
+    private volatile SerialExecutor executor;
+    private volatile HeartbeatService.Heartbeat heartbeat;
+    private volatile WritabilityListener writabilityListener;
+    private volatile ConflationQueue conflationQueue;
+    private volatile State state = State.RUNNING;
+
+    // rarely used, created lazily to keep footprint of idle sessions low.
+    private volatile String id;
+    private volatile Map<String, Object> userProperties;
+    private TextBuffer textBuffer;
+    private BinaryBuffer binaryBuffer;
 
     TyrusSession(WebSocketContainer container, RemoteEndpoint remoteEndpoint, TyrusEndpointWrapper tyrusEndpointWrapper,
                  String subprotocol, List<Extension> extensions, boolean isSecure,
@@ -122,12 +137,15 @@ public class TyrusSession implements Session {
         this.isSecure = isSecure;
         this.uri = uri;
         this.queryString = queryString;
-        this.pathParameters = pathParameters == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new HashMap<String, String>(pathParameters));
+        this.pathParameters = pathParameters == null || pathParameters.isEmpty() ?
+                Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new HashMap<String, String>(pathParameters));
+        this.remoteEndpoint = remoteEndpoint;
         this.basicRemote = new RemoteEndpointWrapper.Basic(this, remoteEndpoint, tyrusEndpointWrapper);
         this.asyncRemote = new RemoteEndpointWrapper.Async(this, remoteEndpoint, tyrusEndpointWrapper);
-        this.handlerManager = MessageHandlerManager.fromDecoderInstances(tyrusEndpointWrapper.getDecoders());
+        this.handlerManager = new MessageHandlerManager(tyrusEndpointWrapper.getDecoderClasses());
         this.userPrincipal = principal;
-        this.requestParameterMap = requestParameterMap == null ? Collections.<String, List<String>>emptyMap() : Collections.unmodifiableMap(new HashMap<String, List<String>>(requestParameterMap));
+        this.requestParameterMap = requestParameterMap == null || requestParameterMap.isEmpty() ?
+                Collections.<String, List<String>>emptyMap() : Collections.unmodifiableMap(new HashMap<String, List<String>>(requestParameterMap));
 
         if (container != null) {
             maxTextMessageBufferSize = container.getDefaultMaxTextMessageBufferSize();
@@ -166,7 +184,8 @@ public class TyrusSession implements Session {
 
     @Override
     public boolean isOpen() {
-        return (!(state.get() == State.CLOSED || state.get() == State.CLOSING));
+        final State sessionState = state;
+        return (!(sessionState == State.CLOSED || sessionState == State.CLOSING));
     }
 
     @Override
@@ -281,7 +300,17 @@ public class TyrusSession implements Session {
 
     @Override
     public Map<String, Object> getUserProperties() {
-        return userProperties;
+        Map<String, Object> result = userProperties;
+        if (result == null) {
+            synchronized (this) {
+                result = userProperties;
+                if (result == null) {
+                    result = new HashMap<String, Object>();
+                    userProperties = result;
+                }
+            }
+        }
+        return result;
     }
 
     @Override
@@ -291,7 +320,17 @@ public class TyrusSession implements Session {
 
     @Override
     public String getId() {
-        return id;
+        String result = id;
+        if (result == null) {
+            synchronized (this) {
+                result = id;
+                if (result == null) {
+                    result = UUID.randomUUID().toString();
+                    id = result;
+                }
+            }
+        }
+        return result;
     }
 
     @Override
@@ -301,6 +340,9 @@ public class TyrusSession implements Session {
 
     /**
      * Broadcasts text message to all connected clients.
+     * <p/>
+     * Clients connected to other nodes are reached too when a {@link BroadcastBus} is set, see
+     * {@link TyrusEndpointWrapper#broadcast(String)}.
      *
      * @param message message to be broadcasted.
      * @return map of sessions and futures for user to get the information about status of the message.
@@ -311,6 +353,9 @@ public class TyrusSession implements Session {
 
     /**
      * Broadcasts binary message to all connected clients.
+     * <p/>
+     * Clients connected to other nodes are reached too when a {@link BroadcastBus} is set, see
+     * {@link TyrusEndpointWrapper#broadcast(ByteBuffer)}.
      *
      * @param message message to be broadcasted.
      * @return map of sessions and futures for user to get the information about status of the message.
@@ -319,6 +364,197 @@ public class TyrusSession implements Session {
         return endpoint.broadcast(message);
     }
 
+    /**
+     * Broadcasts object to all connected clients.
+     * <p/>
+     * The object is encoded and framed only once for all clients, see {@link TyrusEndpointWrapper#broadcast(Object)}.
+     *
+     * @param message message to be broadcasted.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     * @throws EncodeException when the message cannot be encoded.
+     * @throws IOException     when the encoder fails to write the message.
+     */
+    public Map<Session, Future<?>> broadcast(Object message) throws EncodeException, IOException {
+        return endpoint.broadcast(message);
+    }
+
+    /**
+     * Subscribe this session to a topic of its endpoint.
+     * <p/>
+     * Subscription is cancelled automatically when the session is closed.
+     *
+     * @param topic topic name.
+     * @return {@code true} when the session was not subscribed to the topic before.
+     * @see TopicRegistry
+     */
+    public boolean subscribe(String topic) {
+        checkConnectionState(State.CLOSED, State.CLOSING);
+        return endpoint.getTopicRegistry().subscribe(topic, this);
+    }
+
+    /**
+     * Unsubscribe this session from a topic of its endpoint.
+     *
+     * @param topic topic name.
+     * @return {@code true} when the session was subscribed to the topic.
+     */
+    public boolean unsubscribe(String topic) {
+        return endpoint.getTopicRegistry().unsubscribe(topic, this);
+    }
+
+    /**
+     * Publish text message to all open sessions subscribed to a topic of this session's endpoint.
+     *
+     * @param topic   topic name.
+     * @param message message to be published.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     */
+    public Map<Session, Future<?>> publish(String topic, String message) {
+        return endpoint.getTopicRegistry().publish(topic, message);
+    }
+
+    /**
+     * Publish binary message to all open sessions subscribed to a topic of this session's endpoint.
+     *
+     * @param topic   topic name.
+     * @param message message to be published.
+     * @return map of sessions and futures for user to get the information about status of the message.
+     */
+    public Map<Session, Future<?>> publish(String topic, ByteBuffer message) {
+        return endpoint.getTopicRegistry().publish(topic, message);
+    }
+
+    /**
+     * Get writability of this session.
+     * <p/>
+     * Session is not writable when the amount of outbound data queued in the transport exceeds its high watermark.
+     * Sending is still possible, but the application should stop producing messages for this session until it
+     * becomes writable again (see {@link #setWritabilityListener(WritabilityListener)}), otherwise slow peers can
+     * make the queued data grow without limits.
+     *
+     * @return {@code true} when the session is writable. Always {@code true} when the transport does not track
+     * outbound data.
+     */
+    public boolean isWritable() {
+        return remoteEndpoint.isWritable();
+    }
+
+    /**
+     * Set listener notified when writability of this session changes.
+     *
+     * @param writabilityListener listener to be notified, {@code null} removes the listener.
+     * @see #isWritable()
+     */
+    public void setWritabilityListener(final WritabilityListener writabilityListener) {
+        this.writabilityListener = writabilityListener;
+        updateWritabilityListener();
+    }
+
+    /**
+     * Get conflation queue of this session.
+     * <p/>
+     * The queue is created when first requested.
+     *
+     * @return conflation queue.
+     * @see ConflationQueue
+     */
+    public ConflationQueue getConflationQueue() {
+        ConflationQueue queue = conflationQueue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = conflationQueue;
+                if (queue == null) {
+                    queue = new ConflationQueue(this, remoteEndpoint);
+                    conflationQueue = queue;
+                    updateWritabilityListener();
+                }
+            }
+        }
+        return queue;
+    }
+
+    private synchronized void updateWritabilityListener() {
+        if (writabilityListener == null && conflationQueue == null) {
+            remoteEndpoint.setWritabilityListener(null);
+            return;
+        }
+
+        // single listener dispatching to both the conflation queue and the application listener.
+        remoteEndpoint.setWritabilityListener(new Writer.WritabilityListener() {
+            @Override
+            public void onWritabilityChanged(boolean writable) {
+                final ConflationQueue queue = conflationQueue;
+                if (writable && queue != null) {
+                    queue.drain();
+                }
+
+                final WritabilityListener listener = writabilityListener;
+                if (listener != null) {
+                    listener.onWritabilityChanged(TyrusSession.this, writable);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get heartbeat of this session.
+     * <p/>
+     * Heartbeat is enabled by {@link HeartbeatService#INTERVAL} container property or endpoint config user property.
+     *
+     * @return heartbeat providing round trip time statistics or {@code null} when the heartbeat is not enabled.
+     */
+    public HeartbeatService.Heartbeat getHeartbeat() {
+        return heartbeat;
+    }
+
+    void startHeartbeat(Map<String, Object> endpointProperties) {
+        if (container instanceof BaseContainer && isOpen()) {
+            heartbeat = ((BaseContainer) container).getHeartbeatService().register(this, endpointProperties);
+        }
+    }
+
+    void stopHeartbeat() {
+        final HeartbeatService.Heartbeat localHeartbeat = heartbeat;
+        if (localHeartbeat != null) {
+            localHeartbeat.cancel();
+        }
+    }
+
+    /**
+     * Pass received pong to the heartbeat.
+     *
+     * @param bytes pong payload.
+     * @return {@code true} when the pong was a response to heartbeat ping.
+     */
+    boolean onHeartbeatPong(ByteBuffer bytes) {
+        final HeartbeatService.Heartbeat localHeartbeat = heartbeat;
+        return localHeartbeat != null && localHeartbeat.onPong(bytes);
+    }
+
+    void sendHeartbeatPing(ByteBuffer payload) {
+        try {
+            remoteEndpoint.sendPing(payload);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, String.format("Heartbeat ping failed. Session: '%s'", this), e);
+        }
+    }
+
+    /**
+     * Listener notified when writability of a {@link TyrusSession} changes.
+     * <p/>
+     * Invoked from transport threads, implementations must not block.
+     */
+    public interface WritabilityListener {
+
+        /**
+         * Writability of the session changed.
+         *
+         * @param session  session which writability changed.
+         * @param writable {@code true} when the session became writable again, {@code false} when the outbound
+         *                 queue exceeded the high watermark.
+         */
+        void onWritabilityChanged(Session session, boolean writable);
+    }
 
     void restartIdleTimeoutExecutor() {
         if (this.maxIdleTimeout < 1) {
@@ -335,7 +571,7 @@ public class TyrusSession implements Session {
     }
 
     private void checkConnectionState(State... states) {
-        final State sessionState = state.get();
+        final State sessionState = state;
         for (State s : states) {
             if (sessionState == s) {
                 throw new IllegalStateException(SESSION_CLOSED);
@@ -373,7 +609,7 @@ public class TyrusSession implements Session {
 
                     Object object = endpoint.decodeCompleteMessage(this, message, type, decoder);
                     if (object != null) {
-                        final State currentState = state.get();
+                        final State currentState = state;
                         if (currentState != State.CLOSING && currentState != State.CLOSED) {
                             //noinspection unchecked
                             ((MessageHandler.Whole) mh).onMessage(object);
@@ -410,7 +646,7 @@ public class TyrusSession implements Session {
                     checkMessageSize(message, ((AsyncMessageHandler) handler).getMaxMessageSize());
                 }
 
-                final State currentState = state.get();
+                final State currentState = state;
                 if (currentState != State.CLOSING && currentState != State.CLOSED) {
                     //noinspection unchecked
                     ((MessageHandler.Partial) handler).onMessage(message, last);
@@ -477,7 +713,7 @@ public class TyrusSession implements Session {
     }
 
     State getState() {
-        return state.get();
+        return state;
     }
 
     /**
@@ -487,17 +723,41 @@ public class TyrusSession implements Session {
      */
     void setState(State state) {
         checkConnectionState(State.CLOSED);
-        this.state.set(state);
+        this.state = state;
     }
 
+    RemoteEndpoint getRemoteEndpoint() {
+        return remoteEndpoint;
+    }
+
+    // called only from the thread processing incoming messages.
     TextBuffer getTextBuffer() {
+        if (textBuffer == null) {
+            textBuffer = new TextBuffer();
+        }
         return textBuffer;
     }
 
+    // called only from the thread processing incoming messages.
     BinaryBuffer getBinaryBuffer() {
+        if (binaryBuffer == null) {
+            binaryBuffer = new BinaryBuffer();
+        }
         return binaryBuffer;
     }
 
+    // called only from the thread processing incoming messages.
+    void updateBufferedMessageSize() {
+        final State sessionState = state;
+        long size = 0;
+        if (sessionState == State.RECEIVING_TEXT && textBuffer != null) {
+            size = 2L * textBuffer.getBufferedSize();
+        } else if (sessionState == State.RECEIVING_BINARY && binaryBuffer != null) {
+            size = binaryBuffer.getBufferedSize();
+        }
+        remoteEndpoint.setBufferedMessageSize(size);
+    }
+
     ReaderBuffer getReaderBuffer() {
         return readerBuffer;
     }
@@ -514,21 +774,42 @@ public class TyrusSession implements Session {
         this.inputStreamBuffer = inputStreamBuffer;
     }
 
+    /**
+     * Get {@link Executor} for running tasks related to this session (like streaming message handlers).
+     * <p/>
+     * Tasks are executed in submission order, one at a time, using container {@link ExecutorService}.
+     *
+     * @return per session serial executor.
+     */
+    Executor getExecutor() {
+        SerialExecutor result = executor;
+        if (result == null) {
+            synchronized (this) {
+                result = executor;
+                if (result == null) {
+                    result = new SerialExecutor(((ExecutorServiceProvider) container).getExecutorService());
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
         sb.append("SessionImpl");
         sb.append("{uri=").append(uri);
-        sb.append(", id='").append(id).append('\'');
+        sb.append(", id='").append(getId()).append('\'');
         sb.append(", endpoint=").append(endpoint);
         sb.append('}');
         return sb.toString();
     }
 
     private void changeStateToClosing() {
-        state.compareAndSet(State.RUNNING, State.CLOSING);
-        state.compareAndSet(State.RECEIVING_BINARY, State.CLOSING);
-        state.compareAndSet(State.RECEIVING_TEXT, State.CLOSING);
+        STATE.compareAndSet(this, State.RUNNING, State.CLOSING);
+        STATE.compareAndSet(this, State.RECEIVING_BINARY, State.CLOSING);
+        STATE.compareAndSet(this, State.RECEIVING_TEXT, State.CLOSING);
     }
 
     /**
@@ -44,7 +44,7 @@ import java.nio.ByteBuffer;
 import java.util.EnumSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.websocket.CloseReason;
 import javax.websocket.SendHandler;
@@ -68,8 +68,11 @@ public class TyrusWebSocket implements WebSocket {
         NEW, CONNECTED, CLOSING, CLOSED
     }
 
-    private final EnumSet<State> connected = EnumSet.range(State.CONNECTED, State.CLOSING);
-    private final AtomicReference<State> state = new AtomicReference<State>(State.NEW);
+    private static final EnumSet<State> CONNECTED_STATES = EnumSet.range(State.CONNECTED, State.CLOSING);
+    private static final AtomicReferenceFieldUpdater<TyrusWebSocket, State> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(TyrusWebSocket.class, State.class, "state");
+
+    private volatile State state = State.NEW;
 
     /**
      * Create new instance, set {@link ProtocolHandler} and register {@link WebSocketListener WebSocketListeners}.
@@ -91,7 +94,7 @@ public class TyrusWebSocket implements WebSocket {
 
     @Override
     public boolean isConnected() {
-        return connected.contains(state.get());
+        return CONNECTED_STATES.contains(state);
     }
 
     @Override
@@ -100,17 +103,19 @@ public class TyrusWebSocket implements WebSocket {
             listener.onClose(this, closeReason);
         }
 
-        if (state.compareAndSet(State.CONNECTED, State.CLOSING)) {
+        if (STATE.compareAndSet(this, State.CONNECTED, State.CLOSING)) {
             protocolHandler.close(closeReason.getCloseCode().getCode(), closeReason.getReasonPhrase());
         } else {
-            state.set(State.CLOSED);
+            state = State.CLOSED;
             protocolHandler.doClose();
         }
+
+        protocolHandler.releaseInboundReservation();
     }
 
     @Override
     public void onConnect(UpgradeRequest upgradeRequest) {
-        state.set(State.CONNECTED);
+        state = State.CONNECTED;
 
         if (listener != null) {
             listener.onConnect(this, upgradeRequest);
@@ -174,13 +179,13 @@ public class TyrusWebSocket implements WebSocket {
 
     @Override
     public void close(int code, String reason) {
-        if (state.compareAndSet(State.CONNECTED, State.CLOSING)) {
+        if (STATE.compareAndSet(this, State.CONNECTED, State.CLOSING)) {
             protocolHandler.close(code, reason);
         }
     }
 
     @Override
-    public Future<DataFrame> send(byte[] data) {
+    public Future<Void> send(byte[] data) {
         if (isConnected()) {
             return protocolHandler.send(data);
         } else {
@@ -198,7 +203,25 @@ public class TyrusWebSocket implements WebSocket {
     }
 
     @Override
-    public Future<DataFrame> send(String data) {
+    public Future<Void> sendBinary(ByteBuffer data) {
+        if (isConnected()) {
+            return protocolHandler.sendBinary(data);
+        } else {
+            throw new RuntimeException("Socket is not connected.");
+        }
+    }
+
+    @Override
+    public void sendBinary(ByteBuffer data, SendHandler handler) {
+        if (isConnected()) {
+            protocolHandler.sendBinary(data, handler);
+        } else {
+            throw new RuntimeException("Socket is not connected.");
+        }
+    }
+
+    @Override
+    public Future<Void> send(String data) {
         if (isConnected()) {
             return protocolHandler.send(data);
         } else {
@@ -216,7 +239,7 @@ public class TyrusWebSocket implements WebSocket {
     }
 
     @Override
-    public Future<DataFrame> sendRawFrame(ByteBuffer data) {
+    public Future<Void> sendRawFrame(ByteBuffer data) {
         if (isConnected()) {
             return protocolHandler.sendRawFrame(data);
         } else {
@@ -225,12 +248,12 @@ public class TyrusWebSocket implements WebSocket {
     }
 
     @Override
-    public Future<DataFrame> sendPing(byte[] data) {
+    public Future<Void> sendPing(byte[] data) {
         return send(new DataFrame(new PingFrame(), data));
     }
 
     @Override
-    public Future<DataFrame> sendPong(byte[] data) {
+    public Future<Void> sendPong(byte[] data) {
         return send(new DataFrame(new PongFrame(), data));
     }
 
@@ -243,7 +266,7 @@ public class TyrusWebSocket implements WebSocket {
         }
     }
 
-    private Future<DataFrame> send(DataFrame frame) {
+    private Future<Void> send(DataFrame frame) {
         if (isConnected()) {
             return protocolHandler.send(frame);
         } else {
@@ -252,7 +275,7 @@ public class TyrusWebSocket implements WebSocket {
     }
 
     @Override
-    public Future<DataFrame> stream(boolean last, String fragment) {
+    public Future<Void> stream(boolean last, String fragment) {
         if (isConnected()) {
             return protocolHandler.stream(last, fragment);
         } else {
@@ -261,7 +284,7 @@ public class TyrusWebSocket implements WebSocket {
     }
 
     @Override
-    public Future<DataFrame> stream(boolean last, byte[] bytes, int off, int len) {
+    public Future<Void> stream(boolean last, byte[] bytes, int off, int len) {
         if (isConnected()) {
             return protocolHandler.stream(last, bytes, off, len);
         } else {
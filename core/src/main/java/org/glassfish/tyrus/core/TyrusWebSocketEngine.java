@@ -41,10 +41,14 @@
 package org.glassfish.tyrus.core;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -75,6 +79,36 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
     public static final String INCOMING_BUFFER_SIZE = "org.glassfish.tyrus.incomingBufferSize";
 
+    /**
+     * Maximal payload size of outgoing data frames (Integer); bigger messages are sent as fragmented messages.
+     * <p/>
+     * Fragmentation is disabled by default.
+     *
+     * @see ProtocolHandler#setMaxFrameSize(int)
+     */
+    public static final String MAX_OUTGOING_FRAME_SIZE = "org.glassfish.tyrus.maxOutgoingFrameSize";
+
+    /**
+     * {@link BroadcastBus} instance used for propagating broadcasts to other nodes of a cluster.
+     * <p/>
+     * Not set by default, broadcasts reach only sessions connected to this engine.
+     *
+     * @see #setBroadcastBus(BroadcastBus)
+     */
+    public static final String BROADCAST_BUS = "org.glassfish.tyrus.broadcastBus";
+
+    /**
+     * Maximal number of bytes (Number) of inbound data retained by all connections of the container - incomplete
+     * frames and partially received messages. Reading from connections which need more is paused until the data is
+     * released by other connections.
+     * <p/>
+     * Not set by default, only per-connection limits apply.
+     *
+     * @see InboundMemoryBudget
+     * @see #setInboundMemoryBudget(InboundMemoryBudget)
+     */
+    public static final String INBOUND_MEMORY_BUDGET = "org.glassfish.tyrus.inboundMemoryBudget";
+
     private static final int BUFFER_STEP_SIZE = 256;
     private static final Logger LOGGER = Logger.getLogger(UpgradeRequest.WEBSOCKET);
 
@@ -86,10 +120,16 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
 
     private final Set<WebSocketApplication> applications = Collections.newSetFromMap(new ConcurrentHashMap<WebSocketApplication, Boolean>());
+    private final ConcurrentMap<String, TyrusEndpointWrapper> endpointWrappers = new ConcurrentHashMap<String, TyrusEndpointWrapper>();
     private final ComponentProviderService componentProviderService = ComponentProviderService.create();
     private final WebSocketContainer webSocketContainer;
 
     private int incomingBufferSize = 4194315; // 4M (payload) + 11 (frame overhead)
+    private volatile boolean trustedPeers = false;
+    private volatile int maxOutgoingFrameSize = 0;
+    private BroadcastBus broadcastBus = null;
+    private ExecutorService broadcastExecutor = null;
+    private volatile InboundMemoryBudget inboundMemoryBudget = null;
 
     /**
      * Create {@link WebSocketEngine} instance based on passed {@link WebSocketContainer}.
@@ -163,8 +203,10 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                     handleUnsupportedVersion(request, response);
                     return HANDSHAKE_FAILED_UPGRADE_INFO;
                 }
+                protocolHandler.setTrustedPeer(trustedPeers);
+                protocolHandler.setMaxFrameSize(maxOutgoingFrameSize);
                 protocolHandler.handshake(app, request, response);
-                return new SuccessfulUpgradeInfo(app, protocolHandler, incomingBufferSize, request);
+                return new SuccessfulUpgradeInfo(app, protocolHandler, incomingBufferSize, inboundMemoryBudget, request);
             }
         } catch (HandshakeException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
@@ -214,7 +256,8 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                     do {
                         final DataFrame result = protocolHandler.unframe(data);
                         if (result == null) {
-                            buffer = data;
+                            // do not retain empty buffer, idle connections should not hold any inbound data.
+                            buffer = data.hasRemaining() ? data : null;
                             break;
                         } else {
                             result.respond(socket);
@@ -228,6 +271,9 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                 if (application.onError(socket, wse)) {
                     socket.onClose(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, wse.getMessage()));
                 }
+            } finally {
+                final ByteBuffer retained = buffer;
+                protocolHandler.onReadProcessed(retained == null ? 0 : retained.capacity());
             }
         }
     }
@@ -236,18 +282,107 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         this.incomingBufferSize = incomingBufferSize;
     }
 
+    /**
+     * Set memory budget for inbound data shared by connections created by this engine from now on.
+     *
+     * @param inboundMemoryBudget budget to be used, {@code null} disables accounting.
+     * @see #INBOUND_MEMORY_BUDGET
+     */
+    public void setInboundMemoryBudget(InboundMemoryBudget inboundMemoryBudget) {
+        this.inboundMemoryBudget = inboundMemoryBudget;
+    }
+
+    /**
+     * Set whether all peers connecting to this engine are trusted.
+     * <p/>
+     * Should be set only when the engine is not reachable over the network (in-memory transport, co-located services),
+     * see {@link ProtocolHandler#setTrustedPeer(boolean)}.
+     *
+     * @param trustedPeers {@code true} when all peers are trusted.
+     */
+    public void setTrustedPeers(boolean trustedPeers) {
+        this.trustedPeers = trustedPeers;
+    }
+
+    /**
+     * Set maximal payload size of outgoing data frames for connections upgraded after this call.
+     *
+     * @param maxOutgoingFrameSize maximal payload size in bytes, {@code 0} or less disables fragmentation.
+     * @see #MAX_OUTGOING_FRAME_SIZE
+     */
+    public void setMaxOutgoingFrameSize(int maxOutgoingFrameSize) {
+        this.maxOutgoingFrameSize = maxOutgoingFrameSize;
+    }
+
+    /**
+     * Set bus used for propagating broadcasts of registered endpoints to other nodes of a cluster and start it.
+     * <p/>
+     * Broadcasts of endpoints are then published to the bus and messages received from the bus are broadcasted to
+     * sessions of the endpoint registered under the same path. Previously set bus is stopped.
+     *
+     * @param broadcastBus bus to be used, {@code null} disables propagation.
+     * @see #BROADCAST_BUS
+     */
+    public synchronized void setBroadcastBus(BroadcastBus broadcastBus) {
+        if (this.broadcastBus != null) {
+            this.broadcastBus.stop();
+        }
+        if (broadcastExecutor != null) {
+            broadcastExecutor.shutdown();
+            broadcastExecutor = null;
+        }
+
+        this.broadcastBus = broadcastBus;
+
+        if (broadcastBus != null) {
+            // dedicated executor, so that publishing never blocks or runs the sending in the broadcasting thread;
+            // bus submits at most one task per peer, so the number of threads is bounded by the number of peers.
+            broadcastExecutor = Executors.newCachedThreadPool(new BaseContainer.DaemonThreadFactory());
+            broadcastBus.start(new BroadcastBus.Receiver() {
+                @Override
+                public void onMessage(BroadcastBus.Message message) {
+                    final TyrusEndpointWrapper endpointWrapper = endpointWrappers.get(message.getEndpointPath());
+                    if (endpointWrapper != null) {
+                        endpointWrapper.deliver(message);
+                    }
+                }
+            }, broadcastExecutor);
+        }
+
+        for (TyrusEndpointWrapper endpointWrapper : endpointWrappers.values()) {
+            endpointWrapper.setBroadcastBus(broadcastBus);
+        }
+    }
+
     /**
      * Registers the specified {@link WebSocketApplication} with the
      * <code>WebSocketEngine</code>.
+     * <p/>
+     * Path check and registration are atomic, so endpoints can be registered concurrently.
      *
      * @param app the {@link WebSocketApplication} to register.
      * @throws DeploymentException when added applications responds to same path as some already registered application.
      */
-    private void register(WebSocketApplication app) throws DeploymentException {
+    private synchronized void register(WebSocketApplication app) throws DeploymentException {
         checkPath(app);
         applications.add(app);
     }
 
+    private synchronized void register(TyrusEndpointWrapper endpointWrapper) throws DeploymentException {
+        try {
+            register(new TyrusEndpoint(endpointWrapper));
+        } catch (DeploymentException e) {
+            endpointWrapper.destroy();
+            throw e;
+        }
+
+        final String path = endpointWrapper.getEndpointPath();
+        if (path != null) {
+            endpointWrappers.put(path, endpointWrapper);
+        }
+        endpointWrapper.setBroadcastBus(broadcastBus);
+    }
+
     @Override
     public void register(Class<?> endpointClass, String contextPath) throws DeploymentException {
 
@@ -260,8 +395,9 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                 contextPath, config instanceof ServerEndpointConfig ? ((ServerEndpointConfig) config).getConfigurator() : null);
 
         if (collector.isEmpty()) {
-            register(new TyrusEndpoint(ew));
+            register(ew);
         } else {
+            ew.destroy();
             throw collector.composeComprehensiveException();
         }
     }
@@ -296,11 +432,12 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
                     contextPath, config instanceof ServerEndpointConfig ? ((ServerEndpointConfig) config).getConfigurator() : null);
 
             if (!collector.isEmpty()) {
+                ew.destroy();
                 throw collector.composeComprehensiveException();
             }
         }
 
-        register(new TyrusEndpoint(ew));
+        register(ew);
     }
 
     private void checkPath(WebSocketApplication app) throws DeploymentException {
@@ -319,8 +456,23 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      *
      * @param app the {@link WebSocketApplication} to un-register.
      */
-    public void unregister(WebSocketApplication app) {
-        applications.remove(app);
+    public synchronized void unregister(WebSocketApplication app) {
+        if (applications.remove(app)) {
+            final TyrusEndpointWrapper endpointWrapper = endpointWrappers.remove(app.getPath());
+            if (endpointWrapper != null) {
+                endpointWrapper.setBroadcastBus(null);
+                endpointWrapper.destroy();
+            }
+        }
+    }
+
+    /**
+     * Un-registers all registered {@link WebSocketApplication}s. Called when the container is stopped.
+     */
+    public synchronized void unregisterAll() {
+        for (WebSocketApplication app : new ArrayList<WebSocketApplication>(applications)) {
+            unregister(app);
+        }
     }
 
     private static class NoConnectionUpgradeInfo implements UpgradeInfo {
@@ -346,12 +498,15 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final WebSocketApplication app;
         private final ProtocolHandler protocolHandler;
         private final int incomingBufferSize;
+        private final InboundMemoryBudget inboundMemoryBudget;
         private final UpgradeRequest upgradeRequest;
 
-        SuccessfulUpgradeInfo(WebSocketApplication app, ProtocolHandler protocolHandler, int incomingBufferSize, UpgradeRequest upgradeRequest) {
+        SuccessfulUpgradeInfo(WebSocketApplication app, ProtocolHandler protocolHandler, int incomingBufferSize,
+                              InboundMemoryBudget inboundMemoryBudget, UpgradeRequest upgradeRequest) {
             this.app = app;
             this.protocolHandler = protocolHandler;
             this.incomingBufferSize = incomingBufferSize;
+            this.inboundMemoryBudget = inboundMemoryBudget;
             this.upgradeRequest = upgradeRequest;
         }
 
@@ -362,7 +517,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         @Override
         public Connection createConnection(Writer writer, Connection.CloseListener closeListener) {
-            return new TyrusConnection(app, protocolHandler, incomingBufferSize, writer, closeListener, upgradeRequest);
+            return new TyrusConnection(app, protocolHandler, incomingBufferSize, inboundMemoryBudget, writer, closeListener, upgradeRequest);
         }
     }
 
@@ -373,8 +528,10 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final CloseListener closeListener;
         private final WebSocket socket;
 
-        TyrusConnection(WebSocketApplication app, ProtocolHandler protocolHandler, int incomingBufferSize, Writer writer, Connection.CloseListener closeListener, UpgradeRequest upgradeRequest) {
+        TyrusConnection(WebSocketApplication app, ProtocolHandler protocolHandler, int incomingBufferSize, InboundMemoryBudget inboundMemoryBudget,
+                        Writer writer, Connection.CloseListener closeListener, UpgradeRequest upgradeRequest) {
             protocolHandler.setWriter(writer);
+            protocolHandler.setInboundMemoryBudget(inboundMemoryBudget);
             final WebSocket socket = app.createSocket(protocolHandler, app);
 
             socket.onConnect(upgradeRequest);
@@ -154,6 +154,10 @@ public class Utils {
      * @return single {@link String} containing all items from provided list.
      */
     public static <T> String getHeaderFromList(List<T> list) {
+        if (list.size() == 1) {
+            return String.valueOf(list.get(0));
+        }
+
         StringBuilder sb = new StringBuilder();
         Iterator<T> it = list.iterator();
         while (it.hasNext()) {
@@ -61,7 +61,7 @@ public interface WebSocket {
      * @param data data to be sent.
      * @return {@link Future} which could be used to control/check the sending completion state.
      */
-    Future<DataFrame> send(String data);
+    Future<Void> send(String data);
 
     /**
      * Send a text frame to the remote endpoint.
@@ -77,7 +77,7 @@ public interface WebSocket {
      * @param data data to be sent.
      * @return {@link Future} which could be used to control/check the sending completion state.
      */
-    Future<DataFrame> send(byte[] data);
+    Future<Void> send(byte[] data);
 
     /**
      * Send a binary frame to the remote endpoint.
@@ -87,13 +87,33 @@ public interface WebSocket {
      */
     void send(byte[] data, SendHandler handler);
 
+    /**
+     * Send a binary frame to the remote endpoint.
+     * <p/>
+     * Data are not copied before the message is written, the buffer must not be modified until then.
+     *
+     * @param data data to be sent, bytes between position and limit.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    Future<Void> sendBinary(ByteBuffer data);
+
+    /**
+     * Send a binary frame to the remote endpoint.
+     * <p/>
+     * Data are not copied before the message is written, the buffer must not be modified until then.
+     *
+     * @param data    data to be sent, bytes between position and limit.
+     * @param handler {@link SendHandler#onResult(javax.websocket.SendResult)} will be called when sending is complete.
+     */
+    void sendBinary(ByteBuffer data, SendHandler handler);
+
     /**
      * Send a frame to the remote endpoint.
      *
      * @param data complete data frame.
      * @return {@link Future} which could be used to control/check the sending completion state.
      */
-    Future<DataFrame> sendRawFrame(ByteBuffer data);
+    Future<Void> sendRawFrame(ByteBuffer data);
 
     /**
      * Sends a <code>ping</code> frame with the specified payload (if any).
@@ -103,7 +123,7 @@ public interface WebSocket {
      * @return {@link Future} which could be used to control/check the sending completion state.
      * @since 2.1.9
      */
-    Future<DataFrame> sendPing(byte[] data);
+    Future<Void> sendPing(byte[] data);
 
     /**
      * Sends a <code>ping</code> frame with the specified payload (if any).
@@ -118,7 +138,7 @@ public interface WebSocket {
      * @return {@link Future} which could be used to control/check the sending completion state.
      * @since 2.1.9
      */
-    Future<DataFrame> sendPong(byte[] data);
+    Future<Void> sendPong(byte[] data);
 
     /**
      * Sends a fragment of a complete message.
@@ -127,7 +147,7 @@ public interface WebSocket {
      * @param fragment the textual fragment to send.
      * @return {@link Future} which could be used to control/check the sending completion state.
      */
-    Future<DataFrame> stream(boolean last, String fragment);
+    Future<Void> stream(boolean last, String fragment);
 
     /**
      * Sends a fragment of a complete message.
@@ -138,7 +158,7 @@ public interface WebSocket {
      * @param len      the number of bytes of the fragment to send.
      * @return {@link Future} which could be used to control/check the sending completion state.
      */
-    Future<DataFrame> stream(boolean last, byte[] fragment, int off, int len);
+    Future<Void> stream(boolean last, byte[] fragment, int off, int len);
 
     /**
      * Closes this {@link WebSocket}.
@@ -55,7 +55,7 @@ public class TextFrame extends BaseFrame {
     public byte[] getBytes(DataFrame dataFrame) {
         final byte[] bytes = dataFrame.getBytes();
         if (bytes == null) {
-            setPayload(dataFrame, Utf8Utils.encode(new StrictUtf8(), dataFrame.getTextPayload()));
+            setPayload(dataFrame, Utf8Utils.encode(StrictUtf8.INSTANCE, dataFrame.getTextPayload()));
         }
         return dataFrame.getBytes();
     }
@@ -0,0 +1,129 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.HashMap;
+import java.util.List;
+
+import javax.websocket.ClientEndpoint;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link AnnotatedEndpoint}.
+ */
+public class AnnotatedEndpointTest {
+
+    @Test
+    public void withInstanceDispatchesToInstance() throws Exception {
+        final ErrorCollector collector = new ErrorCollector();
+        final AnnotatedEndpoint model = AnnotatedEndpoint.fromClass(RecordingEndpoint.class, ComponentProviderService.create(), false, collector);
+        assertTrue(collector.isEmpty());
+
+        final RecordingEndpoint first = new RecordingEndpoint();
+        final RecordingEndpoint second = new RecordingEndpoint();
+
+        deliver(model.withInstance(first, collector), "hello");
+        deliver(model.withInstance(second, collector), "world");
+        deliver(model.withInstance(second, collector), "fail");
+
+        assertEquals("hello", first.message);
+        assertNull(first.error);
+        assertEquals("fail", second.message);
+        assertNotNull(second.error);
+        assertEquals("fail", second.error.getMessage());
+    }
+
+    @Test
+    public void withInstanceCreatesNewConfiguration() {
+        final ErrorCollector collector = new ErrorCollector();
+        final AnnotatedEndpoint model = AnnotatedEndpoint.fromClass(RecordingEndpoint.class, ComponentProviderService.create(), false, collector);
+
+        final AnnotatedEndpoint first = model.withInstance(null, collector);
+        final AnnotatedEndpoint second = model.withInstance(new RecordingEndpoint(), collector);
+        assertTrue(collector.isEmpty());
+
+        first.getEndpointConfig().getUserProperties().put("key", "value");
+        assertNotSame(first.getEndpointConfig(), second.getEndpointConfig());
+        assertTrue(second.getEndpointConfig().getUserProperties().isEmpty());
+        assertTrue(model.getEndpointConfig().getUserProperties().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void deliver(AnnotatedEndpoint endpoint, String message) throws Exception {
+        final TyrusEndpointWrapper endpointWrapper = new TyrusEndpointWrapper(endpoint, endpoint.getEndpointConfig(),
+                ComponentProviderService.create(), null, null, null);
+        final TyrusSession session = new TyrusSession(null, new TyrusRemoteEndpoint(new TyrusWebSocket(new ProtocolHandler(false), null)),
+                endpointWrapper, null, null, false, null, null, null, null, new HashMap<String, List<String>>());
+
+        endpoint.onOpen(session, endpoint.getEndpointConfig());
+        assertEquals(1, session.getMessageHandlers().size());
+        ((MessageHandler.Whole<String>) session.getMessageHandlers().iterator().next()).onMessage(message);
+    }
+
+    @ClientEndpoint
+    public static class RecordingEndpoint {
+
+        volatile String message;
+        volatile Throwable error;
+
+        @OnMessage
+        public void onMessage(String message) {
+            this.message = message;
+            if ("fail".equals(message)) {
+                throw new IllegalStateException(message);
+            }
+        }
+
+        @OnError
+        public void onError(Throwable t) {
+            this.error = t;
+        }
+    }
+}
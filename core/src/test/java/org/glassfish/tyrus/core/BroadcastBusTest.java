@@ -0,0 +1,276 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BroadcastBusTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void messagesAreBatchedPerPeer() {
+        final LoopbackBroadcastBus.Group group = new LoopbackBroadcastBus.Group();
+        final QueuedExecutor executor = new QueuedExecutor();
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+
+        final LoopbackBroadcastBus a = new LoopbackBroadcastBus(group, "a", 2) {
+            @Override
+            protected void send(String peer, List<Message> batch) {
+                batchSizes.add(batch.size());
+                super.send(peer, batch);
+            }
+        };
+        final LoopbackBroadcastBus b = new LoopbackBroadcastBus(group, "b");
+        final LoopbackBroadcastBus c = new LoopbackBroadcastBus(group, "c");
+
+        final List<String> receivedA = new ArrayList<String>();
+        final List<String> receivedB = new ArrayList<String>();
+        final List<String> receivedC = new ArrayList<String>();
+        a.start(new CollectingReceiver(receivedA), executor);
+        b.start(new CollectingReceiver(receivedB), executor);
+        c.start(new CollectingReceiver(receivedC), executor);
+
+        for (int i = 0; i < 5; i++) {
+            a.publish(new BroadcastBus.Message("/echo", true, ("message-" + i).getBytes(UTF8)));
+        }
+
+        // one pending flush per peer, regardless of the number of messages.
+        assertEquals(2, executor.tasks.size());
+        executor.runAll();
+
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 5; i++) {
+            expected.add("/echo:message-" + i);
+        }
+        assertEquals(expected, receivedB);
+        assertEquals(expected, receivedC);
+        assertTrue(receivedA.isEmpty());
+
+        final List<Integer> expectedSizes = new ArrayList<Integer>();
+        for (int i = 0; i < 2; i++) {
+            expectedSizes.add(2);
+            expectedSizes.add(2);
+            expectedSizes.add(1);
+        }
+        assertEquals(expectedSizes, batchSizes);
+
+        b.stop();
+        c.stop();
+        a.publish(new BroadcastBus.Message("/echo", true, "ignored".getBytes(UTF8)));
+        assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    public void stoppedPeerIgnoresPendingMessages() {
+        final LoopbackBroadcastBus.Group group = new LoopbackBroadcastBus.Group();
+        final QueuedExecutor executor = new QueuedExecutor();
+
+        final LoopbackBroadcastBus a = new LoopbackBroadcastBus(group, "a");
+        final LoopbackBroadcastBus b = new LoopbackBroadcastBus(group, "b");
+        final List<String> receivedB = new ArrayList<String>();
+        a.start(new CollectingReceiver(new ArrayList<String>()), executor);
+        b.start(new CollectingReceiver(receivedB), executor);
+
+        a.publish(new BroadcastBus.Message("/echo", false, new byte[]{1, 2, 3}));
+        b.stop();
+        executor.runAll();
+
+        assertTrue(receivedB.isEmpty());
+    }
+
+    @Test
+    public void fullQueueDropsOldest() {
+        final List<String> receivedB = new ArrayList<String>();
+        final LoopbackBroadcastBus a = startPair(BroadcastBus.OverflowPolicy.DROP_OLDEST, receivedB);
+
+        for (int i = 0; i < 5; i++) {
+            a.publish(new BroadcastBus.Message("/echo", true, ("message-" + i).getBytes(UTF8)));
+        }
+        assertEquals(2, a.getDroppedMessageCount());
+        executor.runAll();
+
+        assertEquals(Arrays.asList("/echo:message-2", "/echo:message-3", "/echo:message-4"), receivedB);
+
+        // queue has room again once sent
+        a.publish(new BroadcastBus.Message("/echo", true, "message-5".getBytes(UTF8)));
+        executor.runAll();
+        assertEquals("/echo:message-5", receivedB.get(3));
+        assertEquals(2, a.getDroppedMessageCount());
+    }
+
+    @Test
+    public void fullQueueDropsNewest() {
+        final List<String> receivedB = new ArrayList<String>();
+        final LoopbackBroadcastBus a = startPair(BroadcastBus.OverflowPolicy.DROP_NEWEST, receivedB);
+
+        for (int i = 0; i < 5; i++) {
+            a.publish(new BroadcastBus.Message("/echo", true, ("message-" + i).getBytes(UTF8)));
+        }
+        assertEquals(2, a.getDroppedMessageCount());
+        executor.runAll();
+
+        assertEquals(Arrays.asList("/echo:message-0", "/echo:message-1", "/echo:message-2"), receivedB);
+    }
+
+    @Test
+    public void rejectedSendIsNotRetried() {
+        final LoopbackBroadcastBus.Group group = new LoopbackBroadcastBus.Group();
+        final RejectingExecutor rejecting = new RejectingExecutor();
+
+        final LoopbackBroadcastBus a = new LoopbackBroadcastBus(group, "a");
+        final LoopbackBroadcastBus b = new LoopbackBroadcastBus(group, "b");
+        final List<String> receivedB = new ArrayList<String>();
+        a.start(new CollectingReceiver(new ArrayList<String>()), rejecting);
+        b.start(new CollectingReceiver(receivedB), rejecting);
+
+        // publishing thread is not blocked and does not see the rejection.
+        a.publish(new BroadcastBus.Message("/echo", true, "rejected".getBytes(UTF8)));
+        assertEquals(1, rejecting.rejected);
+        assertTrue(receivedB.isEmpty());
+
+        // next message is scheduled again once the executor accepts tasks.
+        rejecting.reject = false;
+        a.publish(new BroadcastBus.Message("/echo", true, "accepted".getBytes(UTF8)));
+        assertEquals(Arrays.asList("/echo:accepted"), receivedB);
+    }
+
+    @Test
+    public void invalidQueueSize() {
+        try {
+            new LoopbackBroadcastBus(new LoopbackBroadcastBus.Group(), "a", 1, 0, BroadcastBus.OverflowPolicy.DROP_OLDEST);
+            fail("IllegalArgumentException expected.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void duplicateNodeId() {
+        final LoopbackBroadcastBus.Group group = new LoopbackBroadcastBus.Group();
+        final QueuedExecutor executor = new QueuedExecutor();
+
+        new LoopbackBroadcastBus(group, "a").start(new CollectingReceiver(new ArrayList<String>()), executor);
+        final LoopbackBroadcastBus duplicate = new LoopbackBroadcastBus(group, "a");
+        try {
+            duplicate.start(new CollectingReceiver(new ArrayList<String>()), executor);
+            fail("IllegalStateException expected.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        try {
+            duplicate.publish(new BroadcastBus.Message("/echo", true, new byte[0]));
+            fail("IllegalStateException expected, bus is not started.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private final QueuedExecutor executor = new QueuedExecutor();
+
+    private static class RejectingExecutor implements Executor {
+
+        private boolean reject = true;
+        private int rejected = 0;
+
+        @Override
+        public void execute(Runnable command) {
+            if (reject) {
+                rejected++;
+                throw new RejectedExecutionException();
+            }
+            command.run();
+        }
+    }
+
+    /**
+     * Start bus "a" with queue size 3 and its peer "b".
+     */
+    private LoopbackBroadcastBus startPair(BroadcastBus.OverflowPolicy overflowPolicy, List<String> receivedB) {
+        final LoopbackBroadcastBus.Group group = new LoopbackBroadcastBus.Group();
+        final LoopbackBroadcastBus a = new LoopbackBroadcastBus(group, "a", 2, 3, overflowPolicy);
+        final LoopbackBroadcastBus b = new LoopbackBroadcastBus(group, "b");
+        a.start(new CollectingReceiver(new ArrayList<String>()), executor);
+        b.start(new CollectingReceiver(receivedB), executor);
+        return a;
+    }
+
+    private static class CollectingReceiver implements BroadcastBus.Receiver {
+
+        private final List<String> received;
+
+        CollectingReceiver(List<String> received) {
+            this.received = received;
+        }
+
+        @Override
+        public void onMessage(BroadcastBus.Message message) {
+            received.add(message.getEndpointPath() + ":" + new String(message.getPayload(), UTF8));
+        }
+    }
+
+    private static class QueuedExecutor implements Executor {
+
+        private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.removeFirst().run();
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.Arrays;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ComponentProviderServiceTest {
+
+    private ComponentProviderService service;
+    private TyrusEndpointWrapper endpointWrapper;
+
+    @Before
+    public void setUp() throws DeploymentException {
+        service = ComponentProviderService.create();
+        endpointWrapper = new TyrusEndpointWrapper(PerSessionEndpoint.class, null, ComponentProviderService.create(), null, null, null);
+    }
+
+    @Test
+    public void perSessionByDefault() throws DeploymentException {
+        service.configureEndpointInstances(PerSessionEndpoint.class, null);
+
+        final Object first = getInstance(PerSessionEndpoint.class, createSession());
+        final Object second = getInstance(PerSessionEndpoint.class, createSession());
+
+        assertTrue(first instanceof PerSessionEndpoint);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void singleton() throws DeploymentException {
+        service.configureEndpointInstances(SingletonEndpoint.class, null);
+
+        final Session session = createSession();
+        final Object first = getInstance(SingletonEndpoint.class, session);
+        service.removeSession(session);
+
+        assertSame(first, getInstance(SingletonEndpoint.class, createSession()));
+        assertSame(first, getInstance(SingletonEndpoint.class, createSession()));
+    }
+
+    @Test
+    public void pooled() throws DeploymentException {
+        service.configureEndpointInstances(PooledEndpoint.class, null);
+
+        final Session first = createSession();
+        final Session second = createSession();
+        final Object firstInstance = getInstance(PooledEndpoint.class, first);
+        final Object secondInstance = getInstance(PooledEndpoint.class, second);
+        assertNotSame(firstInstance, secondInstance);
+
+        // pool size is 1, second instance is discarded.
+        service.removeSession(first);
+        service.removeSession(second);
+
+        assertSame(firstInstance, getInstance(PooledEndpoint.class, createSession()));
+        final Object newInstance = getInstance(PooledEndpoint.class, createSession());
+        assertNotSame(firstInstance, newInstance);
+        assertNotSame(secondInstance, newInstance);
+    }
+
+    @Test
+    public void userPropertyOverridesAnnotation() throws DeploymentException {
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(SingletonEndpoint.class, "/").build();
+        config.getUserProperties().put(ComponentProviderService.ENDPOINT_INSTANCE_POLICY, "per_session");
+        service.configureEndpointInstances(SingletonEndpoint.class, config);
+
+        assertNotSame(getInstance(SingletonEndpoint.class, createSession()),
+                getInstance(SingletonEndpoint.class, createSession()));
+
+        config.getUserProperties().put(ComponentProviderService.ENDPOINT_INSTANCE_POLICY, EndpointInstancePolicy.Policy.SINGLETON);
+        service.configureEndpointInstances(PerSessionEndpoint.class, config);
+
+        assertSame(getInstance(PerSessionEndpoint.class, createSession()),
+                getInstance(PerSessionEndpoint.class, createSession()));
+    }
+
+    @Test
+    public void reconfigurationKeepsInstances() throws DeploymentException {
+        service.configureEndpointInstances(SingletonEndpoint.class, null);
+        final Object first = getInstance(SingletonEndpoint.class, createSession());
+
+        // e.g. the same class deployed on another path.
+        service.configureEndpointInstances(SingletonEndpoint.class,
+                ServerEndpointConfig.Builder.create(SingletonEndpoint.class, "/other").build());
+
+        assertSame(first, getInstance(SingletonEndpoint.class, createSession()));
+    }
+
+    @Test
+    public void conflictingPolicyRefused() throws DeploymentException {
+        service.configureEndpointInstances(SingletonEndpoint.class, null);
+        final Object first = getInstance(SingletonEndpoint.class, createSession());
+
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(SingletonEndpoint.class, "/other").build();
+        config.getUserProperties().put(ComponentProviderService.ENDPOINT_INSTANCE_POLICY, EndpointInstancePolicy.Policy.PER_SESSION);
+        try {
+            service.configureEndpointInstances(SingletonEndpoint.class, config);
+            fail("Conflicting policy should be refused.");
+        } catch (DeploymentException e) {
+            // expected.
+        }
+
+        // copies share the configuration.
+        try {
+            new ComponentProviderService(service).configureEndpointInstances(SingletonEndpoint.class, config);
+            fail("Conflicting policy should be refused.");
+        } catch (DeploymentException e) {
+            // expected.
+        }
+
+        assertSame(first, getInstance(SingletonEndpoint.class, createSession()));
+    }
+
+    @Test
+    public void conflictingPoolSizeRefused() throws DeploymentException {
+        service.configureEndpointInstances(PooledEndpoint.class, null);
+
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(PooledEndpoint.class, "/other").build();
+        config.getUserProperties().put(ComponentProviderService.ENDPOINT_INSTANCE_POOL_SIZE, 5);
+        try {
+            service.configureEndpointInstances(PooledEndpoint.class, config);
+            fail("Conflicting pool size should be refused.");
+        } catch (DeploymentException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void undeploymentOfLastDeploymentReleasesInstances() throws DeploymentException {
+        service.configureEndpointInstances(SingletonEndpoint.class, null);
+        service.configureEndpointInstances(SingletonEndpoint.class, null);
+        final Session session = createSession();
+        final Object first = getInstance(SingletonEndpoint.class, session);
+
+        // other deployment still uses the singleton.
+        service.destroyEndpointInstances(SingletonEndpoint.class);
+        final Session other = createSession();
+        assertSame(first, getInstance(SingletonEndpoint.class, other));
+        service.removeSession(other);
+
+        service.destroyEndpointInstances(SingletonEndpoint.class);
+        assertNotSame(first, getInstance(SingletonEndpoint.class, createSession()));
+
+        // singleton is still used by an open session.
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(SingletonEndpoint.class, "/").build();
+        config.getUserProperties().put(ComponentProviderService.ENDPOINT_INSTANCE_POLICY, EndpointInstancePolicy.Policy.PER_SESSION);
+        try {
+            service.configureEndpointInstances(SingletonEndpoint.class, config);
+            fail("Conflicting policy should be refused.");
+        } catch (DeploymentException e) {
+            // expected.
+        }
+
+        service.removeSession(session);
+        service.configureEndpointInstances(SingletonEndpoint.class, config);
+    }
+
+    @Test
+    public void destroyedCacheDoesNotKeepInstances() throws Exception {
+        final EndpointInstanceCache singleton = new EndpointInstanceCache(EndpointInstancePolicy.Policy.SINGLETON, 0);
+        singleton.deployed();
+        final Object shared = singleton.obtain(service, SingletonEndpoint.class);
+        assertSame(shared, singleton.obtain(service, SingletonEndpoint.class));
+
+        assertTrue(singleton.undeployed());
+        assertTrue(singleton.destroyAll().isEmpty());
+        assertTrue(singleton.release(shared));
+        // last user destroys the instance.
+        assertFalse(singleton.release(shared));
+
+        final EndpointInstanceCache pooled = new EndpointInstanceCache(EndpointInstancePolicy.Policy.POOLED, 2);
+        pooled.deployed();
+        final Object idle = pooled.obtain(service, PooledEndpoint.class);
+        final Object used = pooled.obtain(service, PooledEndpoint.class);
+        assertTrue(pooled.release(idle));
+
+        assertTrue(pooled.undeployed());
+        assertEquals(Arrays.asList(idle), pooled.destroyAll());
+        assertFalse(pooled.release(used));
+    }
+
+    private Object getInstance(Class<?> endpointClass, Session session) {
+        final ErrorCollector collector = new ErrorCollector();
+        final Object instance = service.getInstance(endpointClass, session, collector);
+        assertTrue(collector.isEmpty());
+        return instance;
+    }
+
+    private TyrusSession createSession() {
+        return TestSessions.create(endpointWrapper, null);
+    }
+
+    public static class PerSessionEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    @EndpointInstancePolicy(EndpointInstancePolicy.Policy.SINGLETON)
+    public static class SingletonEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    @EndpointInstancePolicy(value = EndpointInstancePolicy.Policy.POOLED, poolSize = 1)
+    public static class PooledEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConflationQueueTest {
+
+    private TyrusEndpointWrapper endpointWrapper;
+
+    @Before
+    public void setUp() throws DeploymentException {
+        endpointWrapper = new TyrusEndpointWrapper(TestSessions.NoopEndpoint.class, null, ComponentProviderService.create(), null, "/conflation", null);
+    }
+
+    @Test
+    public void latestValuePerKeyInArrivalOrder() {
+        final ControlledWriter writer = new ControlledWriter(false);
+        final TyrusSession session = connect(writer);
+        final ConflationQueue queue = session.getConflationQueue();
+        assertSame(queue, session.getConflationQueue());
+
+        queue.send("A", "a1");
+        queue.send("B", "b1");
+        queue.send("A", "a2");
+        queue.send("C", "c1");
+        queue.send("B", "b2");
+
+        assertEquals(3, queue.size());
+        assertTrue(writer.written.isEmpty());
+
+        final List<Boolean> notified = new ArrayList<Boolean>();
+        session.setWritabilityListener(new TyrusSession.WritabilityListener() {
+            @Override
+            public void onWritabilityChanged(Session session, boolean writable) {
+                notified.add(writable);
+            }
+        });
+        writer.setWritable(true);
+
+        // one message in flight at a time.
+        assertEquals(1, writer.written.size());
+        assertEquals("a2", writer.written.get(0));
+        queue.send("B", "b3");
+
+        writer.completeAll();
+        assertEquals(2, writer.written.size());
+        assertEquals("b3", writer.written.get(1));
+
+        writer.completeAll();
+        assertEquals(3, writer.written.size());
+        assertEquals("c1", writer.written.get(2));
+        assertEquals(0, queue.size());
+
+        // application listener still notified.
+        assertEquals(1, notified.size());
+        assertTrue(notified.get(0));
+    }
+
+    @Test
+    public void synchronouslyCompletedWritesDrainWholeQueue() {
+        final ControlledWriter writer = new ControlledWriter(true);
+        writer.completeImmediately = true;
+        final ConflationQueue queue = connect(writer).getConflationQueue();
+
+        for (int i = 0; i < 1000; i++) {
+            queue.send(i, ByteBuffer.wrap(new byte[]{(byte) i}));
+        }
+
+        assertEquals(1000, writer.written.size());
+        assertEquals(0, queue.size());
+    }
+
+    private TyrusSession connect(Writer writer) {
+        return TestSessions.connect(endpointWrapper, writer);
+    }
+
+    private static class ControlledWriter extends Writer {
+
+        private final List<String> written = new ArrayList<String>();
+        private final List<CompletionHandler<ByteBuffer>> pending = new ArrayList<CompletionHandler<ByteBuffer>>();
+        private volatile boolean writable;
+        private boolean completeImmediately = false;
+
+        ControlledWriter(boolean writable) {
+            this.writable = writable;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            // unmasked server frames with short payload: two bytes of header.
+            written.add(new String(buffer.array(), buffer.arrayOffset() + buffer.position() + 2,
+                    buffer.remaining() - 2, Charset.forName("UTF-8")));
+            if (completeImmediately) {
+                completionHandler.completed(buffer);
+            } else {
+                pending.add(completionHandler);
+            }
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+
+        void setWritable(boolean writable) {
+            this.writable = writable;
+            onWritabilityChanged(writable);
+        }
+
+        void completeAll() {
+            final List<CompletionHandler<ByteBuffer>> handlers = new ArrayList<CompletionHandler<ByteBuffer>>(pending);
+            pending.clear();
+            for (CompletionHandler<ByteBuffer> handler : handlers) {
+                handler.completed(null);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
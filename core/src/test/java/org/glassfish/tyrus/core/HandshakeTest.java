@@ -0,0 +1,209 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.UpgradeResponse;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HandshakeTest {
+
+    @Test
+    public void testResponse() {
+        final RequestContext request = createRequest();
+        request.getHeaders().put("connection", Arrays.asList("keep-alive", "Upgrade"));
+
+        final TyrusUpgradeResponse response = new TyrusUpgradeResponse();
+        Handshake.createServerHandShake(request).respond(response, new TestApplication());
+
+        assertEquals(101, response.getStatus());
+        // RFC 6455, section 1.3.
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", response.getFirstHeaderValue("sec-websocket-accept"));
+        assertEquals(UpgradeRequest.WEBSOCKET, response.getFirstHeaderValue(UpgradeRequest.UPGRADE));
+        assertEquals(UpgradeRequest.UPGRADE, response.getFirstHeaderValue("CONNECTION"));
+    }
+
+    @Test
+    public void testResponseHeadersModifiable() {
+        final TyrusUpgradeResponse first = new TyrusUpgradeResponse();
+        Handshake.createServerHandShake(createRequest()).respond(first, new TestApplication());
+        // as Configurator#modifyHandshake could do.
+        first.getHeaders().get(UpgradeRequest.UPGRADE).set(0, "modified");
+        first.getHeaders().get(UpgradeRequest.CONNECTION).set(0, "modified");
+
+        final TyrusUpgradeResponse second = new TyrusUpgradeResponse();
+        Handshake.createServerHandShake(createRequest()).respond(second, new TestApplication());
+        assertEquals(UpgradeRequest.WEBSOCKET, second.getFirstHeaderValue(UpgradeRequest.UPGRADE));
+        assertEquals(UpgradeRequest.UPGRADE, second.getFirstHeaderValue(UpgradeRequest.CONNECTION));
+    }
+
+    @Test
+    public void testMissingConnectionHeader() {
+        final RequestContext request = createRequest();
+        request.getHeaders().remove(UpgradeRequest.CONNECTION);
+
+        try {
+            Handshake.createServerHandShake(request);
+            fail("HandshakeException expected.");
+        } catch (HandshakeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidConnectionHeader() {
+        final RequestContext request = createRequest();
+        request.getHeaders().put(UpgradeRequest.CONNECTION, Arrays.asList("keep-alive"));
+
+        try {
+            Handshake.createServerHandShake(request);
+            fail("HandshakeException expected.");
+        } catch (HandshakeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidKey() {
+        final RequestContext request = createRequest();
+        request.getHeaders().put(UpgradeRequest.SEC_WEBSOCKET_KEY, Arrays.asList("not a base64 key"));
+
+        try {
+            Handshake.createServerHandShake(request);
+            fail("HandshakeException expected.");
+        } catch (HandshakeException e) {
+            assertEquals(400, e.getCode());
+        }
+    }
+
+    @Test
+    public void testCaseInsensitiveHeaders() {
+        final RequestContext request = createRequest();
+        request.getHeaders().put("x-test", Arrays.asList("a", "b"));
+
+        assertEquals("dGhlIHNhbXBsZSBub25jZQ==", request.getHeader("SEC-WEBSOCKET-KEY"));
+        assertEquals("a, b", request.getHeader("X-Test"));
+    }
+
+    private static RequestContext createRequest() {
+        final RequestContext request = RequestContext.Builder.create().requestURI(URI.create("/chat")).build();
+        request.getHeaders().put("Host", Arrays.asList("server.example.com"));
+        request.getHeaders().put("Upgrade", Arrays.asList("websocket"));
+        request.getHeaders().put("Connection", Arrays.asList("Upgrade"));
+        request.getHeaders().put("Sec-WebSocket-Key", Arrays.asList("dGhlIHNhbXBsZSBub25jZQ=="));
+        request.getHeaders().put("Sec-WebSocket-Version", Arrays.asList("13"));
+        return request;
+    }
+
+    private static class TestApplication extends WebSocketApplication {
+
+        @Override
+        public WebSocket createSocket(ProtocolHandler handler, WebSocketListener listener) {
+            return null;
+        }
+
+        @Override
+        public void onClose(WebSocket socket, CloseReason closeReason) {
+        }
+
+        @Override
+        public void onConnect(WebSocket socket, UpgradeRequest upgradeRequest) {
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, String text) {
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, byte[] bytes) {
+        }
+
+        @Override
+        public void onPing(WebSocket socket, byte[] bytes) {
+        }
+
+        @Override
+        public void onPong(WebSocket socket, byte[] bytes) {
+        }
+
+        @Override
+        public void onFragment(WebSocket socket, String fragment, boolean last) {
+        }
+
+        @Override
+        public void onFragment(WebSocket socket, byte[] fragment, boolean last) {
+        }
+
+        @Override
+        public void onHandShakeResponse(UpgradeRequest request, UpgradeResponse response) {
+        }
+
+        @Override
+        protected boolean isApplicationRequest(UpgradeRequest request) {
+            return true;
+        }
+
+        @Override
+        public String getPath() {
+            return "/chat";
+        }
+
+        @Override
+        public List<Extension> getSupportedExtensions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<String> getSupportedProtocols(List<String> subProtocol) {
+            return Collections.emptyList();
+        }
+    }
+}
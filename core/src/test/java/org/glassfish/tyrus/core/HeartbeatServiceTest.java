@@ -0,0 +1,212 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.SendHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HeartbeatServiceTest {
+
+    private ScheduledExecutorService scheduledExecutorService;
+    private TyrusEndpointWrapper endpointWrapper;
+
+    @Before
+    public void setUp() throws DeploymentException {
+        scheduledExecutorService = Executors.newScheduledThreadPool(1);
+        endpointWrapper = new TyrusEndpointWrapper(TestSessions.NoopEndpoint.class, null, ComponentProviderService.create(), null, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        scheduledExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void disabledByDefault() {
+        final HeartbeatService service = new HeartbeatService(scheduledExecutorService, null);
+        assertNull(service.register(createSession(new PingEndpoint(true)), null));
+        assertEquals(0, service.getSessionCount());
+    }
+
+    @Test
+    public void roundTripTime() throws InterruptedException {
+        final HeartbeatService service = new HeartbeatService(scheduledExecutorService, properties(20, 2));
+        final PingEndpoint remoteEndpoint = new PingEndpoint(true);
+        final HeartbeatService.Heartbeat heartbeat = service.register(createSession(remoteEndpoint), null);
+        remoteEndpoint.heartbeat = heartbeat;
+
+        assertTrue(remoteEndpoint.pings.await(3, TimeUnit.SECONDS));
+        assertTrue(heartbeat.getPongCount() >= 2);
+        assertTrue(heartbeat.getLastRtt(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(heartbeat.getMinRtt(TimeUnit.NANOSECONDS) <= heartbeat.getMaxRtt(TimeUnit.NANOSECONDS));
+        assertEquals(0, heartbeat.getMissedPongs());
+        assertEquals(1, service.getSessionCount());
+        assertFalse(remoteEndpoint.closed.await(0, TimeUnit.MILLISECONDS));
+
+        heartbeat.cancel();
+        assertEquals(0, service.getSessionCount());
+    }
+
+    @Test
+    public void missedPongsCloseSession() throws InterruptedException {
+        final HeartbeatService service = new HeartbeatService(scheduledExecutorService, properties(20, 2));
+        final PingEndpoint remoteEndpoint = new PingEndpoint(false);
+
+        // endpoint properties override container defaults.
+        final Map<String, Object> endpointProperties = new HashMap<String, Object>();
+        endpointProperties.put(HeartbeatService.INTERVAL, 10);
+        final HeartbeatService.Heartbeat heartbeat = service.register(createSession(remoteEndpoint), endpointProperties);
+
+        assertEquals(10, heartbeat.getInterval(TimeUnit.MILLISECONDS));
+        assertTrue(remoteEndpoint.closed.await(3, TimeUnit.SECONDS));
+        assertEquals(CloseReason.CloseCodes.GOING_AWAY, remoteEndpoint.closeReason.getCloseCode());
+        assertEquals(-1, heartbeat.getLastRtt(TimeUnit.NANOSECONDS));
+        assertEquals(0, service.getSessionCount());
+    }
+
+    @Test
+    public void applicationPongIgnored() {
+        final HeartbeatService service = new HeartbeatService(scheduledExecutorService, properties(10000, 2));
+        final HeartbeatService.Heartbeat heartbeat = service.register(createSession(new PingEndpoint(true)), null);
+
+        assertFalse(heartbeat.onPong(ByteBuffer.wrap("application data".getBytes())));
+        assertFalse(heartbeat.onPong(ByteBuffer.allocate(0)));
+        assertEquals(0, heartbeat.getPongCount());
+    }
+
+    private Map<String, Object> properties(int interval, int maxMissedPongs) {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(HeartbeatService.INTERVAL, interval);
+        properties.put(HeartbeatService.MAX_MISSED_PONGS, maxMissedPongs);
+        properties.put(HeartbeatService.TICK_DURATION, 5);
+        return properties;
+    }
+
+    private TyrusSession createSession(RemoteEndpoint remoteEndpoint) {
+        return TestSessions.create(endpointWrapper, remoteEndpoint);
+    }
+
+    /**
+     * Remote endpoint which either answers heartbeat pings immediately or ignores them.
+     */
+    private static class PingEndpoint extends RemoteEndpoint {
+
+        private final boolean respond;
+        private final CountDownLatch pings = new CountDownLatch(3);
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile HeartbeatService.Heartbeat heartbeat;
+        private volatile CloseReason closeReason;
+
+        private PingEndpoint(boolean respond) {
+            this.respond = respond;
+        }
+
+        @Override
+        public Future<Void> sendPing(ByteBuffer applicationData) {
+            final HeartbeatService.Heartbeat localHeartbeat = heartbeat;
+            if (respond && localHeartbeat != null) {
+                assertTrue(localHeartbeat.onPong(applicationData));
+                pings.countDown();
+            }
+            return null;
+        }
+
+        @Override
+        public void close(CloseReason closeReason) {
+            this.closeReason = closeReason;
+            closed.countDown();
+        }
+
+        @Override
+        public Future<Void> sendText(String text) {
+            return null;
+        }
+
+        @Override
+        public void sendText(String text, SendHandler handler) {
+        }
+
+        @Override
+        public Future<Void> sendBinary(ByteBuffer data) {
+            return null;
+        }
+
+        @Override
+        public void sendBinary(ByteBuffer data, SendHandler handler) {
+        }
+
+        @Override
+        public Future<Void> sendText(String fragment, boolean isLast) {
+            return null;
+        }
+
+        @Override
+        public Future<Void> sendBinary(ByteBuffer partialByte, boolean isLast) {
+            return null;
+        }
+
+        @Override
+        public Future<Void> sendPong(ByteBuffer applicationData) {
+            return null;
+        }
+
+        @Override
+        public void setWriteTimeout(long timeoutMs) {
+        }
+    }
+}
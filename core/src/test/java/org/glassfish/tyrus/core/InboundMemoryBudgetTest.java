@@ -0,0 +1,249 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InboundMemoryBudgetTest {
+
+    @Test
+    public void reservationsWithinLimit() {
+        final InboundMemoryBudget budget = new InboundMemoryBudget(100);
+        final PausableWriter writer = new PausableWriter(true);
+        final InboundMemoryBudget.Reservation reservation = budget.newReservation(writer);
+
+        reservation.setFrameBytes(40);
+        reservation.setMessageBytes(60);
+        reservation.commit();
+        assertEquals(100, budget.getUsed());
+        assertFalse(writer.paused);
+
+        reservation.setFrameBytes(0);
+        reservation.commit();
+        assertEquals(60, budget.getUsed());
+
+        reservation.release();
+        assertEquals(0, budget.getUsed());
+        assertEquals(0, writer.pauseCount);
+    }
+
+    @Test
+    public void readingPausedUntilSpaceIsReleased() {
+        final InboundMemoryBudget budget = new InboundMemoryBudget(100);
+        final PausableWriter writerA = new PausableWriter(true);
+        final PausableWriter writerB = new PausableWriter(true);
+        final PausableWriter writerC = new PausableWriter(true);
+        final InboundMemoryBudget.Reservation a = budget.newReservation(writerA);
+        final InboundMemoryBudget.Reservation b = budget.newReservation(writerB);
+        final InboundMemoryBudget.Reservation c = budget.newReservation(writerC);
+
+        a.setMessageBytes(80);
+        a.commit();
+
+        // first connection exceeding the limit is allowed to complete its message.
+        b.setMessageBytes(50);
+        b.commit();
+        assertFalse(writerB.paused);
+
+        c.setFrameBytes(10);
+        c.commit();
+        assertTrue(writerC.paused);
+        assertEquals(1, budget.getPausedCount());
+
+        b.setMessageBytes(70);
+        b.commit();
+        assertFalse(writerB.paused);
+        assertEquals(160, budget.getUsed());
+
+        // still over the limit, connection holding the overdraft did not finish yet.
+        a.setMessageBytes(30);
+        a.commit();
+        assertTrue(writerC.paused);
+
+        b.setMessageBytes(0);
+        b.commit();
+        assertFalse(writerC.paused);
+        assertEquals(0, budget.getPausedCount());
+        assertEquals(40, budget.getUsed());
+        assertEquals(0, writerA.pauseCount);
+        assertEquals(0, writerB.pauseCount);
+    }
+
+    @Test
+    public void overdraftHandedToNextPausedConnection() {
+        final InboundMemoryBudget budget = new InboundMemoryBudget(100);
+        final PausableWriter writerA = new PausableWriter(true);
+        final PausableWriter writerB = new PausableWriter(true);
+        final PausableWriter writerC = new PausableWriter(true);
+        final PausableWriter writerD = new PausableWriter(true);
+        final InboundMemoryBudget.Reservation a = budget.newReservation(writerA);
+        final InboundMemoryBudget.Reservation b = budget.newReservation(writerB);
+        final InboundMemoryBudget.Reservation c = budget.newReservation(writerC);
+        final InboundMemoryBudget.Reservation d = budget.newReservation(writerD);
+
+        a.setMessageBytes(80);
+        a.commit();
+        b.setMessageBytes(50);
+        b.commit();
+        c.setFrameBytes(10);
+        c.commit();
+        d.setFrameBytes(10);
+        d.commit();
+        assertTrue(writerC.paused);
+        assertTrue(writerD.paused);
+
+        // message completed, next one started; still over the limit, so only the next connection is resumed.
+        b.setMessageBytes(40);
+        b.commit();
+        assertFalse(writerC.paused);
+        assertTrue(writerD.paused);
+        assertEquals(1, budget.getPausedCount());
+
+        // resumed connection takes the overdraft.
+        c.setMessageBytes(20);
+        c.commit();
+        assertFalse(writerC.paused);
+        assertTrue(writerD.paused);
+        assertEquals(160, budget.getUsed());
+
+        b.setMessageBytes(0);
+        b.commit();
+        assertTrue(writerD.paused);
+
+        c.setMessageBytes(0);
+        c.setFrameBytes(0);
+        c.commit();
+        assertFalse(writerD.paused);
+        assertEquals(0, budget.getPausedCount());
+        assertEquals(90, budget.getUsed());
+    }
+
+    @Test
+    public void closedConnectionReleasesReservation() {
+        final InboundMemoryBudget budget = new InboundMemoryBudget(100);
+        final PausableWriter writerA = new PausableWriter(true);
+        final PausableWriter writerB = new PausableWriter(true);
+        final InboundMemoryBudget.Reservation a = budget.newReservation(writerA);
+        final InboundMemoryBudget.Reservation b = budget.newReservation(writerB);
+
+        a.setMessageBytes(150);
+        a.commit();
+        b.setMessageBytes(10);
+        b.commit();
+        assertTrue(writerB.paused);
+
+        a.release();
+        assertFalse(writerB.paused);
+        assertEquals(10, budget.getUsed());
+
+        // paused connection closed before it was resumed.
+        final InboundMemoryBudget.Reservation c = budget.newReservation(writerA);
+        c.setMessageBytes(200);
+        c.commit();
+        b.setMessageBytes(20);
+        b.commit();
+        assertTrue(writerB.paused);
+        b.release();
+        assertFalse(writerB.paused);
+        assertEquals(0, budget.getPausedCount());
+        assertEquals(200, budget.getUsed());
+
+        // released reservation ignores further updates.
+        b.setMessageBytes(50);
+        b.commit();
+        assertEquals(200, budget.getUsed());
+    }
+
+    @Test
+    public void transportWithoutPausing() {
+        final InboundMemoryBudget budget = new InboundMemoryBudget(100);
+        final InboundMemoryBudget.Reservation a = budget.newReservation(new PausableWriter(false));
+        final InboundMemoryBudget.Reservation b = budget.newReservation(new PausableWriter(false));
+
+        a.setMessageBytes(150);
+        a.commit();
+        b.setMessageBytes(150);
+        b.commit();
+
+        assertEquals(300, budget.getUsed());
+        assertEquals(0, budget.getPausedCount());
+    }
+
+    private static class PausableWriter extends Writer {
+
+        private final boolean pausingSupported;
+        private boolean paused = false;
+        private int pauseCount = 0;
+
+        PausableWriter(boolean pausingSupported) {
+            this.pausingSupported = pausingSupported;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+        }
+
+        @Override
+        public boolean pauseReading() {
+            if (pausingSupported) {
+                paused = true;
+                pauseCount++;
+            }
+            return pausingSupported;
+        }
+
+        @Override
+        public void resumeReading() {
+            paused = false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.glassfish.tyrus.core.frame.BinaryFrame;
+import org.glassfish.tyrus.core.frame.PingFrame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProtocolHandlerTest {
+
+    private static final byte[] PAYLOAD = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    @Test
+    public void noFragmentationByDefault() {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        final RecordingWriter writer = new RecordingWriter(true);
+        protocolHandler.setWriter(writer);
+
+        protocolHandler.send(PAYLOAD);
+
+        assertEquals(1, writer.buffers.size());
+        assertEquals((byte) 0x82, writer.buffers.get(0).get(0));
+    }
+
+    @Test
+    public void fragmentation() throws Exception {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        final RecordingWriter writer = new RecordingWriter(true);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setMaxFrameSize(4);
+
+        final Future<Void> future = protocolHandler.send(PAYLOAD);
+
+        assertTrue(future.isDone());
+        future.get();
+        assertEquals(3, writer.buffers.size());
+        assertEquals((byte) 0x02, writer.buffers.get(0).get(0));
+        assertEquals((byte) 0x00, writer.buffers.get(1).get(0));
+        assertEquals((byte) 0x80, writer.buffers.get(2).get(0));
+
+        final ProtocolHandler reader = new ProtocolHandler(false);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        for (int i = 0; i < writer.buffers.size(); i++) {
+            final DataFrame dataFrame = reader.unframe(writer.buffers.get(i));
+            assertEquals(i == 2, dataFrame.isLast());
+            received.write(dataFrame.getBytes());
+        }
+        assertArrayEquals(PAYLOAD, received.toByteArray());
+    }
+
+    @Test
+    public void maskedFragments() throws Exception {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(true);
+        final RecordingWriter writer = new RecordingWriter(true);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setMaxFrameSize(3);
+
+        protocolHandler.send(PAYLOAD);
+
+        assertEquals(4, writer.buffers.size());
+        final ProtocolHandler reader = new ProtocolHandler(false);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : writer.buffers) {
+            assertTrue((buffer.get(1) & 0x80) != 0);
+            received.write(reader.unframe(buffer).getBytes());
+        }
+        assertArrayEquals(PAYLOAD, received.toByteArray());
+    }
+
+    @Test
+    public void controlFramesInterleaved() throws Exception {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        final RecordingWriter writer = new RecordingWriter(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setMaxFrameSize(4);
+
+        final Future<Void> binary = protocolHandler.send(PAYLOAD);
+        final Future<Void> text = protocolHandler.send("text");
+        protocolHandler.send(new DataFrame(new PingFrame(), new byte[]{1}));
+
+        // first fragment and ping; text message waits for the fragmented one.
+        assertEquals(2, writer.buffers.size());
+        assertEquals((byte) 0x02, writer.buffers.get(0).get(0));
+        assertEquals((byte) 0x89, writer.buffers.get(1).get(0));
+
+        writer.completeAll();
+        assertEquals(3, writer.buffers.size());
+        assertEquals((byte) 0x00, writer.buffers.get(2).get(0));
+
+        writer.completeAll();
+        assertEquals(4, writer.buffers.size());
+        assertEquals((byte) 0x80, writer.buffers.get(3).get(0));
+        assertFalse(binary.isDone());
+        assertFalse(text.isDone());
+
+        writer.completeAll();
+        assertTrue(binary.isDone());
+        assertEquals(5, writer.buffers.size());
+        assertEquals((byte) 0x81, writer.buffers.get(4).get(0));
+
+        writer.completeAll();
+        assertTrue(text.isDone());
+        text.get();
+    }
+
+    @Test
+    public void streamedMessageNotFragmented() {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        final RecordingWriter writer = new RecordingWriter(true);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setMaxFrameSize(4);
+
+        protocolHandler.send(new DataFrame(new BinaryFrame(), PAYLOAD, false));
+        protocolHandler.send(new DataFrame(new BinaryFrame(), PAYLOAD, true));
+        protocolHandler.send(new DataFrame(new TextFrame(), "a"));
+
+        assertEquals(3, writer.buffers.size());
+        assertEquals((byte) 0x02, writer.buffers.get(0).get(0));
+        assertEquals((byte) 0x80, writer.buffers.get(1).get(0));
+        assertEquals((byte) 0x81, writer.buffers.get(2).get(0));
+    }
+
+    @Test
+    public void binaryFromBuffer() throws Exception {
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.wrap(PAYLOAD), ByteBuffer.wrap(PAYLOAD).asReadOnlyBuffer(),
+                (ByteBuffer) ByteBuffer.allocateDirect(PAYLOAD.length).put(PAYLOAD).flip()}) {
+            for (boolean mask : new boolean[]{false, true}) {
+                final ProtocolHandler protocolHandler = new ProtocolHandler(mask);
+                final RecordingWriter writer = new RecordingWriter(true);
+                protocolHandler.setWriter(writer);
+
+                buffer.position(2);
+                protocolHandler.sendBinary(buffer).get();
+
+                assertEquals(2, buffer.position());
+                assertEquals(1, writer.buffers.size());
+                final DataFrame dataFrame = new ProtocolHandler(false).unframe(writer.buffers.get(0));
+                assertTrue(dataFrame.isLast());
+                assertArrayEquals(Arrays.copyOfRange(PAYLOAD, 2, PAYLOAD.length), dataFrame.getBytes());
+            }
+        }
+    }
+
+    @Test
+    public void fragmentsSlicedFromBuffer() throws Exception {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(true);
+        final RecordingWriter writer = new RecordingWriter(false);
+        protocolHandler.setWriter(writer);
+        protocolHandler.setMaxFrameSize(4);
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(PAYLOAD.length);
+        buffer.put(PAYLOAD).flip();
+
+        final Future<Void> future = protocolHandler.sendBinary(buffer);
+        assertEquals(1, writer.buffers.size());
+        assertEquals(0, buffer.position());
+
+        // next fragment is read from the buffer only after the previous one is written, no copy is made upfront.
+        buffer.put(4, (byte) 42);
+        writer.completeAll();
+        writer.completeAll();
+        writer.completeAll();
+        assertTrue(future.isDone());
+        future.get();
+
+        final byte[] expected = PAYLOAD.clone();
+        expected[4] = 42;
+
+        assertEquals(3, writer.buffers.size());
+        final ProtocolHandler reader = new ProtocolHandler(false);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        for (int i = 0; i < writer.buffers.size(); i++) {
+            final DataFrame dataFrame = reader.unframe(writer.buffers.get(i));
+            assertEquals(i == 2, dataFrame.isLast());
+            received.write(dataFrame.getBytes());
+        }
+        assertArrayEquals(expected, received.toByteArray());
+    }
+
+    private static class RecordingWriter extends Writer {
+
+        private final boolean completeImmediately;
+        private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        private final List<CompletionHandler<ByteBuffer>> pending = new ArrayList<CompletionHandler<ByteBuffer>>();
+
+        RecordingWriter(boolean completeImmediately) {
+            this.completeImmediately = completeImmediately;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            buffers.add(buffer);
+            if (completeImmediately) {
+                completionHandler.completed(buffer);
+            } else {
+                pending.add(completionHandler);
+            }
+        }
+
+        void completeAll() {
+            final List<CompletionHandler<ByteBuffer>> handlers = new ArrayList<CompletionHandler<ByteBuffer>>(pending);
+            pending.clear();
+            for (CompletionHandler<ByteBuffer> handler : handlers) {
+                handler.completed(null);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
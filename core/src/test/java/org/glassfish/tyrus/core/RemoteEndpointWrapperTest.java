@@ -322,12 +322,12 @@ public class RemoteEndpointWrapperTest {
         private int lastSentMessageSize;
 
         @Override
-        public Future<DataFrame> sendText(String text) {
+        public Future<Void> sendText(String text) {
             return null;
         }
 
         @Override
-        public Future<DataFrame> sendBinary(ByteBuffer data) {
+        public Future<Void> sendBinary(ByteBuffer data) {
             return null;
         }
 
@@ -340,9 +340,9 @@ public class RemoteEndpointWrapperTest {
         }
 
         @Override
-        public Future<DataFrame> sendText(String fragment, boolean isLast) {
+        public Future<Void> sendText(String fragment, boolean isLast) {
             builder.append(fragment);
-            return new Future<DataFrame>() {
+            return new Future<Void>() {
                 @Override
                 public boolean cancel(boolean mayInterruptIfRunning) {
                     return false;
@@ -359,25 +359,25 @@ public class RemoteEndpointWrapperTest {
                 }
 
                 @Override
-                public DataFrame get() throws InterruptedException, ExecutionException {
+                public Void get() throws InterruptedException, ExecutionException {
                     return null;
                 }
 
                 @Override
-                public DataFrame get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+                public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
                     return null;
                 }
             };
         }
 
         @Override
-        public Future<DataFrame> sendBinary(ByteBuffer partialByte, boolean isLast) {
+        public Future<Void> sendBinary(ByteBuffer partialByte, boolean isLast) {
             byte[] bytes = partialByte.array();
             lastSentMessageSize = bytes.length;
             for (byte b : bytes) {
                 bytesToSend.add(b);
             }
-            return new Future<DataFrame>() {
+            return new Future<Void>() {
                 @Override
                 public boolean cancel(boolean mayInterruptIfRunning) {
                     return false;
@@ -394,24 +394,24 @@ public class RemoteEndpointWrapperTest {
                 }
 
                 @Override
-                public DataFrame get() throws InterruptedException, ExecutionException {
+                public Void get() throws InterruptedException, ExecutionException {
                     return null;
                 }
 
                 @Override
-                public DataFrame get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+                public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
                     return null;
                 }
             };
         }
 
         @Override
-        public Future<DataFrame> sendPing(ByteBuffer applicationData) {
+        public Future<Void> sendPing(ByteBuffer applicationData) {
             return null;
         }
 
         @Override
-        public Future<DataFrame> sendPong(ByteBuffer applicationData) {
+        public Future<Void> sendPong(ByteBuffer applicationData) {
             return null;
         }
 
@@ -0,0 +1,197 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SerialExecutorTest {
+
+    private static final int TASKS = 1000;
+
+    @Test
+    public void order() throws InterruptedException {
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final SerialExecutor serialExecutor = new SerialExecutor(executorService);
+            final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+            final AtomicInteger running = new AtomicInteger(0);
+            final AtomicInteger maxRunning = new AtomicInteger(0);
+            final CountDownLatch latch = new CountDownLatch(TASKS);
+
+            for (int i = 0; i < TASKS; i++) {
+                final int index = i;
+                serialExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final int current = running.incrementAndGet();
+                        if (current > maxRunning.get()) {
+                            maxRunning.set(current);
+                        }
+                        executed.add(index);
+                        running.decrementAndGet();
+                        latch.countDown();
+                    }
+                });
+            }
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(1, maxRunning.get());
+            for (int i = 0; i < TASKS; i++) {
+                assertEquals(Integer.valueOf(i), executed.get(i));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void boundedExecutorRejectsWhenFull() throws InterruptedException {
+        final ExecutorService executorService = BaseContainer.newBoundedExecutorService(2, 1);
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(2);
+            final CountDownLatch done = new CountDownLatch(4);
+            final Runnable blocking = new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // ignore.
+                    }
+                    done.countDown();
+                }
+            };
+            final Runnable countDown = new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            };
+
+            // each serial executor represents one session; two of them occupy both threads.
+            new SerialExecutor(executorService).execute(blocking);
+            new SerialExecutor(executorService).execute(blocking);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // third one waits in the queue.
+            new SerialExecutor(executorService).execute(countDown);
+
+            // fourth one is rejected without blocking the submitter.
+            final SerialExecutor rejected = new SerialExecutor(executorService);
+            try {
+                rejected.execute(countDown);
+                fail("RejectedExecutionException expected.");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+
+            // rejected executor is usable once the pool has capacity again.
+            release.countDown();
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (done.getCount() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            rejected.execute(countDown);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void saturatedBoundedExecutor() throws InterruptedException {
+        final ExecutorService executorService = BaseContainer.newBoundedExecutorService(2);
+        final ExecutorService submitters = Executors.newFixedThreadPool(4);
+        try {
+            final int sessions = 6;
+            final int tasksPerSubmitter = 2000;
+            final SerialExecutor[] serialExecutors = new SerialExecutor[sessions];
+            for (int i = 0; i < sessions; i++) {
+                serialExecutors[i] = new SerialExecutor(executorService);
+            }
+
+            // every task submitted from outside of the pool forwards one task to another session from a pool thread.
+            final CountDownLatch done = new CountDownLatch(4 * tasksPerSubmitter * 2);
+            for (int s = 0; s < 4; s++) {
+                final int submitter = s;
+                submitters.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < tasksPerSubmitter; i++) {
+                            final int target = (submitter + i) % sessions;
+                            serialExecutors[target].execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    serialExecutors[(target + 1) % sessions].execute(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            done.countDown();
+                                        }
+                                    });
+                                    done.countDown();
+                                }
+                            });
+                        }
+                    }
+                });
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            submitters.shutdownNow();
+            executorService.shutdownNow();
+        }
+    }
+}
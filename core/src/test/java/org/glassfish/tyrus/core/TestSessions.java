@@ -0,0 +1,117 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+/**
+ * Sessions, endpoints and writers shared by core tests.
+ */
+final class TestSessions {
+
+    private TestSessions() {
+    }
+
+    /**
+     * Create session of given endpoint connected to given writer through server side {@link ProtocolHandler}.
+     *
+     * @param endpointWrapper endpoint the session belongs to.
+     * @param writer          writer the frames sent by the session are written to.
+     * @return new session.
+     */
+    static TyrusSession connect(TyrusEndpointWrapper endpointWrapper, Writer writer) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        protocolHandler.setWriter(writer);
+        final TyrusWebSocket socket = new TyrusWebSocket(protocolHandler, null);
+        socket.onConnect(null);
+
+        return (TyrusSession) endpointWrapper.createSessionForRemoteEndpoint(new TyrusRemoteEndpoint(socket), null, null);
+    }
+
+    /**
+     * Create session of given endpoint without any connection.
+     *
+     * @param endpointWrapper endpoint the session belongs to.
+     * @param remoteEndpoint  remote endpoint of the session, may be {@code null}.
+     * @return new session.
+     */
+    static TyrusSession create(TyrusEndpointWrapper endpointWrapper, RemoteEndpoint remoteEndpoint) {
+        return new TyrusSession(null, remoteEndpoint, endpointWrapper, null, null, false, null, null, null, null,
+                new HashMap<String, List<String>>());
+    }
+
+    /**
+     * Endpoint which does nothing.
+     */
+    public static class NoopEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    /**
+     * Writer which records and immediately completes all writes.
+     */
+    static class RecordingWriter extends Writer {
+
+        final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            buffers.add(buffer);
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TopicRegistryTest {
+
+    private TyrusEndpointWrapper endpointWrapper;
+
+    @Before
+    public void setUp() throws DeploymentException {
+        endpointWrapper = new TyrusEndpointWrapper(TestSessions.NoopEndpoint.class, null, ComponentProviderService.create(), null, "/topics", null);
+    }
+
+    @Test
+    public void publishReachesOnlySubscribers() {
+        final TestSessions.RecordingWriter w1 = new TestSessions.RecordingWriter();
+        final TestSessions.RecordingWriter w2 = new TestSessions.RecordingWriter();
+        final TestSessions.RecordingWriter w3 = new TestSessions.RecordingWriter();
+        final TyrusSession s1 = connect(w1);
+        final TyrusSession s2 = connect(w2);
+        connect(w3);
+
+        assertTrue(s1.subscribe("room"));
+        assertFalse(s1.subscribe("room"));
+        assertTrue(s2.subscribe("room"));
+        assertTrue(s2.subscribe("other"));
+
+        final Map<Session, Future<?>> futures = s1.publish("room", "hello");
+
+        assertEquals(2, futures.size());
+        assertEquals(1, w1.buffers.size());
+        assertEquals(1, w2.buffers.size());
+        assertEquals(0, w3.buffers.size());
+        assertEquals(w1.buffers.get(0), w2.buffers.get(0));
+        assertEquals((byte) 0x81, w1.buffers.get(0).get(0));
+
+        s2.publish("other", ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        assertEquals(1, w1.buffers.size());
+        assertEquals(2, w2.buffers.size());
+        assertEquals((byte) 0x82, w2.buffers.get(1).get(0));
+
+        assertTrue(s1.publish("nobody", "hello").isEmpty());
+    }
+
+    @Test
+    public void emptyTopicIsRemoved() {
+        final TyrusSession session = connect(new TestSessions.RecordingWriter());
+        final TopicRegistry registry = endpointWrapper.getTopicRegistry();
+
+        session.subscribe("room");
+        assertTrue(registry.getTopics().contains("room"));
+        assertSame(session, registry.getSubscribers("room").iterator().next());
+
+        assertTrue(session.unsubscribe("room"));
+        assertFalse(session.unsubscribe("room"));
+        assertTrue(registry.getTopics().isEmpty());
+        assertTrue(registry.getSubscribers("room").isEmpty());
+
+        // topic is created again with next subscription.
+        session.subscribe("room");
+        assertEquals(1, registry.getSubscribers("room").size());
+    }
+
+    @Test
+    public void closedSessionIsUnsubscribed() {
+        final TestSessions.RecordingWriter writer = new TestSessions.RecordingWriter();
+        final TyrusSession closed = connect(writer);
+        final TyrusSession open = connect(new TestSessions.RecordingWriter());
+        closed.subscribe("a");
+        closed.subscribe("b");
+        open.subscribe("b");
+
+        endpointWrapper.onClose(closed.getRemoteEndpoint(), new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, null));
+
+        final TopicRegistry registry = endpointWrapper.getTopicRegistry();
+        assertFalse(registry.getTopics().contains("a"));
+        assertEquals(1, registry.getSubscribers("b").size());
+        assertTrue(registry.getSubscribers("b").contains(open));
+        assertEquals(1, open.publish("b", "message").size());
+        assertEquals(0, writer.buffers.size());
+    }
+
+    @Test
+    public void closedSessionCannotSubscribe() {
+        final TyrusSession session = connect(new TestSessions.RecordingWriter());
+        endpointWrapper.onClose(session.getRemoteEndpoint(), new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, null));
+
+        final TopicRegistry registry = endpointWrapper.getTopicRegistry();
+        registry.subscribe("a", session);
+        assertTrue(registry.getTopics().isEmpty());
+        assertTrue(registry.getSubscribers("a").isEmpty());
+    }
+
+    private TyrusSession connect(Writer writer) {
+        return TestSessions.connect(endpointWrapper, writer);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.EncodeException;
+import javax.websocket.Encoder;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TyrusEndpointWrapperTest {
+
+    @Test
+    public void undeployedEndpointDoesNotRecreateSharedEncoder() throws DeploymentException, EncodeException, IOException {
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(TestEndpoint.class, "/test")
+                .encoders(Arrays.<Class<? extends Encoder>>asList(CountingEncoder.class)).build();
+        final TyrusEndpointWrapper endpointWrapper = new TyrusEndpointWrapper(TestEndpoint.class, config,
+                ComponentProviderService.create(), null, null, null);
+        CountingEncoder.CREATED.set(0);
+        CountingEncoder.DESTROYED.set(0);
+
+        assertTrue(endpointWrapper.broadcast(new Message()).isEmpty());
+        assertTrue(endpointWrapper.broadcast(new Message()).isEmpty());
+        assertEquals(1, CountingEncoder.CREATED.get());
+
+        endpointWrapper.destroy();
+        assertEquals(1, CountingEncoder.DESTROYED.get());
+
+        try {
+            endpointWrapper.broadcast(new Message());
+            fail("EncodeException expected, endpoint is undeployed.");
+        } catch (EncodeException e) {
+            // expected
+        }
+        assertEquals(1, CountingEncoder.CREATED.get());
+    }
+
+    public static class TestEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    public static class Message {
+    }
+
+    public static class CountingEncoder implements Encoder.Text<Message> {
+
+        static final AtomicInteger CREATED = new AtomicInteger(0);
+        static final AtomicInteger DESTROYED = new AtomicInteger(0);
+
+        @Override
+        public String encode(Message message) {
+            return "message";
+        }
+
+        @Override
+        public void init(EndpointConfig config) {
+            CREATED.incrementAndGet();
+        }
+
+        @Override
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+    }
+}
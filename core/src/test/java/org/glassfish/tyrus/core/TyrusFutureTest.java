@@ -0,0 +1,172 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TyrusFutureTest {
+
+    @Test
+    public void handlersNotifiedInRegistrationOrder() {
+        final TyrusFuture<String> future = new TyrusFuture<String>();
+        final List<String> events = new ArrayList<String>();
+
+        future.addCompletionHandler(new RecordingHandler(events, "1"))
+                .addCompletionHandler(new RecordingHandler(events, "2"));
+        assertTrue(events.isEmpty());
+
+        future.setResult("result");
+        future.addCompletionHandler(new RecordingHandler(events, "3"));
+
+        assertEquals(3, events.size());
+        assertEquals("1:result", events.get(0));
+        assertEquals("2:result", events.get(1));
+        assertEquals("3:result", events.get(2));
+    }
+
+    @Test
+    public void firstCompletionWins() throws Exception {
+        final TyrusFuture<String> future = new TyrusFuture<String>();
+        final List<String> events = new ArrayList<String>();
+        future.addCompletionHandler(new RecordingHandler(events, "h"));
+
+        future.setResult(null);
+        future.setFailure(new RuntimeException());
+        future.setResult("other");
+
+        assertTrue(future.isDone());
+        assertNull(future.get());
+        assertEquals(1, events.size());
+        assertEquals("h:null", events.get(0));
+    }
+
+    @Test
+    public void failure() throws InterruptedException {
+        final RuntimeException exception = new RuntimeException();
+        final TyrusFuture<String> future = TyrusFuture.failed(exception);
+        final List<String> events = new ArrayList<String>();
+
+        future.addCompletionHandler(new RecordingHandler(events, "h"));
+        assertEquals("h:failed", events.get(0));
+
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void getTimesOut() throws Exception {
+        final TyrusFuture<String> future = new TyrusFuture<String>();
+
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+            // expected.
+        }
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void blockedGetIsReleased() throws Exception {
+        final TyrusFuture<String> future = new TyrusFuture<String>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final List<String> results = new ArrayList<String>();
+
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    results.add(future.get(5, TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    results.add(e.toString());
+                }
+            }
+        };
+        thread.start();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.setResult("result");
+        thread.join(5000);
+
+        assertEquals(1, results.size());
+        assertEquals("result", results.get(0));
+    }
+
+    private static class RecordingHandler extends CompletionHandler<String> {
+
+        private final List<String> events;
+        private final String name;
+
+        private RecordingHandler(List<String> events, String name) {
+            this.events = events;
+            this.name = name;
+        }
+
+        @Override
+        public void completed(String result) {
+            events.add(name + ":" + result);
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            events.add(name + ":failed");
+        }
+    }
+}
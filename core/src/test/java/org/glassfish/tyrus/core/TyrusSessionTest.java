@@ -43,6 +43,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Future;
@@ -58,10 +60,15 @@ import javax.websocket.SendHandler;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -472,6 +479,33 @@ public class TyrusSessionTest {
         assertNotNull(session2.getUserProperties().get(test2));
     }
 
+    @Test
+    public void writability() {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false);
+        final TestWriter writer = new TestWriter();
+        protocolHandler.setWriter(writer);
+
+        final TyrusSession session = new TyrusSession(null, new TyrusRemoteEndpoint(new TyrusWebSocket(protocolHandler, null)),
+                ew, null, null, false, null, null, null, null, new HashMap<String, List<String>>());
+        assertTrue(session.isWritable());
+
+        final List<Boolean> changes = new ArrayList<Boolean>();
+        session.setWritabilityListener(new TyrusSession.WritabilityListener() {
+            @Override
+            public void onWritabilityChanged(Session s, boolean writable) {
+                assertSame(session, s);
+                changes.add(writable);
+            }
+        });
+
+        writer.setWritable(false);
+        assertFalse(session.isWritable());
+        writer.setWritable(true);
+        assertTrue(session.isWritable());
+
+        assertEquals(Arrays.asList(false, true), changes);
+    }
+
     private TyrusSession createSession(TyrusEndpointWrapper tyrusEndpointWrapper) {
         return new TyrusSession(null, new TestRemoteEndpoint(), tyrusEndpointWrapper, null, null, false, null, null, null, null, new HashMap<String, List<String>>());
     }
@@ -480,12 +514,12 @@ public class TyrusSessionTest {
 
 
         @Override
-        public Future<?> sendText(String text) {
+        public Future<Void> sendText(String text) {
             return null;
         }
 
         @Override
-        public Future<?> sendBinary(ByteBuffer data) {
+        public Future<Void> sendBinary(ByteBuffer data) {
             return null;
         }
 
@@ -498,22 +532,22 @@ public class TyrusSessionTest {
         }
 
         @Override
-        public Future<?> sendText(String fragment, boolean isLast) {
+        public Future<Void> sendText(String fragment, boolean isLast) {
             return null;
         }
 
         @Override
-        public Future<?> sendBinary(ByteBuffer partialByte, boolean isLast) {
+        public Future<Void> sendBinary(ByteBuffer partialByte, boolean isLast) {
             return null;
         }
 
         @Override
-        public Future<DataFrame> sendPing(ByteBuffer applicationData) {
+        public Future<Void> sendPing(ByteBuffer applicationData) {
             return null;
         }
 
         @Override
-        public Future<DataFrame> sendPong(ByteBuffer applicationData) {
+        public Future<Void> sendPong(ByteBuffer applicationData) {
             return null;
         }
 
@@ -528,4 +562,27 @@ public class TyrusSessionTest {
         }
     }
 
-}
\ No newline at end of file
+
+    private static class TestWriter extends Writer {
+
+        private volatile boolean writable = true;
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+
+        void setWritable(boolean writable) {
+            this.writable = writable;
+            onWritabilityChanged(writable);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
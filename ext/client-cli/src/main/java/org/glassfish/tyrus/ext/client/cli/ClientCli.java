@@ -45,6 +45,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.websocket.CloseReason;
 import javax.websocket.DeploymentException;
@@ -138,6 +141,11 @@ public class ClientCli {
 
         final ClientManager clientManager = new ClientManager();
 
+        if (Arrays.asList(args).contains("--load")) {
+            runLoad(clientManager, args);
+            return;
+        }
+
         try {
             final ConsoleReader console = new ConsoleReader(
                     NAME,
@@ -167,6 +175,17 @@ public class ClientCli {
 
                         String help = "\n"
                                 + "\nUsage: cmd [--proxy proxyUrl] [ws uri]"
+                                + "\n       cmd [--proxy proxyUrl] --load [--sessions n] [--messages n] [--duration seconds]"
+                                + "\n           [--size bytes] [--rate msgPerSecond] [--type text|binary|ping] [--connect-threads n] ws uri"
+                                + "\n"
+                                + "\nload mode (headless, endpoint is expected to echo messages):"
+                                + "\n\t--sessions n : number of concurrent sessions (default 10)"
+                                + "\n\t--messages n : messages sent by each session (default 1000)"
+                                + "\n\t--duration seconds : run for given time instead of fixed number of messages"
+                                + "\n\t--size bytes : message payload size (default 64)"
+                                + "\n\t--rate msgPerSecond : messages per second per session (default 0 - send after echo is received)"
+                                + "\n\t--type text|binary|ping : message type (default text)"
+                                + "\n\t--connect-threads n : number of threads used for connecting sessions (default 8)"
                                 + "\n"
                                 + "\nruntime commands:"
                                 + "\n\topen uri : open a connection to the web socket uri"
@@ -283,6 +302,32 @@ public class ClientCli {
     }
 
 
+    /**
+     * Run headless load generation, see {@link LoadGenerator}.
+     *
+     * @param clientManager client manager used for connecting sessions.
+     * @param args          command line arguments.
+     * @throws InterruptedException when interrupted while waiting for the load generation to finish.
+     */
+    private static void runLoad(ClientManager clientManager, String[] args) throws InterruptedException {
+        final List<String> loadArgs = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--proxy")) {
+                if (i + 1 < args.length) {
+                    clientManager.getProperties().put(GrizzlyClientSocket.PROXY_URI, args[++i]);
+                } else {
+                    System.out.println("# --proxy requires an argument (url)");
+                    return;
+                }
+            } else if (!args[i].equals("--load")) {
+                loadArgs.add(args[i]);
+            }
+        }
+
+        LoadGenerator.run(clientManager, loadArgs.toArray(new String[loadArgs.size()]), System.out);
+    }
+
     protected static void connectToURI(final ConsoleReader console, final String uri, final WebSocketContainer webSocketContainer) throws IOException {
 
         // Use a local copy so that we don't get odd race conditions
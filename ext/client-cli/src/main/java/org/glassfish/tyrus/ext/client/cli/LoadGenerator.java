@@ -0,0 +1,610 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.client.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.PongMessage;
+import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
+
+/**
+ * Headless load generator, opens given number of sessions against an endpoint, drives configured traffic and
+ * prints throughput and round-trip latency.
+ * <p/>
+ * The remote endpoint is expected to echo text and binary messages (pings are answered by the protocol). Every
+ * message carries the time it was sent, round-trip latency is computed when its echo (or pong) arrives. When no rate
+ * is set, each session sends its next message as soon as the previous one is echoed back (closed loop), otherwise
+ * messages are sent at the fixed rate regardless of responses (open loop).
+ */
+public class LoadGenerator {
+
+    /**
+     * Type of generated messages.
+     */
+    public static enum MessageType {
+        TEXT, BINARY, PING
+    }
+
+    private static final int MAX_CONTROL_FRAME_PAYLOAD = 125;
+    private static final int TIMESTAMP_LENGTH = 16;
+
+    private final WebSocketContainer container;
+    private final URI uri;
+    private final PrintStream out;
+
+    private int sessions = 10;
+    private long messages = 1000;
+    private long duration = 0;
+    private int size = 64;
+    private int rate = 0;
+    private int connectThreads = 8;
+    private MessageType type = MessageType.TEXT;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile CountDownLatch finished;
+
+    /**
+     * Create new load generator.
+     *
+     * @param container container used for connecting sessions.
+     * @param uri       endpoint uri.
+     * @param out       stream the progress and summary is printed to.
+     */
+    public LoadGenerator(WebSocketContainer container, URI uri, PrintStream out) {
+        this.container = container;
+        this.uri = uri;
+        this.out = out;
+    }
+
+    /**
+     * Set number of concurrent sessions. Default value is {@code 10}.
+     *
+     * @param sessions number of sessions.
+     * @return updated load generator.
+     */
+    public LoadGenerator sessions(int sessions) {
+        this.sessions = requirePositive(sessions, "sessions");
+        return this;
+    }
+
+    /**
+     * Set number of messages sent by each session. Ignored when {@link #duration(long)} is set. Default value is
+     * {@code 1000}.
+     *
+     * @param messages number of messages per session.
+     * @return updated load generator.
+     */
+    public LoadGenerator messages(long messages) {
+        this.messages = requirePositive(messages, "messages");
+        return this;
+    }
+
+    /**
+     * Set duration of the run in seconds. {@code 0} (default) means that the run ends when all sessions sent
+     * configured number of messages.
+     *
+     * @param duration duration in seconds.
+     * @return updated load generator.
+     */
+    public LoadGenerator duration(long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * Set message payload size in bytes. Default value is {@code 64}.
+     *
+     * @param size payload size.
+     * @return updated load generator.
+     */
+    public LoadGenerator size(int size) {
+        this.size = requirePositive(size, "size");
+        return this;
+    }
+
+    /**
+     * Set number of messages per second sent by each session. {@code 0} (default) means closed loop - next message
+     * is sent when the previous one is echoed back.
+     *
+     * @param rate messages per second per session.
+     * @return updated load generator.
+     */
+    public LoadGenerator rate(int rate) {
+        this.rate = rate;
+        return this;
+    }
+
+    /**
+     * Set number of threads used for connecting sessions. Default value is {@code 8}.
+     *
+     * @param connectThreads number of connecting threads.
+     * @return updated load generator.
+     */
+    public LoadGenerator connectThreads(int connectThreads) {
+        this.connectThreads = requirePositive(connectThreads, "connect threads");
+        return this;
+    }
+
+    /**
+     * Set type of generated messages. Default value is {@link MessageType#TEXT}.
+     *
+     * @param type message type.
+     * @return updated load generator.
+     */
+    public LoadGenerator type(MessageType type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Connect all sessions, drive the traffic, close the sessions and print the summary.
+     * <p/>
+     * Statistics of the previous run (if any) are discarded.
+     *
+     * @throws InterruptedException when interrupted while waiting for the run to finish.
+     */
+    public void run() throws InterruptedException {
+        if (type == MessageType.PING && size > MAX_CONTROL_FRAME_PAYLOAD) {
+            size = MAX_CONTROL_FRAME_PAYLOAD;
+        }
+
+        out.println(String.format("# load: %d sessions, %s messages of %d bytes, %s to %s", sessions, type,
+                size, rate > 0 ? rate + " msg/s per session" : "closed loop", uri));
+
+        histogram.reset();
+        sent.set(0);
+        received.set(0);
+        errors.set(0);
+
+        running = true;
+        finished = new CountDownLatch(sessions);
+
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.max(1, Math.min(sessions, 4)));
+        final ExecutorService connectExecutor = Executors.newFixedThreadPool(Math.min(sessions, connectThreads));
+        final List<LoadEndpoint> endpoints = new ArrayList<LoadEndpoint>(sessions);
+        final AtomicLong connectFailures = new AtomicLong();
+
+        try {
+            final CountDownLatch connected = new CountDownLatch(sessions);
+            final long connectStart = System.nanoTime();
+
+            for (int i = 0; i < sessions; i++) {
+                final LoadEndpoint endpoint = new LoadEndpoint(scheduler);
+                endpoints.add(endpoint);
+                connectExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            container.connectToServer(endpoint, ClientEndpointConfig.Builder.create().build(), uri);
+                        } catch (DeploymentException e) {
+                            connectFailures.incrementAndGet();
+                            finished.countDown();
+                        } catch (IOException e) {
+                            connectFailures.incrementAndGet();
+                            finished.countDown();
+                        } finally {
+                            connected.countDown();
+                        }
+                    }
+                });
+            }
+
+            connected.await();
+            final long connectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+            out.println(String.format("# connected %d sessions in %d ms, %d failed", sessions - connectFailures.get(),
+                    connectMillis, connectFailures.get()));
+
+            final long start = System.nanoTime();
+            for (LoadEndpoint endpoint : endpoints) {
+                endpoint.start();
+            }
+
+            final ScheduledFuture<?> reporter = scheduler.scheduleAtFixedRate(new Runnable() {
+                private long second = 0;
+                private long lastReceived = 0;
+
+                @Override
+                public void run() {
+                    final long currentReceived = received.get();
+                    out.println(String.format("# %4ds: sent=%d received=%d throughput=%d msg/s errors=%d",
+                            ++second, sent.get(), currentReceived, currentReceived - lastReceived, errors.get()));
+                    lastReceived = currentReceived;
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+
+            if (duration > 0) {
+                finished.await(duration, TimeUnit.SECONDS);
+            } else {
+                finished.await();
+            }
+
+            running = false;
+            final long elapsed = System.nanoTime() - start;
+            reporter.cancel(false);
+
+            for (LoadEndpoint endpoint : endpoints) {
+                endpoint.stop();
+            }
+
+            printSummary(elapsed);
+        } finally {
+            running = false;
+            connectExecutor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void printSummary(long elapsedNanos) {
+        final double seconds = elapsedNanos / 1e9;
+        final long totalReceived = received.get();
+
+        out.println("# summary:");
+        out.println(String.format("#   duration:   %.3f s", seconds));
+        out.println(String.format("#   sent:       %d", sent.get()));
+        out.println(String.format("#   received:   %d", totalReceived));
+        out.println(String.format("#   errors:     %d", errors.get()));
+        out.println(String.format("#   throughput: %.1f msg/s, %.3f MB/s", totalReceived / seconds,
+                totalReceived * (double) size / seconds / (1024 * 1024)));
+        out.println(String.format("#   latency (us): min=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                toMicros(histogram.getMin()), histogram.getMean() / 1000, toMicros(histogram.getValueAtPercentile(50)),
+                toMicros(histogram.getValueAtPercentile(90)), toMicros(histogram.getValueAtPercentile(99)),
+                toMicros(histogram.getValueAtPercentile(99.9)), toMicros(histogram.getMax())));
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static int requirePositive(int value, String name) {
+        return (int) requirePositive((long) value, name);
+    }
+
+    private static long requirePositive(long value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(String.format("Number of %s must be positive.", name));
+        }
+        return value;
+    }
+
+    /**
+     * Endpoint driving the traffic of single session.
+     */
+    private class LoadEndpoint extends Endpoint {
+
+        private final ScheduledExecutorService scheduler;
+        private final byte[] filler;
+        private final String textFiller;
+
+        private volatile Session session;
+        private volatile ScheduledFuture<?> sender;
+        private final AtomicLong sessionSent = new AtomicLong();
+        private final AtomicLong sessionReceived = new AtomicLong();
+        private boolean done = false;
+
+        LoadEndpoint(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            this.filler = new byte[Math.max(0, size - TIMESTAMP_LENGTH)];
+            Arrays.fill(filler, (byte) 'x');
+            this.textFiller = new String(filler, Charset.forName("US-ASCII"));
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            this.session = session;
+
+            switch (type) {
+                case TEXT:
+                    session.addMessageHandler(new MessageHandler.Whole<String>() {
+                        @Override
+                        public void onMessage(String message) {
+                            if (hasTimestamp(message)) {
+                                onResponse(true, parseTimestamp(message));
+                            } else {
+                                onResponse(false, 0);
+                            }
+                        }
+                    });
+                    break;
+                case BINARY:
+                    session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+                        @Override
+                        public void onMessage(ByteBuffer message) {
+                            final boolean timestamped = message.remaining() >= 8;
+                            onResponse(timestamped, timestamped ? message.getLong(message.position()) : 0);
+                        }
+                    });
+                    break;
+                case PING:
+                    session.addMessageHandler(new MessageHandler.Whole<PongMessage>() {
+                        @Override
+                        public void onMessage(PongMessage message) {
+                            final ByteBuffer data = message.getApplicationData();
+                            final boolean timestamped = data.remaining() >= 8;
+                            onResponse(timestamped, timestamped ? data.getLong(data.position()) : 0);
+                        }
+                    });
+                    break;
+            }
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            finish();
+        }
+
+        @Override
+        public void onError(Session session, Throwable thr) {
+            errors.incrementAndGet();
+        }
+
+        void start() {
+            if (session == null) {
+                return;
+            }
+
+            if (rate > 0) {
+                sender = scheduler.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!send()) {
+                            sender.cancel(false);
+                        }
+                    }
+                }, 0, TimeUnit.SECONDS.toNanos(1) / rate, TimeUnit.NANOSECONDS);
+            } else {
+                send();
+            }
+        }
+
+        void stop() {
+            final ScheduledFuture<?> currentSender = sender;
+            if (currentSender != null) {
+                currentSender.cancel(false);
+            }
+
+            final Session currentSession = session;
+            if (currentSession != null && currentSession.isOpen()) {
+                try {
+                    currentSession.close();
+                } catch (IOException e) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Process response.
+         *
+         * @param timestamped {@code true} when the response carries send timestamp.
+         * @param timestamp   {@link System#nanoTime()} of the send, any value (including negative ones) is valid.
+         */
+        private void onResponse(boolean timestamped, long timestamp) {
+            if (timestamped) {
+                histogram.record(System.nanoTime() - timestamp);
+            }
+            received.incrementAndGet();
+
+            if (duration <= 0 && sessionReceived.incrementAndGet() >= messages) {
+                finish();
+            } else if (rate <= 0) {
+                send();
+            }
+        }
+
+        /**
+         * Send next message.
+         *
+         * @return {@code true} when more messages should be sent.
+         */
+        private synchronized boolean send() {
+            if (!running || (duration <= 0 && sessionSent.get() >= messages)) {
+                return false;
+            }
+
+            try {
+                final long now = System.nanoTime();
+                switch (type) {
+                    case TEXT:
+                        session.getBasicRemote().sendText(formatTimestamp(now) + textFiller);
+                        break;
+                    case BINARY:
+                        session.getBasicRemote().sendBinary(timestampedBuffer(now, Math.max(size, 8)));
+                        break;
+                    case PING:
+                        session.getBasicRemote().sendPing(timestampedBuffer(now, Math.max(size, 8)));
+                        break;
+                }
+                sessionSent.incrementAndGet();
+                sent.incrementAndGet();
+                return true;
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                finish();
+                return false;
+            }
+        }
+
+        private ByteBuffer timestampedBuffer(long timestamp, int length) {
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            buffer.putLong(timestamp);
+            buffer.put(filler, 0, Math.min(filler.length, buffer.remaining()));
+            buffer.flip();
+            return buffer;
+        }
+
+        private synchronized void finish() {
+            if (!done) {
+                done = true;
+                finished.countDown();
+            }
+        }
+    }
+
+    private static String formatTimestamp(long timestamp) {
+        final String hex = Long.toHexString(timestamp);
+        final StringBuilder sb = new StringBuilder(TIMESTAMP_LENGTH);
+        for (int i = hex.length(); i < TIMESTAMP_LENGTH; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    private static boolean hasTimestamp(String message) {
+        if (message.length() < TIMESTAMP_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            if (Character.digit(message.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse timestamp written by {@link #formatTimestamp(long)}; {@link #hasTimestamp(String)} has to be checked first.
+     */
+    private static long parseTimestamp(String message) {
+        // nanoTime may be negative, parse as unsigned.
+        final long high = Long.parseLong(message.substring(0, 8), 16);
+        final long low = Long.parseLong(message.substring(8, TIMESTAMP_LENGTH), 16);
+        return (high << 32) | low;
+    }
+
+    /**
+     * Parse load generator arguments and run it.
+     * <p/>
+     * Usage: {@code [--sessions n] [--messages n] [--duration seconds] [--size bytes] [--rate msgPerSecond]
+     * [--type text|binary|ping] [--connect-threads n] uri}.
+     *
+     * @param container container used for connecting sessions.
+     * @param args      arguments.
+     * @param out       stream the progress and summary is printed to.
+     * @throws InterruptedException when interrupted while waiting for the run to finish.
+     */
+    public static void run(WebSocketContainer container, String[] args, PrintStream out) throws InterruptedException {
+        final List<String> remaining = new ArrayList<String>();
+
+        int sessions = 10;
+        long messages = 1000;
+        long duration = 0;
+        int size = 64;
+        int rate = 0;
+        int connectThreads = 8;
+        MessageType type = MessageType.TEXT;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    remaining.add(arg);
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    out.println(String.format("# %s requires an argument", arg));
+                    return;
+                }
+
+                final String value = args[++i];
+                if (arg.equals("--sessions")) {
+                    sessions = Integer.parseInt(value);
+                } else if (arg.equals("--messages")) {
+                    messages = Long.parseLong(value);
+                } else if (arg.equals("--duration")) {
+                    duration = Long.parseLong(value);
+                } else if (arg.equals("--size")) {
+                    size = Integer.parseInt(value);
+                } else if (arg.equals("--rate")) {
+                    rate = Integer.parseInt(value);
+                } else if (arg.equals("--connect-threads")) {
+                    connectThreads = Integer.parseInt(value);
+                } else if (arg.equals("--type")) {
+                    type = MessageType.valueOf(value.toUpperCase());
+                } else {
+                    out.println(String.format("# Unknown argument %s", arg));
+                    return;
+                }
+            }
+
+            if (remaining.size() != 1) {
+                out.println("# Invalid argument count, usage cmd --load [--sessions n] [--messages n] "
+                        + "[--duration seconds] [--size bytes] [--rate msgPerSecond] [--type text|binary|ping] "
+                        + "[--connect-threads n] uri");
+                return;
+            }
+
+            new LoadGenerator(container, new URI(remaining.get(0)), out)
+                    .sessions(sessions).messages(messages).duration(duration).size(size).rate(rate)
+                    .connectThreads(connectThreads).type(type).run();
+        } catch (URISyntaxException e) {
+            out.println(String.format("# Problem parsing uri %s because of %s", remaining.get(0), e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            out.println(String.format("# Invalid argument: %s", e.getMessage()));
+        }
+    }
+}
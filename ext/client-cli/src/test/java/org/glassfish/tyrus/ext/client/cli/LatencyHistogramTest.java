@@ -0,0 +1,181 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.client.cli;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void valuesBelowLinearRangeAreExact() {
+        for (long value : new long[]{0, 1, 63, 64, 127}) {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(1000);
+
+            assertEquals(value, histogram.getValueAtPercentile(50));
+        }
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        // first bucket above the linear range is two values wide.
+        assertEquals(129, valueAtMedianOf(128));
+        assertEquals(129, valueAtMedianOf(129));
+        assertEquals(131, valueAtMedianOf(130));
+        assertEquals(255, valueAtMedianOf(254));
+        assertEquals(255, valueAtMedianOf(255));
+
+        // next power of two doubles the bucket width.
+        assertEquals(259, valueAtMedianOf(256));
+        assertEquals(259, valueAtMedianOf(259));
+        assertEquals(263, valueAtMedianOf(260));
+        assertEquals(511, valueAtMedianOf(508));
+        assertEquals(1023 + 16, valueAtMedianOf(1024));
+    }
+
+    @Test
+    public void percentileDoesNotExceedMax() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.getValueAtPercentile(50));
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void negativeValueRecordedAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void percentilesOfExactDistribution() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(1, histogram.getValueAtPercentile(1));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(90, histogram.getValueAtPercentile(90));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(99.9));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(100, histogram.getValueAtPercentile(150));
+    }
+
+    @Test
+    public void percentilesOfLargeDistributionWithinPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(500000.5, histogram.getMean(), 0);
+        assertEquals(1000000, histogram.getMax());
+        assertWithinPrecision(500000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(900000, histogram.getValueAtPercentile(90));
+        assertWithinPrecision(990000, histogram.getValueAtPercentile(99));
+        assertWithinPrecision(999000, histogram.getValueAtPercentile(99.9));
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void reset() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(100000);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getValueAtPercentile(100));
+
+        histogram.record(50);
+
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(50, histogram.getMin());
+        assertEquals(50, histogram.getMax());
+        assertEquals(50, histogram.getValueAtPercentile(100));
+    }
+
+    private static long valueAtMedianOf(long value) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        // keep max above the value so the reported value is not clamped.
+        histogram.record(Long.MAX_VALUE / 2);
+        return histogram.getValueAtPercentile(50);
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(String.format("%d lower than %d", actual, expected), actual >= expected);
+        assertTrue(String.format("%d too far from %d", actual, expected), actual <= expected + expected / 64);
+    }
+}
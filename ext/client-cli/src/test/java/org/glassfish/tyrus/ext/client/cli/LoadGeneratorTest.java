@@ -0,0 +1,98 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.client.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests argument handling of {@link LoadGenerator}.
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    public void missingUri() throws InterruptedException {
+        assertOutput("Invalid argument count", "--sessions", "2");
+    }
+
+    @Test
+    public void missingArgumentValue() throws InterruptedException {
+        assertOutput("--sessions requires an argument", "ws://localhost/echo", "--sessions");
+    }
+
+    @Test
+    public void unknownArgument() throws InterruptedException {
+        assertOutput("Unknown argument --foo", "--foo", "1", "ws://localhost/echo");
+    }
+
+    @Test
+    public void nonPositiveSessions() throws InterruptedException {
+        assertOutput("Number of sessions must be positive", "--sessions", "0", "ws://localhost/echo");
+    }
+
+    @Test
+    public void invalidNumber() throws InterruptedException {
+        assertOutput("Invalid argument", "--messages", "many", "ws://localhost/echo");
+    }
+
+    @Test
+    public void invalidType() throws InterruptedException {
+        assertOutput("Invalid argument", "--type", "json", "ws://localhost/echo");
+    }
+
+    @Test
+    public void invalidUri() throws InterruptedException {
+        assertOutput("Problem parsing uri", "ws://local host/echo");
+    }
+
+    private static void assertOutput(String expected, String... args) throws InterruptedException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(bytes, true);
+
+        // arguments are rejected before the container is used.
+        LoadGenerator.run(null, args, out);
+
+        final String output = bytes.toString();
+        assertTrue(output, output.contains(expected));
+    }
+}
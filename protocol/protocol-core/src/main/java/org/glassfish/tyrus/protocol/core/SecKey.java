@@ -40,9 +40,8 @@
 
 package org.glassfish.tyrus.protocol.core;
 
-
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import org.glassfish.tyrus.spi.SecKeyUtils;
+import org.glassfish.tyrus.spi.UpgradeRequest;
 
 /**
  * Class represents WebSocket's security key, used during the handshake phase.
@@ -50,7 +49,7 @@ import java.security.NoSuchAlgorithmException;
  * @author Alexey Stashok
  */
 public class SecKey {
-    public static final String SERVER_KEY_HASH = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    public static final String SERVER_KEY_HASH = UpgradeRequest.SERVER_KEY_HASH;
 
     /**
      * Security key string representation, which includes chars and spaces.
@@ -72,20 +71,11 @@ public class SecKey {
      * @return server key.
      */
     public static SecKey generateServerKey(SecKey clientKey) throws WebSocketHandshakeException {
-        String key = clientKey.getSecKey() + SERVER_KEY_HASH;
-        final MessageDigest instance;
-        try {
-            instance = MessageDigest.getInstance("SHA-1");
-            instance.update(key.getBytes());
-            final byte[] digest = instance.digest();
-            if (digest.length != 20) {
-                throw new WebSocketHandshakeException("Invalid key length.  Should be 20: " + digest.length);
-            }
-
-            return new SecKey(Base64Utils.encodeToString(digest, false));
-        } catch (NoSuchAlgorithmException e) {
-            throw new WebSocketHandshakeException(e.getMessage());
+        if (!SecKeyUtils.isValidKey(clientKey.getSecKey())) {
+            throw new WebSocketHandshakeException("Invalid Sec-WebSocket-Key: " + clientKey.getSecKey());
         }
+
+        return new SecKey(SecKeyUtils.generateAcceptKey(clientKey.getSecKey()));
     }
 
     /**
@@ -45,6 +45,15 @@ import java.util.logging.Logger;
 
 
 /**
+ * Decodes websocket frames.
+ * <p/>
+ * Frames can be decoded either whole, using {@link #decode(ByteBuffer)}, or in streaming mode using
+ * {@link #decode(ByteBuffer, PayloadListener)}, where payload chunks are delivered as soon as they arrive and the
+ * payload is never buffered by the decoder. Single decoder instance should be used only in one of these modes.
+ * <p/>
+ * Declared frame length is checked against {@link #setMaxFrameSize(long) max frame size} as soon as the frame header
+ * is read.
+ *
  * @author Jitendra Kotamraju
  */
 public class WebSocketProtocolDecoder {
@@ -52,6 +61,40 @@ public class WebSocketProtocolDecoder {
             WebSocketProtocolDecoder.class.getName());
     public static final int MASK_SIZE = 4;
 
+    /**
+     * Receives decoded frames in streaming mode.
+     *
+     * @see #decode(ByteBuffer, PayloadListener)
+     */
+    public interface PayloadListener {
+
+        /**
+         * Frame header was decoded.
+         *
+         * @param finalFragment {@code true} when this is the final fragment of a message.
+         * @param rsv           reserved bits.
+         * @param type          frame type.
+         * @param length        declared payload length.
+         */
+        void onFrameStart(boolean finalFragment, int rsv, WebSocketFrame.Type type, long length);
+
+        /**
+         * Part of the frame payload is available.
+         * <p/>
+         * The chunk is already unmasked. It can be a view of the buffer passed to
+         * {@link #decode(ByteBuffer, PayloadListener)}, so it is valid only until this method returns; copy it when
+         * it needs to be kept.
+         *
+         * @param chunk payload chunk, never empty.
+         */
+        void onPayload(ByteBuffer chunk);
+
+        /**
+         * Whole frame payload was delivered.
+         */
+        void onFrameEnd();
+    }
+
     private enum State {
         FRAME_START, LENGTH, MASKING_KEY, PAYLOAD
     }
@@ -59,17 +102,44 @@ public class WebSocketProtocolDecoder {
     private WebSocketFrame.Type frameType;
     private int rsv;
     private byte[] payload;
-    private int remaining;
+    private long remaining;
     private final byte[] mask = new byte[MASK_SIZE];
+    private int maskIndex;
     private boolean finalFragment;
     private boolean masked;
     private int lengthCode;
+    private long maxFrameSize = Integer.MAX_VALUE;
     private final boolean inFragmentation;
 
     public WebSocketProtocolDecoder(boolean inFragmentation) {
         this.inFragmentation = inFragmentation;
     }
 
+    /**
+     * Set maximal accepted frame payload length.
+     * <p/>
+     * Frames declaring bigger payload are rejected with {@link WebSocketProtocolException} before any part of the
+     * payload is read. Default value is {@link Integer#MAX_VALUE}; {@link #decode(ByteBuffer)} never accepts frames
+     * bigger than that, since the payload is buffered in a single array.
+     *
+     * @param maxFrameSize max frame payload length in bytes.
+     */
+    public void setMaxFrameSize(long maxFrameSize) {
+        if (maxFrameSize < 0) {
+            throw new IllegalArgumentException("maxFrameSize");
+        }
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Get maximal accepted frame payload length.
+     *
+     * @return max frame payload length in bytes.
+     */
+    public long getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
     /**
     * Returns a websocket frame if the entire frame is available.
     * The specified ByteBuffer will have the remaining data for
@@ -81,107 +151,31 @@ public class WebSocketProtocolDecoder {
     */
     public WebSocketFrame decode(ByteBuffer buf) {
         try {
-            switch (state) {
-                case FRAME_START:
-                    if (buf.remaining() < 2) {
-                        // Don't have enough bytes to read opcode and lengthCode
-                        return null;
-                    }
-
-                    // byte1: final fragment, rsv, opcode
-                    byte b1 = buf.get();
-                    finalFragment = (b1 & 0x80) != 0;
-                    rsv = (b1 & 0x70) >> 4;
-                    frameType = getFrameType(b1 & 0x0F);
-
-                    // byte2: masked, frameLength
-                    byte b2 = buf.get();
-                    masked = (b2 & 0x80) != 0;
-                    lengthCode = b2 & 0x7F;
-
-//                    if (rsv != 0) {   // TODO check for extensions
-//                        throw new WebSocketProtocolException("RSV bit(s) incorrectly set.");
-//                    }
-//
-
-//                    state.frameType = valueOf(inFragmentedType, state.opcode);
-//                    if (!state.finalFragment && state.controlFrame) {
-//                        throw new WebSocketProtocolException("Fragmented control frame");
-//                    }
-//
-//                    if (!state.controlFrame) {
-//                        if (isContinuationFrame(state.opcode) && !processingFragment) {
-//                            throw new WebSocketProtocolException("End fragment sent, but wasn't processing any previous fragments");
-//                        }
-//                        if (processingFragment && !isContinuationFrame(state.opcode)) {
-//                            throw new WebSocketProtocolException("Fragment sent but opcode was not 0");
-//                        }
-//                        if (!state.finalFragment && !isContinuationFrame(state.opcode)) {
-//                            processingFragment = true;
-//                        }
-//                        if (!state.finalFragment) {
-//                            if (inFragmentedType == 0) {
-//                                inFragmentedType = state.opcode;
-//                            }
-//                        }
-//                    }
-
+            if (state != State.PAYLOAD) {
+                if (!readHeader(buf)) {
+                    return null;
+                }
+                if (remaining > Integer.MAX_VALUE) {
+                    throw new WebSocketProtocolException("Too large frame, frameLength = " + remaining);
+                }
+                payload = new byte[(int) remaining];
+            }
 
-                    state = State.LENGTH;
-                    // fall through
-
-                case LENGTH:
-                    long frameLength;
-                    if (lengthCode <= 125) {
-                        frameLength = lengthCode;
-                    } else {
-                        if (frameType.isControlFrame()) {
-                            throw new WebSocketProtocolException("Control frame payloads must be no greater than 125 bytes.");
-                        }
-
-                        final int lengthBytes = lengthCode == 126 ? 2 : 8;
-                        if (buf.remaining() < lengthBytes) {
-                            // Don't have enough bytes to read frameLength
-                            return null;
-                        }
-                        frameLength = (lengthBytes == 2) ? buf.getShort() : buf.getLong();
-                    }
-                    if (frameLength > Integer.MAX_VALUE) {
-                        throw new WebSocketProtocolException("Too large frame, frameLength = "+ frameLength);
-                    }
-                    payload = new byte[(int) frameLength];
-                    remaining = payload.length;
-                    state = State.MASKING_KEY;
-                    // fallthrough
-
-                case MASKING_KEY:
-                    if (masked) {
-                        if (buf.remaining() < MASK_SIZE) {
-                            // Don't have enough bytes to read mask
-                            return null;
-                        }
-                        buf.get(mask);
-                    }
-                    state = State.PAYLOAD;
-                    // fallthrough
+            // accumulate available payload
+            int readLen = (int) Math.min(buf.remaining(), remaining);
+            buf.get(payload, payload.length - (int) remaining, readLen);
+            remaining -= readLen;
+            if (remaining != 0) {
+                return null;
+            }
 
-                case PAYLOAD:
-                    if (!buf.hasRemaining()) {
-                        return null;                // No data to read
-                    }
-                    // accumulate available payload
-                    int available = buf.remaining();
-                    int readLen = (available < remaining)
-                            ? available : remaining;
-                    buf.get(payload, payload.length-remaining, readLen);
-                    remaining -= readLen;
-                    if (remaining != 0) {
-                        return null;
-                    } else {
-                        unmask(mask, payload, 0, payload.length);
-                        return new WebSocketFrame(finalFragment, rsv, frameType,
-                            ByteBuffer.wrap(payload));
-                    }
+            if (masked) {
+                unmask(mask, 0, payload, 0, payload.length);
+            }
+            final WebSocketFrame frame = new WebSocketFrame(finalFragment, rsv, frameType, ByteBuffer.wrap(payload));
+            payload = null;
+            state = State.FRAME_START;
+            return frame;
 
 //                    if (data.frameLength != state.frameLength) {
 //                        throw new WebSocketProtocolException(String.format("Data read (%s) is not the expected" +
@@ -197,9 +191,53 @@ public class WebSocketProtocolDecoder {
 //                        inFragmentedType = 0;
 //                        processingFragment = false;
 //                    }
-                default:
-                    throw new RuntimeException("Internal error. Unknown state="+state);
+        } catch (Exception e) {
+            state = null;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Decode all frames available in the buffer and deliver them to the listener as they arrive.
+     * <p/>
+     * Payload is not buffered, the listener receives unmasked payload chunks as soon as they are available, so
+     * frames of any (allowed) size can be processed with constant memory. All available payload is consumed; bytes
+     * which cannot be processed yet (incomplete part of a frame header) are left in the buffer and have to be passed
+     * again, followed by further data.
+     * <p/>
+     * When the buffer is writable, masked payload is unmasked in place.
+     *
+     * @param buf      websocket protocol data.
+     * @param listener listener to be notified.
+     */
+    public void decode(ByteBuffer buf, PayloadListener listener) {
+        try {
+            while (true) {
+                if (state != State.PAYLOAD) {
+                    if (!readHeader(buf)) {
+                        return;
+                    }
+                    listener.onFrameStart(finalFragment, rsv, frameType, remaining);
+                }
 
+                if (remaining > 0) {
+                    if (!buf.hasRemaining()) {
+                        return;
+                    }
+                    final int length = (int) Math.min(buf.remaining(), remaining);
+                    final ByteBuffer chunk = nextChunk(buf, length);
+                    remaining -= length;
+                    listener.onPayload(chunk);
+                }
+
+                if (remaining == 0) {
+                    state = State.FRAME_START;
+                    listener.onFrameEnd();
+                }
             }
         } catch (Exception e) {
             state = null;
@@ -211,6 +249,142 @@ public class WebSocketProtocolDecoder {
         }
     }
 
+    /**
+     * Read frame header.
+     *
+     * @param buf websocket protocol data.
+     * @return {@code true} when the whole header was read and decoder is ready to read payload.
+     */
+    private boolean readHeader(ByteBuffer buf) {
+        switch (state) {
+            case FRAME_START:
+                if (buf.remaining() < 2) {
+                    // Don't have enough bytes to read opcode and lengthCode
+                    return false;
+                }
+
+                // byte1: final fragment, rsv, opcode
+                byte b1 = buf.get();
+                finalFragment = (b1 & 0x80) != 0;
+                rsv = (b1 & 0x70) >> 4;
+                frameType = getFrameType(b1 & 0x0F);
+
+                // byte2: masked, frameLength
+                byte b2 = buf.get();
+                masked = (b2 & 0x80) != 0;
+                lengthCode = b2 & 0x7F;
+
+//                if (rsv != 0) {   // TODO check for extensions
+//                    throw new WebSocketProtocolException("RSV bit(s) incorrectly set.");
+//                }
+//
+
+//                state.frameType = valueOf(inFragmentedType, state.opcode);
+//                if (!state.finalFragment && state.controlFrame) {
+//                    throw new WebSocketProtocolException("Fragmented control frame");
+//                }
+//
+//                if (!state.controlFrame) {
+//                    if (isContinuationFrame(state.opcode) && !processingFragment) {
+//                        throw new WebSocketProtocolException("End fragment sent, but wasn't processing any previous fragments");
+//                    }
+//                    if (processingFragment && !isContinuationFrame(state.opcode)) {
+//                        throw new WebSocketProtocolException("Fragment sent but opcode was not 0");
+//                    }
+//                    if (!state.finalFragment && !isContinuationFrame(state.opcode)) {
+//                        processingFragment = true;
+//                    }
+//                    if (!state.finalFragment) {
+//                        if (inFragmentedType == 0) {
+//                            inFragmentedType = state.opcode;
+//                        }
+//                    }
+//                }
+
+
+                state = State.LENGTH;
+                // fall through
+
+            case LENGTH:
+                long frameLength;
+                if (lengthCode <= 125) {
+                    frameLength = lengthCode;
+                } else {
+                    if (frameType.isControlFrame()) {
+                        throw new WebSocketProtocolException("Control frame payloads must be no greater than 125 bytes.");
+                    }
+
+                    final int lengthBytes = lengthCode == 126 ? 2 : 8;
+                    if (buf.remaining() < lengthBytes) {
+                        // Don't have enough bytes to read frameLength
+                        return false;
+                    }
+                    frameLength = (lengthBytes == 2) ? (buf.getShort() & 0xFFFF) : buf.getLong();
+                }
+                if (frameLength < 0) {
+                    throw new WebSocketProtocolException("Invalid frame length, frameLength = " + frameLength);
+                }
+                if (frameLength > maxFrameSize) {
+                    throw new WebSocketProtocolException("Too large frame, frameLength = " + frameLength
+                            + ", max frame size = " + maxFrameSize);
+                }
+                remaining = frameLength;
+                maskIndex = 0;
+                state = State.MASKING_KEY;
+                // fallthrough
+
+            case MASKING_KEY:
+                if (masked) {
+                    if (buf.remaining() < MASK_SIZE) {
+                        // Don't have enough bytes to read mask
+                        return false;
+                    }
+                    buf.get(mask);
+                }
+                state = State.PAYLOAD;
+                return true;
+
+            default:
+                throw new RuntimeException("Internal error. Unknown state="+state);
+        }
+    }
+
+    /**
+     * Get next unmasked payload chunk and move buffer position after it.
+     *
+     * @param buf    websocket protocol data.
+     * @param length chunk length.
+     * @return payload chunk; view of the buffer unless the buffer is read-only and the payload is masked.
+     */
+    private ByteBuffer nextChunk(ByteBuffer buf, int length) {
+        final int position = buf.position();
+        ByteBuffer chunk;
+
+        if (!masked) {
+            chunk = buf.slice();
+            chunk.limit(length);
+        } else if (buf.hasArray()) {
+            maskIndex = unmask(mask, maskIndex, buf.array(), buf.arrayOffset() + position, length);
+            chunk = buf.slice();
+            chunk.limit(length);
+        } else if (!buf.isReadOnly()) {
+            for (int i = position; i < position + length; i++) {
+                buf.put(i, (byte) (buf.get(i) ^ mask[maskIndex]));
+                maskIndex = (maskIndex + 1) % MASK_SIZE;
+            }
+            chunk = buf.slice();
+            chunk.limit(length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buf.get(bytes);
+            maskIndex = unmask(mask, maskIndex, bytes, 0, length);
+            chunk = ByteBuffer.wrap(bytes);
+        }
+
+        buf.position(position + length);
+        return chunk;
+    }
+
     WebSocketFrame.Type getFrameType(int opcode) {
         switch (opcode) {
             case 0x00:
@@ -232,9 +406,26 @@ public class WebSocketProtocolDecoder {
     }
 
     static void unmask(byte[] mask, byte[] data, int offset, int length) {
-        for (int i = offset, index = 0; i < length; i++) {
-            data[i] ^= mask[index++ % MASK_SIZE];
+        unmask(mask, 0, data, offset, length);
+    }
+
+    /**
+     * Unmask part of the payload.
+     *
+     * @param mask      masking key.
+     * @param maskIndex index of the masking key byte to be applied to the first byte.
+     * @param data      data to be unmasked in place.
+     * @param offset    offset of the first byte.
+     * @param length    number of bytes to be unmasked.
+     * @return index of the masking key byte to be applied to the byte following the unmasked ones.
+     */
+    static int unmask(byte[] mask, int maskIndex, byte[] data, int offset, int length) {
+        int index = maskIndex;
+        for (int i = offset; i < offset + length; i++) {
+            data[i] ^= mask[index];
+            index = (index + 1) % MASK_SIZE;
         }
+        return index;
     }
 
 }
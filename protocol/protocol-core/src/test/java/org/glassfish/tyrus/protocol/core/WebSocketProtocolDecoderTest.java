@@ -0,0 +1,440 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.protocol.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link WebSocketProtocolDecoder}.
+ */
+public class WebSocketProtocolDecoderTest {
+
+    private static final byte[] MASK = {(byte) 0x37, (byte) 0xfa, (byte) 0x21, (byte) 0x3d};
+
+    private enum BufferKind {
+        HEAP, HEAP_SLICE, DIRECT, READ_ONLY_HEAP, READ_ONLY_DIRECT
+    }
+
+    @Test
+    public void wholeFrame() {
+        final byte[] payload = payload(200);
+        final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+        final ByteBuffer buf = ByteBuffer.wrap(frame(0x82, payload, MASK));
+
+        final WebSocketFrame frame = decoder.decode(buf);
+
+        assertTrue(frame.isFinalFragment());
+        assertEquals(WebSocketFrame.Type.BINARY, frame.getFrameType());
+        assertArrayEquals(payload, bytes(frame.getPayload()));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void wholeFrameSplitReads() {
+        final byte[] payload = payload(300);
+        final byte[] data = frame(0x81, payload, MASK);
+        final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+
+        WebSocketFrame frame = null;
+        ByteBuffer leftover = ByteBuffer.allocate(0);
+        for (int i = 0; i < data.length; i++) {
+            assertNull(frame);
+            final ByteBuffer buf = ByteBuffer.allocate(leftover.remaining() + 1);
+            buf.put(leftover).put(data[i]).flip();
+            frame = decoder.decode(buf);
+            leftover = buf;
+        }
+
+        assertEquals(WebSocketFrame.Type.TEXT, frame.getFrameType());
+        assertArrayEquals(payload, bytes(frame.getPayload()));
+    }
+
+    @Test
+    public void splitReads() {
+        final byte[] payload = payload(1000);
+
+        for (BufferKind kind : BufferKind.values()) {
+            for (int chunkSize = 1; chunkSize <= 9; chunkSize++) {
+                for (byte[] mask : new byte[][]{null, MASK}) {
+                    final Recorder recorder = decodeInChunks(frame(0x82, payload, mask), chunkSize, kind);
+                    final String message = kind + ", chunk size " + chunkSize + ", masked " + (mask != null);
+
+                    assertEquals(message, 1, recorder.frames.size());
+                    recorder.frames.get(0).assertFrame(true, WebSocketFrame.Type.BINARY, payload);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void maskIndexCarriedOverChunks() {
+        // each chunk ends at a different position within the mask
+        final byte[] payload = payload(64);
+        final byte[] data = frame(0x82, payload, MASK);
+        final int header = data.length - payload.length;
+
+        for (BufferKind kind : BufferKind.values()) {
+            final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+            final Recorder recorder = new Recorder();
+
+            decoder.decode(buffer(Arrays.copyOfRange(data, 0, header + 1), kind), recorder);
+            decoder.decode(buffer(Arrays.copyOfRange(data, header + 1, header + 3), kind), recorder);
+            decoder.decode(buffer(Arrays.copyOfRange(data, header + 3, header + 6), kind), recorder);
+            decoder.decode(buffer(Arrays.copyOfRange(data, header + 6, data.length), kind), recorder);
+
+            assertEquals(kind.toString(), 4, recorder.frames.get(0).chunks);
+            recorder.frames.get(0).assertFrame(true, WebSocketFrame.Type.BINARY, payload);
+        }
+    }
+
+    @Test
+    public void multipleFrames() {
+        final byte[] first = payload(10);
+        final byte[] second = payload(130);
+        final byte[] data = concat(frame(0x01, first, MASK), frame(0x80, second, MASK), frame(0x89, new byte[0], null));
+
+        for (BufferKind kind : BufferKind.values()) {
+            final Recorder recorder = new Recorder();
+            final ByteBuffer buf = buffer(data, kind);
+            new WebSocketProtocolDecoder(false).decode(buf, recorder);
+
+            assertFalse(buf.hasRemaining());
+            assertEquals(3, recorder.frames.size());
+            recorder.frames.get(0).assertFrame(false, WebSocketFrame.Type.TEXT, first);
+            recorder.frames.get(1).assertFrame(true, WebSocketFrame.Type.CONTINUATION, second);
+            recorder.frames.get(2).assertFrame(true, WebSocketFrame.Type.PING, new byte[0]);
+        }
+    }
+
+    @Test
+    public void zeroLengthFrame() {
+        for (byte[] mask : new byte[][]{null, MASK}) {
+            final byte[] data = frame(0x82, new byte[0], mask);
+
+            final Recorder recorder = new Recorder();
+            new WebSocketProtocolDecoder(false).decode(ByteBuffer.wrap(data.clone()), recorder);
+            assertEquals(1, recorder.frames.size());
+            assertEquals(0, recorder.frames.get(0).chunks);
+            recorder.frames.get(0).assertFrame(true, WebSocketFrame.Type.BINARY, new byte[0]);
+
+            final WebSocketFrame frame = new WebSocketProtocolDecoder(false).decode(ByteBuffer.wrap(data));
+            assertEquals(0, frame.getPayload().remaining());
+        }
+    }
+
+    @Test
+    public void sixteenBitLengthAboveShortMax() {
+        final byte[] payload = payload(40000);
+        final byte[] data = frame(0x82, payload, MASK);
+        assertEquals(126, data[1] & 0x7F);
+        assertTrue(data[2] < 0);
+
+        final Recorder recorder = new Recorder();
+        new WebSocketProtocolDecoder(false).decode(ByteBuffer.wrap(data.clone()), recorder);
+        assertEquals(40000, recorder.frames.get(0).length);
+        recorder.frames.get(0).assertFrame(true, WebSocketFrame.Type.BINARY, payload);
+
+        final WebSocketFrame frame = new WebSocketProtocolDecoder(false).decode(ByteBuffer.wrap(data));
+        assertArrayEquals(payload, bytes(frame.getPayload()));
+    }
+
+    @Test
+    public void sixtyFourBitLength() {
+        final byte[] payload = payload(70000);
+        final byte[] data = frame(0x82, payload, null);
+        assertEquals(127, data[1] & 0x7F);
+
+        final Recorder recorder = decodeInChunks(data, 8192, BufferKind.DIRECT);
+        assertEquals(70000, recorder.frames.get(0).length);
+        recorder.frames.get(0).assertFrame(true, WebSocketFrame.Type.BINARY, payload);
+    }
+
+    @Test
+    public void oversizedFrameRejectedBeforePayload() {
+        final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+        decoder.setMaxFrameSize(100);
+        final Recorder recorder = new Recorder();
+
+        // only the header is available
+        final byte[] data = frame(0x82, payload(101), MASK);
+        try {
+            decoder.decode(ByteBuffer.wrap(data, 0, 8), recorder);
+            fail();
+        } catch (WebSocketProtocolException e) {
+            // expected
+        }
+        assertTrue(recorder.frames.isEmpty());
+    }
+
+    @Test
+    public void frameOfMaxSizeAccepted() {
+        final byte[] payload = payload(100);
+        final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+        decoder.setMaxFrameSize(100);
+
+        final WebSocketFrame frame = decoder.decode(ByteBuffer.wrap(frame(0x82, payload, MASK)));
+        assertArrayEquals(payload, bytes(frame.getPayload()));
+    }
+
+    @Test
+    public void oversizedWholeFrameRejected() {
+        // declared length does not fit into an array
+        final ByteBuffer buf = ByteBuffer.allocate(10);
+        buf.put((byte) 0x82).put((byte) 127).putLong(Integer.MAX_VALUE + 1L).flip();
+
+        final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+        decoder.setMaxFrameSize(Long.MAX_VALUE);
+        try {
+            decoder.decode(buf);
+            fail();
+        } catch (WebSocketProtocolException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = WebSocketProtocolException.class)
+    public void negativeLengthRejected() {
+        final ByteBuffer buf = ByteBuffer.allocate(10);
+        buf.put((byte) 0x82).put((byte) 127).putLong(-1L).flip();
+
+        new WebSocketProtocolDecoder(false).decode(buf, new Recorder());
+    }
+
+    @Test(expected = WebSocketProtocolException.class)
+    public void longControlFrameRejected() {
+        new WebSocketProtocolDecoder(false).decode(ByteBuffer.wrap(frame(0x89, payload(126), null)), new Recorder());
+    }
+
+    @Test
+    public void writableBufferUnmaskedInPlace() {
+        final byte[] payload = payload(20);
+        final byte[] data = frame(0x82, payload, MASK);
+        final int header = data.length - payload.length;
+
+        for (BufferKind kind : new BufferKind[]{BufferKind.HEAP, BufferKind.DIRECT}) {
+            final ByteBuffer buf = buffer(data, kind);
+            new WebSocketProtocolDecoder(false).decode(buf, new Recorder());
+
+            buf.position(header);
+            assertArrayEquals(kind.toString(), payload, bytes(buf));
+        }
+    }
+
+    @Test
+    public void readOnlyBufferNotModified() {
+        final byte[] payload = payload(20);
+        final byte[] data = frame(0x82, payload, MASK);
+        final byte[] copy = data.clone();
+
+        final Recorder recorder = new Recorder();
+        final ByteBuffer buf = ByteBuffer.wrap(data).asReadOnlyBuffer();
+        new WebSocketProtocolDecoder(false).decode(buf, recorder);
+
+        recorder.frames.get(0).assertFrame(true, WebSocketFrame.Type.BINARY, payload);
+        assertArrayEquals(copy, data);
+    }
+
+    @Test
+    public void incompleteHeaderLeftInBuffer() {
+        final byte[] data = frame(0x82, payload(300), MASK);
+        final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+        final Recorder recorder = new Recorder();
+
+        final ByteBuffer buf = ByteBuffer.wrap(data, 0, 3);
+        decoder.decode(buf, recorder);
+        assertEquals(1, buf.remaining());
+        assertTrue(recorder.frames.isEmpty());
+    }
+
+    /**
+     * Feed the data to a new decoder in chunks, re-passing bytes the decoder left in the buffer together with the
+     * next chunk.
+     */
+    private static Recorder decodeInChunks(byte[] data, int chunkSize, BufferKind kind) {
+        final WebSocketProtocolDecoder decoder = new WebSocketProtocolDecoder(false);
+        final Recorder recorder = new Recorder();
+
+        byte[] leftover = new byte[0];
+        for (int i = 0; i < data.length; i += chunkSize) {
+            final byte[] chunk = concat(leftover, Arrays.copyOfRange(data, i, Math.min(data.length, i + chunkSize)));
+            final ByteBuffer buf = buffer(chunk, kind);
+            decoder.decode(buf, recorder);
+            leftover = bytes(buf);
+        }
+        assertEquals(0, leftover.length);
+
+        return recorder;
+    }
+
+    private static ByteBuffer buffer(byte[] data, BufferKind kind) {
+        switch (kind) {
+            case HEAP:
+                return ByteBuffer.wrap(data.clone());
+            case HEAP_SLICE:
+                final ByteBuffer slice = ((ByteBuffer) ByteBuffer.wrap(concat(new byte[3], data)).position(3)).slice();
+                assertTrue(slice.arrayOffset() != 0);
+                return slice;
+            case DIRECT:
+                return direct(data);
+            case READ_ONLY_HEAP:
+                return ByteBuffer.wrap(data.clone()).asReadOnlyBuffer();
+            case READ_ONLY_DIRECT:
+                return direct(data).asReadOnlyBuffer();
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+    }
+
+    private static ByteBuffer direct(byte[] data) {
+        final ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+        buf.put(data).flip();
+        return buf;
+    }
+
+    private static byte[] frame(int b1, byte[] payload, byte[] mask) {
+        final ByteBuffer buf = ByteBuffer.allocate(payload.length + 14);
+        buf.put((byte) b1);
+        final int maskBit = mask == null ? 0 : 0x80;
+        if (payload.length <= 125) {
+            buf.put((byte) (maskBit | payload.length));
+        } else if (payload.length <= 0xFFFF) {
+            buf.put((byte) (maskBit | 126)).putShort((short) payload.length);
+        } else {
+            buf.put((byte) (maskBit | 127)).putLong(payload.length);
+        }
+        if (mask == null) {
+            buf.put(payload);
+        } else {
+            buf.put(mask);
+            for (int i = 0; i < payload.length; i++) {
+                buf.put((byte) (payload[i] ^ mask[i % 4]));
+            }
+        }
+        buf.flip();
+        return bytes(buf);
+    }
+
+    private static byte[] payload(int length) {
+        final byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (i * 31 + 7);
+        }
+        return payload;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(ByteBuffer buf) {
+        final byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static class RecordedFrame {
+        private final boolean finalFragment;
+        private final WebSocketFrame.Type type;
+        private final long length;
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        private int chunks;
+        private boolean ended;
+
+        private RecordedFrame(boolean finalFragment, WebSocketFrame.Type type, long length) {
+            this.finalFragment = finalFragment;
+            this.type = type;
+            this.length = length;
+        }
+
+        private void assertFrame(boolean finalFragment, WebSocketFrame.Type type, byte[] payload) {
+            assertEquals(finalFragment, this.finalFragment);
+            assertEquals(type, this.type);
+            assertEquals(payload.length, length);
+            assertArrayEquals(payload, this.payload.toByteArray());
+            assertTrue(ended);
+        }
+    }
+
+    private static class Recorder implements WebSocketProtocolDecoder.PayloadListener {
+        private final List<RecordedFrame> frames = new ArrayList<RecordedFrame>();
+
+        @Override
+        public void onFrameStart(boolean finalFragment, int rsv, WebSocketFrame.Type type, long length) {
+            assertTrue(frames.isEmpty() || current().ended);
+            frames.add(new RecordedFrame(finalFragment, type, length));
+        }
+
+        @Override
+        public void onPayload(ByteBuffer chunk) {
+            assertTrue(chunk.hasRemaining());
+            assertFalse(current().ended);
+            final byte[] bytes = bytes(chunk);
+            current().payload.write(bytes, 0, bytes.length);
+            current().chunks++;
+        }
+
+        @Override
+        public void onFrameEnd() {
+            assertFalse(current().ended);
+            assertEquals(current().length, current().payload.size());
+            current().ended = true;
+        }
+
+        private RecordedFrame current() {
+            return frames.get(frames.size() - 1);
+        }
+    }
+}
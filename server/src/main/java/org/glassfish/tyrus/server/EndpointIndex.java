@@ -0,0 +1,118 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads endpoint index generated at build time by {@link EndpointIndexProcessor}.
+ * <p/>
+ * Index is a text file ({@value #INDEX_LOCATION}) with one fully qualified class name per line; it lists classes
+ * annotated with {@link javax.websocket.server.ServerEndpoint} and {@link javax.websocket.server.ServerApplicationConfig}
+ * implementations, so they can be deployed without scanning the classpath.
+ */
+public final class EndpointIndex {
+
+    /**
+     * Location of the index file.
+     */
+    public static final String INDEX_LOCATION = "META-INF/tyrus/endpoints.idx";
+
+    private static final Logger LOGGER = Logger.getLogger(EndpointIndex.class.getName());
+    private static final String UTF8 = "UTF-8";
+
+    private EndpointIndex() {
+    }
+
+    /**
+     * Load classes listed in all index files visible to given class loader.
+     *
+     * @param classLoader class loader used for finding index files and loading listed classes.
+     * @return indexed classes, empty set when no index is found.
+     */
+    public static Set<Class<?>> load(ClassLoader classLoader) {
+        final Set<Class<?>> classes = new HashSet<Class<?>>();
+
+        try {
+            final Enumeration<URL> resources = classLoader.getResources(INDEX_LOCATION);
+            while (resources.hasMoreElements()) {
+                final URL url = resources.nextElement();
+                for (String className : read(url)) {
+                    try {
+                        classes.add(Class.forName(className, false, classLoader));
+                    } catch (ClassNotFoundException e) {
+                        LOGGER.log(Level.WARNING, String.format("Indexed class %s (%s) not found.", className, url));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Endpoint index cannot be read.", e);
+        }
+
+        return classes;
+    }
+
+    private static Set<String> read(URL url) throws IOException {
+        final Set<String> classNames = new HashSet<String>();
+        final InputStream inputStream = url.openStream();
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    classNames.add(line);
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        return classNames;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.server;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpoint;
+
+/**
+ * Annotation processor generating endpoint index ({@link EndpointIndex#INDEX_LOCATION}) at build time.
+ * <p/>
+ * Indexes all concrete classes annotated with {@link ServerEndpoint} and all concrete
+ * {@link ServerApplicationConfig} implementations. Processor is not registered automatically, it has to be enabled
+ * explicitly, for example by {@code javac -processor org.glassfish.tyrus.server.EndpointIndexProcessor} or by
+ * {@code annotationProcessors} configuration of maven-compiler-plugin.
+ */
+@SupportedAnnotationTypes("*")
+public class EndpointIndexProcessor extends AbstractProcessor {
+
+    private final Set<String> indexedClasses = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        final TypeElement configElement = processingEnv.getElementUtils().getTypeElement(ServerApplicationConfig.class.getName());
+        final TypeMirror configType = configElement == null ? null : configElement.asType();
+
+        for (Element element : roundEnv.getRootElements()) {
+            index(element, configType);
+        }
+
+        // annotations are not claimed, other processors can process them too.
+        return false;
+    }
+
+    private void index(Element element, TypeMirror configType) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return;
+        }
+
+        final TypeElement typeElement = (TypeElement) element;
+        final Set<Modifier> modifiers = typeElement.getModifiers();
+        final boolean concrete = modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.ABSTRACT);
+
+        if (concrete && (typeElement.getAnnotation(ServerEndpoint.class) != null
+                || (configType != null && processingEnv.getTypeUtils().isAssignable(typeElement.asType(), configType)))) {
+            indexedClasses.add(processingEnv.getElementUtils().getBinaryName(typeElement).toString());
+        }
+
+        // static nested classes.
+        for (Element enclosed : typeElement.getEnclosedElements()) {
+            if (enclosed.getModifiers().contains(Modifier.STATIC)) {
+                index(enclosed, configType);
+            }
+        }
+    }
+
+    private void writeIndex() {
+        if (indexedClasses.isEmpty()) {
+            return;
+        }
+
+        try {
+            final FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    EndpointIndex.INDEX_LOCATION);
+            final Writer writer = new OutputStreamWriter(resource.openOutputStream(), "UTF-8");
+            try {
+                writer.write("# Generated by " + EndpointIndexProcessor.class.getName() + "\n");
+                for (String className : indexedClasses) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write endpoint index: " + e.getMessage());
+        }
+    }
+}
@@ -140,9 +140,13 @@ public class Server {
     public synchronized void start() throws DeploymentException {
         try {
             if (server == null) {
-                server = ServerContainerFactory.createServerContainer(null);
+                server = ServerContainerFactory.createServerContainer(properties);
 
-                for (Class<?> clazz : configuration) {
+                // no classes provided, deploy classes listed in build-time generated index (if any).
+                final Set<Class<?>> classes = configuration.isEmpty() ?
+                        EndpointIndex.load(getClassLoader()) : configuration;
+
+                for (Class<?> clazz : classes) {
                     server.addEndpoint(clazz);
                 }
 
@@ -166,6 +170,11 @@ public class Server {
         }
     }
 
+    private static ClassLoader getClassLoader() {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        return contextClassLoader == null ? Server.class.getClassLoader() : contextClassLoader;
+    }
+
     public static void main(String[] args) {
         if (args.length < 4) {
             System.out.println("Please provide: (<hostname>, <port>, <websockets root path>, <;-sep fully qualfied classnames of your bean>) in the command line");
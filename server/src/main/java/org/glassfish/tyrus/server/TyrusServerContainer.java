@@ -42,9 +42,15 @@ package org.glassfish.tyrus.server;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import javax.websocket.ClientEndpointConfig;
@@ -58,7 +64,9 @@ import javax.websocket.server.ServerEndpointConfig;
 import org.glassfish.tyrus.client.ClientManager;
 import org.glassfish.tyrus.core.BaseContainer;
 import org.glassfish.tyrus.core.ErrorCollector;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.spi.ServerContainer;
+import org.glassfish.tyrus.spi.WebSocketEngine;
 
 /**
  * Server Container Implementation.
@@ -122,40 +130,106 @@ public abstract class TyrusServerContainer extends BaseContainer implements Serv
         ServerApplicationConfig configuration = new TyrusServerConfiguration((classes == null ? Collections.<Class<?>>emptySet() : classes),
                 dynamicallyAddedClasses, dynamicallyAddedEndpointConfigs, this.collector);
 
-        // start the underlying server
-        try {
-            // deploy all the annotated endpoints
-            for (Class<?> endpointClass : configuration.getAnnotatedEndpointClasses(null)) {
-                register(endpointClass);
-            }
+        final List<Callable<Void>> registrations = new ArrayList<Callable<Void>>();
+        addRegistrations(registrations, configuration);
+        if (serverApplicationConfig != null) {
+            addRegistrations(registrations, serverApplicationConfig);
+        }
 
-            // deploy all the programmatic endpoints
-            for (ServerEndpointConfig serverEndpointConfiguration : configuration.getEndpointConfigs(null)) {
-                if (serverEndpointConfiguration != null) {
-                    register(serverEndpointConfiguration);
-                }
-            }
+        register(registrations);
+
+        if (!collector.isEmpty()) {
+            this.stop();
+            throw collector.composeComprehensiveException();
+        }
+    }
+
+    /**
+     * Get maximal number of endpoints which are validated and registered concurrently during {@link #start(String, int)}.
+     * <p/>
+     * Endpoint registration (annotation processing, validation and model creation) is done by temporary threads
+     * when more than one endpoint is deployed. Containers which need registration to run on the deploying thread
+     * (for example because of thread bound naming context) should return {@code 1}.
+     *
+     * @return deployment parallelism, number of available processors by default.
+     */
+    protected int getDeploymentParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
 
-            if (serverApplicationConfig != null) {
-                // deploy all the annotated endpoints
-                for (Class<?> endpointClass : serverApplicationConfig.getAnnotatedEndpointClasses(null)) {
+    private void addRegistrations(List<Callable<Void>> registrations, ServerApplicationConfig configuration) {
+        // deploy all the annotated endpoints
+        for (final Class<?> endpointClass : configuration.getAnnotatedEndpointClasses(null)) {
+            registrations.add(new Callable<Void>() {
+                @Override
+                public Void call() throws DeploymentException {
                     register(endpointClass);
+                    return null;
                 }
+            });
+        }
 
-                // deploy all the programmatic endpoints
-                for (ServerEndpointConfig serverEndpointConfiguration : serverApplicationConfig.getEndpointConfigs(null)) {
-                    if (serverEndpointConfiguration != null) {
+        // deploy all the programmatic endpoints
+        for (final ServerEndpointConfig serverEndpointConfiguration : configuration.getEndpointConfigs(null)) {
+            if (serverEndpointConfiguration != null) {
+                registrations.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws DeploymentException {
                         register(serverEndpointConfiguration);
+                        return null;
                     }
+                });
+            }
+        }
+    }
+
+    /**
+     * Run all registrations and collect all deployment errors.
+     *
+     * @param registrations registrations to be run.
+     */
+    private void register(List<Callable<Void>> registrations) {
+        final int parallelism = Math.min(getDeploymentParallelism(), registrations.size());
+
+        if (parallelism <= 1) {
+            for (Callable<Void> registration : registrations) {
+                try {
+                    registration.call();
+                } catch (DeploymentException de) {
+                    collector.addException(de);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    collector.addException(new DeploymentException(e.getMessage(), e));
                 }
             }
-        } catch (DeploymentException de) {
-            collector.addException(de);
+            return;
         }
 
-        if (!collector.isEmpty()) {
-            this.stop();
-            throw collector.composeComprehensiveException();
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory());
+        try {
+            final List<Future<Void>> futures = executorService.invokeAll(registrations);
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof DeploymentException) {
+                        collector.addException((DeploymentException) cause);
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        collector.addException(new DeploymentException(cause.getMessage(), cause));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            collector.addException(new DeploymentException("Deployment interrupted.", e));
+        } finally {
+            executorService.shutdownNow();
         }
     }
 
@@ -164,11 +238,10 @@ public abstract class TyrusServerContainer extends BaseContainer implements Serv
      */
     @Override
     public void stop() {
-//        for (EndpointWrapper wsa : this.endpoints) {
-//            this.server.unregister(wsa);
-//            Logger.getLogger(getClass().getName()).fine("Closing down : " + wsa);
-//        }
-//        server.stop();
+        final WebSocketEngine engine = getWebSocketEngine();
+        if (engine instanceof TyrusWebSocketEngine) {
+            ((TyrusWebSocketEngine) engine).unregisterAll();
+        }
     }
 
     public abstract void register(Class<?> endpointClass) throws DeploymentException;
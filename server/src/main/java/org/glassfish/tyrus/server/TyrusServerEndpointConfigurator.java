@@ -47,6 +47,7 @@ import javax.websocket.HandshakeResponse;
 import javax.websocket.server.HandshakeRequest;
 import javax.websocket.server.ServerEndpointConfig;
 
+import org.glassfish.tyrus.core.CacheableNegotiation;
 import org.glassfish.tyrus.core.ComponentProviderService;
 
 /**
@@ -54,7 +55,7 @@ import org.glassfish.tyrus.core.ComponentProviderService;
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
-public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Configurator {
+public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Configurator implements CacheableNegotiation {
 
     private final ComponentProviderService componentProviderService;
 
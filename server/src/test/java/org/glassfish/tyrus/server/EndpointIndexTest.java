@@ -0,0 +1,155 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import javax.websocket.server.ServerEndpoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EndpointIndexTest {
+
+    @Test
+    public void noIndex() {
+        final ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+        Assert.assertTrue(EndpointIndex.load(classLoader).isEmpty());
+    }
+
+    @Test
+    public void loadIndex() throws IOException {
+        final File dir = createTempDir();
+        write(new File(dir, EndpointIndex.INDEX_LOCATION), "# comment\n"
+                + TyrusServerContainerTest.AnnotatedA.class.getName() + "\n\n"
+                + "org.glassfish.tyrus.server.DoesNotExist\n");
+
+        final Set<Class<?>> classes = EndpointIndex.load(new URLClassLoader(new URL[]{dir.toURI().toURL()},
+                getClass().getClassLoader()));
+
+        Assert.assertEquals(1, classes.size());
+        Assert.assertTrue(classes.contains(TyrusServerContainerTest.AnnotatedA.class));
+    }
+
+    @Test
+    public void generateIndex() throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            // running on JRE.
+            return;
+        }
+
+        final File dir = createTempDir();
+        final File source = new File(dir, "sample/Indexed.java");
+        write(source, "package sample;\n"
+                + "@javax.websocket.server.ServerEndpoint(\"/indexed\")\n"
+                + "public class Indexed {\n"
+                + "    @javax.websocket.server.ServerEndpoint(\"/nested\")\n"
+                + "    public static class Nested {\n"
+                + "    }\n"
+                + "}\n"
+                + "@javax.websocket.server.ServerEndpoint(\"/hidden\")\n"
+                + "abstract class NotIndexed {\n"
+                + "}\n");
+
+        final int result = compiler.run(null, null, null, "-proc:only",
+                "-processor", EndpointIndexProcessor.class.getName(),
+                "-classpath", location(ServerEndpoint.class) + File.pathSeparator + location(EndpointIndexProcessor.class),
+                "-d", dir.getAbsolutePath(), source.getAbsolutePath());
+        Assert.assertEquals(0, result);
+
+        final File index = new File(dir, EndpointIndex.INDEX_LOCATION);
+        Assert.assertTrue(index.exists());
+
+        final String content = read(index);
+        Assert.assertTrue(content.contains("sample.Indexed\n"));
+        Assert.assertTrue(content.contains("sample.Indexed$Nested\n"));
+        Assert.assertFalse(content.contains("NotIndexed"));
+    }
+
+    private static String location(Class<?> clazz) throws Exception {
+        return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+    }
+
+    private static String read(File file) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            final char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return sb.toString();
+    }
+
+    private static File createTempDir() throws IOException {
+        final File dir = File.createTempFile("tyrus-index", "");
+        Assert.assertTrue(dir.delete());
+        Assert.assertTrue(dir.mkdirs());
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Assert.assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
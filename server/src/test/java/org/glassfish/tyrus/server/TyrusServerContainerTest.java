@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.spi.WebSocketEngine;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TyrusServerContainerTest {
+
+    @Test
+    public void parallelRegistration() throws Exception {
+        final RecordingContainer container = new RecordingContainer(4, AnnotatedA.class, AnnotatedB.class, AnnotatedC.class);
+        container.start("/", 0);
+
+        Assert.assertEquals(3, container.registered.size());
+        Assert.assertFalse(container.threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void sequentialRegistration() throws Exception {
+        final RecordingContainer container = new RecordingContainer(1, AnnotatedA.class, AnnotatedB.class);
+        container.start("/", 0);
+
+        Assert.assertEquals(2, container.registered.size());
+        Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), container.threads);
+    }
+
+    @Test
+    public void allErrorsCollected() throws Exception {
+        final RecordingContainer container = new RecordingContainer(4, AnnotatedA.class, AnnotatedB.class, AnnotatedC.class);
+        container.failing.add(AnnotatedA.class);
+        container.failing.add(AnnotatedC.class);
+
+        try {
+            container.start("/", 0);
+            Assert.fail("DeploymentException expected.");
+        } catch (DeploymentException e) {
+            Assert.assertTrue(e.getMessage().contains(AnnotatedA.class.getName()));
+            Assert.assertTrue(e.getMessage().contains(AnnotatedC.class.getName()));
+        }
+        Assert.assertEquals(Collections.<Class<?>>singleton(AnnotatedB.class), container.registered);
+    }
+
+    private static class RecordingContainer extends TyrusServerContainer {
+
+        private final int parallelism;
+        private final Set<Class<?>> registered = Collections.synchronizedSet(new HashSet<Class<?>>());
+        private final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        private final Set<Class<?>> failing = new HashSet<Class<?>>();
+
+        private RecordingContainer(int parallelism, Class<?>... classes) {
+            super(new HashSet<Class<?>>(Arrays.asList(classes)));
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        protected int getDeploymentParallelism() {
+            return parallelism;
+        }
+
+        @Override
+        public void register(Class<?> endpointClass) throws DeploymentException {
+            threads.add(Thread.currentThread().getName());
+            if (failing.contains(endpointClass)) {
+                throw new DeploymentException(endpointClass.getName());
+            }
+            registered.add(endpointClass);
+        }
+
+        @Override
+        public void register(ServerEndpointConfig serverEndpointConfig) throws DeploymentException {
+        }
+
+        @Override
+        public WebSocketEngine getWebSocketEngine() {
+            return null;
+        }
+    }
+
+    @ServerEndpoint("/a")
+    public static class AnnotatedA {
+    }
+
+    @ServerEndpoint("/b")
+    public static class AnnotatedB {
+    }
+
+    @ServerEndpoint("/c")
+    public static class AnnotatedC {
+    }
+}
@@ -57,6 +57,12 @@ public interface ClientContainer {
      * <p/>
      * Called from ClientManager when {@link javax.websocket.WebSocketContainer#connectToServer(Class, javax.websocket.ClientEndpointConfig, java.net.URI)}
      * is invoked.
+     * <p/>
+     * Implementation can either establish the connection before returning, throwing an exception when it fails, or
+     * connect asynchronously; ClientManager does not block any thread until
+     * {@link ClientEngine#processResponse(UpgradeResponse, Writer, org.glassfish.tyrus.spi.Connection.CloseListener)}
+     * is called. Failures of asynchronous connection attempts are reported to the client when the handshake timeout
+     * expires.
      *
      * @param url          address where remote service is deployed.
      * @param cec          endpoint configuration. SPI consumer can access user properties, {@link javax.websocket.ClientEndpointConfig.Configurator},
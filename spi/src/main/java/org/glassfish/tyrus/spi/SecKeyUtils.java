@@ -0,0 +1,218 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.spi;
+
+import java.nio.charset.Charset;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * {@code Sec-WebSocket-Key} and {@code Sec-WebSocket-Accept} computation shared by all Tyrus handshake
+ * implementations.
+ * <p/>
+ * Every handshake (client or server side) computes one accept key, so the computation does not create a new
+ * {@link MessageDigest} per call (digest is cached per thread) and works with fixed-size buffers; the only
+ * allocation is the resulting {@link String}.
+ *
+ * @see <a href="http://tools.ietf.org/html/rfc6455#section-4.2.2">RFC 6455, section 4.2.2</a>
+ */
+public final class SecKeyUtils {
+
+    /**
+     * Length of the key in bytes (before base64 encoding).
+     */
+    private static final int KEY_SIZE = 16;
+
+    /**
+     * Length of base64 encoded key.
+     */
+    private static final int ENCODED_KEY_LENGTH = 24;
+
+    private static final int SHA1_LENGTH = 20;
+
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int[] BASE64_VALUES = new int[128];
+
+    private static final byte[] SERVER_KEY_HASH_BYTES = UpgradeRequest.SERVER_KEY_HASH.getBytes(Charset.forName("US-ASCII"));
+
+    private static final ThreadLocal<State> STATE = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    static {
+        for (int i = 0; i < BASE64_VALUES.length; i++) {
+            BASE64_VALUES[i] = -1;
+        }
+        for (int i = 0; i < BASE64.length; i++) {
+            BASE64_VALUES[BASE64[i]] = i;
+        }
+    }
+
+    private SecKeyUtils() {
+    }
+
+    /**
+     * Create new random {@code Sec-WebSocket-Key} value.
+     *
+     * @param random source of random bytes. Should be {@link java.security.SecureRandom}.
+     * @return base64 encoded 16 random bytes.
+     */
+    public static String createKey(Random random) {
+        final byte[] bytes = new byte[KEY_SIZE];
+        random.nextBytes(bytes);
+        return encode(bytes, KEY_SIZE, new char[ENCODED_KEY_LENGTH]);
+    }
+
+    /**
+     * Check whether given value is valid {@code Sec-WebSocket-Key}, i.e. base64 encoded 16 bytes.
+     *
+     * @param key key to be checked.
+     * @return {@code true} when the key is valid, {@code false} otherwise.
+     */
+    public static boolean isValidKey(String key) {
+        if (key == null || key.length() != ENCODED_KEY_LENGTH
+                || key.charAt(ENCODED_KEY_LENGTH - 2) != '=' || key.charAt(ENCODED_KEY_LENGTH - 1) != '=') {
+            return false;
+        }
+
+        for (int i = 0; i < ENCODED_KEY_LENGTH - 2; i++) {
+            final char c = key.charAt(i);
+            if (c >= BASE64_VALUES.length || BASE64_VALUES[c] == -1) {
+                return false;
+            }
+        }
+
+        // 16 bytes are encoded to 22 characters, only the 2 upper bits of the last one carry data.
+        return (BASE64_VALUES[key.charAt(ENCODED_KEY_LENGTH - 3)] & 0x0F) == 0;
+    }
+
+    /**
+     * Compute {@code Sec-WebSocket-Accept} value for given {@code Sec-WebSocket-Key}.
+     *
+     * @param key client key, see {@link #isValidKey(String)}.
+     * @return base64 encoded SHA-1 hash of the key concatenated with {@link UpgradeRequest#SERVER_KEY_HASH}.
+     * @throws IllegalArgumentException when the key is not valid.
+     */
+    public static String generateAcceptKey(String key) {
+        if (!isValidKey(key)) {
+            throw new IllegalArgumentException(String.format("Invalid Sec-WebSocket-Key: '%s'.", key));
+        }
+
+        final State state = STATE.get();
+        final byte[] input = state.input;
+
+        // key consists of ASCII characters only (validated).
+        for (int i = 0; i < ENCODED_KEY_LENGTH; i++) {
+            input[i] = (byte) key.charAt(i);
+        }
+
+        final MessageDigest digest = state.digest;
+        digest.update(input, 0, ENCODED_KEY_LENGTH);
+        digest.update(SERVER_KEY_HASH_BYTES);
+
+        final byte[] hash = state.hash;
+        try {
+            digest.digest(hash, 0, SHA1_LENGTH);
+        } catch (DigestException e) {
+            digest.reset();
+            throw new IllegalStateException(e);
+        }
+
+        return encode(hash, SHA1_LENGTH, state.output);
+    }
+
+    /**
+     * Check whether {@code Sec-WebSocket-Accept} value returned by the server matches given client key.
+     *
+     * @param key       client key.
+     * @param acceptKey value returned by the server.
+     * @return {@code true} when the accept key is valid for given client key.
+     */
+    public static boolean isValidAcceptKey(String key, String acceptKey) {
+        return acceptKey != null && isValidKey(key) && generateAcceptKey(key).equals(acceptKey);
+    }
+
+    private static String encode(byte[] data, int length, char[] output) {
+        int out = 0;
+        int i = 0;
+
+        for (; i + 2 < length; i += 3) {
+            final int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            output[out++] = BASE64[bits >>> 18];
+            output[out++] = BASE64[(bits >>> 12) & 0x3F];
+            output[out++] = BASE64[(bits >>> 6) & 0x3F];
+            output[out++] = BASE64[bits & 0x3F];
+        }
+
+        final int remaining = length - i;
+        if (remaining > 0) {
+            final int bits = (data[i] & 0xFF) << 16 | (remaining == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+            output[out++] = BASE64[bits >>> 18];
+            output[out++] = BASE64[(bits >>> 12) & 0x3F];
+            output[out++] = remaining == 2 ? BASE64[(bits >>> 6) & 0x3F] : '=';
+            output[out++] = '=';
+        }
+
+        return new String(output, 0, out);
+    }
+
+    /**
+     * Per-thread digest and buffers.
+     */
+    private static final class State {
+        private final MessageDigest digest;
+        private final byte[] input = new byte[ENCODED_KEY_LENGTH];
+        private final byte[] hash = new byte[SHA1_LENGTH];
+        private final char[] output = new char[((SHA1_LENGTH + 2) / 3) * 4];
+
+        private State() {
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -56,6 +56,24 @@ import java.nio.ByteBuffer;
  */
 public abstract class Writer implements Closeable {
 
+    private volatile WritabilityListener writabilityListener;
+
+    /**
+     * Listener notified when writability of a {@link Writer} changes.
+     * <p/>
+     * Invoked from transport threads, implementations must not block.
+     */
+    public interface WritabilityListener {
+
+        /**
+         * Writability of the writer changed.
+         *
+         * @param writable {@code true} when the writer became writable again (queued data dropped below the low
+         *                 watermark), {@code false} when the queued data exceeded the high watermark.
+         */
+        void onWritabilityChanged(boolean writable);
+    }
+
     /**
      * Tyrus runtime calls this method to handover the data for a connection
      * to the transport. The transport writes bytes to underlying connection.
@@ -65,4 +83,64 @@ public abstract class Writer implements Closeable {
      * @param completionHandler completion handler to know the write status.
      */
     public abstract void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler);
-}
\ No newline at end of file
+
+    /**
+     * Get writability of this writer.
+     * <p/>
+     * Writer is not writable when the amount of data handed over to the transport and not yet written to the
+     * underlying connection exceeds the transport's high watermark; it becomes writable again when the amount drops
+     * below the low watermark. Writes are still accepted when the writer is not writable (unless transport specific
+     * hard limit is reached), but the caller should stop producing more data.
+     * <p/>
+     * Default implementation always returns {@code true}; transports which track outbound data override this method
+     * and call {@link #onWritabilityChanged(boolean)}.
+     *
+     * @return {@code true} when more data can be written without further queueing.
+     */
+    public boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * Set listener notified when writability of this writer changes.
+     *
+     * @param writabilityListener listener, {@code null} removes previously set listener.
+     */
+    public void setWritabilityListener(WritabilityListener writabilityListener) {
+        this.writabilityListener = writabilityListener;
+    }
+
+    /**
+     * Stop reading data from the underlying connection until {@link #resumeReading()} is called.
+     * <p/>
+     * Used by tyrus runtime to throttle connections when the memory for inbound data is exhausted. Data already
+     * read can still be passed to {@link ReadHandler#handle(ByteBuffer)}. Can be called from any thread.
+     * <p/>
+     * Default implementation does nothing and returns {@code false}; transports which are able to stop reading
+     * override this method and {@link #resumeReading()}.
+     *
+     * @return {@code true} when reading was paused, {@code false} when the transport does not support pausing.
+     */
+    public boolean pauseReading() {
+        return false;
+    }
+
+    /**
+     * Resume reading paused by {@link #pauseReading()}. Can be called from any thread, does nothing when reading is
+     * not paused.
+     */
+    public void resumeReading() {
+    }
+
+    /**
+     * Notify registered {@link WritabilityListener}. To be called by implementations when writability changes.
+     *
+     * @param writable new writability.
+     */
+    protected void onWritabilityChanged(boolean writable) {
+        final WritabilityListener listener = writabilityListener;
+        if (listener != null) {
+            listener.onWritabilityChanged(writable);
+        }
+    }
+}
@@ -52,8 +52,6 @@ import org.glassfish.tyrus.core.WebSocket;
 import org.glassfish.tyrus.core.WebSocketListener;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 
-import org.glassfish.grizzly.GrizzlyFuture;
-
 /**
  * Mock client that can be used to confirm that the test is written correctly. When writing a test and not sure if the
  * failures happen due to issues in the test or issues in the web socket runtime, you can simply replace usages of
@@ -69,7 +67,7 @@ class MockWebSocketClient implements WebSocket {
     }
 
     @Override
-    public GrizzlyFuture<DataFrame> send(String message) {
+    public Future<Void> send(String message) {
         listener.onMessage(this, message);
         return null;
     }
@@ -82,7 +80,7 @@ class MockWebSocketClient implements WebSocket {
 
 
     @Override
-    public Future<DataFrame> send(byte[] data) {
+    public Future<Void> send(byte[] data) {
         return null;
     }
 
@@ -91,28 +89,37 @@ class MockWebSocketClient implements WebSocket {
     }
 
     @Override
-    public Future<DataFrame> sendRawFrame(ByteBuffer data) {
+    public Future<Void> sendBinary(ByteBuffer data) {
+        return null;
+    }
+
+    @Override
+    public void sendBinary(ByteBuffer data, SendHandler handler) {
+    }
+
+    @Override
+    public Future<Void> sendRawFrame(ByteBuffer data) {
         return null;
     }
 
     @Override
-    public GrizzlyFuture<DataFrame> sendPing(byte[] bytes) {
+    public Future<Void> sendPing(byte[] bytes) {
         return null;
     }
 
     @Override
-    public GrizzlyFuture<DataFrame> sendPong(byte[] bytes) {
+    public Future<Void> sendPong(byte[] bytes) {
         return null;
     }
 
     @Override
-    public Future<DataFrame> stream(boolean last, String fragment) {
+    public Future<Void> stream(boolean last, String fragment) {
         return null;
     }
 
 
     @Override
-    public GrizzlyFuture<DataFrame> stream(boolean b, byte[] bytes, int i, int i1) {
+    public Future<Void> stream(boolean b, byte[] bytes, int i, int i1) {
         return null;
     }
 
@@ -0,0 +1,154 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.tests.performance;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.core.RequestContext;
+import org.glassfish.tyrus.core.TyrusUpgradeResponse;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Connection;
+import org.glassfish.tyrus.spi.WebSocketEngine;
+import org.glassfish.tyrus.spi.Writer;
+
+/**
+ * Retained heap per idle server session.
+ * <p/>
+ * Opens given number of connections through {@link TyrusWebSocketEngine} (handshake included, no transport) to an
+ * endpoint which does nothing, keeps them open and reports difference of used heap after full GC divided by the
+ * number of connections. Not a JMH benchmark - JMH measures time and allocation rate, not retained size. Run with
+ * <pre>
+ * java -cp target/benchmarks.jar org.glassfish.tyrus.tests.performance.SessionFootprintBenchmark [connections]
+ * </pre>
+ * preferably with fixed heap size ({@code -Xms} equal to {@code -Xmx}).
+ */
+public class SessionFootprintBenchmark {
+
+    private static final int DEFAULT_CONNECTIONS = 100000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        final int connections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+
+        final TyrusWebSocketEngine engine = new TyrusWebSocketEngine(null);
+        engine.register(ServerEndpointConfig.Builder.create(IdleEndpoint.class, "/footprint").build(), "/");
+
+        // warm-up, loads classes and initializes shared structures.
+        close(open(engine, 1000));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final long before = usedHeap();
+            final Connection[] opened = open(engine, connections);
+            final long after = usedHeap();
+
+            System.out.printf("round %d: %d connections, %d bytes retained per idle session%n",
+                    round + 1, connections, (after - before) / connections);
+
+            close(opened);
+        }
+    }
+
+    private static Connection[] open(WebSocketEngine engine, int connections) {
+        final Connection[] opened = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            final RequestContext request = RequestContext.Builder.create().requestURI(URI.create("/footprint")).build();
+            request.getHeaders().put("Host", Arrays.asList("localhost"));
+            request.getHeaders().put("Upgrade", Arrays.asList("websocket"));
+            request.getHeaders().put("Connection", Arrays.asList("Upgrade"));
+            request.getHeaders().put("Sec-WebSocket-Key", Arrays.asList("dGhlIHNhbXBsZSBub25jZQ=="));
+            request.getHeaders().put("Sec-WebSocket-Version", Arrays.asList("13"));
+
+            final WebSocketEngine.UpgradeInfo upgradeInfo = engine.upgrade(request, new TyrusUpgradeResponse());
+            if (upgradeInfo.getStatus() != WebSocketEngine.UpgradeStatus.SUCCESS) {
+                throw new IllegalStateException("Upgrade failed: " + upgradeInfo.getStatus());
+            }
+            opened[i] = upgradeInfo.createConnection(new NoopWriter(), null);
+        }
+        return opened;
+    }
+
+    private static void close(Connection[] connections) {
+        for (Connection connection : connections) {
+            connection.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, null));
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // repeat until the collector does not free anything more.
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(100);
+            final long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    public static class IdleEndpoint extends Endpoint {
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    private static class NoopWriter extends Writer {
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}